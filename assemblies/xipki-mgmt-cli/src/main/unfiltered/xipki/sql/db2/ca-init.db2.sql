@@ -125,6 +125,8 @@ ALTER TABLE CERT ADD CONSTRAINT CONST_CA_SN UNIQUE (CA_ID, SN);
 
 CREATE INDEX IDX_CA_FPS ON CERT(CA_ID, FP_S, FP_SAN);
 
+CREATE INDEX IDX_CERT_LUPDATE ON CERT(LUPDATE, ID);
+
 -- changeset xipki:4
 ALTER TABLE CRL ADD CONSTRAINT FK_CRL_CA1 FOREIGN KEY (CA_ID) REFERENCES CA (ID)
     ON UPDATE NO ACTION ON DELETE NO ACTION;
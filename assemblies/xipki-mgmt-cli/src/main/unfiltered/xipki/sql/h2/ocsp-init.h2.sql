@@ -83,6 +83,7 @@ COMMENT ON COLUMN CERT.HASH IS 'base64 encoded hash value of the DER encoded cer
 COMMENT ON COLUMN CERT.SUBJECT IS 'subject of the certificate';
 
 ALTER TABLE CERT ADD CONSTRAINT CONST_ISSUER_SN UNIQUE (IID, SN);
+CREATE INDEX IDX_CERT_LUPDATE ON CERT(LUPDATE, ID);
 
 -- changeset xipki:2
 ALTER TABLE CERT ADD CONSTRAINT FK_CERT_ISSUER1
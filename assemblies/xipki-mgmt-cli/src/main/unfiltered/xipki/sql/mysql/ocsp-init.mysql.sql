@@ -61,6 +61,7 @@ CREATE TABLE CERT (
 COMMENT='certificate information';
 
 ALTER TABLE CERT ADD CONSTRAINT CONST_ISSUER_SN UNIQUE (IID, SN);
+CREATE INDEX IDX_CERT_LUPDATE ON CERT(LUPDATE, ID);
 
 -- changeset xipki:2
 ALTER TABLE CERT ADD CONSTRAINT FK_CERT_ISSUER1
@@ -4,8 +4,13 @@
 package org.xipki.ca.api.profile;
 
 import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
 import org.xipki.util.Args;
 
+import java.io.IOException;
+
 /**
  * Extension value control.
  *
@@ -19,6 +24,9 @@ public class ExtensionValue {
 
   private final ASN1Encodable value;
 
+  // DER encoded extension, cached since the constant extension values are used for many certificates.
+  private volatile Extension extension;
+
   public ExtensionValue(boolean critical, ASN1Encodable value) {
     this.critical = critical;
     this.value = Args.notNull(value, "value");
@@ -32,4 +40,20 @@ public class ExtensionValue {
     return value;
   }
 
+  /**
+   * Returns the extension with the DER encoded value. The encoding is computed once and cached.
+   * @param type the extension type.
+   * @return the extension.
+   * @throws IOException if the value could not be encoded.
+   * @since 6.5.4
+   */
+  public Extension toExtension(ASN1ObjectIdentifier type) throws IOException {
+    Extension ext = extension;
+    if (ext == null || !ext.getExtnId().equals(type)) {
+      ext = new Extension(type, critical, value.toASN1Primitive().getEncoded(ASN1Encoding.DER));
+      extension = ext;
+    }
+    return ext;
+  }
+
 }
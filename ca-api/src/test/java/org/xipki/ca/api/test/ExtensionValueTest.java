@@ -0,0 +1,58 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.api.test;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.ca.api.profile.ExtensionValue;
+
+import java.io.IOException;
+
+/**
+ * ExtensionValue test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class ExtensionValueTest {
+
+  @Test
+  public void testToExtensionIsCached() throws IOException {
+    ExtensionValue value = new ExtensionValue(true, new BasicConstraints(0));
+    Extension ext1 = value.toExtension(Extension.basicConstraints);
+    Extension ext2 = value.toExtension(Extension.basicConstraints);
+    Assert.assertSame(ext1, ext2);
+  } // method testToExtensionIsCached
+
+  @Test
+  public void testToExtensionOfOtherType() throws IOException {
+    ExtensionValue value = new ExtensionValue(false, new BasicConstraints(0));
+    Extension ext1 = value.toExtension(Extension.basicConstraints);
+    Extension ext2 = value.toExtension(Extension.subjectDirectoryAttributes);
+    Assert.assertNotSame(ext1, ext2);
+    Assert.assertEquals(Extension.subjectDirectoryAttributes, ext2.getExtnId());
+    Assert.assertArrayEquals(ext1.getExtnValue().getOctets(), ext2.getExtnValue().getOctets());
+
+    // the extension of the original type is encoded again.
+    Extension ext3 = value.toExtension(Extension.basicConstraints);
+    Assert.assertEquals(Extension.basicConstraints, ext3.getExtnId());
+    Assert.assertEquals(ext1, ext3);
+  } // method testToExtensionOfOtherType
+
+  @Test
+  public void testToExtensionEncoding() throws IOException {
+    BasicConstraints bc = new BasicConstraints(3);
+    ExtensionValue value = new ExtensionValue(true, bc);
+    Extension ext = value.toExtension(Extension.basicConstraints);
+    Assert.assertEquals(Extension.basicConstraints, ext.getExtnId());
+    Assert.assertTrue(ext.isCritical());
+    Assert.assertArrayEquals(bc.getEncoded(ASN1Encoding.DER), ext.getExtnValue().getOctets());
+    Assert.assertEquals(bc, BasicConstraints.getInstance(ext.getParsedValue()));
+  } // method testToExtensionEncoding
+
+}
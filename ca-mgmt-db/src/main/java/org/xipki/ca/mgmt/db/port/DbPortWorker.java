@@ -549,15 +549,25 @@ public abstract class DbPortWorker extends DbWorker {
 
     private final int batchEntriesPerCommit;
 
+    private final int numThreads;
+
     public ImportOcspFromCaDb(
         DataSourceFactory datasourceFactory, String dbConfFile,
         String publisherName, boolean resume, String srcFolder, int batchEntriesPerCommit, char[] password)
         throws InvalidConfException, IOException {
+      this(datasourceFactory, dbConfFile, publisherName, resume, srcFolder, batchEntriesPerCommit, 1, password);
+    }
+
+    public ImportOcspFromCaDb(
+        DataSourceFactory datasourceFactory, String dbConfFile, String publisherName, boolean resume,
+        String srcFolder, int batchEntriesPerCommit, int numThreads, char[] password)
+        throws InvalidConfException, IOException {
       super(datasourceFactory, dbConfFile, password);
       this.publisherName = publisherName;
       this.resume = resume;
       this.srcFolder = IoUtil.expandFilepath(srcFolder);
       this.batchEntriesPerCommit = batchEntriesPerCommit;
+      this.numThreads = numThreads;
     }
 
     @Override
@@ -574,7 +584,7 @@ public abstract class DbPortWorker extends DbWorker {
       // CertStore
       try {
         OcspCertStoreFromCaDbImporter certStoreImporter = new OcspCertStoreFromCaDbImporter(
-                datasource, srcFolder, publisherName, batchEntriesPerCommit, resume, stopMe);
+                datasource, srcFolder, publisherName, batchEntriesPerCommit, resume, numThreads, stopMe);
         certStoreImporter.importToDb();
         certStoreImporter.close();
       } finally {
@@ -22,22 +22,37 @@ import org.xipki.util.LogUtil;
 import org.xipki.util.ProcessLog;
 import org.xipki.util.StringUtil;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -50,21 +65,303 @@ import java.util.zip.ZipFile;
 
 class OcspCertStoreFromCaDbImporter extends AbstractOcspCertstoreDbImporter {
 
+  /**
+   * Certificates of a bundle (ZIP file) to be imported.
+   */
+  private static final class Bundle {
+
+    private final String name;
+
+    // certificates with ID not greater than doneUpTo have been imported in a previous run.
+    private final long doneUpTo;
+
+    // smallest ID of the certificates in the bundle, 0 if the bundle is empty.
+    private final long minId;
+
+    private final long maxId;
+
+    // number of certificates processed, including the ones which are not imported.
+    private final int numProcessed;
+
+    private final List<CaCertstore.Cert> certs;
+
+    private final List<byte[]> encodedCerts;
+
+    private Bundle(String name, long doneUpTo, long minId, long maxId, int numProcessed,
+                   List<CaCertstore.Cert> certs, List<byte[]> encodedCerts) {
+      this.name = name;
+      this.doneUpTo = doneUpTo;
+      this.minId = minId;
+      this.maxId = maxId;
+      this.numProcessed = numProcessed;
+      this.certs = certs;
+      this.encodedCerts = encodedCerts;
+    }
+
+  } // class Bundle
+
+  /**
+   * Certificate ready to be written to the database.
+   */
+  private static final class ParsedCert {
+
+    private final CaCertstore.Cert cert;
+
+    private final String serialNumber;
+
+    private final long notBefore;
+
+    private final long notAfter;
+
+    private final String certhash;
+
+    private final String subject;
+
+    private ParsedCert(CaCertstore.Cert cert, String serialNumber, long notBefore, long notAfter,
+                       String certhash, String subject) {
+      this.cert = cert;
+      this.serialNumber = serialNumber;
+      this.notBefore = notBefore;
+      this.notAfter = notAfter;
+      this.certhash = certhash;
+      this.subject = subject;
+    }
+
+  } // class ParsedCert
+
+  /**
+   * Progress of the pipelined import. Each line of the process log file is either
+   * {@code <bundle>:<last imported ID>} or {@code <bundle>:finished}. The lines are appended, so
+   * the last line of a bundle wins. A process log file of the sequential import
+   * ({@code <number processed>:<last imported ID>}) is accepted as a watermark for all bundles.
+   */
+  static final class PipelineProgress implements Closeable {
+
+    static final String FINISHED = "finished";
+
+    private final Map<String, Long> lastIds = new HashMap<>();
+
+    private final Set<String> finishedBundles = new HashSet<>();
+
+    private final long watermark;
+
+    private final BufferedWriter writer;
+
+    PipelineProgress(File file) throws IOException {
+      long watermark0 = 0;
+      if (file.exists()) {
+        for (String line : Files.readAllLines(file.toPath())) {
+          int idx = line.lastIndexOf(':');
+          if (idx == -1) {
+            continue;
+          }
+
+          String key = line.substring(0, idx);
+          String value = line.substring(idx + 1).trim();
+          if (key.contains(".zip")) {
+            if (FINISHED.equals(value)) {
+              finishedBundles.add(key);
+            } else {
+              lastIds.put(key, Long.parseLong(value));
+            }
+          } else {
+            // process log of the sequential import
+            watermark0 = Long.parseLong(value);
+          }
+        }
+      }
+      this.watermark = watermark0;
+      this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    boolean isFinished(String bundle) {
+      return finishedBundles.contains(bundle);
+    }
+
+    long getDoneUpTo(String bundle) {
+      Long lastId = lastIds.get(bundle);
+      return lastId == null ? watermark : Math.max(lastId, watermark);
+    }
+
+    synchronized void append(String bundle, String value) throws IOException {
+      writer.write(bundle);
+      writer.write(':');
+      writer.write(value);
+      writer.write('\n');
+      writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      writer.close();
+    }
+
+  } // class PipelineProgress
+
+  /**
+   * Writer with its own database connection. The bundles are assigned to the writers in turn,
+   * so that each writer owns the ID ranges of its bundles.
+   */
+  private final class BundleWriter implements Closeable {
+
+    private final Connection conn;
+
+    private final PreparedStatement psCert;
+
+    private final PreparedStatement psDeleteCerts;
+
+    private final ExecutorService executor;
+
+    private BundleWriter(int index) throws DataAccessException {
+      this.conn = datasource.getConnection();
+      try {
+        conn.setAutoCommit(false);
+        this.psCert = datasource.prepareStatement(conn, SQL_ADD_CERT);
+        this.psDeleteCerts = datasource.prepareStatement(conn, SQL_DELETE_CERT_RANGE);
+      } catch (SQLException ex) {
+        datasource.returnConnection(conn);
+        throw translate(null, ex);
+      } catch (DataAccessException ex) {
+        datasource.returnConnection(conn);
+        throw ex;
+      }
+
+      this.executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "ocsp-import-writer-" + index));
+    }
+
+    private void write(Bundle bundle, List<ParsedCert> certs, PipelineProgress progress,
+                       ProcessLog processLog, ProcessLog importLog) throws Exception {
+      try {
+        if (resume && bundle.minId > 0) {
+          // remove the certificates of this bundle committed after the last recorded progress.
+          // The range must not reach into the lower bundles, which may have been finished
+          // already or are being written by other writers.
+          psDeleteCerts.setLong(1, deleteLowerBound(bundle.doneUpTo, bundle.minId));
+          psDeleteCerts.setLong(2, bundle.maxId);
+          psDeleteCerts.executeUpdate();
+          conn.commit();
+        }
+
+        int numInBatch = 0;
+        for (ParsedCert m : certs) {
+          if (stopMe.get()) {
+            throw new InterruptedException("interrupted by the user");
+          }
+
+          CaCertstore.Cert cert = m.cert;
+          int idx = 1;
+          psCert.setLong(idx++, cert.getId());
+          psCert.setInt(idx++, cert.getCaId());
+          psCert.setString(idx++, m.serialNumber);
+          psCert.setLong(idx++, cert.getUpdate());
+          psCert.setLong(idx++, m.notBefore);
+          psCert.setLong(idx++, m.notAfter);
+          setInt(psCert, idx++, cert.getRev());
+          setInt(psCert, idx++, cert.getRr());
+          setLong(psCert, idx++, cert.getRt());
+          setLong(psCert, idx++, cert.getRit());
+          psCert.setString(idx++, m.certhash);
+          psCert.setString(idx++, m.subject);
+          psCert.setNull(idx, Types.INTEGER);
+          psCert.addBatch();
+
+          if (++numInBatch == numCertsPerCommit) {
+            psCert.executeBatch();
+            conn.commit();
+            progress.append(bundle.name, Long.toString(cert.getId()));
+            importLog.addNumProcessed(numInBatch);
+            numInBatch = 0;
+          }
+        }
+
+        if (numInBatch > 0) {
+          psCert.executeBatch();
+          conn.commit();
+          importLog.addNumProcessed(numInBatch);
+        }
+      } catch (SQLException ex) {
+        rollback0();
+        throw translate(SQL_ADD_CERT, ex);
+      } catch (Exception ex) {
+        rollback0();
+        throw ex;
+      }
+
+      progress.append(bundle.name, PipelineProgress.FINISHED);
+      processLog.addNumProcessed(bundle.numProcessed);
+      synchronized (processLog) {
+        processLog.printStatus();
+      }
+    } // method write
+
+    private void rollback0() {
+      try {
+        conn.rollback();
+      } catch (SQLException ex) {
+        LogUtil.error(LOG, ex, "could not rollback");
+      }
+    }
+
+    @Override
+    public void close() {
+      executor.shutdownNow();
+      releaseResources(psCert, null);
+      releaseResources(psDeleteCerts, null);
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LogUtil.error(LOG, ex, "could not recover AutoCommit");
+      }
+      datasource.returnConnection(conn);
+    }
+
+  } // class BundleWriter
+
   private static final Logger LOG = LoggerFactory.getLogger(OcspCertStoreFromCaDbImporter.class);
 
+  private static final String SQL_DELETE_CERT_RANGE = "DELETE FROM CERT WHERE ID>? AND ID<=?";
+
+  /**
+   * Returns the exclusive lower bound of the IDs to be deleted before a bundle is imported on
+   * resume.
+   * @param doneUpTo certificates with ID not greater than it have been imported.
+   * @param minIdOfBundle smallest ID of the certificates in the bundle.
+   * @return the exclusive lower bound.
+   */
+  static long deleteLowerBound(long doneUpTo, long minIdOfBundle) {
+    return Math.max(doneUpTo, minIdOfBundle - 1);
+  }
+
   private final String publisherName;
 
   private final boolean resume;
 
   private final int numCertsPerCommit;
 
+  private final int numThreads;
+
   OcspCertStoreFromCaDbImporter(DataSourceWrapper datasource,  String srcDir, String publisherName,
                                 int numCertsPerCommit, boolean resume, AtomicBoolean stopMe)
       throws Exception {
+    this(datasource, srcDir, publisherName, numCertsPerCommit, resume, 1, stopMe);
+  }
+
+  /**
+   * Constructor.
+   * @param numThreads number of threads. If greater than 1, the certificates are imported in
+   *        a pipeline: the bundles are decompressed by the calling thread, the certificates are
+   *        parsed by numThreads workers, and written by up to numThreads writers, each with its own
+   *        database connection.
+   */
+  OcspCertStoreFromCaDbImporter(DataSourceWrapper datasource,  String srcDir, String publisherName,
+                                int numCertsPerCommit, boolean resume, int numThreads, AtomicBoolean stopMe)
+      throws Exception {
     super(datasource, srcDir, stopMe);
 
     this.publisherName = Args.toNonBlankLower(publisherName, "publisherName");
     this.numCertsPerCommit = Args.positive(numCertsPerCommit, "numCertsPerCommit");
+    this.numThreads = Args.positive(numThreads, "numThreads");
 
     File processLogFile = new File(baseDir, DbPorter.IMPORT_TO_OCSP_PROCESS_LOG_FILENAME);
     if (resume) {
@@ -140,7 +437,11 @@ class OcspCertStoreFromCaDbImporter extends AbstractOcspCertstoreDbImporter {
       List<Integer> relatedCertStoreCaIds = resume ? getIssuerIds(relatedCas) : importIssuer(relatedCas);
 
       File processLogFile = new File(baseDir, DbPorter.IMPORT_TO_OCSP_PROCESS_LOG_FILENAME);
-      importCert(certstore, revokedOnly, relatedCertStoreCaIds, processLogFile);
+      if (numThreads > 1) {
+        importCertPipelined(certstore, revokedOnly, relatedCertStoreCaIds, processLogFile);
+      } else {
+        importCert(certstore, revokedOnly, relatedCertStoreCaIds, processLogFile);
+      }
       IoUtil.deleteFile0(processLogFile);
     } catch (Exception ex) {
       System.err.println("could not import OCSP certstore to database");
@@ -248,6 +549,11 @@ class OcspCertStoreFromCaDbImporter extends AbstractOcspCertstoreDbImporter {
           return;
         }
 
+        if (str.contains(".zip")) {
+          throw new Exception("the import has been started with more than one thread, "
+              + "please resume it with more than one thread");
+        }
+
         StringTokenizer st = new StringTokenizer(str, ":");
         numProcessedBefore = Integer.parseInt(st.nextToken());
         minId = 1 + Long.parseLong(st.nextToken());
@@ -446,6 +752,176 @@ class OcspCertStoreFromCaDbImporter extends AbstractOcspCertstoreDbImporter {
     }
   } // method importCert0
 
+  private void importCertPipelined(CaCertstore certstore, boolean revokedOnly, List<Integer> caIds,
+                                   File processLogFile) throws Exception {
+    if (processLogFile.exists()) {
+      String str = StringUtil.toUtf8String(IoUtil.read(processLogFile));
+      if (str.trim().equalsIgnoreCase(MSG_CERTS_FINISHED)) {
+        return;
+      }
+    }
+
+    HashAlgo certhashAlgo = getCertHashAlgo();
+
+    // one connection is held by this importer
+    int numWriters = Math.max(1, Math.min(numThreads, datasource.getMaximumPoolSize() - 1));
+    if (numWriters != numThreads) {
+      LOG.info("reduce the number of writers from {} to {}", numThreads, numWriters);
+    }
+
+    final ProcessLog processLog = new ProcessLog(certstore.getCountCerts());
+    final ProcessLog importLog = new ProcessLog(certstore.getCountCerts());
+
+    System.out.println("importing certificates with " + numThreads + " workers and " + numWriters + " writers");
+    processLog.printHeader();
+
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    // limits the number of decompressed bundles in memory
+    Semaphore bundlePermits = new Semaphore(numThreads + numWriters + 1);
+    List<CompletableFuture<Void>> futures = new LinkedList<>();
+
+    ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+    List<BundleWriter> writers = new ArrayList<>(numWriters);
+    try (PipelineProgress progress = new PipelineProgress(processLogFile);
+         DbPortFileNameIterator certsFileIterator = new DbPortFileNameIterator(
+            baseDir + File.separator + CaDbEntryType.CERT.getDirName() + ".mf")) {
+      for (int i = 0; i < numWriters; i++) {
+        writers.add(new BundleWriter(i));
+      }
+
+      int bundleIndex = 0;
+      while (certsFileIterator.hasNext() && error.get() == null) {
+        String bundleName = certsFileIterator.next();
+        if (progress.isFinished(bundleName)) {
+          continue;
+        }
+
+        // on failure, stop reading, but let the bundles in the pipeline complete.
+        Bundle bundle;
+        try {
+          if (stopMe.get()) {
+            throw new InterruptedException("interrupted by the user");
+          }
+
+          bundlePermits.acquire();
+          try {
+            bundle = readBundle(bundleName, progress.getDoneUpTo(bundleName), revokedOnly, caIds);
+          } catch (Exception ex) {
+            bundlePermits.release();
+            throw ex;
+          }
+        } catch (Exception ex) {
+          error.compareAndSet(null, ex);
+          break;
+        }
+
+        BundleWriter writer = writers.get(bundleIndex++ % numWriters);
+        futures.add(CompletableFuture.supplyAsync(() -> parseBundle(bundle, certhashAlgo), workers)
+            .thenAcceptAsync(certs -> {
+              try {
+                writer.write(bundle, certs, progress, processLog, importLog);
+              } catch (Exception ex) {
+                throw new CompletionException(ex);
+              }
+            }, writer.executor)
+            .whenComplete((v, ex) -> {
+              bundlePermits.release();
+              if (ex != null) {
+                error.compareAndSet(null, ex instanceof CompletionException ? ex.getCause() : ex);
+              }
+            }));
+      }
+
+      // wait for all bundles, and ignore the exceptions already recorded in error.
+      for (CompletableFuture<Void> future : futures) {
+        try {
+          future.join();
+        } catch (CompletionException ex) {
+          // already recorded
+        }
+      }
+    } finally {
+      workers.shutdownNow();
+      for (BundleWriter writer : writers) {
+        writer.close();
+      }
+    }
+
+    Throwable th = error.get();
+    if (th != null) {
+      System.err.println("\ncould not import certificates.\nplease continue with the option '--resume'");
+      LOG.error("Exception", th);
+      if (th instanceof Exception) {
+        throw (Exception) th;
+      } else {
+        throw new Exception(th);
+      }
+    }
+
+    processLog.printTrailer();
+    DbPorter.echoToFile(MSG_CERTS_FINISHED, processLogFile);
+    System.out.println("processed " + processLog.numProcessed() + " and imported "
+        + importLog.numProcessed() + " certificates");
+  } // method importCertPipelined
+
+  /**
+   * Reads the certificates to be imported from the bundle.
+   */
+  private Bundle readBundle(String bundleName, long doneUpTo, boolean revokedOnly, List<Integer> caIds)
+      throws Exception {
+    String certsZipFile = baseDir + File.separator + CaDbEntryType.CERT.getDirName() + File.separator + bundleName;
+    try (ZipFile zipFile = new ZipFile(new File(certsZipFile))) {
+      CaCertstore.Certs overview = CaJson.parseObjectAndClose(
+          zipFile.getInputStream(zipFile.getEntry("overview.json")), CaCertstore.Certs.class);
+      overview.validate();
+
+      long minId = 0;
+      long maxId = doneUpTo;
+      int numProcessed = 0;
+      List<CaCertstore.Cert> certs = new ArrayList<>(overview.getCerts().size());
+      List<byte[]> encodedCerts = new ArrayList<>(overview.getCerts().size());
+      for (CaCertstore.Cert cert : overview.getCerts()) {
+        long id = cert.getId();
+        minId = (minId == 0) ? id : Math.min(minId, id);
+        maxId = Math.max(maxId, id);
+        if (id <= doneUpTo) {
+          continue;
+        }
+
+        numProcessed++;
+        if ((!revokedOnly || (cert.getRev() != null && cert.getRev() == 1)) && caIds.contains(cert.getCaId())) {
+          certs.add(cert);
+          encodedCerts.add(IoUtil.readAllBytesAndClose(zipFile.getInputStream(zipFile.getEntry(cert.getFile()))));
+        }
+      }
+
+      return new Bundle(bundleName, doneUpTo, minId, maxId, numProcessed, certs, encodedCerts);
+    }
+  } // method readBundle
+
+  private List<ParsedCert> parseBundle(Bundle bundle, HashAlgo certhashAlgo) {
+    int n = bundle.certs.size();
+    List<ParsedCert> parsedCerts = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      CaCertstore.Cert cert = bundle.certs.get(i);
+      byte[] encodedCert = bundle.encodedCerts.get(i);
+
+      TBSCertificate tbsCert;
+      try {
+        tbsCert = Certificate.getInstance(encodedCert).getTBSCertificate();
+      } catch (RuntimeException ex) {
+        LogUtil.error(LOG, ex, "could not parse certificate in file " + cert.getFile());
+        throw new CompletionException(new CertificateException(ex.getMessage(), ex));
+      }
+
+      parsedCerts.add(new ParsedCert(cert, tbsCert.getSerialNumber().getPositiveValue().toString(16),
+          DateUtil.toEpochSecond(tbsCert.getStartDate().getDate()),
+          DateUtil.toEpochSecond(tbsCert.getEndDate().getDate()),
+          certhashAlgo.base64Hash(encodedCert), X509Util.cutX500Name(tbsCert.getSubject(), maxX500nameLen)));
+    }
+    return parsedCerts;
+  } // method parseBundle
+
   private HashAlgo getCertHashAlgo() throws DataAccessException {
     String certHashAlgoStr = Optional.ofNullable(dbSchemaInfo.getVariableValue("CERTHASH_ALGO"))
         .orElseThrow(() ->
@@ -0,0 +1,649 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.mgmt.db.sync;
+
+import org.bouncycastle.asn1.x509.Certificate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ca.mgmt.db.DbSchemaInfo;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.util.X509Util;
+import org.xipki.util.Args;
+import org.xipki.util.Base64;
+import org.xipki.util.DateUtil;
+import org.xipki.util.LogUtil;
+import org.xipki.util.SqlUtil;
+import org.xipki.util.StringUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Synchronizes the OCSP database with the CA database.
+ * <p>
+ * The rows of the table CERT in the CA database changed since the last run are read in the order
+ * of (LUPDATE, ID), and applied to the OCSP database in batches, one transaction per batch. The
+ * position (LUPDATE, ID) of the last applied row is persisted in the watermark file after each
+ * commit, so that the synchronization can be resumed. Since the upserts are idempotent, a batch
+ * applied again after a crash does no harm.
+ * <p>
+ * Rows updated within the last {@link #SETTLE_SECONDS} seconds are not read, since rows with the
+ * same LUPDATE may still be written. A row may however be committed long after its LUPDATE, e.g.
+ * in a long transaction or due to clock skew between the CA servers, and would then be behind the
+ * watermark. Hence each poll re-reads the rows starting from the watermark minus the overlap. The
+ * watermark itself never moves backwards.
+ * <p>
+ * Removed certificates are not detected; use the import from the exported CA database to remove
+ * them. The rows are read via the index IDX_CERT_LUPDATE on CERT(LUPDATE, ID) of the CA database.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class OcspCertstoreSyncer {
+
+  /**
+   * Position of the last applied row.
+   */
+  static final class Watermark {
+
+    private final File file;
+
+    private long lastUpdate;
+
+    private long id;
+
+    Watermark(File file) throws IOException {
+      this.file = file;
+      if (file.exists()) {
+        String str = StringUtil.toUtf8String(Files.readAllBytes(file.toPath())).trim();
+        int idx = str.indexOf(':');
+        if (idx == -1) {
+          throw new IOException("invalid watermark file " + file.getPath());
+        }
+        this.lastUpdate = Long.parseLong(str.substring(0, idx));
+        this.id = Long.parseLong(str.substring(idx + 1));
+      }
+    }
+
+    long getLastUpdate() {
+      return lastUpdate;
+    }
+
+    long getId() {
+      return id;
+    }
+
+    /**
+     * Moves the watermark to the given position, if it is after the current one.
+     * @return whether the watermark has been moved.
+     */
+    boolean advance(long lastUpdate, long id) throws IOException {
+      if (!isAfter(lastUpdate, id, this.lastUpdate, this.id)) {
+        return false;
+      }
+
+      save(lastUpdate, id);
+      return true;
+    }
+
+    private void save(long lastUpdate, long id) throws IOException {
+      File tmpFile = new File(file.getPath() + ".tmp");
+      Files.write(tmpFile.toPath(), (lastUpdate + ":" + id).getBytes(StandardCharsets.UTF_8));
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      this.lastUpdate = lastUpdate;
+      this.id = id;
+    }
+
+  } // class Watermark
+
+  /**
+   * Row of the table CERT in the CA database.
+   */
+  private static final class CertRow {
+
+    private long id;
+
+    private int caId;
+
+    private String serialNumber;
+
+    private long lastUpdate;
+
+    private long notBefore;
+
+    private long notAfter;
+
+    private boolean revoked;
+
+    private Integer rr;
+
+    private Long rt;
+
+    private Long rit;
+
+    private String certhash;
+
+    private String subject;
+
+  } // class CertRow
+
+  private static final Logger LOG = LoggerFactory.getLogger(OcspCertstoreSyncer.class);
+
+  /**
+   * Rows updated within this number of seconds are not read.
+   */
+  static final int SETTLE_SECONDS = 2;
+
+  private static final String SQL_ADD_ISSUER = SqlUtil.buildInsertSql("ISSUER",
+      "ID,SUBJECT,NBEFORE,NAFTER,S1C,REV_INFO,CERT,CRL_ID");
+
+  private static final String SQL_UPDATE_ISSUER = "UPDATE ISSUER SET REV_INFO=? WHERE ID=?";
+
+  private static final String SQL_ADD_CERT = SqlUtil.buildInsertSql("CERT",
+      "ID,IID,SN,LUPDATE,NBEFORE,NAFTER,REV,RR,RT,RIT,HASH,SUBJECT,CRL_ID");
+
+  private static final String SQL_UPDATE_CERT = "UPDATE CERT SET LUPDATE=?,REV=?,RR=?,RT=?,RIT=? WHERE ID=?";
+
+  private static final String SQL_DELETE_CERT = "DELETE FROM CERT WHERE ID=?";
+
+  private static final String SQL_CERT_EXISTS = "SELECT ID FROM CERT WHERE ID=?";
+
+  private final DataSourceWrapper caDatasource;
+
+  private final DataSourceWrapper ocspDatasource;
+
+  private final Set<String> caNames;
+
+  private final boolean revokedOnly;
+
+  private final Watermark watermark;
+
+  private final int batchSize;
+
+  private final int lagTargetSeconds;
+
+  private final long overlapSeconds;
+
+  private final AtomicBoolean stopMe;
+
+  private final HashAlgo certhashAlgo;
+
+  private final int maxX500nameLen;
+
+  private List<Integer> caIds;
+
+  private String sqlSelectCerts;
+
+  // position (LUPDATE, ID) after which the next batch is read.
+  private long cursorLastUpdate;
+
+  private long cursorId;
+
+  /**
+   * Constructor.
+   * @param caDatasource datasource of the CA database.
+   * @param ocspDatasource datasource of the OCSP database.
+   * @param caNames names of the CAs to be synchronized, {@code null} or empty for all CAs.
+   * @param revokedOnly whether only the revoked certificates are synchronized.
+   * @param watermarkFile file to persist the watermark.
+   * @param batchSize number of certificates per transaction.
+   * @param lagTargetSeconds lag target in seconds. If positive, the synchronization runs
+   *        continuously, and the CA database is polled so that the OCSP database lags behind it
+   *        by at most lagTargetSeconds. Otherwise, the synchronization stops once caught up.
+   * @param overlapMinutes number of minutes before the watermark from which each poll re-reads
+   *        the rows, to catch the rows committed after the watermark has passed their LUPDATE.
+   * @param stopMe flag to stop the synchronization.
+   * @throws DataAccessException if the database schema information could not be read.
+   * @throws IOException if the watermark file could not be read.
+   */
+  OcspCertstoreSyncer(DataSourceWrapper caDatasource, DataSourceWrapper ocspDatasource, Set<String> caNames,
+                      boolean revokedOnly, String watermarkFile, int batchSize, int lagTargetSeconds,
+                      int overlapMinutes, AtomicBoolean stopMe) throws DataAccessException, IOException {
+    this.caDatasource = Args.notNull(caDatasource, "caDatasource");
+    this.ocspDatasource = Args.notNull(ocspDatasource, "ocspDatasource");
+    this.caNames = caNames;
+    this.revokedOnly = revokedOnly;
+    this.watermark = new Watermark(new File(Args.notBlank(watermarkFile, "watermarkFile")));
+    this.batchSize = Args.positive(batchSize, "batchSize");
+    this.lagTargetSeconds = lagTargetSeconds;
+    this.overlapSeconds = 60L * Args.notNegative(overlapMinutes, "overlapMinutes");
+    this.stopMe = Args.notNull(stopMe, "stopMe");
+
+    DbSchemaInfo dbSchemaInfo = new DbSchemaInfo(ocspDatasource);
+    String str = dbSchemaInfo.getVariableValue("CERTHASH_ALGO");
+    if (str == null) {
+      throw new DataAccessException("Column with NAME='CERTHASH_ALGO' is not defined in table DBSCHEMA");
+    }
+
+    try {
+      this.certhashAlgo = HashAlgo.getInstance(str);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalArgumentException(ex);
+    }
+    this.maxX500nameLen = Integer.parseInt(dbSchemaInfo.getVariableValue("X500NAME_MAXLEN"));
+  } // constructor
+
+  void sync() throws Exception {
+    System.out.println("synchronizing OCSP database from CA database, starting from LUPDATE="
+        + watermark.lastUpdate + ", ID=" + watermark.id);
+
+    long numSynced = 0;
+    boolean newPoll = true;
+    while (!stopMe.get()) {
+      if (newPoll) {
+        // the CAs may have been added or changed since the last poll.
+        syncIssuers();
+
+        cursorLastUpdate = readStart(watermark.lastUpdate, overlapSeconds);
+        cursorId = (cursorLastUpdate == watermark.lastUpdate) ? watermark.id : 0;
+      }
+
+      long now = Instant.now().getEpochSecond();
+      int num = syncBatch(now - SETTLE_SECONDS);
+      numSynced += num;
+
+      newPoll = num < batchSize;
+      if (!newPoll) {
+        // still behind, continue without waiting
+        continue;
+      }
+
+      if (lagTargetSeconds <= 0) {
+        break;
+      }
+
+      if (num > 0) {
+        long lag = now - watermark.lastUpdate;
+        if (lag > lagTargetSeconds) {
+          LOG.warn("OCSP database lags behind CA database {} seconds, target is {} seconds",
+              lag, lagTargetSeconds);
+        }
+        LOG.info("synchronized {} certificates, watermark LUPDATE={}, ID={}",
+            num, watermark.lastUpdate, watermark.id);
+      }
+
+      // half of the lag target is reserved for the polling, the other half for the settle
+      // time and the synchronization itself.
+      long sleepSeconds = Math.max(1, lagTargetSeconds / 2 - SETTLE_SECONDS);
+      for (long i = 0; i < sleepSeconds && !stopMe.get(); i++) {
+        Thread.sleep(1000);
+      }
+    }
+
+    System.out.println("synchronized " + numSynced + " certificates, watermark LUPDATE="
+        + watermark.lastUpdate + ", ID=" + watermark.id);
+  } // method sync
+
+  private void syncIssuers() throws DataAccessException {
+    final String sql = "SELECT ID,NAME,REV_INFO,CERT FROM CA";
+    Map<Integer, String> revInfos = new HashMap<>();
+    Map<Integer, String> certs = new HashMap<>();
+
+    PreparedStatement ps = caDatasource.prepareStatement(sql);
+    ResultSet rs = null;
+    try {
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        String name = rs.getString("NAME");
+        if (caNames == null || caNames.isEmpty() || caNames.contains(name.toLowerCase(Locale.ROOT))) {
+          int id = rs.getInt("ID");
+          revInfos.put(id, rs.getString("REV_INFO"));
+          certs.put(id, rs.getString("CERT"));
+        }
+      }
+    } catch (SQLException ex) {
+      throw caDatasource.translate(sql, ex);
+    } finally {
+      caDatasource.releaseResources(ps, rs);
+    }
+
+    if (certs.isEmpty()) {
+      throw new DataAccessException("found no CA in the CA database matching " + caNames);
+    }
+
+    List<Integer> newCaIds = new ArrayList<>(new TreeSet<>(certs.keySet()));
+    if (!newCaIds.equals(caIds)) {
+      if (caIds != null) {
+        LOG.info("CAs to be synchronized changed from {} to {}", caIds, newCaIds);
+      }
+
+      caIds = newCaIds;
+      StringBuilder sb = new StringBuilder();
+      for (Integer caId : caIds) {
+        sb.append(sb.length() == 0 ? "" : ",").append(caId);
+      }
+
+      String coreSql = "ID,CA_ID,SN,LUPDATE,NBEFORE,NAFTER,REV,RR,RT,RIT,SUBJECT,"
+          + (certhashAlgo == HashAlgo.SHA1 ? "SHA1" : "CERT")
+          + " FROM CERT WHERE (LUPDATE>? OR (LUPDATE=? AND ID>?)) AND LUPDATE<=? AND CA_ID IN (" + sb + ")";
+      sqlSelectCerts = caDatasource.buildSelectFirstSql(batchSize, "LUPDATE ASC,ID ASC", coreSql);
+    }
+
+    final String sql2 = "SELECT ID,REV_INFO FROM ISSUER";
+    Map<Integer, String> issuerRevInfos = new HashMap<>();
+    ps = ocspDatasource.prepareStatement(sql2);
+    rs = null;
+    try {
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        issuerRevInfos.put(rs.getInt("ID"), rs.getString("REV_INFO"));
+      }
+    } catch (SQLException ex) {
+      throw ocspDatasource.translate(sql2, ex);
+    } finally {
+      ocspDatasource.releaseResources(ps, rs);
+    }
+
+    for (Integer caId : caIds) {
+      String revInfo = revInfos.get(caId);
+      if (!issuerRevInfos.containsKey(caId)) {
+        addIssuer(caId, revInfo, certs.get(caId));
+      } else if (!Objects.equals(revInfo, issuerRevInfos.get(caId))) {
+        updateIssuer(caId, revInfo);
+      }
+    }
+  } // method syncIssuers
+
+  private void addIssuer(int id, String revInfo, String b64Cert) throws DataAccessException {
+    byte[] encodedCert = Base64.decode(b64Cert);
+    Certificate cert;
+    try {
+      cert = Certificate.getInstance(encodedCert);
+    } catch (RuntimeException ex) {
+      throw new DataAccessException("could not parse certificate of CA " + id, ex);
+    }
+
+    PreparedStatement ps = ocspDatasource.prepareStatement(SQL_ADD_ISSUER);
+    try {
+      int idx = 1;
+      ps.setInt(idx++, id);
+      ps.setString(idx++, X509Util.cutX500Name(cert.getSubject(), maxX500nameLen));
+      ps.setLong(idx++, DateUtil.toEpochSecond(cert.getTBSCertificate().getStartDate().getDate()));
+      ps.setLong(idx++, DateUtil.toEpochSecond(cert.getTBSCertificate().getEndDate().getDate()));
+      ps.setString(idx++, HashAlgo.SHA1.base64Hash(encodedCert));
+      ps.setString(idx++, revInfo);
+      ps.setString(idx++, b64Cert);
+      ps.setNull(idx, Types.INTEGER); // CRL_ID
+      ps.executeUpdate();
+    } catch (SQLException ex) {
+      throw ocspDatasource.translate(SQL_ADD_ISSUER, ex);
+    } finally {
+      ocspDatasource.releaseResources(ps, null);
+    }
+
+    LOG.info("added issuer {}", id);
+  } // method addIssuer
+
+  private void updateIssuer(int id, String revInfo) throws DataAccessException {
+    PreparedStatement ps = ocspDatasource.prepareStatement(SQL_UPDATE_ISSUER);
+    try {
+      ps.setString(1, revInfo);
+      ps.setInt(2, id);
+      ps.executeUpdate();
+    } catch (SQLException ex) {
+      throw ocspDatasource.translate(SQL_UPDATE_ISSUER, ex);
+    } finally {
+      ocspDatasource.releaseResources(ps, null);
+    }
+
+    LOG.info("updated revocation information of issuer {}", id);
+  } // method updateIssuer
+
+  /**
+   * Synchronizes the next batch of changed certificates.
+   * @param maxLastUpdate maximal LUPDATE of the certificates to be read.
+   * @return number of synchronized certificates.
+   */
+  private int syncBatch(long maxLastUpdate) throws DataAccessException, IOException {
+    List<CertRow> rows = readBatch(maxLastUpdate);
+    if (rows.isEmpty()) {
+      return 0;
+    }
+
+    Connection conn = ocspDatasource.getConnection();
+    PreparedStatement psUpdate = null;
+    PreparedStatement psInsert = null;
+    PreparedStatement psDelete = null;
+    String sql = null;
+    try {
+      conn.setAutoCommit(false);
+
+      List<CertRow> upserts = new ArrayList<>(rows.size());
+      List<CertRow> deletes = new ArrayList<>();
+      for (CertRow row : rows) {
+        if (toBeDeleted(revokedOnly, row.revoked)) {
+          deletes.add(row);
+        } else {
+          upserts.add(row);
+        }
+      }
+
+      if (!deletes.isEmpty()) {
+        sql = SQL_DELETE_CERT;
+        psDelete = ocspDatasource.prepareStatement(conn, sql);
+        for (CertRow row : deletes) {
+          psDelete.setLong(1, row.id);
+          psDelete.addBatch();
+        }
+        psDelete.executeBatch();
+      }
+
+      List<CertRow> inserts = new ArrayList<>(upserts.size());
+      if (!upserts.isEmpty()) {
+        sql = SQL_UPDATE_CERT;
+        psUpdate = ocspDatasource.prepareStatement(conn, sql);
+        for (CertRow row : upserts) {
+          int idx = 1;
+          psUpdate.setLong(idx++, row.lastUpdate);
+          psUpdate.setInt(idx++, row.revoked ? 1 : 0);
+          setInt(psUpdate, idx++, row.rr);
+          setLong(psUpdate, idx++, row.rt);
+          setLong(psUpdate, idx++, row.rit);
+          psUpdate.setLong(idx, row.id);
+          psUpdate.addBatch();
+        }
+
+        int[] counts = psUpdate.executeBatch();
+        for (int i = 0; i < counts.length; i++) {
+          CertRow row = upserts.get(i);
+          Boolean exists = isUpdated(counts[i]);
+          if (exists == null) {
+            exists = certExists(conn, row.id);
+          }
+
+          if (!exists) {
+            inserts.add(row);
+          }
+        }
+      }
+
+      if (!inserts.isEmpty()) {
+        sql = SQL_ADD_CERT;
+        psInsert = ocspDatasource.prepareStatement(conn, sql);
+        for (CertRow row : inserts) {
+          int idx = 1;
+          psInsert.setLong(idx++, row.id);
+          psInsert.setInt(idx++, row.caId);
+          psInsert.setString(idx++, row.serialNumber);
+          psInsert.setLong(idx++, row.lastUpdate);
+          psInsert.setLong(idx++, row.notBefore);
+          psInsert.setLong(idx++, row.notAfter);
+          psInsert.setInt(idx++, row.revoked ? 1 : 0);
+          setInt(psInsert, idx++, row.rr);
+          setLong(psInsert, idx++, row.rt);
+          setLong(psInsert, idx++, row.rit);
+          psInsert.setString(idx++, row.certhash);
+          psInsert.setString(idx++, row.subject);
+          psInsert.setNull(idx, Types.INTEGER);
+          psInsert.addBatch();
+        }
+        psInsert.executeBatch();
+      }
+
+      conn.commit();
+    } catch (SQLException ex) {
+      rollback(conn);
+      throw ocspDatasource.translate(sql, ex);
+    } catch (DataAccessException ex) {
+      rollback(conn);
+      throw ex;
+    } finally {
+      ocspDatasource.releaseResources(psDelete, null, false);
+      ocspDatasource.releaseResources(psUpdate, null, false);
+      ocspDatasource.releaseResources(psInsert, null, false);
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LogUtil.error(LOG, ex, "could not recover AutoCommit");
+      }
+      ocspDatasource.returnConnection(conn);
+    }
+
+    CertRow last = rows.get(rows.size() - 1);
+    cursorLastUpdate = last.lastUpdate;
+    cursorId = last.id;
+    // the rows re-read in the overlap do not move the watermark backwards.
+    watermark.advance(last.lastUpdate, last.id);
+    return rows.size();
+  } // method syncBatch
+
+  private List<CertRow> readBatch(long maxLastUpdate) throws DataAccessException {
+    List<CertRow> rows = new ArrayList<>(batchSize);
+    final String sql = sqlSelectCerts;
+    PreparedStatement ps = caDatasource.prepareStatement(sql);
+    ResultSet rs = null;
+    try {
+      int idx = 1;
+      ps.setLong(idx++, cursorLastUpdate);
+      ps.setLong(idx++, cursorLastUpdate);
+      ps.setLong(idx++, cursorId);
+      ps.setLong(idx, maxLastUpdate);
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        CertRow row = new CertRow();
+        row.id = rs.getLong("ID");
+        row.caId = rs.getInt("CA_ID");
+        row.serialNumber = rs.getString("SN");
+        row.lastUpdate = rs.getLong("LUPDATE");
+        row.notBefore = rs.getLong("NBEFORE");
+        row.notAfter = rs.getLong("NAFTER");
+        row.revoked = rs.getInt("REV") != 0;
+        if (row.revoked) {
+          row.rr = rs.getInt("RR");
+          row.rt = rs.getLong("RT");
+          long rit = rs.getLong("RIT");
+          row.rit = rs.wasNull() ? null : rit;
+        }
+        row.subject = X509Util.cutText(rs.getString("SUBJECT"), maxX500nameLen);
+        row.certhash = (certhashAlgo == HashAlgo.SHA1) ? rs.getString("SHA1")
+            : certhashAlgo.base64Hash(Base64.decodeFast(rs.getString("CERT")));
+        rows.add(row);
+      }
+    } catch (SQLException ex) {
+      throw caDatasource.translate(sql, ex);
+    } finally {
+      caDatasource.releaseResources(ps, rs);
+    }
+    return rows;
+  } // method readBatch
+
+  private boolean certExists(Connection conn, long id) throws DataAccessException {
+    PreparedStatement ps = ocspDatasource.prepareStatement(conn, SQL_CERT_EXISTS);
+    ResultSet rs = null;
+    try {
+      ps.setLong(1, id);
+      rs = ps.executeQuery();
+      return rs.next();
+    } catch (SQLException ex) {
+      throw ocspDatasource.translate(SQL_CERT_EXISTS, ex);
+    } finally {
+      ocspDatasource.releaseResources(ps, rs, false);
+    }
+  } // method certExists
+
+  /**
+   * Returns the LUPDATE from which a poll re-reads the rows.
+   * @param watermarkLastUpdate LUPDATE of the watermark.
+   * @param overlapSeconds overlap in seconds.
+   * @return the LUPDATE from which the rows are re-read.
+   */
+  static long readStart(long watermarkLastUpdate, long overlapSeconds) {
+    return Math.max(0, watermarkLastUpdate - overlapSeconds);
+  }
+
+  /**
+   * Returns whether the position (lastUpdate, id) is after the position (refLastUpdate, refId) in
+   * the order of (LUPDATE, ID).
+   */
+  static boolean isAfter(long lastUpdate, long id, long refLastUpdate, long refId) {
+    return lastUpdate > refLastUpdate || (lastUpdate == refLastUpdate && id > refId);
+  }
+
+  /**
+   * Returns whether a row read from the CA database is to be deleted from the OCSP database
+   * instead of being upserted.
+   */
+  static boolean toBeDeleted(boolean revokedOnly, boolean revoked) {
+    return revokedOnly && !revoked;
+  }
+
+  /**
+   * Returns whether the row has been updated.
+   * @param updateCount the update count reported by the batch update.
+   * @return {@link Boolean#TRUE} if updated, {@link Boolean#FALSE} if the row does not exist and
+   *         must be inserted, or {@code null} if unknown, since some drivers do not report the
+   *         number of updated rows in batch mode.
+   */
+  static Boolean isUpdated(int updateCount) {
+    return (updateCount == Statement.SUCCESS_NO_INFO) ? null : updateCount > 0;
+  }
+
+  private static void rollback(Connection conn) {
+    try {
+      conn.rollback();
+    } catch (SQLException ex) {
+      LogUtil.error(LOG, ex, "could not rollback");
+    }
+  }
+
+  private static void setInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+    if (value != null) {
+      ps.setInt(index, value);
+    } else {
+      ps.setNull(index, Types.INTEGER);
+    }
+  }
+
+  private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+    if (value != null) {
+      ps.setLong(index, value);
+    } else {
+      ps.setNull(index, Types.BIGINT);
+    }
+  }
+
+}
@@ -0,0 +1,100 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.mgmt.db.sync;
+
+import org.xipki.ca.mgmt.db.DbWorker;
+import org.xipki.ca.mgmt.db.port.DbPorter;
+import org.xipki.datasource.DataSourceFactory;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.util.ConfigurableProperties;
+import org.xipki.util.IoUtil;
+import org.xipki.util.StringUtil;
+import org.xipki.util.exception.InvalidConfException;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Worker to synchronize the OCSP database with the CA database.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class OcspSyncWorker extends DbWorker {
+
+  private final DataSourceWrapper ocspDatasource;
+
+  private final Set<String> caNames;
+
+  private final boolean revokedOnly;
+
+  private final String watermarkFile;
+
+  private final int batchSize;
+
+  private final int lagTargetSeconds;
+
+  private final int overlapMinutes;
+
+  /**
+   * Constructor.
+   * @param datasourceFactory the datasource factory.
+   * @param caDbConfFile configuration file of the CA database.
+   * @param ocspDbConfFile configuration file of the OCSP database.
+   * @param caNames names of the CAs to be synchronized, {@code null} or empty for all CAs.
+   * @param revokedOnly whether only the revoked certificates are synchronized.
+   * @param watermarkFile file to persist the watermark.
+   * @param batchSize number of certificates per transaction.
+   * @param lagTargetSeconds lag target in seconds. If positive, the synchronization runs
+   *        continuously until stopped. Otherwise, it stops once caught up.
+   * @param overlapMinutes number of minutes before the watermark from which each poll re-reads
+   *        the rows.
+   * @throws InvalidConfException if the database configuration is invalid.
+   * @throws IOException if the database configuration could not be read.
+   */
+  public OcspSyncWorker(DataSourceFactory datasourceFactory, String caDbConfFile, String ocspDbConfFile,
+                        Set<String> caNames, boolean revokedOnly, String watermarkFile, int batchSize,
+                        int lagTargetSeconds, int overlapMinutes)
+      throws InvalidConfException, IOException {
+    super(datasourceFactory, caDbConfFile);
+    if (caNames == null) {
+      this.caNames = null;
+    } else {
+      this.caNames = new HashSet<>();
+      for (String caName : caNames) {
+        this.caNames.add(caName.toLowerCase(Locale.ROOT));
+      }
+    }
+    this.revokedOnly = revokedOnly;
+    this.watermarkFile = IoUtil.expandFilepath(watermarkFile);
+    this.batchSize = batchSize;
+    this.lagTargetSeconds = lagTargetSeconds;
+    this.overlapMinutes = overlapMinutes;
+
+    ConfigurableProperties props = DbPorter.getDbConfProperties(Paths.get(IoUtil.expandFilepath(ocspDbConfFile)));
+    this.ocspDatasource = datasourceFactory.createDataSource("ds-" + ocspDbConfFile, props);
+  } // constructor
+
+  @Override
+  protected void close0() {
+    ocspDatasource.close();
+  }
+
+  @Override
+  protected void run0() throws Exception {
+    long start = Clock.systemUTC().millis();
+
+    OcspCertstoreSyncer syncer = new OcspCertstoreSyncer(datasource, ocspDatasource, caNames, revokedOnly,
+        watermarkFile, batchSize, lagTargetSeconds, overlapMinutes, stopMe);
+    syncer.sync();
+    long end = Clock.systemUTC().millis();
+    System.out.println("finished in " + StringUtil.formatTime((end - start) / 1000, false));
+  } // method run0
+
+}
@@ -0,0 +1,90 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.mgmt.db.port;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Test of resuming the pipelined import of certificates into the OCSP database.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class PipelineProgressTest {
+
+  @Test
+  public void testResumeAfterPartialPipelinedRun() throws IOException {
+    // bundle 1 is finished, bundle 2 was interrupted after ID 1500, bundle 3 was being
+    // written but had no commit recorded, bundle 4 has not been started.
+    File file = File.createTempFile("ocsp-import-progress", ".log");
+    try {
+      Files.write(file.toPath(), Arrays.asList(
+          "certs_1-1000.zip:500",
+          "certs_1-1000.zip:" + OcspCertStoreFromCaDbImporter.PipelineProgress.FINISHED,
+          "certs_1001-2000.zip:1500"), StandardCharsets.UTF_8);
+
+      try (OcspCertStoreFromCaDbImporter.PipelineProgress progress =
+               new OcspCertStoreFromCaDbImporter.PipelineProgress(file)) {
+        Assert.assertTrue(progress.isFinished("certs_1-1000.zip"));
+        Assert.assertFalse(progress.isFinished("certs_1001-2000.zip"));
+        Assert.assertFalse(progress.isFinished("certs_2001-3000.zip"));
+
+        // bundle 2: delete (1500, 2000]
+        long doneUpTo = progress.getDoneUpTo("certs_1001-2000.zip");
+        Assert.assertEquals(1500, doneUpTo);
+        Assert.assertEquals(1500, OcspCertStoreFromCaDbImporter.deleteLowerBound(doneUpTo, 1001));
+
+        // bundles 3 and 4: no progress line, the delete must not reach into the lower bundles.
+        doneUpTo = progress.getDoneUpTo("certs_2001-3000.zip");
+        Assert.assertEquals(0, doneUpTo);
+        Assert.assertEquals(2000, OcspCertStoreFromCaDbImporter.deleteLowerBound(doneUpTo, 2001));
+
+        doneUpTo = progress.getDoneUpTo("certs_3001-4000.zip");
+        Assert.assertEquals(3000, OcspCertStoreFromCaDbImporter.deleteLowerBound(doneUpTo, 3001));
+
+        progress.append("certs_2001-3000.zip", "2600");
+      }
+
+      // the progress appended in the resumed run is read by the next resume.
+      try (OcspCertStoreFromCaDbImporter.PipelineProgress progress =
+               new OcspCertStoreFromCaDbImporter.PipelineProgress(file)) {
+        long doneUpTo = progress.getDoneUpTo("certs_2001-3000.zip");
+        Assert.assertEquals(2600, OcspCertStoreFromCaDbImporter.deleteLowerBound(doneUpTo, 2001));
+        Assert.assertTrue(progress.isFinished("certs_1-1000.zip"));
+      }
+    } finally {
+      Files.deleteIfExists(file.toPath());
+    }
+  } // method testResumeAfterPartialPipelinedRun
+
+  @Test
+  public void testResumeAfterSequentialRun() throws IOException {
+    // the sequential import records <number of processed certificates>:<last ID>
+    File file = File.createTempFile("ocsp-import-progress", ".log");
+    try {
+      Files.write(file.toPath(), Arrays.asList("1500:1500"), StandardCharsets.UTF_8);
+
+      try (OcspCertStoreFromCaDbImporter.PipelineProgress progress =
+               new OcspCertStoreFromCaDbImporter.PipelineProgress(file)) {
+        Assert.assertEquals(1500, progress.getDoneUpTo("certs_1-1000.zip"));
+        Assert.assertEquals(1500, progress.getDoneUpTo("certs_1001-2000.zip"));
+        Assert.assertEquals(1500,
+            OcspCertStoreFromCaDbImporter.deleteLowerBound(progress.getDoneUpTo("certs_1001-2000.zip"), 1001));
+        Assert.assertEquals(2000,
+            OcspCertStoreFromCaDbImporter.deleteLowerBound(progress.getDoneUpTo("certs_2001-3000.zip"), 2001));
+      }
+    } finally {
+      Files.deleteIfExists(file.toPath());
+    }
+  } // method testResumeAfterSequentialRun
+
+}
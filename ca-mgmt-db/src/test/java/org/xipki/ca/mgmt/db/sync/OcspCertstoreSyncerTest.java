@@ -0,0 +1,111 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.mgmt.db.sync;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Statement;
+
+/**
+ * Test of the watermark and upsert logic of {@link OcspCertstoreSyncer}.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class OcspCertstoreSyncerTest {
+
+  @Test
+  public void testWatermarkPersisted() throws IOException {
+    File file = File.createTempFile("ocsp-sync-watermark", ".txt");
+    Files.delete(file.toPath());
+    try {
+      OcspCertstoreSyncer.Watermark watermark = new OcspCertstoreSyncer.Watermark(file);
+      Assert.assertEquals(0, watermark.getLastUpdate());
+      Assert.assertEquals(0, watermark.getId());
+
+      Assert.assertTrue(watermark.advance(1000, 5));
+      Assert.assertEquals("1000:5", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+      watermark = new OcspCertstoreSyncer.Watermark(file);
+      Assert.assertEquals(1000, watermark.getLastUpdate());
+      Assert.assertEquals(5, watermark.getId());
+    } finally {
+      Files.deleteIfExists(file.toPath());
+    }
+  } // method testWatermarkPersisted
+
+  @Test
+  public void testWatermarkNotMovedBackwards() throws IOException {
+    File file = File.createTempFile("ocsp-sync-watermark", ".txt");
+    Files.delete(file.toPath());
+    try {
+      OcspCertstoreSyncer.Watermark watermark = new OcspCertstoreSyncer.Watermark(file);
+      Assert.assertTrue(watermark.advance(1000, 5));
+
+      // rows re-read in the overlap
+      Assert.assertFalse(watermark.advance(400, 100));
+      Assert.assertFalse(watermark.advance(1000, 4));
+      Assert.assertFalse(watermark.advance(1000, 5));
+      Assert.assertEquals(1000, watermark.getLastUpdate());
+      Assert.assertEquals(5, watermark.getId());
+
+      // same LUPDATE, higher ID
+      Assert.assertTrue(watermark.advance(1000, 6));
+      Assert.assertEquals(6, watermark.getId());
+
+      watermark = new OcspCertstoreSyncer.Watermark(file);
+      Assert.assertEquals(1000, watermark.getLastUpdate());
+      Assert.assertEquals(6, watermark.getId());
+    } finally {
+      Files.deleteIfExists(file.toPath());
+    }
+  } // method testWatermarkNotMovedBackwards
+
+  @Test(expected = IOException.class)
+  public void testInvalidWatermarkFile() throws IOException {
+    File file = File.createTempFile("ocsp-sync-watermark", ".txt");
+    try {
+      Files.write(file.toPath(), "1000".getBytes(StandardCharsets.UTF_8));
+      new OcspCertstoreSyncer.Watermark(file);
+    } finally {
+      Files.deleteIfExists(file.toPath());
+    }
+  } // method testInvalidWatermarkFile
+
+  @Test
+  public void testReadStart() {
+    Assert.assertEquals(1000, OcspCertstoreSyncer.readStart(1000, 0));
+    Assert.assertEquals(400, OcspCertstoreSyncer.readStart(1000, 600));
+    Assert.assertEquals(0, OcspCertstoreSyncer.readStart(100, 600));
+  }
+
+  @Test
+  public void testIsAfter() {
+    Assert.assertTrue(OcspCertstoreSyncer.isAfter(1001, 1, 1000, 5));
+    Assert.assertTrue(OcspCertstoreSyncer.isAfter(1000, 6, 1000, 5));
+    Assert.assertFalse(OcspCertstoreSyncer.isAfter(1000, 5, 1000, 5));
+    Assert.assertFalse(OcspCertstoreSyncer.isAfter(1000, 4, 1000, 5));
+    Assert.assertFalse(OcspCertstoreSyncer.isAfter(999, 100, 1000, 5));
+  }
+
+  @Test
+  public void testUpsert() {
+    Assert.assertFalse(OcspCertstoreSyncer.toBeDeleted(false, false));
+    Assert.assertFalse(OcspCertstoreSyncer.toBeDeleted(false, true));
+    Assert.assertFalse(OcspCertstoreSyncer.toBeDeleted(true, true));
+    // unrevoked certificate in a revoked-only OCSP database
+    Assert.assertTrue(OcspCertstoreSyncer.toBeDeleted(true, false));
+
+    Assert.assertEquals(Boolean.TRUE, OcspCertstoreSyncer.isUpdated(1));
+    Assert.assertEquals(Boolean.FALSE, OcspCertstoreSyncer.isUpdated(0));
+    Assert.assertNull(OcspCertstoreSyncer.isUpdated(Statement.SUCCESS_NO_INFO));
+  }
+
+}
@@ -100,6 +100,8 @@ public class CaInfo {
 
   private ConcurrentContentSigner dfltSigner;
 
+  private int signerParallelism = 1;
+
   private final ConfPairs extraControl;
 
   public CaInfo(CaEntry caEntry, CaConfColumn caConfColumn, CertStore certStore)
@@ -361,6 +363,14 @@ public class CaInfo {
     return null;
   } // method getSigner
 
+  /**
+   * Returns the number of signing operations the CA signers can perform concurrently.
+   * @return the parallelism of the CA signers.
+   */
+  public int getSignerParallelism() {
+    return signerParallelism;
+  }
+
   public boolean initSigner(SecurityFactory securityFactory) throws XiSecurityException {
     if (signers != null) {
       return true;
@@ -370,11 +380,15 @@ public class CaInfo {
     List<CaSignerConf> signerConfs = CaEntry.splitCaSignerConfs(caEntry.getSignerConf());
 
     Map<SignAlgo, ConcurrentContentSigner> tmpSigners = new HashMap<>();
+    int parallelism = Integer.MAX_VALUE;
     for (CaSignerConf m : signerConfs) {
       SignerConf signerConf = new SignerConf(m.getConf());
       ConcurrentContentSigner signer;
       try {
         signer = securityFactory.createSigner(caEntry.getSignerType(), signerConf, caEntry.getCert());
+        String str = signerConf.getConfValue("parallelism");
+        parallelism = Math.min(parallelism,
+            str == null ? securityFactory.getDfltSignerParallelism() : Integer.parseInt(str));
         if (dfltSigner == null) {
           dfltSigner = signer;
         }
@@ -394,6 +408,7 @@ public class CaInfo {
     }
 
     this.signers = Collections.unmodifiableMap(tmpSigners);
+    this.signerParallelism = (parallelism == Integer.MAX_VALUE) ? 1 : Math.max(1, parallelism);
     return true;
   } // method initSigner
 
@@ -0,0 +1,84 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.server;
+
+import org.xipki.ca.api.mgmt.CaProfileEntry;
+import org.xipki.ca.api.mgmt.RequestorInfo;
+import org.xipki.ca.api.mgmt.entry.CaHasRequestorEntry;
+import org.xipki.ca.api.mgmt.entry.RequestorEntry;
+import org.xipki.ca.server.mgmt.CaManagerImpl;
+import org.xipki.security.X509Cert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the certprofiles and requestors associated with a CA, so that they are
+ * resolved by hash lookups instead of scanning all associations for each request.
+ * <p>
+ * The snapshot is rebuilt and replaced as a whole whenever the associations change.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+final class CaRoutingSnapshot {
+
+  // lower-case name and aliases of the certprofiles to the certprofiles.
+  private final Map<String, IdentifiedCertprofile> certprofiles;
+
+  // certificates of the requestors to the requestors. X509Cert.hashCode() and
+  // X509Cert.equals() are computed over the DER encoding.
+  private final Map<X509Cert, RequestorInfo.CertRequestorInfo> requestors;
+
+  private CaRoutingSnapshot(Map<String, IdentifiedCertprofile> certprofiles,
+                            Map<X509Cert, RequestorInfo.CertRequestorInfo> requestors) {
+    this.certprofiles = Collections.unmodifiableMap(certprofiles);
+    this.requestors = Collections.unmodifiableMap(requestors);
+  }
+
+  static CaRoutingSnapshot build(CaManagerImpl caManager, String caName) {
+    Map<String, IdentifiedCertprofile> certprofiles = new HashMap<>();
+    for (CaProfileEntry entry : caManager.getCertprofilesForCa(caName)) {
+      IdentifiedCertprofile certprofile = caManager.getIdentifiedCertprofile(entry.getProfileName());
+      if (certprofile == null) {
+        continue;
+      }
+
+      certprofiles.put(entry.getProfileName(), certprofile);
+      for (String alias : entry.getProfileAliases()) {
+        certprofiles.put(alias, certprofile);
+      }
+    }
+
+    Map<X509Cert, RequestorInfo.CertRequestorInfo> requestors = new HashMap<>();
+    Set<CaHasRequestorEntry> requestorEntries = caManager.getRequestorsForCa(caName);
+    if (requestorEntries != null) {
+      for (CaHasRequestorEntry m : requestorEntries) {
+        RequestorEntryWrapper entry = caManager.getRequestorWrapper(m.getRequestorIdent().getName());
+        if (entry == null || !RequestorEntry.TYPE_CERT.equals(entry.getDbEntry().getType())
+            || entry.getDbEntry().faulty()) {
+          continue;
+        }
+
+        // the first association wins, as in the previous linear search.
+        requestors.putIfAbsent(entry.getCert().getCert(), new RequestorInfo.CertRequestorInfo(m, entry.getCert()));
+      }
+    }
+
+    return new CaRoutingSnapshot(certprofiles, requestors);
+  } // method build
+
+  IdentifiedCertprofile getCertprofile(String nameOrAlias) {
+    return certprofiles.get(nameOrAlias.toLowerCase(Locale.ROOT));
+  }
+
+  RequestorInfo.CertRequestorInfo getRequestor(X509Cert requestorCert) {
+    return requestors.get(requestorCert);
+  }
+
+}
@@ -137,6 +137,25 @@ public class CaServerConf extends ValidableConf {
    */
   private int shardId = 0;
 
+  /**
+   * Maximal number of threads to generate the certificates of a multi-certificate request
+   * concurrently, bounded by the parallelism of the CA signer. The default is 0 (sequential).
+   */
+  private int batchSigningThreads = 0;
+
+  /**
+   * If the number of issued certificates is limited by the license, it is kept in memory and
+   * reconciled with the database every certCountReconcileMinutes minutes. The default is 10.
+   */
+  private int certCountReconcileMinutes = 10;
+
+  /**
+   * If the number of issued certificates kept in memory is within certCountMargin of the limit,
+   * the certificates are counted in the database, since the CA systems of the other shards may
+   * have issued certificates since the last reconciliation. The default is 1000.
+   */
+  private int certCountMargin = 1000;
+
   private boolean logReqResp;
 
   private String reverseProxyMode;
@@ -216,6 +235,30 @@ public class CaServerConf extends ValidableConf {
     this.shardId = shardId;
   }
 
+  public int getBatchSigningThreads() {
+    return batchSigningThreads;
+  }
+
+  public void setBatchSigningThreads(int batchSigningThreads) {
+    this.batchSigningThreads = batchSigningThreads;
+  }
+
+  public int getCertCountReconcileMinutes() {
+    return certCountReconcileMinutes;
+  }
+
+  public void setCertCountReconcileMinutes(int certCountReconcileMinutes) {
+    this.certCountReconcileMinutes = certCountReconcileMinutes;
+  }
+
+  public int getCertCountMargin() {
+    return certCountMargin;
+  }
+
+  public void setCertCountMargin(int certCountMargin) {
+    this.certCountMargin = certCountMargin;
+  }
+
   public List<String> getCaConfFiles() {
     return caConfFiles;
   }
@@ -330,6 +373,18 @@ public class CaServerConf extends ValidableConf {
       throw new InvalidConfException("shardId is not in [0, 127]");
     }
 
+    if (batchSigningThreads < 0) {
+      throw new InvalidConfException("batchSigningThreads must not be negative");
+    }
+
+    if (certCountReconcileMinutes < 1) {
+      throw new InvalidConfException("certCountReconcileMinutes must be positive");
+    }
+
+    if (certCountMargin < 0) {
+      throw new InvalidConfException("certCountMargin must not be negative");
+    }
+
     boolean withCaconfDb = false;
     for (DataSourceConf dsConf : datasources) {
       if ("caconf".equals(dsConf.getName())) {
@@ -89,7 +89,7 @@ public class CaUtil {
     for (ASN1ObjectIdentifier type : SORTED_EXTENSIONS) {
       ExtensionValue value = extensionValues.removeExtensionTuple(type);
       if (value != null) {
-        certBuilder.addExtension(type, value.isCritical(), value.getValue());
+        addExtension(certBuilder, type, value);
       }
     }
 
@@ -98,7 +98,7 @@ public class CaUtil {
     for (ASN1ObjectIdentifier type : new HashSet<>(extensionValues.getExtensionTypes())) {
       if (type.on(id_ce)) {
         ExtensionValue value = extensionValues.removeExtensionTuple(type);
-        certBuilder.addExtension(type, value.isCritical(), value.getValue());
+        addExtension(certBuilder, type, value);
       }
     }
 
@@ -106,16 +106,29 @@ public class CaUtil {
     for (ASN1ObjectIdentifier type : new HashSet<>(extensionValues.getExtensionTypes())) {
       if (!type.on(ObjectIdentifiers.id_pen)) {
         ExtensionValue value = extensionValues.removeExtensionTuple(type);
-        certBuilder.addExtension(type, value.isCritical(), value.getValue());
+        addExtension(certBuilder, type, value);
       }
     }
 
     // 4. PEN extensions
     for (ASN1ObjectIdentifier type : new HashSet<>(extensionValues.getExtensionTypes())) {
       ExtensionValue value = extensionValues.removeExtensionTuple(type);
-      certBuilder.addExtension(type, value.isCritical(), value.getValue());
+      addExtension(certBuilder, type, value);
     }
-  }
+  } // method addExtensions
+
+  private static void addExtension(
+      X509v3CertificateBuilder certBuilder, ASN1ObjectIdentifier type, ExtensionValue value)
+      throws CertIOException {
+    Extension extension;
+    try {
+      // use the cached encoding of the value.
+      extension = value.toExtension(type);
+    } catch (IOException ex) {
+      throw new CertIOException("could not encode extension " + type.getId() + ": " + ex.getMessage(), ex);
+    }
+    certBuilder.addExtension(extension);
+  } // method addExtension
 
   @SafeVarargs
   public static <T> List<T> asModifiableList(T... a) {
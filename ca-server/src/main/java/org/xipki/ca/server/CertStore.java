@@ -79,6 +79,14 @@ public interface CertStore {
 
   boolean addCert(CertificateInfo certInfo, boolean saveKeypair);
 
+  /**
+   * Adds the certificates in one transaction. Either all or none of the certificates are added.
+   * @param certInfos the certificates.
+   * @param saveKeypair whether the keypairs generated by the CA are saved.
+   * @return whether the certificates have been added.
+   */
+  boolean addCerts(List<CertificateInfo> certInfos, boolean saveKeypair);
+
   long getMaxFullCrlNumber(NameId ca) throws OperationException;
 
   long getMaxCrlNumber(NameId ca) throws OperationException;
@@ -104,6 +112,24 @@ public interface CertStore {
 
   long getCountOfCerts(long notBeforeSince) throws OperationException;
 
+  /**
+   * Returns the number of certificates without counting them in the database for each call.
+   * The number is kept in memory and reconciled with the database periodically, see
+   * {@link #reconcileCountOfIssuedCerts()}.
+   * @param limit the limit of the number of certificates, negative for unlimited. If the number
+   *        is close to the limit, the certificates are counted in the database.
+   * @return the number of certificates.
+   * @throws OperationException if the certificates could not be counted in the database.
+   */
+  long getCountOfIssuedCerts(long limit) throws OperationException;
+
+  /**
+   * Counts the certificates in the database, and resets the number returned by
+   * {@link #getCountOfIssuedCerts(long)}.
+   * @throws OperationException if the certificates could not be counted in the database.
+   */
+  void reconcileCountOfIssuedCerts() throws OperationException;
+
   List<SerialWithId> getSerialNumbers(NameId ca,  long startId, int numEntries, boolean onlyRevoked)
       throws OperationException;
 
@@ -12,10 +12,8 @@ import org.bouncycastle.asn1.DEROctetString;
 import org.bouncycastle.asn1.x500.RDN;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x500.style.IETFUtils;
-import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
 import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
 import org.bouncycastle.asn1.x509.BasicConstraints;
-import org.bouncycastle.asn1.x509.CRLDistPoint;
 import org.bouncycastle.asn1.x509.CertificatePolicies;
 import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
 import org.bouncycastle.asn1.x509.Extension;
@@ -62,6 +60,7 @@ import org.xipki.util.ConfPairs;
 import org.xipki.util.Validity;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -74,6 +73,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.xipki.ca.server.CertprofileUtil.addExtension;
 import static org.xipki.ca.server.CertprofileUtil.addRequestedExtKeyusage;
@@ -89,9 +89,43 @@ import static org.xipki.ca.server.CertprofileUtil.createSubjectInfoAccess;
 
 public class IdentifiedCertprofile implements Closeable {
 
+  /**
+   * Extensions which depend only on the CA and the profile, with pre-encoded values.
+   */
+  private static final class ExtensionsTemplate {
+
+    private final PublicCaInfo publicCaInfo;
+
+    private final X509Cert crlSignerCert;
+
+    private final Map<ASN1ObjectIdentifier, ExtensionValue> values;
+
+    private ExtensionsTemplate(PublicCaInfo publicCaInfo, X509Cert crlSignerCert,
+                               Map<ASN1ObjectIdentifier, ExtensionValue> values) {
+      this.publicCaInfo = publicCaInfo;
+      this.crlSignerCert = crlSignerCert;
+      this.values = Collections.unmodifiableMap(values);
+    }
+
+    private boolean matches(PublicCaInfo publicCaInfo, X509Cert crlSignerCert) {
+      return this.publicCaInfo == publicCaInfo
+          && (this.crlSignerCert == crlSignerCert
+              || (this.crlSignerCert != null && this.crlSignerCert.equals(crlSignerCert)));
+    }
+
+  } // class ExtensionsTemplate
+
+  private static final List<ASN1ObjectIdentifier> CA_EXTENSION_TYPES = Collections.unmodifiableList(
+      Arrays.asList(Extension.authorityKeyIdentifier, Extension.issuerAlternativeName,
+          Extension.authorityInfoAccess, Extension.cRLDistributionPoints, Extension.freshestCRL,
+          Extension.certificatePolicies));
+
   private final CertprofileEntry dbEntry;
   private final Certprofile certprofile;
 
+  // CA subject to the compiled extensions.
+  private final Map<String, ExtensionsTemplate> extensionsTemplates = new ConcurrentHashMap<>();
+
   public IdentifiedCertprofile(CertprofileEntry dbEntry, Certprofile certprofile)
       throws CertprofileException {
     this.dbEntry = Args.notNull(dbEntry, "dbEntry");
@@ -362,94 +396,16 @@ public class IdentifiedCertprofile implements Closeable {
       addExtension(values, extType, value, extControl);
     }
 
-    // Authority key identifier
-    byte[] ikiValue = publicCaInfo.getSubjectKeyIdentifer();
-
-    if (ikiValue != null) {
-      extType = Extension.authorityKeyIdentifier;
-      extControl = controls.remove(extType);
-
-      if (extControl != null) {
-        AuthorityKeyIdentifier value;
-        if (certprofile.useIssuerAndSerialInAki()) {
-          GeneralNames x509CaIssuer = new GeneralNames(new GeneralName(publicCaInfo.getIssuer()));
-          value = new AuthorityKeyIdentifier(ikiValue, x509CaIssuer, publicCaInfo.getSerialNumber());
-        } else {
-          value = new AuthorityKeyIdentifier(ikiValue);
-        }
-
-        addExtension(values, extType, value, extControl);
-      }
-    }
-
-    // IssuerAltName
-    extType = Extension.issuerAlternativeName;
-    extControl = controls.remove(extType);
-    if (extControl != null) {
-      GeneralNames value = publicCaInfo.getSubjectAltName();
-      addExtension(values, extType, value, extControl);
-    }
-
-    // AuthorityInfoAccess
-    extType = Extension.authorityInfoAccess;
-    extControl = controls.remove(extType);
-    CaUris caUris = publicCaInfo.getCaUris();
-
-    if (extControl != null) {
-      AuthorityInfoAccessControl aiaControl = certprofile.getAiaControl();
-
-      List<String> caIssuers = null;
-      if (aiaControl != null && aiaControl.isIncludesCaIssuers()) {
-        caIssuers = caUris.getCacertUris();
-        assertAllUrisHasProtocol(caIssuers, aiaControl.getCaIssuersProtocols());
-      }
-
-      List<String> ocspUris = null;
-      if (aiaControl != null && aiaControl.isIncludesOcsp()) {
-        ocspUris = caUris.getOcspUris();
-        assertAllUrisHasProtocol(ocspUris, aiaControl.getOcspProtocols());
-      }
-
-      AuthorityInformationAccess value = null;
-      if (CollectionUtil.isNotEmpty(caIssuers) || CollectionUtil.isNotEmpty(ocspUris)) {
-        value = CaUtil.createAuthorityInformationAccess(caIssuers, ocspUris);
+    // extensions depending only on the CA and this profile, compiled once per CA.
+    ExtensionsTemplate template = getExtensionsTemplate(publicCaInfo, crlSignerCert);
+    for (ASN1ObjectIdentifier type : CA_EXTENSION_TYPES) {
+      if (type == Extension.authorityKeyIdentifier && publicCaInfo.getSubjectKeyIdentifer() == null) {
+        continue;
       }
-      addExtension(values, extType, value, extControl);
-    }
-
-    if (controls.containsKey(Extension.cRLDistributionPoints)
-        || controls.containsKey(Extension.freshestCRL)) {
-      X500Name crlSignerSubject = (crlSignerCert == null) ? null : crlSignerCert.getSubject();
-      X500Name x500CaPrincipal = publicCaInfo.getSubject();
 
-      // CRLDistributionPoints
-      extType = Extension.cRLDistributionPoints;
-      extControl = controls.remove(extType);
+      extControl = controls.remove(type);
       if (extControl != null) {
-        CRLDistPoint value = null;
-        List<String> uris = caUris.getCrlUris();
-        if (CollectionUtil.isNotEmpty(uris)) {
-          CrlDistributionPointsControl control = certprofile.getCrlDpControl();
-          Set<String> protocols = control == null ? null : control.getProtocols();
-          assertAllUrisHasProtocol(uris, protocols);
-          value = CaUtil.createCrlDistributionPoints(uris, x500CaPrincipal, crlSignerSubject);
-        }
-        addExtension(values, extType, value, extControl);
-      }
-
-      // FreshestCRL
-      extType = Extension.freshestCRL;
-      extControl = controls.remove(extType);
-      if (extControl != null) {
-        CRLDistPoint value = null;
-        List<String> uris = caUris.getDeltaCrlUris();
-        if (CollectionUtil.isNotEmpty(uris)) {
-          CrlDistributionPointsControl control = certprofile.getFreshestCrlControl();
-          Set<String> protocols = control == null ? null : control.getProtocols();
-          assertAllUrisHasProtocol(uris, protocols);
-          value = CaUtil.createCrlDistributionPoints(caUris.getDeltaCrlUris(), x500CaPrincipal, crlSignerSubject);
-        }
-        addExtension(values, extType, value, extControl);
+        addExtension(values, type, template.values.get(type), extControl);
       }
     }
 
@@ -546,14 +502,6 @@ public class IdentifiedCertprofile implements Closeable {
       addExtension(values, extType, value, extControl);
     }
 
-    // CertificatePolicies
-    extType = Extension.certificatePolicies;
-    extControl = controls.remove(extType);
-    if (extControl != null) {
-      ASN1Encodable value = certprofile.getCertificatePolicies();
-      addExtension(values, extType, value, extControl);
-    }
-
     ExtensionValues subvalues = certprofile.getExtensions(Collections.unmodifiableMap(controls),
         requestedSubject, grantedSubject, requestedExtns, notBefore, notAfter, publicCaInfo);
 
@@ -678,6 +626,116 @@ public class IdentifiedCertprofile implements Closeable {
     return values;
   } // method getExtensions
 
+  /**
+   * Compiles the extensions which depend only on the CA and this profile, namely
+   * AuthorityKeyIdentifier, IssuerAltName, AuthorityInfoAccess, CRLDistributionPoints,
+   * FreshestCRL and CertificatePolicies. The compiled extensions are used for all certificates
+   * issued by the CA with this profile, until the CA or its CRL signer changes.
+   * @param publicCaInfo the CA.
+   * @param crlSignerCert certificate of the CRL signer, may be {@code null}.
+   * @throws CertprofileException if the extensions could not be compiled.
+   */
+  public void compileExtensions(PublicCaInfo publicCaInfo, X509Cert crlSignerCert)
+      throws CertprofileException {
+    getExtensionsTemplate(Args.notNull(publicCaInfo, "publicCaInfo"), crlSignerCert);
+  }
+
+  private ExtensionsTemplate getExtensionsTemplate(PublicCaInfo publicCaInfo, X509Cert crlSignerCert)
+      throws CertprofileException {
+    String key = publicCaInfo.getC14nSubject();
+    ExtensionsTemplate template = extensionsTemplates.get(key);
+    if (template == null || !template.matches(publicCaInfo, crlSignerCert)) {
+      template = compileExtensionsTemplate(publicCaInfo, crlSignerCert);
+      extensionsTemplates.put(key, template);
+    }
+    return template;
+  } // method getExtensionsTemplate
+
+  private ExtensionsTemplate compileExtensionsTemplate(PublicCaInfo publicCaInfo, X509Cert crlSignerCert)
+      throws CertprofileException {
+    Map<ASN1ObjectIdentifier, ExtensionControl> controls = certprofile.getExtensionControls();
+    Map<ASN1ObjectIdentifier, ExtensionValue> values = new HashMap<>();
+    for (ASN1ObjectIdentifier type : CA_EXTENSION_TYPES) {
+      ExtensionControl extControl = controls.get(type);
+      if (extControl == null) {
+        continue;
+      }
+
+      ASN1Encodable value = createCaExtensionValue(type, publicCaInfo, crlSignerCert);
+      if (value != null) {
+        ExtensionValue extValue = new ExtensionValue(extControl.isCritical(), value);
+        try {
+          // encode the value once
+          extValue.toExtension(type);
+        } catch (IOException ex) {
+          throw new CertprofileException("could not encode extension " + type.getId(), ex);
+        }
+        values.put(type, extValue);
+      }
+    }
+
+    return new ExtensionsTemplate(publicCaInfo, crlSignerCert, values);
+  } // method compileExtensionsTemplate
+
+  private ASN1Encodable createCaExtensionValue(
+      ASN1ObjectIdentifier type, PublicCaInfo publicCaInfo, X509Cert crlSignerCert)
+      throws CertprofileException {
+    if (Extension.authorityKeyIdentifier.equals(type)) {
+      byte[] ikiValue = publicCaInfo.getSubjectKeyIdentifer();
+      if (ikiValue == null) {
+        return null;
+      }
+
+      if (certprofile.useIssuerAndSerialInAki()) {
+        GeneralNames x509CaIssuer = new GeneralNames(new GeneralName(publicCaInfo.getIssuer()));
+        return new AuthorityKeyIdentifier(ikiValue, x509CaIssuer, publicCaInfo.getSerialNumber());
+      } else {
+        return new AuthorityKeyIdentifier(ikiValue);
+      }
+    } else if (Extension.issuerAlternativeName.equals(type)) {
+      return publicCaInfo.getSubjectAltName();
+    } else if (Extension.authorityInfoAccess.equals(type)) {
+      CaUris caUris = publicCaInfo.getCaUris();
+      AuthorityInfoAccessControl aiaControl = certprofile.getAiaControl();
+
+      List<String> caIssuers = null;
+      if (aiaControl != null && aiaControl.isIncludesCaIssuers()) {
+        caIssuers = caUris.getCacertUris();
+        assertAllUrisHasProtocol(caIssuers, aiaControl.getCaIssuersProtocols());
+      }
+
+      List<String> ocspUris = null;
+      if (aiaControl != null && aiaControl.isIncludesOcsp()) {
+        ocspUris = caUris.getOcspUris();
+        assertAllUrisHasProtocol(ocspUris, aiaControl.getOcspProtocols());
+      }
+
+      if (CollectionUtil.isNotEmpty(caIssuers) || CollectionUtil.isNotEmpty(ocspUris)) {
+        return CaUtil.createAuthorityInformationAccess(caIssuers, ocspUris);
+      }
+      return null;
+    } else if (Extension.cRLDistributionPoints.equals(type) || Extension.freshestCRL.equals(type)) {
+      boolean crlDp = Extension.cRLDistributionPoints.equals(type);
+      CaUris caUris = publicCaInfo.getCaUris();
+      List<String> uris = crlDp ? caUris.getCrlUris() : caUris.getDeltaCrlUris();
+      if (CollectionUtil.isEmpty(uris)) {
+        return null;
+      }
+
+      CrlDistributionPointsControl control = crlDp ? certprofile.getCrlDpControl()
+          : certprofile.getFreshestCrlControl();
+      Set<String> protocols = control == null ? null : control.getProtocols();
+      assertAllUrisHasProtocol(uris, protocols);
+
+      X500Name crlSignerSubject = (crlSignerCert == null) ? null : crlSignerCert.getSubject();
+      return CaUtil.createCrlDistributionPoints(uris, publicCaInfo.getSubject(), crlSignerSubject);
+    } else if (Extension.certificatePolicies.equals(type)) {
+      return certprofile.getCertificatePolicies();
+    } else {
+      throw new IllegalStateException("should not reach here, unknown extension type " + type.getId());
+    }
+  } // method createCaExtensionValue
+
   private static void assertAllUrisHasProtocol(List<String> uris, Set<String> protocols)
       throws CertprofileException {
     if (protocols == null || uris == null) {
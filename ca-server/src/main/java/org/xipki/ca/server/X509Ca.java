@@ -17,6 +17,7 @@ import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.audit.AuditEvent;
+import org.xipki.audit.AuditEventData;
 import org.xipki.ca.api.CertWithDbId;
 import org.xipki.ca.api.CertificateInfo;
 import org.xipki.ca.api.NameId;
@@ -26,8 +27,6 @@ import org.xipki.ca.api.mgmt.CertListInfo;
 import org.xipki.ca.api.mgmt.CertListOrderBy;
 import org.xipki.ca.api.mgmt.CertWithRevocationInfo;
 import org.xipki.ca.api.mgmt.RequestorInfo;
-import org.xipki.ca.api.mgmt.entry.CaHasRequestorEntry;
-import org.xipki.ca.api.mgmt.entry.RequestorEntry;
 import org.xipki.ca.api.mgmt.entry.SignerEntry;
 import org.xipki.ca.api.profile.Certprofile.ExtensionControl;
 import org.xipki.ca.api.profile.CertprofileException;
@@ -60,12 +59,21 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.xipki.ca.sdk.CaAuditConstants.NAME_message;
 import static org.xipki.ca.sdk.CaAuditConstants.TYPE_gen_cert;
@@ -188,6 +196,8 @@ public class X509Ca extends X509CaModule implements Closeable {
 
   private final boolean saveKeypair;
 
+  private volatile CaRoutingSnapshot routing;
+
   public X509Ca(CaManagerImpl caManager, CaInfo caInfo, CertStore certstore, CtLogClient ctlogClient)
       throws OperationException {
     super(caInfo);
@@ -217,6 +227,8 @@ public class X509Ca extends X509CaModule implements Closeable {
       LOG.warn("CA {}: Certificates will not be saved in the database and will not be published!",
           caInfo.getIdent().getName());
     }
+
+    refreshRouting();
   } // constructor
 
   public NameId getCaIdent() {
@@ -366,6 +378,27 @@ public class X509Ca extends X509CaModule implements Closeable {
     }
 
     final int n = certTemplates.size();
+
+    // check number of certificate. The certificates are saved only after all entries have been
+    // signed, hence the entries of this request are counted before signing any of them.
+    long maxNumOfCerts = license.getMaxNumberOfCerts();
+    if (maxNumOfCerts >= 0) {
+      long numOfCerts;
+      try {
+        // the count is reconciled with the database if the request gets near the limit.
+        numOfCerts = certstore.getCountOfIssuedCerts(Math.max(0, maxNumOfCerts - n));
+      } catch (OperationException ex) {
+        throw new OperationExceptionWithIndex(0, ex);
+      }
+
+      if (numOfCerts + n > maxNumOfCerts) {
+        LOG.error("Maximal {} certificates is allowed, {} already issued, {} requested, need new license",
+            maxNumOfCerts, numOfCerts, n);
+        throw new OperationExceptionWithIndex(0, // we have to specify an index, use 0.
+            new OperationException(SYSTEM_FAILURE, "new license needed"));
+      }
+    }
+
     List<GrantedCertTemplate> gcts = new ArrayList<>(n);
 
     List<KeypairGenerator> keypairGenerators = null;
@@ -410,86 +443,190 @@ public class X509Ca extends X509CaModule implements Closeable {
       }
     }
 
-    List<CertificateInfo> certInfos = new ArrayList<>(n);
+    // serial numbers of this request, which are not in the certstore yet.
+    Set<BigInteger> serialNumbers = ConcurrentHashMap.newKeySet();
+    CertificateInfo[] results = new CertificateInfo[n];
     OperationExceptionWithIndex exception = null;
 
-    for (int i = 0; i < n; i++) {
-      if (exception != null) {
-        break;
+    ExecutorService executor = caManager.getBatchSigningExecutor();
+    int parallelism = Math.min(n, Math.min(caManager.getBatchSigningThreads(), caInfo.getSignerParallelism()));
+    if (executor != null && parallelism > 1) {
+      exception = generateCertsConcurrently(executor, parallelism, requestor, gcts, transactionId, license,
+          serialNumbers, results, event);
+    } else {
+      for (int i = 0; i < n && exception == null; i++) {
+        try {
+          results[i] = generateCertOfEntry(requestor, i, gcts.get(i), transactionId, license, serialNumbers, event);
+        } catch (OperationExceptionWithIndex ex) {
+          exception = ex;
+        }
       }
-      GrantedCertTemplate gct = gcts.get(i);
-      final NameId certprofilIdent = gct.certprofile.getIdent();
-      final String subjectText = gct.grantedSubjectText;
-      LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'",
-          caIdent.getName(), certprofilIdent.getName(), subjectText);
+    }
 
-      boolean successful = false;
-      try {
-        //-----begin license-----
-        // check CA
-        String caSubject = caInfo.getCert().getSubjectText();
-        if (!(license.grantAllCAs() || license.grant(caSubject))) {
-          LOG.error("Not granted for CA {}, need new license", caSubject);
-          throw new OperationException(SYSTEM_FAILURE, "new license needed");
-        }
+    List<CertificateInfo> certInfos = new ArrayList<>(Arrays.asList(results));
+    if (exception == null && saveCert) {
+      // all certificates are saved in one transaction, either all or none.
+      if (publisherModule.publishCerts(certInfos, saveKeypair) == 1) {
+        setEventStatus(event, false);
+        event.addEventData(NAME_message, "could not save certificates");
+        // we have to specify an index, use 0.
+        exception = new OperationExceptionWithIndex(0,
+            new OperationException(SYSTEM_FAILURE, "could not save certificate"));
+      }
+    }
 
-        // check number of certificate
-        long maxNumOfCerts = license.getMaxNumberOfCerts();
-        if (maxNumOfCerts >= 0) {
-          long numOfCerts = certstore.getCountOfCerts(0);
-          if (numOfCerts >= maxNumOfCerts) {
-            LOG.error("Maximal {} certificates is allowed, {} already issued, need new license",
-                maxNumOfCerts, numOfCerts);
-            throw new OperationException(SYSTEM_FAILURE, "new license needed");
-          }
+    if (exception != null) {
+      // no certificate has been saved, nothing to revert.
+      LOG.error("could not generate certificate for request[{}], discarded all generated certificates",
+          exception.getIndex());
+      LogUtil.warn(LOG, exception);
+      throw exception;
+    }
+
+    return certInfos;
+  }
+
+  /**
+   * Generates the certificates of the entries concurrently, at most parallelism at a time. The
+   * calling thread works on the entries too. Once an entry failed, no further entry is started.
+   * @return the exception of the failed entry with the lowest index, or {@code null} if all
+   *         certificates have been generated.
+   */
+  private OperationExceptionWithIndex generateCertsConcurrently(
+      ExecutorService executor, int parallelism, RequestorInfo requestor, List<GrantedCertTemplate> gcts,
+      String transactionId, CmLicense license, Set<BigInteger> serialNumbers, CertificateInfo[] results,
+      AuditEvent event) {
+    final int n = gcts.size();
+    AtomicInteger nextIndex = new AtomicInteger();
+    AtomicBoolean failed = new AtomicBoolean();
+    OperationExceptionWithIndex[] exceptions = new OperationExceptionWithIndex[n];
+    // AuditEvent is not thread-safe, each entry has its own one.
+    AuditEvent[] events = new AuditEvent[n];
+
+    Runnable worker = () -> {
+      int i;
+      while (!failed.get() && (i = nextIndex.getAndIncrement()) < n) {
+        events[i] = new AuditEvent(event.getApplicationName());
+        try {
+          results[i] = generateCertOfEntry(requestor, i, gcts.get(i), transactionId, license,
+              serialNumbers, events[i]);
+        } catch (OperationExceptionWithIndex ex) {
+          exceptions[i] = ex;
+          failed.set(true);
         }
+      }
+    };
 
-        // regulate speed
-        license.regulateSpeed();
-        //-----end license-----
+    List<Future<?>> futures = new ArrayList<>(parallelism - 1);
+    try {
+      for (int i = 1; i < parallelism; i++) {
+        futures.add(executor.submit(worker));
+      }
+    } catch (RejectedExecutionException ex) {
+      LOG.warn("could not submit task to sign certificates concurrently: {}", ex.getMessage());
+    }
 
-        CertificateInfo certInfo = generateCert(requestor, i, gct, transactionId, event);
-        successful = true;
-        certInfos.add(certInfo);
+    worker.run();
 
-        if (LOG.isInfoEnabled()) {
-          String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
-          CertWithDbId cert = certInfo.getCert();
-          LOG.info("{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
-              prefix, caIdent.getName(), certprofilIdent.getName(),
-              cert.getCert().getSubjectText(), cert.getCert().getSerialNumberHex());
-        }
-      } catch (OperationException ex) {
-        exception = new OperationExceptionWithIndex(i, ex);
-      } catch (Throwable th) {
-        exception = new OperationExceptionWithIndex(i, new OperationException(SYSTEM_FAILURE, th));
-      } finally {
-        if (!successful) {
-          LOG.error("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
-              caIdent.getName(), certprofilIdent.getName(), subjectText);
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      // tasks not started yet have nothing to do anymore.
+      if (future.cancel(false)) {
+        continue;
+      }
+
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException ex) {
+          // the results can only be used after all started tasks are finished.
+          interrupted = true;
+          failed.set(true);
+        } catch (ExecutionException | CancellationException ex) {
+          LogUtil.error(LOG, ex, "error signing certificates concurrently");
+          break;
         }
       }
     }
 
-    if (exception != null) {
-      LOG.error("could not generate certificate for request[{}], reverted all generated certificates",
-          exception.getIndex());
-      // delete generated certificates
-      for (CertificateInfo m : certInfos) {
-        BigInteger serial = m.getCert().getCert().getSerialNumber();
-        try {
-          removeCert(requestor, serial);
-        } catch (Throwable thr) {
-          LogUtil.error(LOG, thr, "could not delete certificate serial=" + serial);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    OperationExceptionWithIndex exception = null;
+    for (int i = 0; i < n; i++) {
+      if (events[i] != null) {
+        for (AuditEventData data : events[i].getEventDatas()) {
+          event.addEventData(data);
         }
       }
 
-      LogUtil.warn(LOG, exception);
-      throw exception;
+      if (exception == null) {
+        if (exceptions[i] != null) {
+          exception = exceptions[i];
+        } else if (results[i] == null) {
+          exception = new OperationExceptionWithIndex(i,
+              new OperationException(SYSTEM_FAILURE, interrupted ? "interrupted" : "certificate not generated"));
+        }
+      }
     }
 
-    return certInfos;
-  }
+    if (exception != null) {
+      setEventStatus(event, false);
+    }
+    return exception;
+  } // method generateCertsConcurrently
+
+  private CertificateInfo generateCertOfEntry(
+      RequestorInfo requestor, int index, GrantedCertTemplate gct, String transactionId, CmLicense license,
+      Set<BigInteger> serialNumbers, AuditEvent event)
+      throws OperationExceptionWithIndex {
+    final NameId certprofilIdent = gct.certprofile.getIdent();
+    final String subjectText = gct.grantedSubjectText;
+    LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'",
+        caIdent.getName(), certprofilIdent.getName(), subjectText);
+
+    boolean successful = false;
+    try {
+      //-----begin license-----
+      // check CA
+      String caSubject = caInfo.getCert().getSubjectText();
+      if (!(license.grantAllCAs() || license.grant(caSubject))) {
+        LOG.error("Not granted for CA {}, need new license", caSubject);
+        throw new OperationException(SYSTEM_FAILURE, "new license needed");
+      }
+
+      // the number of certificates has been checked for the whole request in generateCerts().
+
+      // regulate speed
+      license.regulateSpeed();
+      //-----end license-----
+
+      CertificateInfo certInfo = generateCert(requestor, index, gct, transactionId, serialNumbers, event);
+      successful = true;
+
+      if (LOG.isInfoEnabled()) {
+        String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
+        CertWithDbId cert = certInfo.getCert();
+        LOG.info("{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
+            prefix, caIdent.getName(), certprofilIdent.getName(),
+            cert.getCert().getSubjectText(), cert.getCert().getSerialNumberHex());
+      }
+      return certInfo;
+    } catch (OperationExceptionWithIndex ex) {
+      throw ex;
+    } catch (OperationException ex) {
+      throw new OperationExceptionWithIndex(index, ex);
+    } catch (Throwable th) {
+      throw new OperationExceptionWithIndex(index, new OperationException(SYSTEM_FAILURE, th));
+    } finally {
+      if (!successful) {
+        LOG.error("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
+            caIdent.getName(), certprofilIdent.getName(), subjectText);
+      }
+    }
+  } // method generateCertOfEntry
 
   public CertificateInfo generateCert(RequestorInfo requestor, CertTemplateData certTemplate, String transactionId)
       throws OperationException {
@@ -510,10 +647,11 @@ public class X509Ca extends X509CaModule implements Closeable {
   }
 
   private CertificateInfo generateCert(
-      RequestorInfo requestor, int index, GrantedCertTemplate gct, String transactionId, AuditEvent event)
+      RequestorInfo requestor, int index, GrantedCertTemplate gct, String transactionId,
+      Set<BigInteger> serialNumbers, AuditEvent event)
       throws OperationExceptionWithIndex {
     try {
-      CertificateInfo ret = generateCert0(requestor, gct, transactionId, event);
+      CertificateInfo ret = generateCert0(requestor, gct, transactionId, serialNumbers, event);
       setEventStatus(event, ret != null);
       return ret;
     } catch (OperationException ex) {
@@ -527,8 +665,14 @@ public class X509Ca extends X509CaModule implements Closeable {
     }
   }
 
-  private CertificateInfo generateCert0(RequestorInfo requestor, GrantedCertTemplate gct,
-                                        String transactionId, AuditEvent event) throws OperationException {
+  /**
+   * Generates the certificate without saving it.
+   * @param serialNumbers serial numbers generated before in the same request, the new serial
+   *        number will be added.
+   */
+  private CertificateInfo generateCert0(
+      RequestorInfo requestor, GrantedCertTemplate gct, String transactionId,
+      Set<BigInteger> serialNumbers, AuditEvent event) throws OperationException {
     Args.notNull(gct, "gct");
 
     IdentifiedCertprofile certprofile = gct.certprofile;
@@ -555,6 +699,7 @@ public class X509Ca extends X509CaModule implements Closeable {
           // Serial number have enough entropy (at least 12 bytes), do not check the uniqueness.
           // We need 2^{48} (about 10^{16}) serial numbers to have two same serial numbers with
           // 1/2 probability.
+          serialNumbers.add(serialNumber);
           break;
         }
       } else if ("PROFILE".equalsIgnoreCase(serialNumberMode)) {
@@ -582,8 +727,9 @@ public class X509Ca extends X509CaModule implements Closeable {
         throw new OperationException(BAD_CERT_TEMPLATE, "unknown SerialNumberMode '" + serialNumberMode + "'");
       }
 
-      if (certstore.getCertId(caIdent, serialNumber) == 0) {
-          break;
+      // add() reserves the serial number, also against the concurrently generated certificates.
+      if (serialNumbers.add(serialNumber) && certstore.getCertId(caIdent, serialNumber) == 0) {
+        break;
       }
     }
 
@@ -677,10 +823,6 @@ public class X509Ca extends X509CaModule implements Closeable {
               gct.certprofile.getIdent(), requestor.getIdent());
       ret.setTransactionId(transactionId);
       ret.setRequestedSubject(gct.requestedSubject);
-
-      if (saveCert && publisherModule.publishCert(ret, saveKeypair) == 1) {
-        throw new OperationException(SYSTEM_FAILURE, "could not save certificate");
-      }
     } catch (BadCertTemplateException ex) {
       throw new OperationException(BAD_CERT_TEMPLATE, ex);
     } catch (OperationException ex) {
@@ -698,43 +840,44 @@ public class X509Ca extends X509CaModule implements Closeable {
   } // method generateCertificate0
 
   public IdentifiedCertprofile getX509Certprofile(String certprofileName) {
-    if (certprofileName == null) {
-      return null;
-    }
-
-    Set<CaProfileEntry> profileNameAndAliases = caManager.getCertprofilesForCa(caIdent.getName());
-    CaProfileEntry matchedEntry = null;
-    for (CaProfileEntry entry : profileNameAndAliases) {
-      if (entry.containsNameOrAlias(certprofileName)) {
-        matchedEntry = entry;
-        break;
-      }
-    }
-    return (matchedEntry == null) ? null : caManager.getIdentifiedCertprofile(matchedEntry.getProfileName());
+    return (certprofileName == null) ? null : routing.getCertprofile(certprofileName);
   } // method getX509Certprofile
 
-  public RequestorInfo.CertRequestorInfo getRequestor(X509Cert requestorCert) {
-    Set<CaHasRequestorEntry> requestorEntries = caManager.getRequestorsForCa(caIdent.getName());
-    if (CollectionUtil.isEmpty(requestorEntries)) {
-      return null;
-    }
-
-    for (CaHasRequestorEntry m : requestorEntries) {
-      RequestorEntryWrapper entry = caManager.getRequestorWrapper(m.getRequestorIdent().getName());
-      if (!RequestorEntry.TYPE_CERT.equals(entry.getDbEntry().getType())) {
-        continue;
-      }
-
-      if (entry.getDbEntry().faulty()) {
-        continue;
+  /**
+   * Rebuilds the snapshot of the certprofiles and requestors associated with this CA, and
+   * compiles the extensions of the certprofiles. Must be called whenever the associations,
+   * the certprofiles or the requestors change.
+   */
+  public void refreshRouting() {
+    CaRoutingSnapshot snapshot = CaRoutingSnapshot.build(caManager, caIdent.getName());
+    for (CaProfileEntry entry : caManager.getCertprofilesForCa(caIdent.getName())) {
+      IdentifiedCertprofile certprofile = snapshot.getCertprofile(entry.getProfileName());
+      if (certprofile != null) {
+        compileExtensions(certprofile);
       }
+    }
+    routing = snapshot;
+  } // method refreshRouting
 
-      if (entry.getCert().getCert().equals(requestorCert)) {
-        return new RequestorInfo.CertRequestorInfo(m, entry.getCert());
-      }
+  /**
+   * Compiles the extensions of the certprofile which depend only on this CA, so that they are
+   * not built and encoded for each certificate.
+   * @param certprofile the certprofile.
+   */
+  public void compileExtensions(IdentifiedCertprofile certprofile) {
+    SignerEntry crlSigner = crlModule.getCrlSigner();
+    X509Cert crlSignerCert = (crlSigner == null) ? null : crlSigner.getCertificate();
+    try {
+      certprofile.compileExtensions(caInfo.getPublicCaInfo(), crlSignerCert);
+    } catch (CertprofileException ex) {
+      // the error will be reported again for each certificate to be generated.
+      LogUtil.warn(LOG, ex, "could not compile the extensions of profile "
+          + certprofile.getIdent().getName() + " for CA " + caIdent.getName());
     }
+  } // method compileExtensions
 
-    return null;
+  public RequestorInfo.CertRequestorInfo getRequestor(X509Cert requestorCert) {
+    return routing.getRequestor(requestorCert);
   }
 
   public boolean healthy() {
@@ -62,6 +62,41 @@ class X509PublisherModule extends X509CaModule {
       return 1;
     }
 
+    return publishToPublishers(certInfo);
+  } // method publishCert
+
+  /**
+   * Saves the certificates in the certstore in one transaction, and then publishes them.
+   * @param certInfos the certificates.
+   * @param saveKeypair whether the keypairs generated by the CA are saved.
+   * @return 0 if all certificates are saved and published, 1 if no certificate is saved, and 2 if
+   *         all certificates are saved but not all are published.
+   */
+  int publishCerts(List<CertificateInfo> certInfos, boolean saveKeypair) {
+    Args.notEmpty(certInfos, "certInfos");
+    List<CertificateInfo> newCertInfos = new ArrayList<>(certInfos.size());
+    for (CertificateInfo certInfo : certInfos) {
+      if (!certInfo.isAlreadyIssued()) {
+        newCertInfos.add(certInfo);
+      }
+    }
+
+    if (newCertInfos.isEmpty()) {
+      return 0;
+    }
+
+    if (!certstore.addCerts(newCertInfos, saveKeypair)) {
+      return 1;
+    }
+
+    int ret = 0;
+    for (CertificateInfo certInfo : newCertInfos) {
+      ret = Math.max(ret, publishToPublishers(certInfo));
+    }
+    return ret;
+  } // method publishCerts
+
+  private int publishToPublishers(CertificateInfo certInfo) {
     List<String> failedPublishers = null;
 
     for (IdentifiedCertPublisher publisher : publishers()) {
@@ -89,7 +124,7 @@ class X509PublisherModule extends X509CaModule {
           Base64.encodeToString(certInfo.getCert().getCert().getEncoded(), true));
     }
     return 2;
-  } // method publishCert0
+  } // method publishToPublishers
 
   boolean republishCerts(List<String> publisherNames, int numThreads) {
     List<IdentifiedCertPublisher> publishers;
@@ -58,6 +58,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -163,7 +164,10 @@ public class DbCertStore extends QueryExecutor implements CertStore {
 
   private final CaConfStore  caConfStore;
 
-  public DbCertStore(DataSourceWrapper datasource, CaConfStore caConfStore, UniqueIdGenerator idGenerator)
+  private final IssuedCertCounter issuedCertCounter;
+
+  public DbCertStore(DataSourceWrapper datasource, CaConfStore caConfStore, UniqueIdGenerator idGenerator,
+                     long certCountMargin)
       throws DataAccessException, CaMgmtException {
     super(datasource);
 
@@ -210,6 +214,7 @@ public class DbCertStore extends QueryExecutor implements CertStore {
     final String prefix = "SN,LUPDATE FROM CERT WHERE REV=0 AND SN";
     this.sqlSelectUnrevokedSn100 = buildArraySql(datasource, prefix, 100);
     this.earliestNotBefore = datasource.getMin(null, "CERT", "NBEFORE");
+    this.issuedCertCounter = new IssuedCertCounter(this, certCountMargin);
   } // constructor
 
   @Override
@@ -353,103 +358,196 @@ public class DbCertStore extends QueryExecutor implements CertStore {
 
   @Override
   public boolean addCert(CertificateInfo certInfo, boolean saveKeypair) {
-    if (saveKeypair && certInfo.getPrivateKey() != null) {
-      if (keypairEncKey == null) {
-        LOG.error("no keypair encryption key is configured");
-        // no key encryption is configured
-        return false;
-      }
+    if (!checkKeypairEncryption(certInfo, saveKeypair)) {
+      return false;
     }
 
     Args.notNull(certInfo, "certInfo");
 
-    byte[] encodedCert = null;
-
     try {
-      String privateKeyInfo = null;
-      CertWithDbId cert = certInfo.getCert();
-      String tid = certInfo.getTransactionId();
-      X500Name reqSubject = certInfo.getRequestedSubject();
-
       final long certId = idGenerator.nextId();
-      if (saveKeypair && certInfo.getPrivateKey() != null) {
-        // we use certId as the nonce
-        byte[] nonce = new byte[12];
-        Pack.longToBigEndian(certId, nonce, 4);
-        byte[] encodedPrivateKey = certInfo.getPrivateKey().getEncoded();
-        Cipher cipher = Cipher.getInstance(keypairEncAlg, keypairEncProvider);
-        GCMParameterSpec spec = new GCMParameterSpec(96, nonce);
-        cipher.init(Cipher.ENCRYPT_MODE, keypairEncKey, spec);
-        byte[] encrypted = cipher.doFinal(encodedPrivateKey);
-        privateKeyInfo = keypairEncAlgId + ":" + keypairEncKeyId + ":"
-                + Base64.encodeToString(nonce) + ":" + Base64.encodeToString(encrypted);
+      execUpdatePrepStmt0(SQL_ADD_CERT, buildAddCertColumns(certInfo, saveKeypair, certId));
+      certInfo.getCert().setCertId(certId);
+    } catch (Exception ex) {
+      logAddCertFailure(certInfo, ex);
+      return false;
+    }
+
+    issuedCertCounter.onAdded(1);
+    return true;
+  } // method addCert
+
+  @Override
+  public boolean addCerts(List<CertificateInfo> certInfos, boolean saveKeypair) {
+    Args.notEmpty(certInfos, "certInfos");
+    if (certInfos.size() == 1) {
+      return addCert(certInfos.get(0), saveKeypair);
+    }
+
+    for (CertificateInfo certInfo : certInfos) {
+      if (!checkKeypairEncryption(certInfo, saveKeypair)) {
+        return false;
       }
+    }
 
-      String subjectText = X509Util.cutText(cert.getCert().getSubjectText(), maxX500nameLen);
-      long fpSubject = X509Util.fpCanonicalizedName(cert.getCert().getSubject());
+    final int n = certInfos.size();
+    long[] certIds = new long[n];
+    List<SqlColumn2[]> rows = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      CertificateInfo certInfo = certInfos.get(i);
+      try {
+        certIds[i] = idGenerator.nextId();
+        rows.add(buildAddCertColumns(certInfo, saveKeypair, certIds[i]));
+      } catch (Exception ex) {
+        logAddCertFailure(certInfo, ex);
+        return false;
+      }
+    }
 
-      byte[] san = cert.getCert().getSubjectAltNames();
-      Long fpSan = san == null ? null : FpIdCalculator.hash(san);
+    final String sql = SQL_ADD_CERT;
+    Connection conn;
+    try {
+      conn = datasource.getConnection();
+    } catch (DataAccessException ex) {
+      LogUtil.error(LOG, ex, "could not get connection to save " + n + " certificates");
+      return false;
+    }
 
-      String reqSubjectText = null;
-      Long fpReqSubject = null;
-      if (reqSubject != null) {
-        fpReqSubject = X509Util.fpCanonicalizedName(reqSubject);
-        if (fpSubject == fpReqSubject) {
-          fpReqSubject = null;
-        } else {
-          reqSubjectText = X509Util.cutX500Name(CaUtil.sortX509Name(reqSubject), maxX500nameLen);
+    PreparedStatement ps = null;
+    boolean succ = false;
+    try {
+      conn.setAutoCommit(false);
+      ps = datasource.prepareStatement(conn, sql);
+      for (SqlColumn2[] row : rows) {
+        setParameters(ps, sql, row);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+      conn.commit();
+      succ = true;
+    } catch (SQLException ex) {
+      LogUtil.error(LOG, datasource.translate(sql, ex), "could not save " + n + " certificates");
+    } catch (DataAccessException ex) {
+      LogUtil.error(LOG, ex, "could not save " + n + " certificates");
+    } finally {
+      if (!succ) {
+        try {
+          conn.rollback();
+        } catch (SQLException ex) {
+          LogUtil.error(LOG, ex, "could not rollback");
         }
       }
 
-      encodedCert = cert.getCert().getEncoded();
-      String b64FpCert = HashAlgo.SHA1.base64Hash(encodedCert);
-
-      X509Cert cert0 = cert.getCert();
-      boolean isEeCert = cert0.getBasicConstraints() == -1;
-
-      List<SqlColumn2> columns = new ArrayList<>(20);
-
-      columns.add(col2Long(certId));
-      // currentTimeSeconds
-      columns.add(col2Long(Instant.now().getEpochSecond()));
-      columns.add(col2Str(cert0.getSerialNumber().toString(16)));
-      columns.add(col2Str(subjectText));
-      columns.add(col2Long(fpSubject));
-      columns.add(col2Long(fpReqSubject));
-      columns.add(col2Long(fpSan));
-      // notBeforeSeconds
-      columns.add(col2Long(cert0.getNotBefore().getEpochSecond()));
-      // notAfterSeconds
-      columns.add(col2Long(cert0.getNotAfter().getEpochSecond()));
-      columns.add(col2Bool(false));
-
-      columns.add(col2Int(certInfo.getProfile().getId()));
-      columns.add(col2Int(certInfo.getIssuer().getId()));
-      columns.add(col2Int(certInfo.getRequestor().getId()));
-
-      columns.add(col2Int(isEeCert ? 1 : 0));
-      columns.add(col2Str(tid));
-      columns.add(col2Str(b64FpCert));
-      columns.add(col2Str(reqSubjectText));
-      // in this version we set CRL_SCOPE to fixed value 0
-      columns.add(col2Int(0));
-      columns.add(col2Str(Base64.encodeToString(encodedCert)));
-      columns.add(col2Str(privateKeyInfo));
-
-      execUpdatePrepStmt0(SQL_ADD_CERT, columns.toArray(new SqlColumn2[0]));
-
-      cert.setCertId(certId);
-    } catch (Exception ex) {
-      LOG.error("could not save certificate {}: {}. Message: {}",
-          certInfo.getCert().getCert().getSubject(),
-          encodedCert == null ? "null" : Base64.encodeToString(encodedCert, true), ex.getMessage());
-      LOG.debug("error", ex);
-      return false;
+      datasource.releaseResources(ps, null, false);
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException ex) {
+        LogUtil.error(LOG, ex, "could not recover AutoCommit");
+      }
+      datasource.returnConnection(conn);
     }
 
+    if (succ) {
+      for (int i = 0; i < n; i++) {
+        certInfos.get(i).getCert().setCertId(certIds[i]);
+      }
+      issuedCertCounter.onAdded(n);
+    }
+    return succ;
+  } // method addCerts
+
+  private boolean checkKeypairEncryption(CertificateInfo certInfo, boolean saveKeypair) {
+    if (saveKeypair && certInfo.getPrivateKey() != null) {
+      if (keypairEncKey == null) {
+        LOG.error("no keypair encryption key is configured");
+        // no key encryption is configured
+        return false;
+      }
+    }
     return true;
-  } // method addCert
+  }
+
+  private SqlColumn2[] buildAddCertColumns(CertificateInfo certInfo, boolean saveKeypair, long certId)
+      throws Exception {
+    String privateKeyInfo = null;
+    CertWithDbId cert = certInfo.getCert();
+    String tid = certInfo.getTransactionId();
+    X500Name reqSubject = certInfo.getRequestedSubject();
+
+    if (saveKeypair && certInfo.getPrivateKey() != null) {
+      // we use certId as the nonce
+      byte[] nonce = new byte[12];
+      Pack.longToBigEndian(certId, nonce, 4);
+      byte[] encodedPrivateKey = certInfo.getPrivateKey().getEncoded();
+      Cipher cipher = Cipher.getInstance(keypairEncAlg, keypairEncProvider);
+      GCMParameterSpec spec = new GCMParameterSpec(96, nonce);
+      cipher.init(Cipher.ENCRYPT_MODE, keypairEncKey, spec);
+      byte[] encrypted = cipher.doFinal(encodedPrivateKey);
+      privateKeyInfo = keypairEncAlgId + ":" + keypairEncKeyId + ":"
+              + Base64.encodeToString(nonce) + ":" + Base64.encodeToString(encrypted);
+    }
+
+    String subjectText = X509Util.cutText(cert.getCert().getSubjectText(), maxX500nameLen);
+    long fpSubject = X509Util.fpCanonicalizedName(cert.getCert().getSubject());
+
+    byte[] san = cert.getCert().getSubjectAltNames();
+    Long fpSan = san == null ? null : FpIdCalculator.hash(san);
+
+    String reqSubjectText = null;
+    Long fpReqSubject = null;
+    if (reqSubject != null) {
+      fpReqSubject = X509Util.fpCanonicalizedName(reqSubject);
+      if (fpSubject == fpReqSubject) {
+        fpReqSubject = null;
+      } else {
+        reqSubjectText = X509Util.cutX500Name(CaUtil.sortX509Name(reqSubject), maxX500nameLen);
+      }
+    }
+
+    byte[] encodedCert = cert.getCert().getEncoded();
+    String b64FpCert = HashAlgo.SHA1.base64Hash(encodedCert);
+
+    X509Cert cert0 = cert.getCert();
+    boolean isEeCert = cert0.getBasicConstraints() == -1;
+
+    List<SqlColumn2> columns = new ArrayList<>(20);
+
+    columns.add(col2Long(certId));
+    // currentTimeSeconds
+    columns.add(col2Long(Instant.now().getEpochSecond()));
+    columns.add(col2Str(cert0.getSerialNumber().toString(16)));
+    columns.add(col2Str(subjectText));
+    columns.add(col2Long(fpSubject));
+    columns.add(col2Long(fpReqSubject));
+    columns.add(col2Long(fpSan));
+    // notBeforeSeconds
+    columns.add(col2Long(cert0.getNotBefore().getEpochSecond()));
+    // notAfterSeconds
+    columns.add(col2Long(cert0.getNotAfter().getEpochSecond()));
+    columns.add(col2Bool(false));
+
+    columns.add(col2Int(certInfo.getProfile().getId()));
+    columns.add(col2Int(certInfo.getIssuer().getId()));
+    columns.add(col2Int(certInfo.getRequestor().getId()));
+
+    columns.add(col2Int(isEeCert ? 1 : 0));
+    columns.add(col2Str(tid));
+    columns.add(col2Str(b64FpCert));
+    columns.add(col2Str(reqSubjectText));
+    // in this version we set CRL_SCOPE to fixed value 0
+    columns.add(col2Int(0));
+    columns.add(col2Str(Base64.encodeToString(encodedCert)));
+    columns.add(col2Str(privateKeyInfo));
+
+    return columns.toArray(new SqlColumn2[0]);
+  } // method buildAddCertColumns
+
+  private static void logAddCertFailure(CertificateInfo certInfo, Exception ex) {
+    X509Cert cert = certInfo.getCert().getCert();
+    LOG.error("could not save certificate {}: {}. Message: {}",
+        cert.getSubject(), Base64.encodeToString(cert.getEncoded(), true), ex.getMessage());
+    LOG.debug("error", ex);
+  }
 
   @Override
   public long getMaxFullCrlNumber(NameId ca) throws OperationException {
@@ -646,7 +744,10 @@ public class DbCertStore extends QueryExecutor implements CertStore {
 
   @Override
   public void removeCert(long id) throws OperationException {
-    execUpdatePrepStmt0(SQL_REMOVE_CERT_FOR_ID, col2Long(id));
+    int num = execUpdatePrepStmt0(SQL_REMOVE_CERT_FOR_ID, col2Long(id));
+    if (num > 0) {
+      issuedCertCounter.onRemoved(num);
+    }
   }
 
   @Override
@@ -668,6 +769,16 @@ public class DbCertStore extends QueryExecutor implements CertStore {
     }
   } // method getCountOfCerts
 
+  @Override
+  public long getCountOfIssuedCerts(long limit) throws OperationException {
+    return issuedCertCounter.get(limit);
+  }
+
+  @Override
+  public void reconcileCountOfIssuedCerts() throws OperationException {
+    issuedCertCounter.reconcile();
+  }
+
   @Override
   public List<SerialWithId> getSerialNumbers(NameId ca,  long startId, int numEntries, boolean onlyRevoked)
       throws OperationException {
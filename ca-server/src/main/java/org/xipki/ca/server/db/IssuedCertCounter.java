@@ -0,0 +1,115 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.server.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.pki.OperationException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of the certificates in the table CERT, which replaces the <code>SELECT COUNT(*)</code>
+ * for each issued certificate.
+ * <p>
+ * The counter is seeded by counting the certificates in the database, and afterwards
+ * incremented and decremented by this CA server when it adds and removes certificates.
+ * The CA servers of other shards share the database but not this counter, hence it is
+ * reconciled with the database periodically, and for each check when the count is within the
+ * margin of the limit.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class IssuedCertCounter {
+
+  private static final class Snapshot {
+
+    // number of certificates counted in the database.
+    private final long dbCount;
+
+    // value of changes when the counting in the database started.
+    private final long changes;
+
+    private Snapshot(long dbCount, long changes) {
+      this.dbCount = dbCount;
+      this.changes = changes;
+    }
+
+  } // class Snapshot
+
+  private static final Logger LOG = LoggerFactory.getLogger(IssuedCertCounter.class);
+
+  private final DbCertStore certstore;
+
+  private final long margin;
+
+  // number of certificates added minus the number of certificates removed by this CA server.
+  private final AtomicLong changes = new AtomicLong();
+
+  private volatile Snapshot snapshot;
+
+  IssuedCertCounter(DbCertStore certstore, long margin) {
+    this.certstore = certstore;
+    this.margin = margin;
+  }
+
+  void onAdded(int num) {
+    changes.addAndGet(num);
+  }
+
+  void onRemoved(int num) {
+    changes.addAndGet(-num);
+  }
+
+  /**
+   * Returns the number of certificates.
+   * @param limit the limit of the number of certificates. If the counted number is within the
+   *        margin of the limit, the certificates are counted in the database.
+   * @return the number of certificates.
+   * @throws OperationException if the certificates could not be counted in the database.
+   */
+  long get(long limit) throws OperationException {
+    Snapshot s = snapshot;
+    if (s == null) {
+      s = reconcile(null);
+    }
+
+    long count = s.dbCount + changes.get() - s.changes;
+    if (limit >= 0 && count + margin >= limit) {
+      // near the limit: the other shards may have added certificates since the last reconciliation.
+      s = reconcile(s);
+      count = s.dbCount + changes.get() - s.changes;
+    }
+    return count;
+  } // method get
+
+  void reconcile() throws OperationException {
+    Snapshot old = snapshot;
+    Snapshot s = reconcile(old);
+    if (old != null) {
+      long localCount = old.dbCount + s.changes - old.changes;
+      if (localCount != s.dbCount) {
+        LOG.info("reconciled number of certificates: {} (counter: {})", s.dbCount, localCount);
+      }
+    }
+  } // method reconcile
+
+  private synchronized Snapshot reconcile(Snapshot expected) throws OperationException {
+    if (snapshot != expected) {
+      // reconciled by another thread in the meantime.
+      return snapshot;
+    }
+
+    // The certificates added while counting may be counted twice, which overestimates the
+    // number of certificates and is on the safe side of the limit.
+    long startChanges = changes.get();
+    long dbCount = certstore.getCountOfCerts(0);
+    Snapshot s = new Snapshot(dbCount, startChanges);
+    snapshot = s;
+    return s;
+  } // method reconcile
+
+}
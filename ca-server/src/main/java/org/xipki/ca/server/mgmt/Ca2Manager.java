@@ -377,13 +377,12 @@ class Ca2Manager {
   String getCaNameForAlias(String aliasName) {
     aliasName = Args.toNonBlankLower(aliasName, "aliasName");
     Integer caId = manager.caAliases.get(aliasName);
-    for (String name : manager.x509cas.keySet()) {
-      X509Ca ca = manager.x509cas.get(name);
-      if (ca.getCaIdent().getId().equals(caId)) {
-        return ca.getCaIdent().getName();
-      }
+    if (caId == null) {
+      return null;
     }
-    return null;
+
+    NameId caIdent = manager.idNameMap.getCa(caId);
+    return (caIdent == null || !manager.x509cas.containsKey(caIdent.getName())) ? null : caIdent.getName();
   } // method getCaNameForAlias
 
   Set<String> getAliasesForCa(String caName) {
@@ -98,8 +98,11 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages the CA system.
@@ -163,6 +166,24 @@ public class CaManagerImpl implements CaManager, Closeable {
 
   } // class CaRestarter
 
+  private class IssuedCertCountReconciler implements Runnable {
+
+    @Override
+    public void run() {
+      CertStore store = certstore;
+      if (store == null) {
+        return;
+      }
+
+      try {
+        store.reconcileCountOfIssuedCerts();
+      } catch (Throwable th) {
+        LogUtil.error(LOG, th, "IssuedCertCountReconciler");
+      }
+    } // method run
+
+  } // class IssuedCertCountReconciler
+
   private static final Logger LOG = LoggerFactory.getLogger(CaManagerImpl.class);
 
   private static final String EVENT_LOCK = "LOCK";
@@ -241,6 +262,14 @@ public class CaManagerImpl implements CaManager, Closeable {
 
   private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
 
+  private ExecutorService batchSigningExecutor;
+
+  private int batchSigningThreads;
+
+  private int certCountReconcileMinutes;
+
+  private int certCountMargin;
+
   private final DataSourceFactory datasourceFactory;
 
   private CtLogPublicKeyFinder ctLogPublicKeyFinder;
@@ -386,6 +415,12 @@ public class CaManagerImpl implements CaManager, Closeable {
     shardId = caServerConf.getShardId();
     LOG.info("ca.shardId: {}", shardId);
 
+    batchSigningThreads = caServerConf.getBatchSigningThreads();
+    LOG.info("ca.batchSigningThreads: {}", batchSigningThreads);
+
+    certCountReconcileMinutes = caServerConf.getCertCountReconcileMinutes();
+    certCountMargin = caServerConf.getCertCountMargin();
+
     caServerConf.initSsl();
 
     if (caServerConf.getCtLog() != null) {
@@ -470,7 +505,7 @@ public class CaManagerImpl implements CaManager, Closeable {
     boolean initSucc = true;
     if (caConfStore.needsCertStore()) {
       try {
-        this.certstore = new DbCertStore(certstoreDatasource, caConfStore, idGen);
+        this.certstore = new DbCertStore(certstoreDatasource, caConfStore, idGen, certCountMargin);
       } catch (DataAccessException ex) {
         initSucc = false;
         LogUtil.error(LOG, ex, "error constructing CertStore");
@@ -766,6 +801,26 @@ public class CaManagerImpl implements CaManager, Closeable {
       scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(10);
       scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
 
+      if (batchSigningThreads > 1) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        batchSigningExecutor = Executors.newFixedThreadPool(batchSigningThreads, r -> {
+          Thread thread = new Thread(r, "ca-batch-signing-" + threadIndex.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+
+      if (certstore != null && license.getMaxNumberOfCerts() >= 0) {
+        // seed the counter of issued certificates, and reconcile it periodically.
+        try {
+          LOG.info("number of issued certificates: {}", certstore.getCountOfIssuedCerts(-1));
+        } catch (OperationException ex) {
+          LogUtil.error(LOG, ex, "could not count the issued certificates");
+        }
+        scheduledThreadPoolExecutor.scheduleAtFixedRate(new IssuedCertCountReconciler(),
+            certCountReconcileMinutes, certCountReconcileMinutes, TimeUnit.MINUTES);
+      }
+
       List<String> failedCaNames = new LinkedList<>();
 
       // Add the CAs to the store
@@ -896,6 +951,18 @@ public class CaManagerImpl implements CaManager, Closeable {
     return scheduledThreadPoolExecutor;
   }
 
+  /**
+   * Returns the executor to generate the certificates of a multi-certificate request concurrently.
+   * @return the executor, or {@code null} if the certificates are generated sequentially.
+   */
+  public ExecutorService getBatchSigningExecutor() {
+    return batchSigningExecutor;
+  }
+
+  public int getBatchSigningThreads() {
+    return batchSigningThreads;
+  }
+
   @Override
   public Set<String> getCertprofileNames() {
     return certprofileDbEntries.keySet();
@@ -979,11 +1046,13 @@ public class CaManagerImpl implements CaManager, Closeable {
   @Override
   public void removeCertprofileFromCa(String profileName, String caName) throws CaMgmtException {
     certprofileManager.removeCertprofileFromCa(profileName, caName);
+    refreshCaRoutings();
   }
 
   @Override
   public void addCertprofileToCa(String profileNameAndAliases, String caName) throws CaMgmtException {
     certprofileManager.addCertprofileToCa(profileNameAndAliases, caName);
+    refreshCaRoutings();
   }
 
   @Override
@@ -1016,6 +1085,15 @@ public class CaManagerImpl implements CaManager, Closeable {
     return requestorDbEntries.get(Args.toNonBlankLower(name, "name"));
   }
 
+  /**
+   * Rebuilds the snapshots of the certprofiles and requestors associated with the CAs.
+   */
+  void refreshCaRoutings() {
+    for (X509Ca ca : x509cas.values()) {
+      ca.refreshRouting();
+    }
+  } // method refreshCaRoutings
+
   public RequestorEntryWrapper getRequestorWrapper(String name) {
     return requestors.get(Args.toNonBlankLower(name, "name"));
   }
@@ -1031,21 +1109,25 @@ public class CaManagerImpl implements CaManager, Closeable {
     assertMasterMode();
     certstore.removeRequestor(name);
     requestorManager.removeRequestor(name);
+    refreshCaRoutings();
   }
 
   @Override
   public void changeRequestor(String name, String type, String conf) throws CaMgmtException {
     requestorManager.changeRequestor(name, type, conf);
+    refreshCaRoutings();
   }
 
   @Override
   public void removeRequestorFromCa(String requestorName, String caName) throws CaMgmtException {
     requestorManager.removeRequestorFromCa(requestorName, caName);
+    refreshCaRoutings();
   }
 
   @Override
   public void addRequestorToCa(CaHasRequestorEntry requestor, String caName) throws CaMgmtException {
     requestorManager.addRequestorToCa(requestor, caName);
+    refreshCaRoutings();
   }
 
   @Override
@@ -1058,11 +1140,13 @@ public class CaManagerImpl implements CaManager, Closeable {
     assertMasterMode();
     certstore.removeCertProfile(name);
     certprofileManager.removeCertprofile(name);
+    refreshCaRoutings();
   }
 
   @Override
   public void changeCertprofile(String name, String type, String conf) throws CaMgmtException {
     certprofileManager.changeCertprofile(name, type, conf);
+    refreshCaRoutings();
   }
 
   @Override
@@ -1229,6 +1313,11 @@ public class CaManagerImpl implements CaManager, Closeable {
   }
 
   private void shutdownScheduledThreadPoolExecutor() {
+    if (batchSigningExecutor != null) {
+      batchSigningExecutor.shutdown();
+      batchSigningExecutor = null;
+    }
+
     if (scheduledThreadPoolExecutor == null) {
       return;
     }
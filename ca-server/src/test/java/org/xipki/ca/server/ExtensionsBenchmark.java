@@ -0,0 +1,139 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ca.server;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.xipki.ca.api.CaUris;
+import org.xipki.ca.api.NameId;
+import org.xipki.ca.api.PublicCaInfo;
+import org.xipki.ca.api.mgmt.entry.CertprofileEntry;
+import org.xipki.ca.api.profile.ExtensionValues;
+import org.xipki.ca.certprofile.xijson.XijsonCertprofile;
+import org.xipki.security.X509Cert;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Single-thread micro-benchmark of the certificate build in the CA: the extensions are computed
+ * via {@link IdentifiedCertprofile#getExtensions}, added via {@link CaUtil#addExtensions}, and the
+ * certificate is built and encoded. The CA is an EC P-256 CA generated at startup.
+ * <p>
+ * Usage, after <code>mvn test-compile</code> of the project:
+ * <pre>
+ * java -cp &lt;test classpath of ca-server&gt; org.xipki.ca.server.ExtensionsBenchmark \
+ *     &lt;certprofile file&gt; [sign] [number of certificates per round]
+ * </pre>
+ * Without the argument <code>sign</code>, the signature is a constant dummy value, so that the
+ * result is not dominated by the signing. The throughput of 3 rounds is printed, the first one
+ * includes the warm-up of the JVM.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class ExtensionsBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: ExtensionsBenchmark <certprofile file> [sign] [number of certificates]");
+      System.exit(1);
+    }
+
+    String conf = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+    boolean sign = args.length > 1 && "sign".equals(args[1]);
+    int num = args.length > 2 ? Integer.parseInt(args[2]) : (sign ? 20000 : 200000);
+
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(new ECGenParameterSpec("secp256r1"));
+    KeyPair caKeypair = kpGen.generateKeyPair();
+    ContentSigner caSigner = new JcaContentSignerBuilder("SHA256withECDSA").build(caKeypair.getPrivate());
+
+    X500Name caSubject = new X500Name("CN=benchmark-ca,O=xipki");
+    X509v3CertificateBuilder caBuilder = new X509v3CertificateBuilder(caSubject, BigInteger.ONE,
+        new Date(), new Date(System.currentTimeMillis() + 3650L * 86400 * 1000), caSubject,
+        SubjectPublicKeyInfo.getInstance(caKeypair.getPublic().getEncoded()));
+    caBuilder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+    caBuilder.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+    caBuilder.addExtension(Extension.subjectKeyIdentifier, false, new SubjectKeyIdentifier(new byte[20]));
+    X509Cert caCert = new X509Cert(caBuilder.build(caSigner));
+
+    CaUris caUris = new CaUris(Collections.singletonList("http://ca.example.org/cacert"),
+        Collections.singletonList("http://ocsp.example.org"),
+        Collections.singletonList("http://crl.example.org/crl"),
+        Collections.singletonList("http://crl.example.org/deltacrl"));
+    PublicCaInfo caInfo = new PublicCaInfo(caCert, caUris, null);
+
+    IdentifiedCertprofile certprofile = new IdentifiedCertprofile(
+        new CertprofileEntry(new NameId(1, "benchmark"), "xijson", conf), new XijsonCertprofile());
+
+    SubjectPublicKeyInfo publicKeyInfo = SubjectPublicKeyInfo.getInstance(
+        kpGen.generateKeyPair().getPublic().getEncoded());
+    X500Name subject = new X500Name("C=DE,O=xipki,CN=www.example.org");
+    Extensions requestedExtensions = new Extensions(new Extension(Extension.subjectAlternativeName, false,
+        new GeneralNames(new GeneralName(GeneralName.dNSName, "www.example.org")).getEncoded()));
+
+    ContentSigner signer = sign ? caSigner : new ContentSigner() {
+
+      private final byte[] signature = new byte[72];
+
+      @Override
+      public AlgorithmIdentifier getAlgorithmIdentifier() {
+        return caSigner.getAlgorithmIdentifier();
+      }
+
+      @Override
+      public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+      }
+
+      @Override
+      public byte[] getSignature() {
+        return signature;
+      }
+
+    };
+
+    String mode = sign ? "with ECDSA P-256 signing" : "without signing";
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < num; i++) {
+        Instant notBefore = Instant.now();
+        Instant notAfter = notBefore.plusSeconds(365L * 86400);
+        ExtensionValues extensions = certprofile.getExtensions(subject, subject, requestedExtensions,
+            publicKeyInfo, caInfo, null, notBefore, notAfter);
+
+        X509v3CertificateBuilder builder = new X509v3CertificateBuilder(caSubject, BigInteger.valueOf(i + 2L),
+            Date.from(notBefore), Date.from(notAfter), subject, publicKeyInfo);
+        CaUtil.addExtensions(extensions, builder);
+        builder.build(signer).getEncoded();
+      }
+
+      long duration = System.nanoTime() - start;
+      System.out.printf("round %d: %.0f certs/s (%s)%n", round, num * 1e9 / duration, mode);
+    }
+  } // method main
+
+}
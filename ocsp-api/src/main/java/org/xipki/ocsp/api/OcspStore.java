@@ -12,7 +12,12 @@ import org.xipki.util.Validity;
 import java.io.Closeable;
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Store of certificate status.
@@ -23,6 +28,27 @@ import java.util.Map;
 
 public abstract class OcspStore implements Closeable {
 
+  public static class SerialWithId {
+
+    private final long id;
+
+    private final BigInteger serial;
+
+    public SerialWithId(long id, BigInteger serial) {
+      this.id = id;
+      this.serial = serial;
+    }
+
+    public BigInteger getSerial() {
+      return serial;
+    }
+
+    public long getId() {
+      return id;
+    }
+
+  } // class SerialWithId
+
   protected String name;
 
   protected UnknownCertBehaviour unknownCertBehaviour = UnknownCertBehaviour.unknown;
@@ -43,9 +69,31 @@ public abstract class OcspStore implements Closeable {
 
   protected Validity updateInterval;
 
+  private final List<Runnable> issuersChangeListeners = new CopyOnWriteArrayList<>();
+
   public OcspStore() {
   }
 
+  /**
+   * Registers a listener which will be notified after the issuers known by this store have been changed.
+   * Only stores returning their issuers in {@link #getIssuerCerts()} need to notify the listeners.
+   *
+   * @param listener
+   *          The listener.
+   */
+  public void addIssuersChangeListener(Runnable listener) {
+    issuersChangeListeners.add(listener);
+  }
+
+  /**
+   * Notifies the registered listeners that the issuers known by this store have been changed.
+   */
+  protected void fireIssuersChanged() {
+    for (Runnable listener : issuersChangeListeners) {
+      listener.run();
+    }
+  }
+
   /**
    * Whether the store knows the reqIssuer.
    * @param reqIssuer
@@ -63,6 +111,47 @@ public abstract class OcspStore implements Closeable {
    */
   public abstract X509Cert getIssuerCert(RequestIssuer reqIssuer);
 
+  /**
+   * Returns the certificates of all issuers known by this store.
+   *
+   * @return certificates of the known issuers. Empty list if not supported by the store.
+   */
+  public List<X509Cert> getIssuerCerts() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Whether this store can list the serial numbers of its certificates via
+   * {@link #getSerialNumbers(RequestIssuer, long, long, int)}.
+   *
+   * @return whether listing the serial numbers is supported.
+   */
+  public boolean supportsSerialNumbersListing() {
+    return false;
+  }
+
+  /**
+   * Returns the serial numbers of certificates issued by the given issuer, ordered by the id.
+   *
+   * @param reqIssuer
+   *          Requested issuer
+   * @param startId
+   *          Minimal id (inclusive) of the certificates.
+   * @param minLastUpdate
+   *          Only certificates whose entry has been updated at or after this time (seconds since
+   *          January 1, 1970, 00:00:00 GMT) will be returned.
+   * @param numEntries
+   *          Maximal number of entries to be returned.
+   * @return the serial numbers with id. Empty list if no more certificate is available.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the serial numbers, or the listing is not supported.
+   */
+  public List<SerialWithId> getSerialNumbers(
+      RequestIssuer reqIssuer, long startId, long minLastUpdate, int numEntries)
+      throws OcspStoreException {
+    throw new OcspStoreException("listing serial numbers is not supported by " + getClass().getName());
+  }
+
   /**
    * Ignores expired CRLs. Only applied to CRL-based datasource.
    *
@@ -98,10 +187,50 @@ public abstract class OcspStore implements Closeable {
     CertStatusInfo info = getCertStatus0(time, reqIssuer, serialNumber,
         includeCertHash, includeRit, inheritCaRevocation);
 
-    if (info == null) {
-      return null;
+    if (info != null) {
+      applyNextUpdatePeriodLimit(time, info);
+    }
+    return info;
+  } // method getCertStatus
+
+  /**
+   * Return the status of several certificates issued by the same issuer.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate status for each of the given serial numbers, or {@code null} if
+   *          the issuer is unknown.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  public final Map<BigInteger, CertStatusInfo> getCertStatuses(
+      Instant time, RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers, boolean includeCertHash,
+      boolean includeRit, boolean inheritCaRevocation)
+      throws OcspStoreException {
+    Map<BigInteger, CertStatusInfo> infos = getCertStatuses0(time, reqIssuer, serialNumbers,
+        includeCertHash, includeRit, inheritCaRevocation);
+
+    if (infos != null) {
+      for (CertStatusInfo info : infos.values()) {
+        if (info != null) {
+          applyNextUpdatePeriodLimit(time, info);
+        }
+      }
     }
+    return infos;
+  } // method getCertStatuses
 
+  private void applyNextUpdatePeriodLimit(Instant time, CertStatusInfo info) {
     Instant nextUpdate = info.getNextUpdate();
 
     if (minNextUpdatePeriod != null) {
@@ -117,9 +246,7 @@ public abstract class OcspStore implements Closeable {
         info.setNextUpdate(maxNextUpdate);
       }
     }
-
-    return info;
-  } // method getCertStatus
+  } // method applyNextUpdatePeriodLimit
 
   /**
    * Return the certificate status.
@@ -145,6 +272,49 @@ public abstract class OcspStore implements Closeable {
       boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
       throws OcspStoreException;
 
+  /**
+   * Return the status of several certificates issued by the same issuer. The default
+   * implementation calls {@link #getCertStatus0(Instant, RequestIssuer, BigInteger, boolean, boolean, boolean)}
+   * for each serial number. Database based stores should overwrite it to retrieve the status
+   * with as few queries as possible.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate status for each of the given serial numbers, or {@code null} if
+   *          the issuer is unknown.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  protected Map<BigInteger, CertStatusInfo> getCertStatuses0(
+      Instant time, RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers,
+      boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
+      throws OcspStoreException {
+    Map<BigInteger, CertStatusInfo> infos = new HashMap<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      if (infos.containsKey(serialNumber)) {
+        continue;
+      }
+
+      CertStatusInfo info = getCertStatus0(time, reqIssuer, serialNumber,
+          includeCertHash, includeRit, inheritCaRevocation);
+      if (info == null) {
+        return null;
+      }
+      infos.put(serialNumber, info);
+    }
+    return infos;
+  } // method getCertStatuses0
+
   /**
    * Initialize the OCSP store.
    *
@@ -60,6 +60,32 @@ import java.util.List;
 
 public abstract class AbstractOcspRequestor implements OcspRequestor {
 
+  /**
+   * OCSP request prepared to be sent, together with the data to verify the response.
+   */
+  protected static final class PreparedRequest {
+
+    private final OCSPRequest request;
+
+    private final byte[] encoded;
+
+    private final byte[] nonce;
+
+    private final BigInteger[] serialNumbers;
+
+    private PreparedRequest(OCSPRequest request, byte[] encoded, byte[] nonce, BigInteger[] serialNumbers) {
+      this.request = request;
+      this.encoded = encoded;
+      this.nonce = nonce;
+      this.serialNumbers = serialNumbers;
+    }
+
+    public byte[] getEncoded() {
+      return encoded;
+    }
+
+  } // class PreparedRequest
+
   private SecurityFactory securityFactory;
 
   private final Object signerLock = new Object();
@@ -134,34 +160,21 @@ public abstract class AbstractOcspRequestor implements OcspRequestor {
   public OCSPResp ask(X509Cert issuerCert, BigInteger[] serialNumbers, URL responderUrl,
                       RequestOptions requestOptions, ReqRespDebug debug)
       throws OcspResponseException, OcspRequestorException {
-    Args.notNull(issuerCert, "issuerCert");
     Args.notNull(responderUrl, "responderUrl");
-
-    byte[] nonce = null;
-    if (Args.notNull(requestOptions, "requestOptions").isUseNonce()) {
-      nonce = nextNonce(requestOptions.getNonceLen());
-    }
-
-    OCSPRequest ocspReq = buildRequest(issuerCert, serialNumbers, nonce, requestOptions);
-    byte[] encodedReq;
-    try {
-      encodedReq = ocspReq.getEncoded();
-    } catch (IOException ex) {
-      throw new OcspRequestorException("could not encode OCSP request: " + ex.getMessage(), ex);
-    }
+    PreparedRequest request = prepareRequest(issuerCert, serialNumbers, requestOptions);
 
     ReqRespPair msgPair = null;
     if (debug != null) {
       msgPair = new ReqRespPair();
       debug.add(msgPair);
       if (debug.saveRequest()) {
-        msgPair.setRequest(encodedReq);
+        msgPair.setRequest(request.encoded);
       }
     }
 
     byte[] encodedResp;
     try {
-      encodedResp = send(encodedReq, responderUrl, requestOptions);
+      encodedResp = send(request.encoded, responderUrl, requestOptions);
     } catch (IOException ex) {
       throw new OcspResponseException.ResponderUnreachable("IOException: " + ex.getMessage(), ex);
     }
@@ -170,6 +183,62 @@ public abstract class AbstractOcspRequestor implements OcspRequestor {
       msgPair.setResponse(encodedResp);
     }
 
+    return parseResponse(request, encodedResp, requestOptions);
+  } // method ask
+
+  /**
+   * Builds and encodes the OCSP request.
+   *
+   * @param issuerCert
+   *          Issuer certificate. Must not be {@code null}.
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param requestOptions
+   *          Request options. Must not be {@code null}.
+   * @return the prepared request.
+   * @throws OcspRequestorException
+   *         if cannot build the OCSP request
+   */
+  protected PreparedRequest prepareRequest(
+      X509Cert issuerCert, BigInteger[] serialNumbers, RequestOptions requestOptions)
+      throws OcspRequestorException {
+    Args.notNull(issuerCert, "issuerCert");
+
+    byte[] nonce = null;
+    if (Args.notNull(requestOptions, "requestOptions").isUseNonce()) {
+      nonce = nextNonce(requestOptions.getNonceLen());
+    }
+
+    OCSPRequest ocspReq = buildRequest(issuerCert, serialNumbers, nonce, requestOptions);
+    byte[] encodedReq;
+    try {
+      encodedReq = ocspReq.getEncoded();
+    } catch (IOException ex) {
+      throw new OcspRequestorException("could not encode OCSP request: " + ex.getMessage(), ex);
+    }
+
+    return new PreparedRequest(ocspReq, encodedReq, nonce, serialNumbers);
+  } // method prepareRequest
+
+  /**
+   * Parses the response and verifies that it matches the request.
+   *
+   * @param request
+   *          The prepared request. Must not be {@code null}.
+   * @param encodedResp
+   *          The received response. Must not be {@code null}.
+   * @param requestOptions
+   *          Request options. Must not be {@code null}.
+   * @return the OCSP response.
+   * @throws OcspResponseException
+   *         if the response is invalid or does not match the requested certificates.
+   */
+  protected OCSPResp parseResponse(PreparedRequest request, byte[] encodedResp, RequestOptions requestOptions)
+      throws OcspResponseException {
+    byte[] nonce = request.nonce;
+    BigInteger[] serialNumbers = request.serialNumbers;
+    OCSPRequest ocspReq = request.request;
+
     OCSPResp ocspResp;
     try {
       ocspResp = new OCSPResp(encodedResp);
@@ -276,7 +345,7 @@ public abstract class AbstractOcspRequestor implements OcspRequestor {
     } // end if
 
     return ocspResp;
-  } // method ask
+  } // method parseResponse
 
   private OCSPRequest buildRequest(
       X509Cert caCert, BigInteger[] serialNumbers, byte[] nonce, RequestOptions requestOptions)
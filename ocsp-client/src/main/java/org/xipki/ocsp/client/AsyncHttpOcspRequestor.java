@@ -0,0 +1,361 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.client;
+
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.SignAlgo;
+import org.xipki.security.X509Cert;
+import org.xipki.util.Args;
+import org.xipki.util.ReqRespDebug;
+import org.xipki.util.ReqRespDebug.ReqRespPair;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asynchronous HTTP OCSP requestor.
+ * <p>
+ * The requests are sent via {@link HttpClient}, which keeps the connections to the responders
+ * alive and reuses them. The size of the connection pool can be limited by the system property
+ * {@code jdk.httpclient.connectionPoolSize}.
+ * <p>
+ * Requests without nonce are answered from a local cache until the earliest nextUpdate of the
+ * cached response, and identical requests in flight share one HTTP exchange. Responses are
+ * verified as in {@link AbstractOcspRequestor#ask(X509Cert, BigInteger[], URL, RequestOptions, ReqRespDebug)}.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class AsyncHttpOcspRequestor extends AbstractOcspRequestor {
+
+  private static final class ResponseCache {
+
+    private static final class Entry {
+
+      private final OCSPResp response;
+
+      private final Instant expiresAt;
+
+      private Entry(OCSPResp response, Instant expiresAt) {
+        this.response = response;
+        this.expiresAt = expiresAt;
+      }
+
+    } // class Entry
+
+    private final Map<String, Entry> entries;
+
+    private ResponseCache(int maxSize) {
+      this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+          return size() > maxSize;
+        }
+      };
+    }
+
+    private synchronized OCSPResp get(String key, Instant now) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+
+      if (now.isBefore(entry.expiresAt)) {
+        return entry.response;
+      }
+
+      entries.remove(key);
+      return null;
+    } // method get
+
+    private synchronized void put(String key, OCSPResp response, Instant expiresAt) {
+      entries.put(key, new Entry(response, expiresAt));
+    }
+
+  } // class ResponseCache
+
+  private final HttpClient httpClient;
+
+  private final Duration timeout;
+
+  private final Map<String, CompletableFuture<OCSPResp>> inflightRequests = new ConcurrentHashMap<>();
+
+  private final ResponseCache responseCache;
+
+  public AsyncHttpOcspRequestor() {
+    this(10000, Duration.ofSeconds(30));
+  }
+
+  /**
+   * Constructor.
+   * @param maxCacheSize maximal number of cached responses. If not positive, no response will be cached.
+   * @param timeout timeout of the connection and of each request.
+   */
+  public AsyncHttpOcspRequestor(int maxCacheSize, Duration timeout) {
+    this.timeout = Args.notNull(timeout, "timeout");
+    this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(timeout).followRedirects(HttpClient.Redirect.NORMAL).build();
+    this.responseCache = maxCacheSize > 0 ? new ResponseCache(maxCacheSize) : null;
+  }
+
+  @Override
+  protected byte[] send(byte[] request, URL responderUrl, RequestOptions requestOptions)
+      throws IOException {
+    HttpResponse<byte[]> response;
+    try {
+      response = httpClient.send(newHttpRequest(request, responderUrl, requestOptions),
+          HttpResponse.BodyHandlers.ofByteArray());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for the response");
+    }
+    return getBody(response);
+  } // method send
+
+  /**
+   * Asks asynchronously for the status of the given certificate.
+   *
+   * @param issuerCert
+   *          Issuer certificate. Must not be {@code null}.
+   * @param serialNumber
+   *          Serial number of the target certificate. Must not be {@code null}.
+   * @param responderUrl
+   *          Responder URL. Must not be {@code null}.
+   * @param requestOptions
+   *          Request options. Must not be {@code null}.
+   * @param debug
+   *          Request/response debug control. Could be {@code null}.
+   * @return the future of the OCSP response.
+   * @see #askAsync(X509Cert, BigInteger[], URL, RequestOptions, ReqRespDebug)
+   */
+  public CompletableFuture<OCSPResp> askAsync(X509Cert issuerCert, BigInteger serialNumber, URL responderUrl,
+                                              RequestOptions requestOptions, ReqRespDebug debug) {
+    return askAsync(issuerCert, new BigInteger[]{serialNumber}, responderUrl, requestOptions, debug);
+  }
+
+  /**
+   * Asks asynchronously for the status of the given certificates.
+   * <p>
+   * The future fails with {@link OcspRequestorException} if the OCSP request could not be built,
+   * and with {@link OcspResponseException} if the OCSP responder cannot be reached or the
+   * response does not match the requested certificates.
+   *
+   * @param issuerCert
+   *          Issuer certificate. Must not be {@code null}.
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param responderUrl
+   *          Responder URL. Must not be {@code null}.
+   * @param requestOptions
+   *          Request options. Must not be {@code null}.
+   * @param debug
+   *          Request/response debug control. Could be {@code null}. Cached and shared responses
+   *          are not recorded.
+   * @return the future of the OCSP response.
+   */
+  public CompletableFuture<OCSPResp> askAsync(X509Cert issuerCert, BigInteger[] serialNumbers, URL responderUrl,
+                                              RequestOptions requestOptions, ReqRespDebug debug) {
+    Args.notNull(issuerCert, "issuerCert");
+    Args.notNull(serialNumbers, "serialNumbers");
+    Args.notNull(responderUrl, "responderUrl");
+
+    // requests with nonce expect a fresh response
+    if (Args.notNull(requestOptions, "requestOptions").isUseNonce()) {
+      return askAsync0(issuerCert, serialNumbers, responderUrl, requestOptions, debug);
+    }
+
+    String key = buildKey(issuerCert, serialNumbers, responderUrl, requestOptions);
+    if (responseCache != null) {
+      OCSPResp cachedResp = responseCache.get(key, Instant.now());
+      if (cachedResp != null) {
+        return CompletableFuture.completedFuture(cachedResp);
+      }
+    }
+
+    CompletableFuture<OCSPResp> future = new CompletableFuture<>();
+    CompletableFuture<OCSPResp> inflight = inflightRequests.putIfAbsent(key, future);
+    if (inflight != null) {
+      // copy, so that the callers cannot complete the shared future
+      return inflight.copy();
+    }
+
+    askAsync0(issuerCert, serialNumbers, responderUrl, requestOptions, debug).whenComplete((resp, ex) -> {
+      if (ex == null && responseCache != null) {
+        Instant expiresAt = getCacheExpiry(resp);
+        if (expiresAt != null) {
+          responseCache.put(key, resp, expiresAt);
+        }
+      }
+
+      inflightRequests.remove(key, future);
+      if (ex == null) {
+        future.complete(resp);
+      } else {
+        future.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+      }
+    });
+    return future.copy();
+  } // method askAsync
+
+  private CompletableFuture<OCSPResp> askAsync0(X509Cert issuerCert, BigInteger[] serialNumbers, URL responderUrl,
+                                                RequestOptions requestOptions, ReqRespDebug debug) {
+    PreparedRequest request;
+    HttpRequest httpRequest;
+    try {
+      request = prepareRequest(issuerCert, serialNumbers, requestOptions);
+      httpRequest = newHttpRequest(request.getEncoded(), responderUrl, requestOptions);
+    } catch (OcspRequestorException ex) {
+      return CompletableFuture.failedFuture(ex);
+    } catch (IOException ex) {
+      return CompletableFuture.failedFuture(
+          new OcspResponseException.ResponderUnreachable("IOException: " + ex.getMessage(), ex));
+    }
+
+    ReqRespPair msgPair = null;
+    if (debug != null) {
+      msgPair = new ReqRespPair();
+      debug.add(msgPair);
+      if (debug.saveRequest()) {
+        msgPair.setRequest(request.getEncoded());
+      }
+    }
+
+    final ReqRespPair msgPair0 = msgPair;
+    return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).handle((response, ex) -> {
+      try {
+        if (ex != null) {
+          Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+          throw new OcspResponseException.ResponderUnreachable(
+              cause.getClass().getSimpleName() + ": " + cause.getMessage(), cause);
+        }
+
+        byte[] encodedResp;
+        try {
+          encodedResp = getBody(response);
+        } catch (IOException ex2) {
+          throw new OcspResponseException.ResponderUnreachable("IOException: " + ex2.getMessage(), ex2);
+        }
+
+        if (msgPair0 != null && debug.saveResponse()) {
+          msgPair0.setResponse(encodedResp);
+        }
+
+        return parseResponse(request, encodedResp, requestOptions);
+      } catch (OcspResponseException ex2) {
+        throw new CompletionException(ex2);
+      }
+    });
+  } // method askAsync0
+
+  private HttpRequest newHttpRequest(byte[] request, URL responderUrl, RequestOptions requestOptions)
+      throws IOException {
+    Args.notNull(responderUrl, "responderUrl");
+    int size = Args.notNull(request, "request").length;
+    try {
+      if (size <= HttpOcspRequestor.MAX_LEN_GET
+          && Args.notNull(requestOptions, "requestOptions").isUseHttpGetForRequest()) {
+        return HttpRequest.newBuilder(URI.create(HttpOcspRequestor.buildGetUrl(request, responderUrl)))
+            .timeout(timeout).GET().build();
+      } else {
+        return HttpRequest.newBuilder(responderUrl.toURI()).timeout(timeout)
+            .header("Content-Type", HttpOcspRequestor.CT_REQUEST)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(request)).build();
+      }
+    } catch (Exception ex) {
+      throw new IOException("invalid responder URL " + responderUrl + ": " + ex.getMessage(), ex);
+    }
+  } // method newHttpRequest
+
+  private static byte[] getBody(HttpResponse<byte[]> response) throws IOException {
+    if (response.statusCode() != 200) {
+      throw new IOException("bad response: " + response.statusCode());
+    }
+
+    String responseContentType = response.headers().firstValue("Content-Type").orElse(null);
+    if (!HttpOcspRequestor.CT_RESPONSE.equalsIgnoreCase(responseContentType)) {
+      throw new IOException("bad response: mime type " + responseContentType + " not supported!");
+    }
+
+    return response.body();
+  } // method getBody
+
+  private static String buildKey(
+      X509Cert issuerCert, BigInteger[] serialNumbers, URL responderUrl, RequestOptions requestOptions) {
+    StringBuilder sb = new StringBuilder(200);
+    sb.append(responderUrl).append(' ').append(requestOptions.getHashAlgorithm()).append(' ')
+        .append(HashAlgo.SHA1.base64Hash(issuerCert.getEncoded()));
+
+    // the preferred signature algorithms determine the signature algorithm of the response
+    List<SignAlgo> prefSigAlgs = requestOptions.getPreferredSignatureAlgorithms();
+    if (prefSigAlgs != null) {
+      for (SignAlgo algo : prefSigAlgs) {
+        sb.append(' ').append(algo.getJceName());
+      }
+    }
+
+    sb.append(" :");
+    for (BigInteger serialNumber : serialNumbers) {
+      sb.append(' ').append(serialNumber.toString(16));
+    }
+    return sb.toString();
+  } // method buildKey
+
+  /**
+   * Returns the time until which the response can be cached.
+   * @param response the response.
+   * @return the earliest nextUpdate of all single responses, or {@code null} if the response
+   *         cannot be cached.
+   */
+  private static Instant getCacheExpiry(OCSPResp response) {
+    if (response.getStatus() != 0) {
+      return null;
+    }
+
+    Object respObject;
+    try {
+      respObject = response.getResponseObject();
+    } catch (OCSPException ex) {
+      return null;
+    }
+
+    if (!(respObject instanceof BasicOCSPResp)) {
+      return null;
+    }
+
+    Instant expiresAt = null;
+    for (SingleResp singleResp : ((BasicOCSPResp) respObject).getResponses()) {
+      Date nextUpdate = singleResp.getNextUpdate();
+      if (nextUpdate == null) {
+        return null;
+      }
+
+      Instant instant = nextUpdate.toInstant();
+      if (expiresAt == null || instant.isBefore(expiresAt)) {
+        expiresAt = instant;
+      }
+    }
+    return expiresAt;
+  } // method getCacheExpiry
+
+}
@@ -26,11 +26,11 @@ import java.nio.charset.StandardCharsets;
 public class HttpOcspRequestor extends AbstractOcspRequestor {
 
   // result in maximal 254 Base-64 encoded octets
-  private static final int MAX_LEN_GET = 190;
+  static final int MAX_LEN_GET = 190;
 
-  private static final String CT_REQUEST = "application/ocsp-request";
+  static final String CT_REQUEST = "application/ocsp-request";
 
-  private static final String CT_RESPONSE = "application/ocsp-response";
+  static final String CT_RESPONSE = "application/ocsp-response";
 
   public HttpOcspRequestor() {
   }
@@ -43,12 +43,7 @@ public class HttpOcspRequestor extends AbstractOcspRequestor {
     int size = Args.notNull(request, "request").length;
     HttpURLConnection httpUrlConnection;
     if (size <= MAX_LEN_GET && Args.notNull(requestOptions, "requestOptions").isUseHttpGetForRequest()) {
-      String b64Request = Base64.encodeToString(request);
-      String urlEncodedReq = URLEncoder.encode(b64Request, StandardCharsets.UTF_8);
-      String baseUrl = responderUrl.toString();
-      String url = StringUtil.concat(baseUrl, (baseUrl.endsWith("/") ? "" : "/"), urlEncodedReq);
-
-      URL newUrl = new URL(url);
+      URL newUrl = new URL(buildGetUrl(request, responderUrl));
       httpUrlConnection = IoUtil.openHttpConn(newUrl);
       httpUrlConnection.setRequestMethod("GET");
     } else {
@@ -87,4 +82,17 @@ public class HttpOcspRequestor extends AbstractOcspRequestor {
     return IoUtil.readAllBytesAndClose(inputstream);
   } // method send
 
+  /**
+   * Returns the URL to send the request via HTTP GET, as specified in RFC 6960, appendix A.1.
+   * @param request the encoded request.
+   * @param responderUrl the responder URL.
+   * @return the URL containing the request.
+   */
+  static String buildGetUrl(byte[] request, URL responderUrl) {
+    String b64Request = Base64.encodeToString(request);
+    String urlEncodedReq = URLEncoder.encode(b64Request, StandardCharsets.UTF_8);
+    String baseUrl = responderUrl.toString();
+    return StringUtil.concat(baseUrl, (baseUrl.endsWith("/") ? "" : "/"), urlEncodedReq);
+  }
+
 }
@@ -0,0 +1,196 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.store.IssuerEntry;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.X509Cert;
+import org.xipki.util.LogUtil;
+
+import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot mapping the issuers to the stores of a responder which know them.
+ * <p>
+ * Stores which do not list their issuers via {@link OcspStore#getIssuerCerts()} are contained
+ * in the route of every issuer, and in the same order as configured for the responder.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class IssuerRouting {
+
+  static final class Route {
+
+    private final List<OcspStore> stores;
+
+    private final X509Cert issuerCert;
+
+    private final List<OcspStore> unlistedStores;
+
+    private Route(List<OcspStore> stores, X509Cert issuerCert, List<OcspStore> unlistedStores) {
+      this.stores = stores;
+      this.issuerCert = issuerCert;
+      this.unlistedStores = unlistedStores;
+    }
+
+    /**
+     * Returns the candidate stores in the configured order.
+     * @return the candidate stores.
+     */
+    List<OcspStore> getStores() {
+      return stores;
+    }
+
+    /**
+     * Returns the issuer certificate.
+     * @return the issuer certificate, or {@code null} if not known by any store listing its issuers.
+     */
+    X509Cert getIssuerCert() {
+      return issuerCert;
+    }
+
+    /**
+     * Returns the stores which do not list their issuers.
+     * @return the stores which do not list their issuers.
+     */
+    List<OcspStore> getUnlistedStores() {
+      return unlistedStores;
+    }
+
+  } // class Route
+
+  private static final class HashKey {
+
+    private final HashAlgo hashAlgo;
+
+    private final byte[] data;
+
+    private final int from;
+
+    private final int length;
+
+    private final int hash;
+
+    HashKey(HashAlgo hashAlgo, byte[] data, int from, int length) {
+      this.hashAlgo = hashAlgo;
+      this.data = data;
+      this.from = from;
+      this.length = length;
+
+      int h = hashAlgo.hashCode();
+      for (int i = from; i < from + length; i++) {
+        h = 31 * h + data[i];
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof HashKey)) {
+        return false;
+      }
+
+      HashKey other = (HashKey) obj;
+      return hashAlgo == other.hashAlgo && length == other.length
+          && Arrays.equals(data, from, from + length, other.data, other.from, other.from + length);
+    }
+
+  } // class HashKey
+
+  private static final Logger LOG = LoggerFactory.getLogger(IssuerRouting.class);
+
+  private final Map<HashKey, Route> routes;
+
+  // route for issuers not listed by any store
+  private final Route defaultRoute;
+
+  IssuerRouting(List<OcspStore> stores) {
+    // stores and certificates of each issuer, identified by the certificate
+    Map<X509Cert, List<OcspStore>> issuerStores = new LinkedHashMap<>();
+    List<OcspStore> unlistedStores = new ArrayList<>();
+    for (OcspStore store : stores) {
+      List<X509Cert> certs = store.getIssuerCerts();
+      if (certs.isEmpty()) {
+        unlistedStores.add(store);
+      } else {
+        for (X509Cert cert : certs) {
+          issuerStores.computeIfAbsent(cert, k -> new ArrayList<>()).add(store);
+        }
+      }
+    }
+
+    unlistedStores = Collections.unmodifiableList(unlistedStores);
+    Map<HashKey, Route> newRoutes = new HashMap<>();
+    for (Map.Entry<X509Cert, List<OcspStore>> entry : issuerStores.entrySet()) {
+      X509Cert cert = entry.getKey();
+      List<OcspStore> routeStores = new ArrayList<>();
+      for (OcspStore store : stores) {
+        if (entry.getValue().contains(store) || unlistedStores.contains(store)) {
+          routeStores.add(store);
+        }
+      }
+
+      IssuerEntry issuer;
+      try {
+        issuer = new IssuerEntry(0, cert);
+      } catch (CertificateEncodingException ex) {
+        LogUtil.warn(LOG, ex, "could not encode issuer certificate " + cert.getSubjectText());
+        continue;
+      }
+
+      Route route = new Route(Collections.unmodifiableList(routeStores), cert, unlistedStores);
+      for (HashAlgo ha : HashAlgo.values()) {
+        byte[] hash = issuer.getEncodedHash(ha);
+        // keep the first one, as the stores are searched in this order
+        newRoutes.putIfAbsent(new HashKey(ha, hash, 0, hash.length), route);
+      }
+    }
+
+    this.routes = newRoutes;
+    this.defaultRoute = new Route(unlistedStores, null, unlistedStores);
+  } // constructor
+
+  /**
+   * Returns the route for the given issuer.
+   * @param reqIssuer the requested issuer.
+   * @return the route, never {@code null}.
+   */
+  Route getRoute(RequestIssuer reqIssuer) {
+    HashAlgo hashAlgo = reqIssuer.hashAlgorithm();
+    if (hashAlgo == null) {
+      return defaultRoute;
+    }
+
+    // issuerNameHash and issuerKeyHash, each encoded as OCTET STRING
+    int length = (2 + hashAlgo.getLength()) << 1;
+    int from = reqIssuer.getNameHashFrom();
+    if (from + length > reqIssuer.getFrom() + reqIssuer.getLength()) {
+      return defaultRoute;
+    }
+
+    Route route = routes.get(new HashKey(hashAlgo, reqIssuer.getData(), from, length));
+    return route == null ? defaultRoute : route;
+  } // method getRoute
+
+}
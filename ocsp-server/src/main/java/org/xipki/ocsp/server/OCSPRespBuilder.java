@@ -19,11 +19,14 @@ import org.xipki.util.Hex;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.Instant;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Generator for OCSP response objects.
+ * <p>
+ * The tbsResponseData is encoded into a buffer reused by the current thread and streamed from
+ * there into the signer, so that only the final response needs to be allocated.
  *
  * @author Lijun Liao (xipki)
  * @since 2.0.0
@@ -33,10 +36,22 @@ public class OCSPRespBuilder {
   private static final byte[] successfulStatus = Hex.decode("0a0100");
   private static final byte[] responseTypeBasic = Hex.decode("06092b0601050507300101");
 
-  private final List<SingleResponse> list = new LinkedList<>();
+  static final int INITIAL_BUFFER_SIZE = 4096;
+
+  // larger buffers are not kept, to limit the memory bound to the threads.
+  static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+  private static final ThreadLocal<byte[]> tbsBuffers = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
+  // most requests contain only one certificate
+  private final List<SingleResponse> list = new ArrayList<>(1);
   private Extensions responseExtensions = null;
   private final ResponderID responderId;
 
+  // durations of the last call of buildOCSPResponse.
+  private long signerWaitNanos;
+  private long signNanos;
+
   /**
    * basic constructor.
    *
@@ -70,15 +85,59 @@ public class OCSPRespBuilder {
     this.responseExtensions = responseExtensions;
   }
 
+  /**
+   * Returns the time waiting for an idle signer in the last call of
+   * {@link #buildOCSPResponse(ConcurrentContentSigner, TaggedCertSequence, Instant)}.
+   *
+   * @return the wait time in nanoseconds.
+   */
+  public long getSignerWaitNanos() {
+    return signerWaitNanos;
+  }
+
+  /**
+   * Returns the time used to sign the response in the last call of
+   * {@link #buildOCSPResponse(ConcurrentContentSigner, TaggedCertSequence, Instant)}.
+   *
+   * @return the signing time in nanoseconds.
+   */
+  public long getSignNanos() {
+    return signNanos;
+  }
+
   public byte[] buildOCSPResponse(
       ConcurrentContentSigner signer, TaggedCertSequence taggedCertSequence, Instant producedAt)
       throws OCSPException, NoIdleSignerException {
+    return buildOCSPResponse(signer, taggedCertSequence, producedAt, -1);
+  }
+
+  /**
+   * Builds the OCSP response.
+   *
+   * @param signer the signer.
+   * @param taggedCertSequence the certificates to be embedded in the response, may be {@code null}.
+   * @param producedAt the producedAt time.
+   * @param signerTimeoutMillis maximal time in milliseconds to wait for an idle signer. If not
+   *          positive, the default timeout of the signer is applied.
+   * @return the encoded OCSP response.
+   * @throws OCSPException if the response could not be built.
+   * @throws NoIdleSignerException if no signer is idle within the timeout.
+   */
+  public byte[] buildOCSPResponse(
+      ConcurrentContentSigner signer, TaggedCertSequence taggedCertSequence, Instant producedAt,
+      int signerTimeoutMillis)
+      throws OCSPException, NoIdleSignerException {
     ResponseData responseData = new ResponseData(0, responderId, producedAt, list, responseExtensions);
 
-    byte[] tbs = new byte[responseData.getEncodedLength()];
+    final int tbsLen = responseData.getEncodedLength();
+    byte[] tbs = getTbsBuffer(tbsLen);
     responseData.write(tbs, 0);
 
-    XiContentSigner signer0 = signer.borrowSigner();
+    long start = System.nanoTime();
+    XiContentSigner signer0 = (signerTimeoutMillis > 0)
+        ? signer.borrowSigner(signerTimeoutMillis) : signer.borrowSigner();
+    long borrowed = System.nanoTime();
+    signerWaitNanos = borrowed - start;
 
     byte[] signature;
     byte[] sigAlgId;
@@ -86,7 +145,7 @@ public class OCSPRespBuilder {
     try {
       OutputStream sigOut = signer0.getOutputStream();
       try {
-        sigOut.write(tbs);
+        sigOut.write(tbs, 0, tbsLen);
         sigOut.close();
       } catch (IOException ex) {
         throw new OCSPException("exception signing TBSRequest: " + ex.getMessage(), ex);
@@ -97,6 +156,7 @@ public class OCSPRespBuilder {
     } finally {
       signer.requiteSigner(signer0);
     }
+    signNanos = System.nanoTime() - borrowed;
 
     // ----- Get the length -----
     // BasicOCSPResponse.signature
@@ -104,7 +164,7 @@ public class OCSPRespBuilder {
     int signatureLen = getLen(signatureBodyLen);
 
     // BasicOCSPResponse
-    int basicResponseBodyLen = tbs.length + sigAlgId.length + signatureLen;
+    int basicResponseBodyLen = tbsLen + sigAlgId.length + signatureLen;
     if (taggedCertSequence != null) {
       basicResponseBodyLen += taggedCertSequence.getEncodedLength();
     }
@@ -144,7 +204,8 @@ public class OCSPRespBuilder {
     // BasicOCSPResponse
     offset += ASN1Type.writeHeader((byte) 0x30, basicResponseBodyLen, out, offset);
     // BasicOCSPResponse.tbsResponseData
-    offset += arraycopy(tbs, out, offset);
+    System.arraycopy(tbs, 0, out, offset, tbsLen);
+    offset += tbsLen;
 
     // BasicOCSPResponse.signatureAlgorithm
     offset += arraycopy(sigAlgId, out, offset);
@@ -160,6 +221,21 @@ public class OCSPRespBuilder {
     return out;
   } // method buildOCSPResponse
 
+  static byte[] getTbsBuffer(int len) {
+    byte[] buffer = tbsBuffers.get();
+    if (buffer.length >= len) {
+      return buffer;
+    }
+
+    if (len > MAX_BUFFER_SIZE) {
+      return new byte[len];
+    }
+
+    buffer = new byte[Math.min(MAX_BUFFER_SIZE, Math.max(len, 2 * buffer.length))];
+    tbsBuffers.set(buffer);
+    return buffer;
+  } // method getTbsBuffer
+
   private static int getLen(int bodyLen) {
     return ASN1Type.getHeaderLen(bodyLen) + bodyLen;
   }
@@ -0,0 +1,332 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server;
+
+import org.xipki.ocsp.server.store.ResponseCacher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the OCSP server, exported in the Prometheus text format.
+ * <p>
+ * All counters and histogram buckets are allocated when the server is initialized, so that
+ * recording a value on the request path does not allocate any object. The counters are
+ * {@link LongAdder}s, which are striped across the threads.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class OcspMetrics {
+
+  /**
+   * Phases of processing an OCSP request.
+   */
+  public enum Phase {
+
+    /**
+     * Parsing of the request without signature.
+     */
+    PARSE("parse"),
+
+    /**
+     * Parsing of the signed request and the verification of its signature.
+     */
+    SIGNATURE_CHECK("signature_check"),
+
+    /**
+     * Retrieval of the certificate status from the stores.
+     */
+    STORE_LOOKUP("store_lookup"),
+
+    /**
+     * Signing of the response, excluding the wait for an idle signer.
+     */
+    SIGN("sign"),
+
+    /**
+     * Encoding of the response.
+     */
+    ENCODE("encode");
+
+    private final String label;
+
+    Phase(String label) {
+      this.label = label;
+    }
+
+  } // class Phase
+
+  /**
+   * Histogram with fixed buckets, in seconds.
+   */
+  public static final class Histogram {
+
+    // upper bounds in seconds: 100us, 250us, 500us, 1ms, 2.5ms, 5ms, 10ms, 25ms, 50ms, 100ms,
+    // 250ms, 500ms, 1s, 2.5s, 5s, 10s
+    private static final double[] BOUNDS = {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01,
+        0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+    static {
+      for (int i = 0; i < BOUNDS.length; i++) {
+        BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1_000_000_000L);
+      }
+    }
+
+    // the last bucket is +Inf.
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    private Histogram() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    public void observe(long nanos) {
+      int i = 0;
+      while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+        i++;
+      }
+      buckets[i].increment();
+      sumNanos.add(nanos);
+    }
+
+    private void write(StringBuilder sb, String name, String labels) {
+      long cumulative = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        cumulative += buckets[i].sum();
+        sb.append(name).append("_bucket{").append(labels).append(",le=\"")
+            .append(i < BOUNDS.length ? Double.toString(BOUNDS[i]) : "+Inf").append("\"} ")
+            .append(cumulative).append('\n');
+      }
+      sb.append(name).append("_sum{").append(labels).append("} ").append(sumNanos.sum() / 1e9).append('\n');
+      sb.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+  } // class Histogram
+
+  /**
+   * Metrics of a responder.
+   */
+  public static final class ResponderMetrics {
+
+    private final String labels;
+
+    private final LongAdder[] responses = new LongAdder[OcspResponseStatus.values().length];
+
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+
+    private final Histogram signerWait = new Histogram();
+
+    private final LongAdder noIdleSigners = new LongAdder();
+
+    private final Histogram admissionWait = new Histogram();
+
+    private final LongAdder shedRequests = new LongAdder();
+
+    private volatile SignerAdmission admission;
+
+    private ResponderMetrics(String name) {
+      this.labels = "responder=\"" + escape(name) + "\"";
+      for (int i = 0; i < responses.length; i++) {
+        responses[i] = new LongAdder();
+      }
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new Histogram();
+      }
+    }
+
+    public void onResponse(OcspResponseStatus status) {
+      responses[status.ordinal()].increment();
+    }
+
+    public void observe(Phase phase, long nanos) {
+      phases[phase.ordinal()].observe(nanos);
+    }
+
+    public void observeSignerWait(long nanos) {
+      signerWait.observe(nanos);
+    }
+
+    public void onNoIdleSigner() {
+      noIdleSigners.increment();
+    }
+
+    public void observeAdmissionWait(long nanos) {
+      admissionWait.observe(nanos);
+    }
+
+    public void onShed() {
+      shedRequests.increment();
+    }
+
+    void setAdmission(SignerAdmission admission) {
+      this.admission = admission;
+    }
+
+  } // class ResponderMetrics
+
+  /**
+   * Path of the metrics endpoint, relative to the context path. Reserved, it cannot be used as
+   * servlet path of a responder.
+   */
+  public static final String PATH = "/metrics";
+
+  private static final String PREFIX = "xipki_ocsp_";
+
+  private final Map<String, ResponderMetrics> responders = new LinkedHashMap<>();
+
+  private final Map<String, Histogram> stores = new LinkedHashMap<>();
+
+  private ResponseCacher responseCacher;
+
+  /**
+   * Registers the responder. Must be called during the initialization of the server.
+   * @param name name of the responder.
+   * @return the metrics of the responder.
+   */
+  ResponderMetrics registerResponder(String name) {
+    return responders.computeIfAbsent(name, ResponderMetrics::new);
+  }
+
+  /**
+   * Registers the store. Must be called during the initialization of the server.
+   * @param name name of the store.
+   */
+  void registerStore(String name) {
+    stores.computeIfAbsent(name, k -> new Histogram());
+  }
+
+  void setResponseCacher(ResponseCacher responseCacher) {
+    this.responseCacher = responseCacher;
+  }
+
+  /**
+   * Records the latency of a query in the given store.
+   * @param storeName name of the store.
+   * @param nanos latency in nanoseconds.
+   */
+  void observeStoreQuery(String storeName, long nanos) {
+    Histogram histogram = stores.get(storeName);
+    if (histogram != null) {
+      histogram.observe(nanos);
+    }
+  }
+
+  /**
+   * Returns the metrics in the Prometheus text format (version 0.0.4).
+   * @return the metrics.
+   */
+  public String toPrometheusText() {
+    StringBuilder sb = new StringBuilder(16 * 1024);
+
+    sb.append("# HELP ").append(PREFIX).append("responses_total Number of OCSP responses.\n");
+    sb.append("# TYPE ").append(PREFIX).append("responses_total counter\n");
+    for (ResponderMetrics rm : responders.values()) {
+      for (OcspResponseStatus status : OcspResponseStatus.values()) {
+        sb.append(PREFIX).append("responses_total{").append(rm.labels).append(",status=\"").append(status.name())
+            .append("\"} ").append(rm.responses[status.ordinal()].sum()).append('\n');
+      }
+    }
+
+    String name = PREFIX + "phase_duration_seconds";
+    sb.append("# HELP ").append(name).append(" Duration of the request processing phases.\n");
+    sb.append("# TYPE ").append(name).append(" histogram\n");
+    for (ResponderMetrics rm : responders.values()) {
+      for (Phase phase : Phase.values()) {
+        rm.phases[phase.ordinal()].write(sb, name, rm.labels + ",phase=\"" + phase.label + "\"");
+      }
+    }
+
+    name = PREFIX + "signer_wait_seconds";
+    sb.append("# HELP ").append(name).append(" Time waiting for an idle signer.\n");
+    sb.append("# TYPE ").append(name).append(" histogram\n");
+    for (ResponderMetrics rm : responders.values()) {
+      rm.signerWait.write(sb, name, rm.labels);
+    }
+
+    name = PREFIX + "no_idle_signer_total";
+    sb.append("# HELP ").append(name).append(" Number of requests rejected as no signer is idle.\n");
+    sb.append("# TYPE ").append(name).append(" counter\n");
+    for (ResponderMetrics rm : responders.values()) {
+      sb.append(name).append('{').append(rm.labels).append("} ").append(rm.noIdleSigners.sum()).append('\n');
+    }
+
+    name = PREFIX + "admission_wait_seconds";
+    sb.append("# HELP ").append(name).append(" Time waiting for the admission to sign.\n");
+    sb.append("# TYPE ").append(name).append(" histogram\n");
+    for (ResponderMetrics rm : responders.values()) {
+      if (rm.admission != null) {
+        rm.admissionWait.write(sb, name, rm.labels);
+      }
+    }
+
+    name = PREFIX + "admission_shed_total";
+    sb.append("# HELP ").append(name).append(" Number of requests shed by the admission control.\n");
+    sb.append("# TYPE ").append(name).append(" counter\n");
+    for (ResponderMetrics rm : responders.values()) {
+      if (rm.admission != null) {
+        sb.append(name).append('{').append(rm.labels).append("} ").append(rm.shedRequests.sum()).append('\n');
+      }
+    }
+
+    name = PREFIX + "admission_queue_depth";
+    sb.append("# HELP ").append(name).append(" Number of requests waiting for the admission to sign.\n");
+    sb.append("# TYPE ").append(name).append(" gauge\n");
+    for (ResponderMetrics rm : responders.values()) {
+      SignerAdmission admission = rm.admission;
+      if (admission != null) {
+        sb.append(name).append('{').append(rm.labels).append("} ").append(admission.getQueueDepth()).append('\n');
+      }
+    }
+
+    name = PREFIX + "admission_in_flight";
+    sb.append("# HELP ").append(name).append(" Number of responses being signed.\n");
+    sb.append("# TYPE ").append(name).append(" gauge\n");
+    for (ResponderMetrics rm : responders.values()) {
+      SignerAdmission admission = rm.admission;
+      if (admission != null) {
+        sb.append(name).append('{').append(rm.labels).append("} ").append(admission.getInFlight()).append('\n');
+      }
+    }
+
+    name = PREFIX + "store_query_duration_seconds";
+    sb.append("# HELP ").append(name).append(" Duration of the certificate status queries.\n");
+    sb.append("# TYPE ").append(name).append(" histogram\n");
+    for (Map.Entry<String, Histogram> entry : stores.entrySet()) {
+      entry.getValue().write(sb, name, "store=\"" + escape(entry.getKey()) + "\"");
+    }
+
+    ResponseCacher cacher = responseCacher;
+    if (cacher != null) {
+      writeCounter(sb, "response_cache_hits_total", "Number of responses found in the cache.",
+          cacher.getNumHits());
+      writeCounter(sb, "response_cache_misses_total", "Number of responses not found in the cache.",
+          cacher.getNumMisses());
+      writeCounter(sb, "response_cache_stores_total", "Number of responses stored in the cache.",
+          cacher.getNumStores());
+      writeCounter(sb, "response_cache_dropped_total",
+          "Number of responses dropped as the write-behind queue is full.", cacher.getNumDroppedResponses());
+    }
+
+    return sb.toString();
+  } // method toPrometheusText
+
+  private static void writeCounter(StringBuilder sb, String name, String help, long value) {
+    sb.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(PREFIX).append(name).append(" counter\n");
+    sb.append(PREFIX).append(name).append(' ').append(value).append('\n');
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+}
@@ -3,6 +3,9 @@
 
 package org.xipki.ocsp.server;
 
+import org.xipki.security.HashAlgo;
+import org.xipki.util.StringUtil;
+
 /**
  * OCSP response with {@link ResponseCacheInfo}.
  *
@@ -40,6 +43,8 @@ public class OcspRespWithCacheInfo {
 
   private final ResponseCacheInfo cacheInfo;
 
+  private volatile String etag;
+
   public OcspRespWithCacheInfo(byte[] response, ResponseCacheInfo cacheInfo) {
     this.response = response;
     this.cacheInfo = cacheInfo;
@@ -53,4 +58,22 @@ public class OcspRespWithCacheInfo {
     return cacheInfo;
   }
 
+  /**
+   * Returns the HTTP ETag of the response. It is computed once and kept with the response, so
+   * that a response served from the cache is not hashed again.
+   * <p>
+   * RFC 5019 6.2: This profile RECOMMENDS that the ETag value be the ASCII HEX representation
+   * of the SHA1 hash of the OCSPResponse structure.
+   *
+   * @return the quoted ETag.
+   */
+  public String getEtag() {
+    String tag = etag;
+    if (tag == null) {
+      tag = StringUtil.concat("\"", HashAlgo.SHA1.hexHash(response), "\"");
+      etag = tag;
+    }
+    return tag;
+  }
+
 }
@@ -16,6 +16,7 @@ import org.bouncycastle.cert.ocsp.OCSPReq;
 import org.bouncycastle.operator.ContentVerifierProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
 import org.xipki.datasource.DataSourceConf;
 import org.xipki.datasource.DataSourceFactory;
 import org.xipki.datasource.DataSourceWrapper;
@@ -56,6 +57,7 @@ import org.xipki.util.Hex;
 import org.xipki.util.IoUtil;
 import org.xipki.util.LogUtil;
 import org.xipki.util.StringUtil;
+import org.xipki.util.Validity;
 import org.xipki.util.exception.InvalidConfException;
 
 import java.io.ByteArrayInputStream;
@@ -67,12 +69,14 @@ import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -80,7 +84,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import static org.xipki.ocsp.server.OcspServerUtil.canBuildCertpath;
+import static org.xipki.ocsp.server.OcspServerUtil.buildCertpath;
 import static org.xipki.ocsp.server.OcspServerUtil.initSigner;
 import static org.xipki.ocsp.server.OcspServerUtil.newStore;
 import static org.xipki.ocsp.server.OcspServerUtil.parseConf;
@@ -121,6 +125,9 @@ public class OcspServer implements Closeable {
 
   private static final Map<OcspResponseStatus, OcspRespWithCacheInfo> unsuccesfulOCSPRespMap;
 
+  // reverse of unsuccesfulOCSPRespMap, to find the status of a response without allocation.
+  private static final Map<OcspRespWithCacheInfo, OcspResponseStatus> unsuccesfulOCSPRespStatusMap;
+
   private static final byte[] encodedAcceptableResponses_Basic;
 
   private final DataSourceFactory datasourceFactory;
@@ -137,6 +144,8 @@ public class OcspServer implements Closeable {
 
   private ResponseCacher responseCacher;
 
+  private ResponsePresigner responsePresigner;
+
   private final Map<String, Responder> responders = new HashMap<>();
 
   private final Map<String, ResponseSigner> signers = new HashMap<>();
@@ -153,10 +162,13 @@ public class OcspServer implements Closeable {
 
   private final AtomicBoolean initialized = new AtomicBoolean(false);
 
+  private volatile OcspMetrics metrics = new OcspMetrics();
+
   static {
     LOG.info("XiPKI OCSP Responder version {}", StringUtil.getBundleVersion(OcspServer.class));
 
     unsuccesfulOCSPRespMap = new HashMap<>(10);
+    unsuccesfulOCSPRespStatusMap = new IdentityHashMap<>(10);
     for (OcspResponseStatus status : OcspResponseStatus.values()) {
       if (status == OcspResponseStatus.successful) {
         continue;
@@ -170,7 +182,9 @@ public class OcspServer implements Closeable {
         throw new ExceptionInInitializerError(
             "could not encode OCSPResp for status " + status + ": " + ex.getMessage());
       }
-      unsuccesfulOCSPRespMap.put(status, new OcspRespWithCacheInfo(encoded, null));
+      OcspRespWithCacheInfo unsuccessfulResp = new OcspRespWithCacheInfo(encoded, null);
+      unsuccesfulOCSPRespMap.put(status, unsuccessfulResp);
+      unsuccesfulOCSPRespStatusMap.put(unsuccessfulResp, status);
     }
 
     ExtendedExtension ext = new ExtendedExtension(OID.ID_PKIX_OCSP_EXTENDEDREVOKE, false, DERNullBytes);
@@ -207,6 +221,10 @@ public class OcspServer implements Closeable {
     return responders.get(Args.notBlank(name, "name"));
   }
 
+  public OcspMetrics getMetrics() {
+    return metrics;
+  }
+
   public boolean isInitialized() {
     return initialized.get();
   }
@@ -239,8 +257,13 @@ public class OcspServer implements Closeable {
     initialized.set(false);
 
     // reset
+    if (responsePresigner != null) {
+      responsePresigner.close();
+      responsePresigner = null;
+    }
     responseCacher = null;
     responders.clear();
+    metrics = new OcspMetrics();
     signers.clear();
 
     requestOptions.clear();
@@ -384,7 +407,22 @@ public class OcspServer implements Closeable {
         throw new InvalidConfException(ex.getMessage(), ex);
       }
       responseCacher = new ResponseCacher(datasource, master, cacheType.validity());
+      OcspServerConf.MemoryCache memoryCacheConf = cacheType.getMemoryCache();
+      if (memoryCacheConf != null) {
+        responseCacher.setMemoryCache(memoryCacheConf.getMaxSize(), memoryCacheConf.maxAge());
+      }
+      OcspServerConf.WriteBehind writeBehindConf = cacheType.getWriteBehind();
+      if (writeBehindConf != null) {
+        responseCacher.setWriteBehind(writeBehindConf.getQueueSize(), writeBehindConf.getBatchSize());
+      }
+      responseCacher.setBinaryResponse(cacheType.isBinaryResponse());
+      try {
+        responseCacher.detectResponseColumnType();
+      } catch (DataAccessException ex) {
+        throw new OcspStoreException("could not detect the type of column OCSP.RESP", ex);
+      }
       responseCacher.init();
+      metrics.setResponseCacher(responseCacher);
     }
 
     //-- initializes the responders
@@ -425,6 +463,7 @@ public class OcspServer implements Closeable {
     for (OcspServerConf.Store m : conf.getStores()) {
       OcspStore store = newStore(m, datasources);
       stores.put(m.getName(), store);
+      metrics.registerStore(m.getName());
     }
 
     // responders
@@ -450,7 +489,7 @@ public class OcspServer implements Closeable {
       }
 
       Responder responder = new Responder(option, requestOptions.get(option.getRequestOptionName()),
-              responseOption, signer, statusStores);
+              responseOption, signer, statusStores, metrics.registerResponder(name));
       responders.put(name, responder);
     } // end for
 
@@ -472,6 +511,44 @@ public class OcspServer implements Closeable {
     tmpList.sort((o1, o2) -> o2.length() - o1.length());
     this.servletPaths.clear();
     this.servletPaths.addAll(tmpList);
+
+    // pre-signing of responses
+    OcspServerConf.Presign presignConf = cacheType == null ? null : cacheType.getPresign();
+    if (presignConf != null) {
+      if (!master) {
+        LOG.warn("pre-signing of responses is ignored in slave mode");
+      } else {
+        List<HashAlgo> presignHashAlgos = new ArrayList<>(presignConf.getHashAlgorithms().size());
+        for (String name : presignConf.getHashAlgorithms()) {
+          try {
+            presignHashAlgos.add(HashAlgo.getInstance(name));
+          } catch (NoSuchAlgorithmException ex) {
+            throw new InvalidConfException("invalid hash algorithm '" + name + "' for pre-signing");
+          }
+        }
+
+        List<Responder> presignResponders = new ArrayList<>(presignConf.getResponders().size());
+        for (String name : presignConf.getResponders()) {
+          Responder responder = responders.get(name);
+          if (responder == null) {
+            throw new InvalidConfException("no responder named '" + name + "' is defined");
+          }
+
+          if (presignHashAlgos.stream().noneMatch(responder.getRequestOption()::allows)) {
+            throw new InvalidConfException("none of the hash algorithms " + presignHashAlgos
+                + " for pre-signing is allowed by responder '" + name + "'");
+          }
+          presignResponders.add(responder);
+        }
+
+        long validity = cacheType.validity().approxMinutes() * 60;
+        long interval = presignConf.getInterval() == null ? validity / 2
+            : Validity.getInstance(presignConf.getInterval()).approxMinutes() * 60;
+        responsePresigner = new ResponsePresigner(this, responseCacher, presignResponders, presignHashAlgos,
+            presignConf.getThreads(), interval, presignConf.updateInterval().approxMinutes() * 60);
+        responsePresigner.init();
+      }
+    }
   } // method init0
 
   private Map<String, ResponderOption> getResponderOptionMap(OcspServerConf conf) throws InvalidConfException {
@@ -503,6 +580,11 @@ public class OcspServer implements Closeable {
   @Override
   public void close() {
     LOG.info("stopped OCSP Responder");
+    if (responsePresigner != null) {
+      responsePresigner.close();
+      responsePresigner = null;
+    }
+
     if (responseCacher != null) {
       responseCacher.close();
     }
@@ -517,11 +599,22 @@ public class OcspServer implements Closeable {
   } // method close
 
   public OcspRespWithCacheInfo answer(Responder responder, byte[] request, boolean viaGet) {
+    OcspRespWithCacheInfo resp = answer0(responder, request, viaGet);
+    OcspResponseStatus status = unsuccesfulOCSPRespStatusMap.get(resp);
+    responder.getMetrics().onResponse(status == null ? OcspResponseStatus.successful : status);
+    return resp;
+  } // method answer
+
+  private OcspRespWithCacheInfo answer0(Responder responder, byte[] request, boolean viaGet) {
+    long start = System.nanoTime();
+    OcspMetrics.ResponderMetrics responderMetrics = responder.getMetrics();
     RequestOption reqOpt = responder.getRequestOption();
 
     int version;
+    boolean signed;
     try {
       version = OcspRequest.readRequestVersion(request);
+      signed = reqOpt.isValidateSignature() && OcspRequest.containsSignature(request);
     } catch (EncodingException ex) {
       String message = "could not extract version from request";
       LOG.warn(message);
@@ -538,7 +631,9 @@ public class OcspServer implements Closeable {
     OcspServerConf.ResponseOption repOpt = responder.getResponseOption();
 
     try {
-      Object reqOrErrorResp = checkSignature(request, reqOpt);
+      Object reqOrErrorResp = checkSignature(request, signed, reqOpt);
+      responderMetrics.observe(signed ? OcspMetrics.Phase.SIGNATURE_CHECK : OcspMetrics.Phase.PARSE,
+          System.nanoTime() - start);
       if (reqOrErrorResp instanceof OcspRespWithCacheInfo) {
         // error
         return (OcspRespWithCacheInfo) reqOrErrorResp;
@@ -563,18 +658,18 @@ public class OcspServer implements Closeable {
 
       if (!license.grantAllCAs()) {
         for (CertID cid : requestList) {
-          for (OcspStore store : responder.getStores()) {
-            X509Cert caCert = store.getIssuerCert(cid.getIssuer());
-            if (caCert == null) {
-              continue;
-            }
-
-            String issuerSubject = caCert.getSubjectText();
-            boolean granted = license.grant(issuerSubject);
+          IssuerRouting.Route route = responder.getIssuerRoute(cid.getIssuer());
+          boolean granted = grant(route.getIssuerCert());
+          // stores which do not list their issuers
+          for (OcspStore store : route.getUnlistedStores()) {
             if (!granted) {
-              LOG.error("Not granted for CA {}, need new license", issuerSubject);
-              return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
+              break;
             }
+            granted = grant(store.getIssuerCert(cid.getIssuer()));
+          }
+
+          if (!granted) {
+            return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
           }
         }
       }
@@ -691,6 +786,7 @@ public class OcspServer implements Closeable {
       }
 
       SignAlgo cacheDbSigAlg = null;
+      HashAlgo cacheDbHashAlgo = null;
       BigInteger cacheDbSerialNumber = null;
       IssuerEntry cacheDbIssuer = null;
 
@@ -707,13 +803,13 @@ public class OcspServer implements Closeable {
         }
 
         cacheDbSigAlg = concurrentSigner.getAlgorithm();
+        cacheDbHashAlgo = reqHashAlgo;
 
         cacheDbIssuer = responseCacher.getIssuer(certId.getIssuer());
-        cacheDbSerialNumber = certId.getSerialNumber();
 
         if (cacheDbIssuer != null) {
-          OcspRespWithCacheInfo cachedResp = responseCacher.getOcspResponse(
-              cacheDbIssuer.getId(), cacheDbSerialNumber, cacheDbSigAlg);
+          OcspRespWithCacheInfo cachedResp = responseCacher.getOcspResponse(cacheDbIssuer.getId(),
+              certId.getSerialData(), certId.getSerialFrom(), certId.getSerialLength(), cacheDbHashAlgo, cacheDbSigAlg);
           if (cachedResp != null) {
             if (license.grant(cacheDbIssuer.getCert().getSubjectText())) {
               return cachedResp;
@@ -724,11 +820,14 @@ public class OcspServer implements Closeable {
           }
         } else if (master) {
           // store the issuer certificate in cache database.
-          X509Cert issuerCert = null;
-          for (OcspStore store : responder.getStores()) {
-            issuerCert = store.getIssuerCert(certId.getIssuer());
-            if (issuerCert != null) {
-              break;
+          IssuerRouting.Route route = responder.getIssuerRoute(certId.getIssuer());
+          X509Cert issuerCert = route.getIssuerCert();
+          if (issuerCert == null) {
+            for (OcspStore store : route.getStores()) {
+              issuerCert = store.getIssuerCert(certId.getIssuer());
+              if (issuerCert != null) {
+                break;
+              }
             }
           }
 
@@ -739,17 +838,31 @@ public class OcspServer implements Closeable {
 
         if (cacheDbIssuer == null) {
           canCacheDb = false;
+        } else {
+          cacheDbSerialNumber = certId.getSerialNumber();
         }
       }
 
       ResponderID responderId = signer.getResponderId(repOpt.isResponderIdByName());
       OCSPRespBuilder builder = new OCSPRespBuilder(responderId);
 
+      // shed the request before querying the stores if it would not be admitted to sign.
+      SignerAdmission admission = responder.getAdmission();
+      if (admission != null && admission.isSaturated()) {
+        responderMetrics.onShed();
+        return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
+      }
+
+      long storeLookupStart = System.nanoTime();
+      // retrieve the status of all certificates with one query per issuer and store
+      Map<OcspStore, Map<RequestIssuer, Map<BigInteger, CertStatusInfo>>> prefetchedStatuses =
+          (requestsSize > 1) ? prefetchCertStatuses(requestList, responder, repOpt) : null;
+
       boolean unknownAsRevoked = false;
       AtomicBoolean unknownAsRevoked0 = new AtomicBoolean(false);
       for (CertID certID : requestList) {
-        OcspRespWithCacheInfo failureOcspResp = processCertReq(
-                unknownAsRevoked0, certID, builder, responder, reqOpt, repOpt, repControl);
+        OcspRespWithCacheInfo failureOcspResp = processCertReq(unknownAsRevoked0, certID, builder,
+            responder, reqOpt, repOpt, repControl, prefetchedStatuses);
 
         if (failureOcspResp != null) {
           return failureOcspResp;
@@ -760,6 +873,8 @@ public class OcspServer implements Closeable {
         }
       }
 
+      responderMetrics.observe(OcspMetrics.Phase.STORE_LOOKUP, System.nanoTime() - storeLookupStart);
+
       if (unknownAsRevoked && repControl.includeExtendedRevokeExtension) {
         respExtensions.add(extension_pkix_ocsp_extendedRevoke);
       }
@@ -768,28 +883,50 @@ public class OcspServer implements Closeable {
         builder.setResponseExtensions(new Extensions(respExtensions));
       }
 
-      EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
-      TaggedCertSequence certsInResp = (certsMode == EmbedCertsMode.SIGNER) ? signer.getSequenceOfCert()
-          : (certsMode == EmbedCertsMode.NONE) ? null
-          : signer.getSequenceOfCertChain(); // certsMode == EmbedCertsMode.SIGNER_AND_CA
+      TaggedCertSequence certsInResp = getCertsInResp(signer, repOpt);
 
       Instant producedAt = Instant.now();
+      int signerTimeoutMillis = -1;
+      if (admission != null) {
+        long waitNanos = admission.acquire();
+        if (waitNanos < 0) {
+          responderMetrics.onShed();
+          return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
+        }
+        responderMetrics.observeAdmissionWait(waitNanos);
+        // the remaining wait time, at least 1 ms
+        signerTimeoutMillis = (int) Math.max(1, admission.getMaxWaitMillis() - waitNanos / 1_000_000);
+      }
+
       byte[] encodeOcspResponse;
+      long buildStart = System.nanoTime();
       try {
-        encodeOcspResponse = builder.buildOCSPResponse(concurrentSigner, certsInResp, producedAt);
+        encodeOcspResponse = builder.buildOCSPResponse(concurrentSigner, certsInResp, producedAt, signerTimeoutMillis);
       } catch (NoIdleSignerException ex) {
+        responderMetrics.observeSignerWait(System.nanoTime() - buildStart);
+        responderMetrics.onNoIdleSigner();
         return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
       } catch (OCSPException ex) {
         LogUtil.error(LOG, ex, "answer() basicOcspBuilder.build");
         return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
+      } finally {
+        if (admission != null) {
+          admission.release();
+        }
       }
 
+      long signerWaitNanos = builder.getSignerWaitNanos();
+      long signNanos = builder.getSignNanos();
+      responderMetrics.observeSignerWait(signerWaitNanos);
+      responderMetrics.observe(OcspMetrics.Phase.SIGN, signNanos);
+      responderMetrics.observe(OcspMetrics.Phase.ENCODE, System.nanoTime() - buildStart - signerWaitNanos - signNanos);
+
       long producedAtSeconds = producedAt.getEpochSecond();
       // cache response in database
       if (canCacheDb && repControl.canCacheInfo) {
         // Don't cache the response with status UNKNOWN, since this may result in DDoS
         // of storage
-        responseCacher.storeOcspResponse(cacheDbIssuer.getId(), cacheDbSerialNumber,
+        responseCacher.storeOcspResponse(cacheDbIssuer.getId(), cacheDbSerialNumber, cacheDbHashAlgo,
             producedAtSeconds, repControl.cacheNextUpdate, cacheDbSigAlg, encodeOcspResponse);
       }
 
@@ -806,11 +943,133 @@ public class OcspServer implements Closeable {
       LogUtil.error(LOG, th);
       return unsuccesfulOCSPRespMap.get(OcspResponseStatus.internalError);
     }
-  } // method ask
+  } // method answer0
+
+  /**
+   * Generates the response for the given certificate and stores it in the response cache.
+   * Only responses which may be cached (e.g. status good or revoked) are generated. The signing
+   * is subject to the admission control of the responder, if configured.
+   *
+   * @param responder the responder.
+   * @param cacheIssuer the issuer in the response cache.
+   * @param reqIssuer the issuer used in the CertID.
+   * @param serialNumber the serial number of the certificate.
+   * @return whether the response has been generated and stored. {@code false} if not cacheable,
+   *         or not admitted to sign.
+   * @throws NoIdleSignerException if no idle signer is available.
+   * @throws OCSPException if the response could not be built.
+   */
+  boolean presign(Responder responder, IssuerEntry cacheIssuer, RequestIssuer reqIssuer, BigInteger serialNumber)
+      throws NoIdleSignerException, OCSPException {
+    if (responseCacher == null || !responseCacher.isOnService()) {
+      return false;
+    }
+
+    ResponseSigner signer = responder.getSigner();
+    OcspServerConf.ResponseOption repOpt = responder.getResponseOption();
+
+    OcspRespControl repControl = new OcspRespControl();
+    repControl.canCacheInfo = true;
+
+    OCSPRespBuilder builder = new OCSPRespBuilder(signer.getResponderId(repOpt.isResponderIdByName()));
+    OcspRespWithCacheInfo failureOcspResp = processCertReq(new AtomicBoolean(false),
+        new CertID(reqIssuer, serialNumber), builder, responder, responder.getRequestOption(), repOpt,
+        repControl, null);
+    if (failureOcspResp != null || !repControl.canCacheInfo) {
+      return false;
+    }
+
+    SignerAdmission admission = responder.getAdmission();
+    int signerTimeoutMillis = -1;
+    if (admission != null) {
+      long waitNanos = admission.acquire();
+      if (waitNanos < 0) {
+        return false;
+      }
+      signerTimeoutMillis = (int) Math.max(1, admission.getMaxWaitMillis() - waitNanos / 1_000_000);
+    }
+
+    ConcurrentContentSigner concurrentSigner = signer.getFirstSigner();
+    Instant producedAt = Instant.now();
+    byte[] encodedOcspResponse;
+    try {
+      encodedOcspResponse = builder.buildOCSPResponse(
+          concurrentSigner, getCertsInResp(signer, repOpt), producedAt, signerTimeoutMillis);
+    } finally {
+      if (admission != null) {
+        admission.release();
+      }
+    }
+
+    responseCacher.storeOcspResponse(cacheIssuer.getId(), serialNumber, reqIssuer.hashAlgorithm(),
+        producedAt.getEpochSecond(), repControl.cacheNextUpdate, concurrentSigner.getAlgorithm(), encodedOcspResponse);
+    return true;
+  } // method presign
+
+  private static TaggedCertSequence getCertsInResp(ResponseSigner signer, OcspServerConf.ResponseOption repOpt) {
+    EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
+    return (certsMode == EmbedCertsMode.SIGNER) ? signer.getSequenceOfCert()
+        : (certsMode == EmbedCertsMode.NONE) ? null
+        : signer.getSequenceOfCertChain(); // certsMode == EmbedCertsMode.SIGNER_AND_CA
+  }
+
+  private boolean grant(X509Cert caCert) {
+    if (caCert == null) {
+      return true;
+    }
+
+    String issuerSubject = caCert.getSubjectText();
+    boolean granted = license.grant(issuerSubject);
+    if (!granted) {
+      LOG.error("Not granted for CA {}, need new license", issuerSubject);
+    }
+    return granted;
+  } // method grant
+
+  /**
+   * Retrieves the status of the requested certificates, grouped by the issuer, from each store
+   * knowing the issuer. Failures are not reported here, the affected certificates will be looked
+   * up individually in {@link #processCertReq}.
+   */
+  private Map<OcspStore, Map<RequestIssuer, Map<BigInteger, CertStatusInfo>>> prefetchCertStatuses(
+      List<CertID> requestList, Responder responder, OcspServerConf.ResponseOption repOpt) {
+    Map<RequestIssuer, List<BigInteger>> serialsByIssuer = new HashMap<>();
+    for (CertID certId : requestList) {
+      serialsByIssuer.computeIfAbsent(certId.getIssuer(), k -> new ArrayList<>()).add(certId.getSerialNumber());
+    }
+
+    Map<OcspStore, Map<RequestIssuer, Map<BigInteger, CertStatusInfo>>> ret = new HashMap<>();
+    Instant now = Instant.now();
+    for (Entry<RequestIssuer, List<BigInteger>> entry : serialsByIssuer.entrySet()) {
+      RequestIssuer reqIssuer = entry.getKey();
+      for (OcspStore store : responder.getIssuerRoute(reqIssuer).getStores()) {
+        if (!store.knowsIssuer(reqIssuer)) {
+          continue;
+        }
+
+        try {
+          long queryStart = System.nanoTime();
+          Map<BigInteger, CertStatusInfo> statuses = store.getCertStatuses(now, reqIssuer, entry.getValue(),
+              repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
+              responder.getResponderOption().isInheritCaRevocation());
+          metrics.observeStoreQuery(store.getName(), System.nanoTime() - queryStart);
+          if (statuses != null) {
+            ret.computeIfAbsent(store, k -> new HashMap<>()).put(reqIssuer, statuses);
+            // as in processCertReq, the first store returning the status wins.
+            break;
+          }
+        } catch (OcspStoreException ex) {
+          LogUtil.warn(LOG, ex, "getCertStatuses() of CertStatusStore " + store.getName());
+        }
+      }
+    }
+    return ret;
+  } // method prefetchCertStatuses
 
   private OcspRespWithCacheInfo processCertReq(
       AtomicBoolean unknownAsRevoked, CertID certId, OCSPRespBuilder builder, Responder responder,
-      RequestOption reqOpt, OcspServerConf.ResponseOption repOpt, OcspRespControl repControl) {
+      RequestOption reqOpt, OcspServerConf.ResponseOption repOpt, OcspRespControl repControl,
+      Map<OcspStore, Map<RequestIssuer, Map<BigInteger, CertStatusInfo>>> prefetchedStatuses) {
     HashAlgo reqHashAlgo = certId.getIssuer().hashAlgorithm();
     if (!reqOpt.allows(reqHashAlgo)) {
       LOG.warn("CertID.hashAlgorithm {} not allowed", reqHashAlgo);
@@ -824,15 +1083,25 @@ public class OcspServer implements Closeable {
 
     RequestIssuer reqIssuer = certId.getIssuer();
     Instant now = Instant.now();
-    for (OcspStore store : responder.getStores()) {
+    for (OcspStore store : responder.getIssuerRoute(reqIssuer).getStores()) {
       if (!store.knowsIssuer(reqIssuer)) {
         continue;
       }
 
       try {
-        certStatusInfo = store.getCertStatus(now, certId.getIssuer(), serial,
-            repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
-            responder.getResponderOption().isInheritCaRevocation());
+        Map<RequestIssuer, Map<BigInteger, CertStatusInfo>> storeStatuses =
+            (prefetchedStatuses == null) ? null : prefetchedStatuses.get(store);
+        Map<BigInteger, CertStatusInfo> issuerStatuses = (storeStatuses == null) ? null : storeStatuses.get(reqIssuer);
+
+        if (issuerStatuses != null && issuerStatuses.containsKey(serial)) {
+          certStatusInfo = issuerStatuses.get(serial);
+        } else {
+          long queryStart = System.nanoTime();
+          certStatusInfo = store.getCertStatus(now, certId.getIssuer(), serial,
+              repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
+              responder.getResponderOption().isInheritCaRevocation());
+          metrics.observeStoreQuery(store.getName(), System.nanoTime() - queryStart);
+        }
 
         if (certStatusInfo != null) {
           CertStatus status = certStatusInfo.getCertStatus();
@@ -989,16 +1258,20 @@ public class OcspServer implements Closeable {
     return responder.getSigner().isHealthy();
   } // method healthCheck
 
-  private Object checkSignature(byte[] request, RequestOption requestOption)
+  /**
+   * Parses the request and verifies its signature.
+   * @param request the encoded request.
+   * @param signed whether the signature of the request needs to be verified, i.e. the request
+   *        is signed and the signature validation is activated.
+   * @param requestOption the request option.
+   * @return the parsed {@link OcspRequest}, or the {@link OcspRespWithCacheInfo} of the failure.
+   */
+  private Object checkSignature(byte[] request, boolean signed, RequestOption requestOption)
       throws OCSPException {
     OCSPRequest req;
     try {
-      if (!requestOption.isValidateSignature()) {
-        return OcspRequest.getInstance(request);
-      }
-
-      if (!OcspRequest.containsSignature(request)) {
-        if (requestOption.isSignatureRequired()) {
+      if (!signed) {
+        if (requestOption.isValidateSignature() && requestOption.isSignatureRequired()) {
           LOG.warn("signature in request required");
           return unsuccesfulOCSPRespMap.get(OcspResponseStatus.sigRequired);
         } else {
@@ -1022,6 +1295,31 @@ public class OcspServer implements Closeable {
       return unsuccesfulOCSPRespMap.get(OcspResponseStatus.unauthorized);
     }
 
+    Instant referenceTime = Instant.now();
+
+    // requestors whose certpath has been validated need only the signature check
+    RequestorCertCache certCache = requestOption.getRequestorCertCache();
+    String certFp;
+    try {
+      certFp = HashAlgo.SHA256.base64Hash(bcCerts[0].getEncoded());
+    } catch (IOException ex) {
+      return unsuccesfulOCSPRespMap.get(OcspResponseStatus.malformedRequest);
+    }
+
+    RequestorCertCache.Entry cacheEntry = certCache.get(certFp, referenceTime);
+    if (cacheEntry != null) {
+      if (!ocspReq.isSignatureValid(cacheEntry.getVerifierProvider())) {
+        LOG.warn("request signature is invalid");
+        return unsuccesfulOCSPRespMap.get(OcspResponseStatus.unauthorized);
+      }
+
+      try {
+        return OcspRequest.getInstance(req);
+      } catch (EncodingException ex) {
+        return unsuccesfulOCSPRespMap.get(OcspResponseStatus.malformedRequest);
+      }
+    }
+
     X509Cert[] certs = new X509Cert[bcCerts.length];
     for (int i = 0; i < certs.length; i++) {
       certs[i] = new X509Cert(bcCerts[i]);
@@ -1042,8 +1340,10 @@ public class OcspServer implements Closeable {
     }
 
     // validate the certPath
-    Instant referenceTime = Instant.now();
-    if (canBuildCertpath(certs, requestOption, referenceTime)) {
+    X509Cert[] certpath = buildCertpath(certs, requestOption, referenceTime);
+    if (certpath != null) {
+      certCache.put(certFp,
+          RequestorCertCache.Entry.newInstance(cvp, certpath, requestOption.getCertpathValidationModel()));
       try {
         return OcspRequest.getInstance(req);
       } catch (EncodingException ex) {
@@ -16,6 +16,7 @@ import org.xipki.util.exception.InvalidConfException;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -278,6 +279,7 @@ public class OcspServerConf extends ValidableConf {
      * To answer OCSP request via URI http://myorg.com/foo/abc, you can use the combination
      * (servlet.alias = '/', servletPath = '/foo/abc') or
      * (servlet.alias = '/foo', servletPath = '/abc').
+     * The path /metrics and the paths under it are reserved for the metrics endpoint.
      */
     private List<String> servletPaths;
 
@@ -301,6 +303,12 @@ public class OcspServerConf extends ValidableConf {
 
     private String name;
 
+    /**
+     * Admission control of the signing. If not present, the requests are signed as soon as they
+     * arrive, and fail with tryLater if no signer is idle.
+     */
+    private Admission admission;
+
     public List<String> getServletPaths() {
       if (servletPaths == null) {
         servletPaths = new LinkedList<>();
@@ -371,6 +379,14 @@ public class OcspServerConf extends ValidableConf {
       this.name = name;
     }
 
+    public Admission getAdmission() {
+      return admission;
+    }
+
+    public void setAdmission(Admission admission) {
+      this.admission = admission;
+    }
+
     @Override
     public void validate() throws InvalidConfException {
       notEmpty(servletPaths, "servletPaths");
@@ -379,16 +395,274 @@ public class OcspServerConf extends ValidableConf {
       notBlank(response, "response");
       notEmpty(stores, "stores");
       notBlank(name, "name");
+      validate(admission);
     }
 
   } // class Responder
 
+  public static class Admission extends ValidableConf {
+
+    /**
+     * Maximal number of responses of the responder signed concurrently.
+     */
+    private int maxConcurrency;
+
+    /**
+     * Maximal number of requests waiting to be signed. If the queue is full, further requests
+     * will be answered with tryLater without querying the stores. The default is 100.
+     */
+    private int maxQueueSize = 100;
+
+    /**
+     * Maximal time in milliseconds a request waits to be signed, including the wait for an
+     * idle signer. The default is 1000.
+     */
+    private int maxWaitMillis = 1000;
+
+    public int getMaxConcurrency() {
+      return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+      this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxQueueSize() {
+      return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+      this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMaxWaitMillis() {
+      return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(int maxWaitMillis) {
+      this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (maxConcurrency < 1) {
+        throw new InvalidConfException("maxConcurrency must be positive, but is " + maxConcurrency);
+      }
+
+      if (maxQueueSize < 0) {
+        throw new InvalidConfException("maxQueueSize must not be negative, but is " + maxQueueSize);
+      }
+
+      if (maxWaitMillis < 1) {
+        throw new InvalidConfException("maxWaitMillis must be positive, but is " + maxWaitMillis);
+      }
+    }
+
+  } // class Admission
+
+  public static class MemoryCache extends ValidableConf {
+
+    /**
+     * Maximal number of responses kept in memory. The default is 10000.
+     */
+    private int maxSize = 10000;
+
+    /**
+     * Maximal age of a response kept in memory. The default is 10 minutes.
+     */
+    private String maxAge;
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public String getMaxAge() {
+      return maxAge;
+    }
+
+    public void setMaxAge(String maxAge) {
+      this.maxAge = maxAge;
+    }
+
+    public Validity maxAge() {
+      return maxAge == null ? new Validity(10, Unit.MINUTE) : Validity.getInstance(maxAge);
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (maxSize < 1) {
+        throw new InvalidConfException("maxSize must be positive, but is " + maxSize);
+      }
+    }
+
+  } // class MemoryCache
+
+  public static class Presign extends ValidableConf {
+
+    /**
+     * Names of the responders whose responses will be pre-signed.
+     */
+    private List<String> responders;
+
+    /**
+     * Number of threads to sign the responses. The default is 4.
+     */
+    private int threads = 4;
+
+    /**
+     * Interval to pre-sign the responses of all certificates. The default is the half of the
+     * validity of the response cache.
+     */
+    private String interval;
+
+    /**
+     * Interval to pre-sign the responses of certificates changed since the last run.
+     * The default is 10 minutes.
+     */
+    private String updateInterval;
+
+    /**
+     * Hash algorithms of the CertID for which the responses are pre-signed, as far as allowed by
+     * the request option of the responder. The response cache distinguishes the responses by the
+     * hash algorithm of the CertID. The default is SHA1 and SHA256.
+     */
+    private List<String> hashAlgorithms;
+
+    public List<String> getResponders() {
+      if (responders == null) {
+        responders = new LinkedList<>();
+      }
+      return responders;
+    }
+
+    public void setResponders(List<String> responders) {
+      this.responders = responders;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+
+    public String getInterval() {
+      return interval;
+    }
+
+    public void setInterval(String interval) {
+      this.interval = interval;
+    }
+
+    public String getUpdateInterval() {
+      return updateInterval;
+    }
+
+    public void setUpdateInterval(String updateInterval) {
+      this.updateInterval = updateInterval;
+    }
+
+    public Validity updateInterval() {
+      return updateInterval == null ? new Validity(10, Unit.MINUTE) : Validity.getInstance(updateInterval);
+    }
+
+    public List<String> getHashAlgorithms() {
+      if (hashAlgorithms == null) {
+        hashAlgorithms = new LinkedList<>(Arrays.asList("SHA1", "SHA256"));
+      }
+      return hashAlgorithms;
+    }
+
+    public void setHashAlgorithms(List<String> hashAlgorithms) {
+      this.hashAlgorithms = hashAlgorithms;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      notEmpty(responders, "responders");
+      if (threads < 1) {
+        throw new InvalidConfException("threads must be positive, but is " + threads);
+      }
+    }
+
+  } // class Presign
+
+  public static class WriteBehind extends ValidableConf {
+
+    /**
+     * Maximal number of responses waiting to be written to the database. If the queue is full,
+     * further responses will not be written. The default is 10000.
+     */
+    private int queueSize = 10000;
+
+    /**
+     * Maximal number of responses written in one JDBC batch. The default is 100.
+     */
+    private int batchSize = 100;
+
+    public int getQueueSize() {
+      return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+      this.queueSize = queueSize;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (queueSize < 1) {
+        throw new InvalidConfException("queueSize must be positive, but is " + queueSize);
+      }
+
+      if (batchSize < 1) {
+        throw new InvalidConfException("batchSize must be positive, but is " + batchSize);
+      }
+    }
+
+  } // class WriteBehind
+
   public static class ResponseCache extends ValidableConf {
 
     private DataSourceConf datasource;
 
     private String validity;
 
+    /**
+     * In-memory cache in front of the database. If not present, no in-memory cache will be used.
+     */
+    private MemoryCache memoryCache;
+
+    /**
+     * Pre-signing of responses. If not present, responses will be signed only on request.
+     */
+    private Presign presign;
+
+    /**
+     * Asynchronous writing of the responses to the database. If not present, responses will be
+     * written by the thread which has generated them.
+     */
+    private WriteBehind writeBehind;
+
+    /**
+     * Whether the column OCSP.RESP contains the DER-encoded response instead of its Base64 encoding.
+     * If true, the column must be of a binary type, e.g. VARBINARY(3000) or BLOB. The default is false.
+     * The type of the column is detected at startup and overrides this setting if they do not match.
+     */
+    private boolean binaryResponse;
+
     public DataSourceConf getDatasource() {
       return datasource;
     }
@@ -409,9 +683,42 @@ public class OcspServerConf extends ValidableConf {
       return validity == null ? new Validity(1, Unit.DAY) : Validity.getInstance(validity);
     }
 
+    public MemoryCache getMemoryCache() {
+      return memoryCache;
+    }
+
+    public void setMemoryCache(MemoryCache memoryCache) {
+      this.memoryCache = memoryCache;
+    }
+
+    public Presign getPresign() {
+      return presign;
+    }
+
+    public void setPresign(Presign presign) {
+      this.presign = presign;
+    }
+
+    public WriteBehind getWriteBehind() {
+      return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+      this.writeBehind = writeBehind;
+    }
+
+    public boolean isBinaryResponse() {
+      return binaryResponse;
+    }
+
+    public void setBinaryResponse(boolean binaryResponse) {
+      this.binaryResponse = binaryResponse;
+    }
+
     @Override
     public void validate() throws InvalidConfException {
       notNull(datasource, "datasource");
+      validate(memoryCache, presign, writeBehind);
     }
 
   } // class ResponseCache
@@ -716,6 +1023,12 @@ public class OcspServerConf extends ValidableConf {
 
     private String datasource;
 
+    /**
+     * Names of the datasources of the read replicas, to which the certificate status queries
+     * are routed. Optional, supported only by the database based stores.
+     */
+    private List<String> readDatasources;
+
     private Map<String, ?> conf;
 
     public String getType() {
@@ -734,6 +1047,14 @@ public class OcspServerConf extends ValidableConf {
       this.datasource = value;
     }
 
+    public List<String> getReadDatasources() {
+      return readDatasources;
+    }
+
+    public void setReadDatasources(List<String> readDatasources) {
+      this.readDatasources = readDatasources;
+    }
+
     public Map<String, ?> getConf() {
       return conf;
     }
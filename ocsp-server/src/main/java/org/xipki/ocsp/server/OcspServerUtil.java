@@ -11,6 +11,7 @@ import org.xipki.ocsp.api.OcspStoreException;
 import org.xipki.ocsp.server.store.CaDbCertStatusStore;
 import org.xipki.ocsp.server.store.CrlDbCertStatusStore;
 import org.xipki.ocsp.server.store.DbCertStatusStore;
+import org.xipki.ocsp.server.store.RevocationIndexCertStatusStore;
 import org.xipki.ocsp.server.store.ejbca.EjbcaCertStatusStore;
 import org.xipki.ocsp.server.type.ExtendedExtension;
 import org.xipki.ocsp.server.type.OID;
@@ -57,6 +58,8 @@ public class OcspServerUtil {
 
   private static final String STORE_TYPE_XIPKI_DB = "xipki-db";
 
+  private static final String STORE_TYPE_XIPKI_DB_INDEX = "xipki-db-index";
+
   private static final String STORE_TYPE_XIPKI_CA_DB = "xipki-ca-db";
 
   private static final String STORE_TYPE_CRL = "crl";
@@ -155,6 +158,8 @@ public class OcspServerUtil {
         throw new ObjectCreationException("OCSP store type is not specified");
       } else if (STORE_TYPE_XIPKI_DB.equals(type)) {
         store = new DbCertStatusStore();
+      } else if (STORE_TYPE_XIPKI_DB_INDEX.equals(type)) {
+        store = new RevocationIndexCertStatusStore();
       } else if (STORE_TYPE_CRL.equals(type)) {
         store = new CrlDbCertStatusStore();
       } else if (STORE_TYPE_XIPKI_CA_DB.equals(type)) {
@@ -203,6 +208,20 @@ public class OcspServerUtil {
       datasource = Optional.ofNullable(datasources.get(datasourceName)).orElseThrow(() ->
         new InvalidConfException("datasource named '" + datasourceName + "' not defined"));
     }
+
+    List<String> readDatasourceNames = conf.getSource().getReadDatasources();
+    if (CollectionUtil.isNotEmpty(readDatasourceNames)) {
+      if (!(store instanceof DbCertStatusStore)) {
+        throw new InvalidConfException("readDatasources is not supported by store " + conf.getName());
+      }
+
+      List<DataSourceWrapper> readDatasources = new ArrayList<>(readDatasourceNames.size());
+      for (String name : readDatasourceNames) {
+        readDatasources.add(Optional.ofNullable(datasources.get(name)).orElseThrow(() ->
+            new InvalidConfException("datasource named '" + name + "' not defined")));
+      }
+      ((DbCertStatusStore) store).setReadDatasources(readDatasources);
+    }
     try {
       Map<String, ?> sourceConf = conf.getSource().getConf();
       store.init(sourceConf, datasource);
@@ -213,7 +232,14 @@ public class OcspServerUtil {
     return store;
   } // method newStore
 
-  static boolean canBuildCertpath(X509Cert[] certsInReq, RequestOption requestOption, Instant referenceTime) {
+  /**
+   * Builds and validates the certification path of the requestor certificate.
+   * @param certsInReq certificates in the request, the first one is the requestor certificate.
+   * @param requestOption the request option.
+   * @param referenceTime the reference time.
+   * @return the validated certification path, or {@code null} if no valid path can be built.
+   */
+  static X509Cert[] buildCertpath(X509Cert[] certsInReq, RequestOption requestOption, Instant referenceTime) {
     X509Cert target = certsInReq[0];
 
     Set<X509Cert> trustanchors = requestOption.getTrustanchors();
@@ -229,7 +255,7 @@ public class OcspServerUtil {
       certpath = X509Util.buildCertPath(target, certstore);
     } catch (CertPathBuilderException ex) {
       LogUtil.warn(LOG, ex);
-      return false;
+      return null;
     }
 
     CertpathValidationModel model = requestOption.getCertpathValidationModel();
@@ -237,7 +263,7 @@ public class OcspServerUtil {
     if (model == null || model == CertpathValidationModel.PKIX) {
       for (X509Cert m : certpath) {
         if (m.getNotBefore().isAfter(referenceTime) || m.getNotAfter().isBefore(referenceTime)) {
-          return false;
+          return null;
         }
       }
     } else if (model == CertpathValidationModel.CHAIN) {
@@ -250,13 +276,13 @@ public class OcspServerUtil {
       X509Cert targetCert = certpath[i];
       for (X509Cert m : trustanchors) {
         if (m.equals(targetCert)) {
-          return true;
+          return certpath;
         }
       }
     }
 
-    return false;
-  } // method canBuildCertpath
+    return null;
+  } // method buildCertpath
 
   private static boolean getBoolean(Boolean bo, boolean defaultValue) {
     return (bo == null) ? defaultValue : bo;
@@ -64,6 +64,8 @@ public class RequestOption {
 
   private final CertpathValidationModel certpathValidationModel;
 
+  private final RequestorCertCache requestorCertCache = new RequestorCertCache(1000);
+
   RequestOption(OcspServerConf.RequestOption conf) throws InvalidConfException {
     supportsHttpGet = Args.notNull(conf, "conf").isSupportsHttpGet();
     signatureRequired = conf.isSignatureRequired();
@@ -213,6 +215,10 @@ public class RequestOption {
     return certs;
   }
 
+  RequestorCertCache getRequestorCertCache() {
+    return requestorCertCache;
+  }
+
   private static Set<X509Cert> getCerts(OcspServerConf.CertCollection conf)
       throws CertificateException, IOException {
     Args.notNull(conf, "conf");
@@ -0,0 +1,111 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server;
+
+import org.bouncycastle.operator.ContentVerifierProvider;
+import org.xipki.security.CertpathValidationModel;
+import org.xipki.security.X509Cert;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the requestor certificates whose certification path has been validated,
+ * together with the verifier provider of each certificate. The entries are keyed by the
+ * fingerprint of the requestor certificate, and are valid only within the validity of the
+ * certification path.
+ * <p>
+ * Each {@link RequestOption} has its own cache, so that the trust anchors are part of the key.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class RequestorCertCache {
+
+  static final class Entry {
+
+    private final ContentVerifierProvider verifierProvider;
+
+    private final Instant notBefore;
+
+    private final Instant notAfter;
+
+    private Entry(ContentVerifierProvider verifierProvider, Instant notBefore, Instant notAfter) {
+      this.verifierProvider = verifierProvider;
+      this.notBefore = notBefore;
+      this.notAfter = notAfter;
+    }
+
+    /**
+     * Creates the entry for a validated certification path.
+     * @param verifierProvider verifier provider of the requestor certificate.
+     * @param certpath the validated certification path.
+     * @param model the validation model. For the model CHAIN, the entry never expires.
+     * @return the new entry.
+     */
+    static Entry newInstance(
+        ContentVerifierProvider verifierProvider, X509Cert[] certpath, CertpathValidationModel model) {
+      Instant notBefore = Instant.MIN;
+      Instant notAfter = Instant.MAX;
+      if (model == null || model == CertpathValidationModel.PKIX) {
+        for (X509Cert m : certpath) {
+          if (m.getNotBefore().isAfter(notBefore)) {
+            notBefore = m.getNotBefore();
+          }
+
+          if (m.getNotAfter().isBefore(notAfter)) {
+            notAfter = m.getNotAfter();
+          }
+        }
+      }
+      return new Entry(verifierProvider, notBefore, notAfter);
+    } // method newInstance
+
+    ContentVerifierProvider getVerifierProvider() {
+      return verifierProvider;
+    }
+
+    boolean isValid(Instant time) {
+      return !(time.isBefore(notBefore) || time.isAfter(notAfter));
+    }
+
+  } // class Entry
+
+  private final Map<String, Entry> entries;
+
+  RequestorCertCache(int maxSize) {
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the entry of the requestor certificate valid at the given time.
+   * @param fingerprint fingerprint of the requestor certificate.
+   * @param time the reference time.
+   * @return the entry, or {@code null} if not cached or not valid at the given time.
+   */
+  synchronized Entry get(String fingerprint, Instant time) {
+    Entry entry = entries.get(fingerprint);
+    if (entry == null) {
+      return null;
+    }
+
+    if (!entry.isValid(time)) {
+      entries.remove(fingerprint);
+      return null;
+    }
+    return entry;
+  } // method get
+
+  synchronized void put(String fingerprint, Entry entry) {
+    entries.put(fingerprint, entry);
+  }
+
+}
@@ -4,6 +4,7 @@
 package org.xipki.ocsp.server;
 
 import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.api.RequestIssuer;
 import org.xipki.ocsp.server.OcspServerConf.ResponseOption;
 import org.xipki.util.Args;
 
@@ -28,14 +29,50 @@ public class Responder {
 
   private final List<OcspStore> stores;
 
+  private volatile IssuerRouting issuerRouting;
+
+  private final OcspMetrics.ResponderMetrics metrics;
+
+  private final SignerAdmission admission;
+
   Responder(
       ResponderOption responderOption, RequestOption requestOption,
-      ResponseOption responseOption, ResponseSigner signer, List<OcspStore> stores) {
+      ResponseOption responseOption, ResponseSigner signer, List<OcspStore> stores,
+      OcspMetrics.ResponderMetrics metrics) {
     this.responderOption = Args.notNull(responderOption, "responderOption");
     this.requestOption = Args.notNull(requestOption, "requestOption");
     this.responseOption = Args.notNull(responseOption, "responseOption");
     this.signer = Args.notNull(signer, "signer");
     this.stores = Args.notEmpty(stores, "stores");
+    this.metrics = Args.notNull(metrics, "metrics");
+    this.admission = responderOption.getAdmission() == null ? null
+        : new SignerAdmission(responderOption.getAdmission());
+    metrics.setAdmission(admission);
+
+    this.issuerRouting = new IssuerRouting(stores);
+    for (OcspStore store : stores) {
+      store.addIssuersChangeListener(this::updateIssuerRouting);
+    }
+  }
+
+  private synchronized void updateIssuerRouting() {
+    this.issuerRouting = new IssuerRouting(stores);
+  }
+
+  IssuerRouting.Route getIssuerRoute(RequestIssuer reqIssuer) {
+    return issuerRouting.getRoute(reqIssuer);
+  }
+
+  OcspMetrics.ResponderMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the admission control of the signing.
+   * @return the admission control, or {@code null} if not configured.
+   */
+  SignerAdmission getAdmission() {
+    return admission;
   }
 
   ResponderOption getResponderOption() {
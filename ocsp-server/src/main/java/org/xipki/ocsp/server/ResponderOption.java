@@ -41,6 +41,8 @@ class ResponderOption {
 
   private final List<String> servletPaths;
 
+  private final OcspServerConf.Admission admission;
+
   ResponderOption(OcspServerConf.Responder conf) throws InvalidConfException {
     String str = Args.notNull(conf, "conf").getMode();
     if (str == null || StringUtil.orEqualsIgnoreCase(str, "RFC6960", "RFC 6960")) {
@@ -68,9 +70,14 @@ class ResponderOption {
       if (path.charAt(0) != '/') {
         throw new InvalidConfException("servlet path '" + path + "' must start with '/'");
       }
+
+      if (path.equals(OcspMetrics.PATH) || path.startsWith(OcspMetrics.PATH + "/")) {
+        throw new InvalidConfException("servlet path '" + path + "' is reserved for the metrics");
+      }
     }
     list = new ArrayList<>(paths);
     this.servletPaths = Collections.unmodifiableList(list);
+    this.admission = conf.getAdmission();
   } // constructor
 
   public OcspMode getMode() {
@@ -101,4 +108,8 @@ class ResponderOption {
     return servletPaths;
   }
 
+  public OcspServerConf.Admission getAdmission() {
+    return admission;
+  }
+
 }
@@ -0,0 +1,256 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.api.OcspStore.SerialWithId;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.store.IssuerEntry;
+import org.xipki.ocsp.server.store.ResponseCacher;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.X509Cert;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+import java.io.Closeable;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generates the OCSP responses in the background and stores them in the response cache, so
+ * that the requests can be answered from the cache without signing.
+ * <p>
+ * The response cache distinguishes the responses by the hash algorithm of the CertID, hence the
+ * responses are generated for each configured hash algorithm allowed by the responder.
+ * <p>
+ * The update runs read the certificates changed since the last run via CERT.LUPDATE, which is
+ * indexed by IDX_CERT_LUPDATE in the OCSP database. The pre-signing is subject to the admission
+ * control of the responder, and skips the responses not admitted.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class ResponsePresigner implements Closeable {
+
+  private class PresignService implements Runnable {
+
+    private final boolean full;
+
+    PresignService(boolean full) {
+      this.full = full;
+    }
+
+    @Override
+    public void run() {
+      if (!inProcess.compareAndSet(false, true)) {
+        return;
+      }
+
+      try {
+        long minLastUpdate;
+        if (full) {
+          minLastUpdate = 0;
+        } else if (lastFullRun == 0) {
+          // wait for the first full run
+          return;
+        } else {
+          minLastUpdate = lastRun - SEC_LAST_UPDATE_MARGIN;
+        }
+
+        long start = Instant.now().getEpochSecond();
+        int num = presignAll(minLastUpdate);
+        lastRun = start;
+        if (full) {
+          lastFullRun = start;
+        }
+        LOG.info("pre-signed {} responses in {} seconds ({})", num,
+            Instant.now().getEpochSecond() - start, full ? "full" : "update");
+      } catch (Throwable th) {
+        LogUtil.error(LOG, th, "error pre-signing responses");
+      } finally {
+        inProcess.set(false);
+      }
+    }
+
+  } // class PresignService
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResponsePresigner.class);
+
+  private static final int NUM_SERIALS_PER_BATCH = 1000;
+
+  // certificates changed shortly before the last run may not have been visible to it
+  private static final long SEC_LAST_UPDATE_MARGIN = 60;
+
+  private final OcspServer server;
+
+  private final ResponseCacher responseCacher;
+
+  private final List<Responder> responders;
+
+  private final List<HashAlgo> hashAlgos;
+
+  private final int threads;
+
+  // in seconds
+  private final long interval;
+
+  // in seconds
+  private final long updateInterval;
+
+  private final AtomicBoolean inProcess = new AtomicBoolean(false);
+
+  // epoch seconds
+  private volatile long lastRun;
+
+  // epoch seconds
+  private volatile long lastFullRun;
+
+  private ExecutorService signExecutor;
+
+  private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+
+  private ScheduledFuture<?> fullPresigner;
+
+  private ScheduledFuture<?> updatePresigner;
+
+  ResponsePresigner(OcspServer server, ResponseCacher responseCacher, List<Responder> responders,
+                    List<HashAlgo> hashAlgos, int threads, long interval, long updateInterval) {
+    this.server = Args.notNull(server, "server");
+    this.responseCacher = Args.notNull(responseCacher, "responseCacher");
+    this.responders = Args.notEmpty(responders, "responders");
+    this.hashAlgos = Args.notEmpty(hashAlgos, "hashAlgos");
+    this.threads = Args.positive(threads, "threads");
+    this.interval = Args.positive(interval, "interval");
+    this.updateInterval = Args.positive(updateInterval, "updateInterval");
+  }
+
+  public void init() {
+    signExecutor = Executors.newFixedThreadPool(threads);
+
+    scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
+    scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+
+    this.fullPresigner = scheduledThreadPoolExecutor.scheduleAtFixedRate(
+        new PresignService(true), 60, interval, TimeUnit.SECONDS);
+    this.updatePresigner = scheduledThreadPoolExecutor.scheduleAtFixedRate(
+        new PresignService(false), 60 + updateInterval, updateInterval, TimeUnit.SECONDS);
+  } // method init
+
+  @Override
+  public void close() {
+    if (fullPresigner != null) {
+      fullPresigner.cancel(false);
+      fullPresigner = null;
+    }
+
+    if (updatePresigner != null) {
+      updatePresigner.cancel(false);
+      updatePresigner = null;
+    }
+
+    if (signExecutor != null) {
+      signExecutor.shutdownNow();
+      signExecutor = null;
+    }
+
+    if (scheduledThreadPoolExecutor != null) {
+      scheduledThreadPoolExecutor.shutdownNow();
+      scheduledThreadPoolExecutor = null;
+    }
+  } // method close
+
+  private int presignAll(long minLastUpdate) throws InterruptedException {
+    int num = 0;
+    for (Responder responder : responders) {
+      List<HashAlgo> respHashAlgos = new ArrayList<>(hashAlgos.size());
+      for (HashAlgo hashAlgo : hashAlgos) {
+        if (responder.getRequestOption().allows(hashAlgo)) {
+          respHashAlgos.add(hashAlgo);
+        }
+      }
+
+      if (respHashAlgos.isEmpty()) {
+        // checked in the configuration
+        continue;
+      }
+
+      for (OcspStore store : responder.getStores()) {
+        if (!store.supportsSerialNumbersListing()) {
+          continue;
+        }
+
+        for (X509Cert issuerCert : store.getIssuerCerts()) {
+          try {
+            num += presignIssuer(responder, respHashAlgos, store, issuerCert, minLastUpdate);
+          } catch (InterruptedException ex) {
+            throw ex;
+          } catch (Exception ex) {
+            LogUtil.error(LOG, ex, "error pre-signing responses for issuer " + issuerCert.getSubjectText()
+                + " in store " + store.getName());
+          }
+        }
+      }
+    }
+    return num;
+  } // method presignAll
+
+  private int presignIssuer(Responder responder, List<HashAlgo> respHashAlgos, OcspStore store,
+                            X509Cert issuerCert, long minLastUpdate)
+      throws Exception {
+    IssuerEntry cacheIssuer = responseCacher.storeIssuer(issuerCert);
+
+    List<RequestIssuer> reqIssuers = new ArrayList<>(respHashAlgos.size());
+    for (HashAlgo hashAlgo : respHashAlgos) {
+      reqIssuers.add(new RequestIssuer(hashAlgo, cacheIssuer.getEncodedHash(hashAlgo)));
+    }
+
+    int num = 0;
+    long startId = 1;
+    while (true) {
+      List<SerialWithId> serials = store.getSerialNumbers(reqIssuers.get(0), startId, minLastUpdate,
+          NUM_SERIALS_PER_BATCH);
+      if (serials.isEmpty()) {
+        break;
+      }
+
+      List<Future<Boolean>> futures = new ArrayList<>(serials.size() * reqIssuers.size());
+      for (SerialWithId serial : serials) {
+        BigInteger serialNumber = serial.getSerial();
+        for (RequestIssuer reqIssuer : reqIssuers) {
+          futures.add(signExecutor.submit(() -> server.presign(responder, cacheIssuer, reqIssuer, serialNumber)));
+        }
+        startId = Math.max(startId, serial.getId() + 1);
+      }
+
+      for (Future<Boolean> future : futures) {
+        try {
+          if (future.get()) {
+            num++;
+          }
+        } catch (ExecutionException ex) {
+          LogUtil.warn(LOG, ex.getCause(), "could not pre-sign response");
+        }
+      }
+
+      if (serials.size() < NUM_SERIALS_PER_BATCH) {
+        break;
+      }
+    }
+    return num;
+  } // method presignIssuer
+
+}
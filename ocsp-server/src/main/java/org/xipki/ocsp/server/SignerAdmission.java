@@ -0,0 +1,102 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server;
+
+import org.xipki.util.Args;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control of the signing of a responder.
+ * <p>
+ * At most maxConcurrency responses are signed concurrently. Further requests wait in a fair
+ * (FIFO) queue of at most maxQueueSize entries, each for at most maxWaitMillis. Requests which
+ * find the queue full are shed, i.e. answered with tryLater before the stores are queried.
+ * Responses found in the response cache are not subject to the admission control.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class SignerAdmission {
+
+  private final Semaphore permits;
+
+  private final int maxConcurrency;
+
+  private final int maxQueueSize;
+
+  private final int maxWaitMillis;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+
+  SignerAdmission(OcspServerConf.Admission conf) {
+    Args.notNull(conf, "conf");
+    this.maxConcurrency = Args.positive(conf.getMaxConcurrency(), "maxConcurrency");
+    this.maxQueueSize = Args.notNegative(conf.getMaxQueueSize(), "maxQueueSize");
+    this.maxWaitMillis = Args.positive(conf.getMaxWaitMillis(), "maxWaitMillis");
+    this.permits = new Semaphore(maxConcurrency, true);
+  }
+
+  int getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  /**
+   * Returns whether a new request would be shed, because all signers are busy and the queue is full.
+   * @return whether the admission is saturated.
+   */
+  boolean isSaturated() {
+    return permits.availablePermits() == 0 && queueDepth.get() >= maxQueueSize;
+  }
+
+  /**
+   * Acquires the permission to sign a response. If the permission is granted, the caller must
+   * call {@link #release()} once the response is signed.
+   * @return the time in nanoseconds waited for the permission, or -1 if not granted.
+   */
+  long acquire() {
+    long start = System.nanoTime();
+    if (queueDepth.incrementAndGet() > maxQueueSize && permits.availablePermits() == 0) {
+      queueDepth.decrementAndGet();
+      return -1;
+    }
+
+    boolean acquired;
+    try {
+      // a timed tryAcquire respects the fairness, the untimed one does not.
+      acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      acquired = false;
+    } finally {
+      queueDepth.decrementAndGet();
+    }
+
+    return acquired ? System.nanoTime() - start : -1;
+  } // method acquire
+
+  void release() {
+    permits.release();
+  }
+
+  /**
+   * Returns the number of requests waiting for the permission to sign.
+   * @return the queue depth.
+   */
+  int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * Returns the number of responses being signed.
+   * @return the number of responses being signed.
+   */
+  int getInFlight() {
+    return maxConcurrency - permits.availablePermits();
+  }
+
+}
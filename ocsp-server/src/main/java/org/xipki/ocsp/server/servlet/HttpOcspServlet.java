@@ -9,11 +9,7 @@ import org.xipki.ocsp.server.OcspRespWithCacheInfo;
 import org.xipki.ocsp.server.OcspServer;
 import org.xipki.ocsp.server.Responder;
 import org.xipki.ocsp.server.ResponderAndPath;
-import org.xipki.security.HashAlgo;
 import org.xipki.util.Args;
-import org.xipki.util.Base64;
-import org.xipki.util.Base64Url;
-import org.xipki.util.Hex;
 import org.xipki.util.HttpConstants;
 import org.xipki.util.IoUtil;
 import org.xipki.util.LogUtil;
@@ -25,7 +21,12 @@ import org.xipki.util.http.XiHttpResponse;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -46,6 +47,19 @@ class HttpOcspServlet {
 
   private static final String CT_RESPONSE = "application/ocsp-response";
 
+  // decoding table for both the Base64 and Base64Url alphabets
+  private static final byte[] BASE64_DECODE_TABLE = new byte[128];
+
+  static {
+    Arrays.fill(BASE64_DECODE_TABLE, (byte) -1);
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    for (int i = 0; i < alphabet.length(); i++) {
+      BASE64_DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+    }
+    BASE64_DECODE_TABLE['+'] = BASE64_DECODE_TABLE['-'] = 62;
+    BASE64_DECODE_TABLE['/'] = BASE64_DECODE_TABLE['_'] = 63;
+  }
+
   private final boolean logReqResp;
 
   private final OcspServer server;
@@ -130,15 +144,12 @@ class HttpOcspServlet {
       return new HttpResponse(HttpStatusCode.SC_METHOD_NOT_ALLOWED);
     }
 
-    String b64OcspReq;
-
     int offset = servletPath.length();
     // GET URI contains the request and must be much longer than 10.
     if (path.length() - offset > 10) {
       if (path.charAt(offset) == '/') {
         offset++;
       }
-      b64OcspReq = path.substring(offset);
     } else {
       return new HttpResponse(HttpStatusCode.SC_BAD_REQUEST);
     }
@@ -150,11 +161,11 @@ class HttpOcspServlet {
       //    this limitation by accepting also OCSP requests:
       //      - Which are Base64Url encoded, and/or
       //      - Which do not containing the Base64 padding char '='.
-      if (b64OcspReq.length() > responder.getMaxRequestSize()) {
+      if (path.length() - offset > responder.getMaxRequestSize()) {
         return new HttpResponse(HttpStatusCode.SC_REQUEST_URI_TOO_LONG);
       }
 
-      byte[] ocsReqBytes = base64Decode(StringUtil.toUtf8Bytes(b64OcspReq));
+      byte[] ocsReqBytes = base64Decode(path, offset);
       if (ocsReqBytes == null) {
         return new HttpResponse(HttpStatusCode.SC_BAD_REQUEST);
       }
@@ -172,16 +183,14 @@ class HttpOcspServlet {
 
       OcspRespWithCacheInfo.ResponseCacheInfo cacheInfo = ocspRespWithCacheInfo.getCacheInfo();
       Map<String, String> headers = new HashMap<>();
+      boolean notModified = false;
       if (cacheInfo != null) {
-        encodedOcspResp = ocspRespWithCacheInfo.getResponse();
-        long now = Clock.systemUTC().millis();
-
         // RFC 5019 6.2: Date: The date and time at which the OCSP server generated
         // the HTTP response.
-        headers.put("Date",Long.toString(now));
+        headers.put("Date", toHttpDate(Instant.now().getEpochSecond()));
         // RFC 5019 6.2: Last-Modified: date and time at which the OCSP responder
         // last modified the response.
-        headers.put("Last-Modified", Long.toString(cacheInfo.getGeneratedAt()));
+        headers.put("Last-Modified", toHttpDate(cacheInfo.getGeneratedAt()));
         // RFC 5019 6.2: Expires: This date and time will be the same as the
         // nextUpdate time-stamp in the OCSP
         // response itself.
@@ -190,11 +199,12 @@ class HttpOcspServlet {
         Long nextUpdate = cacheInfo.getNextUpdate();
 
         if (nextUpdate != null) {
-          headers.put("Expires", Long.toString(nextUpdate));
+          headers.put("Expires", toHttpDate(nextUpdate));
         }
         // RFC 5019 6.2: This profile RECOMMENDS that the ETag value be the ASCII
         // HEX representation of the SHA1 hash of the OCSPResponse structure.
-        headers.put("ETag", StringUtil.concat("\"", HashAlgo.SHA1.hexHash(encodedOcspResp), "\""));
+        String etag = ocspRespWithCacheInfo.getEtag();
+        headers.put("ETag", etag);
 
         // Max age must be in seconds in the cache-control header
         long maxAge;
@@ -205,13 +215,21 @@ class HttpOcspServlet {
         }
 
         if (nextUpdate != null) {
-          maxAge = Math.min(maxAge, (nextUpdate - cacheInfo.getGeneratedAt()) / 1000);
+          maxAge = Math.min(maxAge, nextUpdate - cacheInfo.getGeneratedAt());
         }
 
         headers.put("Cache-Control",
             StringUtil.concat("max-age=", Long.toString(maxAge), ",public,no-transform,must-revalidate"));
+
+        notModified = isNotModified(req, etag, cacheInfo.getGeneratedAt());
       } // end if (ocspRespWithCacheInfo)
 
+      if (notModified) {
+        // RFC 9110 15.4.5: the 304 response carries the same validator and cache headers
+        // as a 200 response would, but no content.
+        return new HttpResponse(HttpStatusCode.SC_NOT_MODIFIED, null, headers, null);
+      }
+
       return new HttpResponse(HttpStatusCode.SC_OK, CT_RESPONSE, headers, encodedOcspResp);
     } catch (Throwable th) {
       LOG.error("Throwable thrown, this should not happen!", th);
@@ -219,50 +237,123 @@ class HttpOcspServlet {
     }
   } // method doGet
 
-  private static byte[] base64Decode(byte[] b64OcspReqBytes) {
-    final int len = b64OcspReqBytes.length;
-    if (Base64.containsOnlyBase64Chars(b64OcspReqBytes, 0, len)) {
-      // Base64 encoded, no URL decoding is required
-      return Base64.decodeFast(b64OcspReqBytes);
-    } else if (Base64Url.containsOnlyBase64UrlChars(b64OcspReqBytes, 0, len)) {
-      // Base64Url encoded, no URL decode is required
-      return Base64Url.decodeFast(b64OcspReqBytes);
-    } else {
-      // Base64-then-URL encoded, URL decode required
-      // count the number of encoded chars
-      int cnt = 0;
-      for (int i = 0; i < len - 2; i++) {
-        if (b64OcspReqBytes[i] == '%') {
-          cnt++;
-          i += 2;
+  /**
+   * Evaluates the conditional headers of a GET request as specified in RFC 9110 13.2.2:
+   * If-None-Match takes precedence over If-Modified-Since.
+   *
+   * @param req the request.
+   * @param etag the ETag of the response.
+   * @param lastModified the generation time of the response in epoch seconds.
+   * @return whether the client's copy of the response is still current.
+   */
+  private static boolean isNotModified(XiHttpRequest req, String etag, long lastModified) {
+    String ifNoneMatch = req.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String token : ifNoneMatch.split(",")) {
+        token = token.trim();
+        if (token.equals("*")) {
+          return true;
+        }
+
+        // weak comparison
+        if (token.startsWith("W/")) {
+          token = token.substring(2);
+        }
+
+        if (token.equals(etag)) {
+          return true;
         }
       }
+      return false;
+    }
 
-      if (cnt == 0) {
-        return null;
+    String ifModifiedSince = req.getHeader("If-Modified-Since");
+    if (ifModifiedSince != null) {
+      try {
+        long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        return lastModified <= since;
+      } catch (DateTimeParseException ex) {
+        // RFC 9110 13.1.3: a recipient MUST ignore the If-Modified-Since header field if the
+        // received field value is not a valid HTTP-date.
+        LOG.debug("ignored invalid If-Modified-Since '{}'", ifModifiedSince);
       }
+    }
 
-      byte[] realB64Bytes = new byte[len - cnt * 2];
-      for (int i = 0, j = 0; j < realB64Bytes.length; i++, j++) {
-        if (b64OcspReqBytes[i] == '%') {
-          realB64Bytes[j] = Hex.decodeSingle(b64OcspReqBytes, i + 1);
-          i += 2;
-        } else {
-          realB64Bytes[j] = b64OcspReqBytes[i];
+    return false;
+  } // method isNotModified
+
+  private static String toHttpDate(long epochSecond) {
+    return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+        ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC));
+  }
+
+  /**
+   * Decodes the Base64, Base64Url or Base64-then-URL encoded request in {@code str}, starting at
+   * {@code from}, directly into the returned array. The padding chars '=' are optional.
+   *
+   * @param str the string containing the encoded request.
+   * @param from start index of the encoded request.
+   * @return the decoded request, or {@code null} if the request is not correctly encoded.
+   */
+  private static byte[] base64Decode(String str, int from) {
+    final int end = str.length();
+
+    // first pass: validate and count the chars
+    int numChars = 0;
+    int numPads = 0;
+    for (int i = from; i < end; i++) {
+      int c = str.charAt(i);
+      if (c == '%') {
+        c = decodeEscapedChar(str, i);
+        if (c == -1) {
+          return null;
         }
+        i += 2;
       }
 
-      if (Base64.containsOnlyBase64Chars(realB64Bytes, 0, len)) {
-        // Base64 encoded
-        return Base64.decodeFast(realB64Bytes);
-      } else if (Base64Url.containsOnlyBase64UrlChars(realB64Bytes, 0, len)) {
-        // Base64Url encoded
-        return Base64Url.decodeFast(realB64Bytes);
-      } else {
+      if (c == '=') {
+        numPads++;
+      } else if (numPads > 0 || c >= 128 || BASE64_DECODE_TABLE[c] == -1) {
         return null;
+      } else {
+        numChars++;
+      }
+    }
+
+    if (numChars % 4 == 1 || numPads > 2 || (numPads > 0 && (numChars + numPads) % 4 != 0)) {
+      return null;
+    }
+
+    // second pass: decode
+    byte[] out = new byte[numChars * 3 / 4];
+    int bits = 0;
+    int numBits = 0;
+    for (int i = from, j = 0; j < out.length; i++) {
+      int c = str.charAt(i);
+      if (c == '%') {
+        c = decodeEscapedChar(str, i);
+        i += 2;
+      }
+
+      bits = ((bits << 6) | BASE64_DECODE_TABLE[c]) & 0xFFFF;
+      numBits += 6;
+      if (numBits >= 8) {
+        numBits -= 8;
+        out[j++] = (byte) (bits >> numBits);
       }
     }
 
+    return out;
   } // method base64Decode
 
+  private static int decodeEscapedChar(String str, int index) {
+    if (index + 2 >= str.length()) {
+      return -1;
+    }
+
+    int hi = Character.digit(str.charAt(index + 1), 16);
+    int lo = Character.digit(str.charAt(index + 2), 16);
+    return (hi == -1 || lo == -1) ? -1 : (hi << 4) | lo;
+  } // method decodeEscapedChar
+
 }
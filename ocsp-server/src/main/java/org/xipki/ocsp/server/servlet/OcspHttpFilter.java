@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.license.api.LicenseFactory;
 import org.xipki.ocsp.server.OcspConf;
+import org.xipki.ocsp.server.OcspMetrics;
 import org.xipki.ocsp.server.OcspServer;
 import org.xipki.security.Securities;
 import org.xipki.util.HttpConstants;
@@ -40,6 +41,8 @@ public class OcspHttpFilter implements XiHttpFilter {
 
   private final OcspHealthCheckServlet healthServlet;
 
+  private final OcspMetricsServlet metricsServlet;
+
   private final HttpOcspServlet ocspServlet;
 
   public OcspHttpFilter(String licenseFactoryClazz) throws Exception {
@@ -75,6 +78,7 @@ public class OcspHttpFilter implements XiHttpFilter {
 
     this.server = ocspServer;
     healthServlet = new OcspHealthCheckServlet(this.server);
+    metricsServlet = new OcspMetricsServlet(this.server);
     ocspServlet = new HttpOcspServlet(logReqResp, this.server);
   } // method init
 
@@ -110,6 +114,8 @@ public class OcspHttpFilter implements XiHttpFilter {
       String servletPath = path.substring(7); // 7 = "/health".length()
       req.setAttribute(HttpConstants.ATTR_XIPKI_PATH, servletPath);
       healthServlet.service(req, resp);
+    } else if (path.equals(OcspMetrics.PATH)) {
+      metricsServlet.service(req, resp);
     } else {
       req.setAttribute(HttpConstants.ATTR_XIPKI_PATH, path);
       ocspServlet.service(req, resp);
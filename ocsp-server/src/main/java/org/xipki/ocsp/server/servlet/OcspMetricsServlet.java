@@ -0,0 +1,55 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.server.OcspServer;
+import org.xipki.util.Args;
+import org.xipki.util.http.HttpResponse;
+import org.xipki.util.http.HttpStatusCode;
+import org.xipki.util.http.XiHttpRequest;
+import org.xipki.util.http.XiHttpResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP servlet exporting the metrics of the OCSP server in the Prometheus text format.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class OcspMetricsServlet {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OcspMetricsServlet.class);
+
+  private static final String CT_METRICS = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final OcspServer server;
+
+  public OcspMetricsServlet(OcspServer server) {
+    this.server = Args.notNull(server, "server");
+  }
+
+  public void service(XiHttpRequest req, XiHttpResponse resp) throws IOException {
+    if (!"GET".equalsIgnoreCase(req.getMethod())) {
+      resp.setStatus(HttpStatusCode.SC_METHOD_NOT_ALLOWED);
+      return;
+    }
+    service0().fillResponse(resp);
+  }
+
+  private HttpResponse service0() {
+    try {
+      byte[] body = server.getMetrics().toPrometheusText().getBytes(StandardCharsets.UTF_8);
+      return new HttpResponse(HttpStatusCode.SC_OK, CT_METRICS, null, body);
+    } catch (Throwable th) {
+      LOG.error("Throwable thrown, this should not happen", th);
+      return new HttpResponse(HttpStatusCode.SC_INTERNAL_SERVER_ERROR);
+    }
+  }
+
+}
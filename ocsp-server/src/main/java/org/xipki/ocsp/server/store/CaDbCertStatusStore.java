@@ -33,8 +33,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +55,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class CaDbCertStatusStore extends OcspStore {
 
+  private static class CertRow {
+    boolean ignore;
+    String b64CertHash;
+    boolean revoked;
+    int reason;
+    long revTime;
+    long invalTime;
+  } // class CertRow
+
   private class StoreUpdateService implements Runnable {
 
     @Override
@@ -63,6 +75,10 @@ public class CaDbCertStatusStore extends OcspStore {
 
   private DataSourceWrapper datasource;
 
+  private static final int NUM_SERIALS_PER_SELECT = 1000;
+
+  private static final int MAX_SERIALS_PER_IN_SELECT = 100;
+
   private static final Logger LOG = LoggerFactory.getLogger(CaDbCertStatusStore.class);
 
   private final StoreUpdateService storeUpdateService = new StoreUpdateService();
@@ -79,6 +95,8 @@ public class CaDbCertStatusStore extends OcspStore {
 
   private String sqlCsWithCertHash;
 
+  private String sqlSerials;
+
   private IssuerFilter issuerFilter;
 
   private final IssuerStore issuerStore = new IssuerStore();
@@ -190,6 +208,7 @@ public class CaDbCertStatusStore extends OcspStore {
           } // end while (rs.next())
 
           this.issuerStore.setIssuers(caInfos);
+          fireIssuersChanged();
           if (LOG.isInfoEnabled()) {
             StringBuilder sb = new StringBuilder();
             for (IssuerEntry m : caInfos) {
@@ -239,17 +258,8 @@ public class CaDbCertStatusStore extends OcspStore {
         sql = includeRit ? sqlCs : sqlCsNoRit;
       }
 
-      Instant thisUpdate = Instant.now();
-
       ResultSet rs = null;
-
-      boolean unknown = true;
-      boolean ignore = false;
-      String b64CertHash = null;
-      boolean revoked = false;
-      int reason = 0;
-      long revTime = 0;
-      long invalTime = 0;
+      CertRow row = null;
 
       PreparedStatement ps = datasource.prepareStatement(sql);
 
@@ -259,114 +269,195 @@ public class CaDbCertStatusStore extends OcspStore {
         rs = ps.executeQuery();
 
         if (rs.next()) {
-          unknown = false;
-
-          long timeInSec = time.getEpochSecond();
-          if (ignoreNotYetValidCert) {
-            long notBeforeInSec = rs.getLong("NBEFORE");
-            if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
-              ignore = true;
-            }
-          }
-
-          if (!ignore && ignoreExpiredCert) {
-            long notAfterInSec = rs.getLong("NAFTER");
-            if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
-              ignore = true;
-            }
-          }
-
-          if (!ignore) {
-            if (includeCertHash) {
-              b64CertHash = rs.getString("SHA1");
-            }
-
-            revoked = rs.getBoolean("REV");
-            if (revoked) {
-              reason = rs.getInt("RR");
-              revTime = rs.getLong("RT");
-              if (includeRit) {
-                invalTime = rs.getLong("RIT");
-              }
-            }
-          }
-        } // end if (rs.next())
+          row = readCertRow(rs, time, includeCertHash, includeRit);
+        }
       } catch (SQLException ex) {
         throw datasource.translate(sql, ex);
       } finally {
         releaseDbResources(ps, rs);
       }
 
-      CertStatusInfo certStatusInfo;
-      if (unknown) {
-        certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, null);
-      } else if (ignore) {
-        certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, null);
+      return buildCertStatusInfo(issuer, row, inheritCaRevocation);
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+
+  } // method getCertStatus0
+
+  @Override
+  protected Map<BigInteger, CertStatusInfo> getCertStatuses0(
+      Instant time, RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers,
+      boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
+      throws OcspStoreException {
+    if (!initialized) {
+      throw new OcspStoreException("initialization of CertStore is still in process");
+    }
+
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return null;
+    }
+
+    Map<BigInteger, CertStatusInfo> ret = new HashMap<>();
+    Set<BigInteger> validSerialSet = new HashSet<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      if (serialNumber.signum() != 1) { // non-positive serial number
+        ret.put(serialNumber, CertStatusInfo.getUnknownCertStatusInfo(Instant.now(), null));
       } else {
-        byte[] certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
-        if (revoked) {
-          Instant invTime = (invalTime == 0 || invalTime == revTime) ? null : Instant.ofEpochSecond(invalTime);
-          CertRevocationInfo revInfo = new CertRevocationInfo(reason, Instant.ofEpochSecond(revTime), invTime);
-          certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-              certHashAlgo, certHash, thisUpdate, null, null);
-        } else {
-          certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo, certHash, thisUpdate, null, null);
-        }
+        validSerialSet.add(serialNumber);
       }
+    }
+    List<BigInteger> validSerials = new ArrayList<>(validSerialSet);
+
+    String columns = "SN,NBEFORE,NAFTER,REV,RR,RT" + (includeRit ? ",RIT" : "")
+        + (includeCertHash ? ",SHA1" : "") + " FROM CERT WHERE CA_ID=? AND SN";
+
+    try {
+      Map<BigInteger, CertRow> rows = new HashMap<>();
+      for (int from = 0; from < validSerials.size(); from += MAX_SERIALS_PER_IN_SELECT) {
+        List<BigInteger> subSerials =
+            validSerials.subList(from, Math.min(validSerials.size(), from + MAX_SERIALS_PER_IN_SELECT));
+        final String sql = DbCertStatusStore.buildArraySql(datasource, columns, subSerials.size());
 
-      if (includeArchiveCutoff) {
-        if (retentionInterval != 0) {
-          Instant date;
-          // expired certificate remains in status store forever.
-          if (retentionInterval < 0) {
-            date = issuer.getNotBefore();
-          } else {
-            Instant t1 = Instant.now().minus(retentionInterval, ChronoUnit.DAYS);
-            date = issuer.getNotBefore().isAfter(t1) ? issuer.getNotBefore() : t1;
+        ResultSet rs = null;
+        PreparedStatement ps = datasource.prepareStatement(sql);
+        try {
+          int idx = 1;
+          ps.setInt(idx++, issuer.getId());
+          for (BigInteger serialNumber : subSerials) {
+            ps.setString(idx++, serialNumber.toString(16));
           }
+          rs = ps.executeQuery();
 
-          certStatusInfo.setArchiveCutOff(date);
+          while (rs.next()) {
+            rows.put(new BigInteger(rs.getString("SN"), 16), readCertRow(rs, time, includeCertHash, includeRit));
+          }
+        } catch (SQLException ex) {
+          throw datasource.translate(sql, ex);
+        } finally {
+          releaseDbResources(ps, rs);
         }
       }
 
-      if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
-        return certStatusInfo;
+      for (BigInteger serialNumber : validSerials) {
+        ret.put(serialNumber, buildCertStatusInfo(issuer, rows.get(serialNumber), inheritCaRevocation));
+      }
+      return ret;
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+  } // method getCertStatuses0
+
+  private CertRow readCertRow(ResultSet rs, Instant time, boolean includeCertHash, boolean includeRit)
+      throws SQLException {
+    CertRow row = new CertRow();
+
+    long timeInSec = time.getEpochSecond();
+    if (ignoreNotYetValidCert) {
+      long notBeforeInSec = rs.getLong("NBEFORE");
+      if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
+        row.ignore = true;
       }
+    }
 
-      CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
-      CertStatus certStatus = certStatusInfo.getCertStatus();
-      boolean replaced = false;
-      if (certStatus == CertStatus.GOOD) {
-        replaced = true;
-      } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
-        if (unknownCertBehaviour == UnknownCertBehaviour.good) {
-          replaced = true;
-        }
-      } else if (certStatus == CertStatus.REVOKED) {
-        if (certStatusInfo.getRevocationInfo().getRevocationTime().isAfter(caRevInfo.getRevocationTime())) {
-          replaced = true;
+    if (!row.ignore && ignoreExpiredCert) {
+      long notAfterInSec = rs.getLong("NAFTER");
+      if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
+        row.ignore = true;
+      }
+    }
+
+    if (!row.ignore) {
+      if (includeCertHash) {
+        row.b64CertHash = rs.getString("SHA1");
+      }
+
+      row.revoked = rs.getBoolean("REV");
+      if (row.revoked) {
+        row.reason = rs.getInt("RR");
+        row.revTime = rs.getLong("RT");
+        if (includeRit) {
+          row.invalTime = rs.getLong("RIT");
         }
       }
+    }
+    return row;
+  } // method readCertRow
 
-      if (replaced) {
-        CertRevocationInfo newRevInfo;
-        if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
-          newRevInfo = caRevInfo;
+  /**
+   * Builds the certificate status.
+   * @param row the entry of the certificate, {@code null} if the certificate is unknown.
+   */
+  private CertStatusInfo buildCertStatusInfo(IssuerEntry issuer, CertRow row, boolean inheritCaRevocation) {
+    Instant thisUpdate = Instant.now();
+
+    CertStatusInfo certStatusInfo;
+    if (row == null) {
+      certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, null);
+    } else if (row.ignore) {
+      certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, null);
+    } else {
+      byte[] certHash = (row.b64CertHash == null) ? null : Base64.decodeFast(row.b64CertHash);
+      if (row.revoked) {
+        Instant invTime = (row.invalTime == 0 || row.invalTime == row.revTime)
+            ? null : Instant.ofEpochSecond(row.invalTime);
+        CertRevocationInfo revInfo = new CertRevocationInfo(row.reason, Instant.ofEpochSecond(row.revTime), invTime);
+        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
+            certHashAlgo, certHash, thisUpdate, null, null);
+      } else {
+        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo, certHash, thisUpdate, null, null);
+      }
+    }
+
+    if (includeArchiveCutoff) {
+      if (retentionInterval != 0) {
+        Instant date;
+        // expired certificate remains in status store forever.
+        if (retentionInterval < 0) {
+          date = issuer.getNotBefore();
         } else {
-          newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
-              caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+          Instant t1 = Instant.now().minus(retentionInterval, ChronoUnit.DAYS);
+          date = issuer.getNotBefore().isAfter(t1) ? issuer.getNotBefore() : t1;
         }
-        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
-            certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
-            certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
-            certStatusInfo.getCertprofile());
+
+        certStatusInfo.setArchiveCutOff(date);
       }
+    }
+
+    if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
       return certStatusInfo;
-    } catch (DataAccessException ex) {
-      throw new OcspStoreException(ex.getMessage(), ex);
     }
 
-  } // method getCertStatus0
+    CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
+    CertStatus certStatus = certStatusInfo.getCertStatus();
+    boolean replaced = false;
+    if (certStatus == CertStatus.GOOD) {
+      replaced = true;
+    } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
+      if (unknownCertBehaviour == UnknownCertBehaviour.good) {
+        replaced = true;
+      }
+    } else if (certStatus == CertStatus.REVOKED) {
+      if (certStatusInfo.getRevocationInfo().getRevocationTime().isAfter(caRevInfo.getRevocationTime())) {
+        replaced = true;
+      }
+    }
+
+    if (replaced) {
+      CertRevocationInfo newRevInfo;
+      if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
+        newRevInfo = caRevInfo;
+      } else {
+        newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
+            caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+      }
+      certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
+          certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
+          certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
+          certStatusInfo.getCertprofile());
+    }
+    return certStatusInfo;
+  } // method buildCertStatusInfo
 
   /**
    * Borrow PreparedStatement.
@@ -431,6 +522,9 @@ public class CaDbCertStatusStore extends OcspStore {
     sqlCs = datasource.buildSelectFirstSql(1, "NBEFORE,NAFTER,REV,RR,RT,RIT FROM CERT WHERE CA_ID=? AND SN=?");
     sqlCsNoRit = datasource.buildSelectFirstSql(1, "NBEFORE,NAFTER,REV,RR,RT FROM CERT WHERE CA_ID=? AND SN=?");
 
+    sqlSerials = datasource.buildSelectFirstSql(NUM_SERIALS_PER_SELECT, "ID ASC",
+        "ID,SN FROM CERT WHERE CA_ID=? AND ID>=? AND LUPDATE>=?");
+
     sqlCsWithCertHash = datasource.buildSelectFirstSql(1,
         "NBEFORE,NAFTER,REV,RR,RT,RIT,SHA1 FROM CERT WHERE CA_ID=? AND SN=?");
     sqlCsNoRitWithCertHash = datasource.buildSelectFirstSql(1,
@@ -496,6 +590,56 @@ public class CaDbCertStatusStore extends OcspStore {
     return (issuer == null) ? null : issuer.getCert();
   } // method getIssuerCert
 
+  @Override
+  public List<X509Cert> getIssuerCerts() {
+    List<X509Cert> certs = new ArrayList<>();
+    for (Integer id : issuerStore.getIds()) {
+      IssuerEntry issuer = issuerStore.getIssuerForId(id);
+      if (issuer != null) {
+        certs.add(issuer.getCert());
+      }
+    }
+    return certs;
+  }
+
+  @Override
+  public boolean supportsSerialNumbersListing() {
+    return true;
+  }
+
+  @Override
+  public List<SerialWithId> getSerialNumbers(
+      RequestIssuer reqIssuer, long startId, long minLastUpdate, int numEntries)
+      throws OcspStoreException {
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return Collections.emptyList();
+    }
+
+    final String sql = sqlSerials;
+    List<SerialWithId> ret = new ArrayList<>(Math.min(numEntries, NUM_SERIALS_PER_SELECT));
+    try {
+      PreparedStatement ps = datasource.prepareStatement(sql);
+      ResultSet rs = null;
+      try {
+        ps.setInt(1, issuer.getId());
+        ps.setLong(2, startId);
+        ps.setLong(3, minLastUpdate);
+        rs = ps.executeQuery();
+        while (rs.next() && ret.size() < numEntries) {
+          ret.add(new SerialWithId(rs.getLong("ID"), new BigInteger(rs.getString("SN"), 16)));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseDbResources(ps, rs);
+      }
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+    return ret;
+  } // method getSerialNumbers
+
   protected boolean isInitialized() {
     return initialized;
   }
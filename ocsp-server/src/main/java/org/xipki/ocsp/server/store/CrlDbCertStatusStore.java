@@ -12,9 +12,7 @@ import org.xipki.security.HashAlgo;
 import org.xipki.security.asn1.CrlStreamParser;
 import org.xipki.util.Args;
 import org.xipki.util.ConfPairs;
-import org.xipki.util.Curl;
 import org.xipki.util.DateUtil;
-import org.xipki.util.DefaultCurl;
 import org.xipki.util.FileOrBinary;
 import org.xipki.util.Hex;
 import org.xipki.util.IoUtil;
@@ -23,21 +21,32 @@ import org.xipki.util.StringUtil;
 import org.xipki.util.Validity;
 import org.xipki.util.http.SslContextConf;
 
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -124,6 +133,22 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     }
   }
 
+  static class DownloadResult {
+
+    private int statusCode;
+
+    private String contentType;
+
+    private long contentLength;
+
+    private String etag;
+
+    private String lastModified;
+
+    private byte[] errorContent;
+
+  } // class DownloadResult
+
   private static final Logger LOG = LoggerFactory.getLogger(CrlDbCertStatusStore.class);
 
   private static final String CT_PKIX_CRL = "application/pkix-crl";
@@ -134,14 +159,27 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
 
   private final AtomicBoolean crlUpdateInProcess = new AtomicBoolean(false);
 
-  private final ConcurrentHashMap<String, Curl> curls = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, SslContextConf> sslContextConfs = new ConcurrentHashMap<>();
 
-  private final ConcurrentHashMap<String, Long> curlsConfLastModified = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Long> sslContextConfsLastModified = new ConcurrentHashMap<>();
 
   private String dir;
 
   private int sqlBatchCommit;
 
+  private int importThreads;
+
+  private int downloadThreads;
+
+  // in milliseconds
+  private int downloadConnectTimeout;
+
+  // in milliseconds
+  private int downloadReadTimeout;
+
+  // in seconds
+  private int downloadTimeout;
+
   private boolean ignoreExpiredCrls;
 
   private boolean crlUpdated;
@@ -165,6 +203,23 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
    * <li>ignoreExpiredCrls:
    *   <p>
    *   Whether expired CRLs are ignored, default to true.</li>
+   * <li>importThreads:
+   *   <p>
+   *   Number of threads importing the revoked certificates in parallel, each with its own
+   *   database connection, default to 1.</li>
+   * <li>downloadThreads:
+   *   <p>
+   *   Maximal number of CRLs downloaded concurrently, default to 4.</li>
+   * <li>downloadConnectTimeout:
+   *   <p>
+   *   Timeout in seconds to connect to the CRL download server, default to 30.</li>
+   * <li>downloadReadTimeout:
+   *   <p>
+   *   Timeout in seconds to wait for data from the CRL download server, default to 60.</li>
+   * <li>downloadTimeout:
+   *   <p>
+   *   Maximal time in seconds for the downloads of all CRLs in one update, default to 600.
+   *   The downloads not finished by then are cancelled and treated as failed.</li>
    * </ul>
    * @param datasource DataSource.
    */
@@ -207,6 +262,25 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     String value = getOptionalStrValue(sourceConf, "sqlBatchCommit");
     this.sqlBatchCommit = StringUtil.isBlank(value) ? 1000 : (int) Double.parseDouble(value);
 
+    value = getOptionalStrValue(sourceConf, "importThreads");
+    this.importThreads = StringUtil.isBlank(value) ? 1 : (int) Double.parseDouble(value);
+    // keep connections for the import itself and for the OCSP requests
+    this.importThreads = Math.max(1, Math.min(importThreads, datasource.getMaximumPoolSize() / 2));
+
+    value = getOptionalStrValue(sourceConf, "downloadThreads");
+    this.downloadThreads = StringUtil.isBlank(value) ? 4 : Math.max(1, (int) Double.parseDouble(value));
+
+    value = getOptionalStrValue(sourceConf, "downloadConnectTimeout");
+    this.downloadConnectTimeout = 1000
+        * (StringUtil.isBlank(value) ? 30 : Math.max(1, (int) Double.parseDouble(value)));
+
+    value = getOptionalStrValue(sourceConf, "downloadReadTimeout");
+    this.downloadReadTimeout = 1000
+        * (StringUtil.isBlank(value) ? 60 : Math.max(1, (int) Double.parseDouble(value)));
+
+    value = getOptionalStrValue(sourceConf, "downloadTimeout");
+    this.downloadTimeout = StringUtil.isBlank(value) ? 600 : Math.max(1, (int) Double.parseDouble(value));
+
     value = getOptionalStrValue(sourceConf, "ignoreExpiredCrls");
     this.ignoreExpiredCrls = StringUtil.isBlank(value) || Boolean.parseBoolean(value);
 
@@ -230,15 +304,6 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     return (objVal instanceof String) ? (String) objVal : objVal.toString();
   } // method getStrValue
 
-  private static String getOptionalStrValue(Map<String, ?> sourceConf, String confName) {
-    Object objVal = sourceConf.get(confName);
-    if (objVal == null) {
-      return null;
-    }
-
-    return (objVal instanceof String) ? (String) objVal : objVal.toString();
-  } // method getStrValue
-
   @Override
   protected boolean isIgnoreExpiredCrls() {
     return ignoreExpiredCrls;
@@ -290,13 +355,10 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
           }
 
           downloadDirs.add(subDir);
-          try {
-            downloadCrl(subDir);
-          } catch (Exception ex) {
-            LogUtil.error(LOG, ex, "error downloading CRL for path " + subDir.getPath());
-          }
         }
 
+        downloadCrls(downloadDirs);
+
         boolean updateMe = false;
         for (File subDir : subDirs) {
           if (!(subDir.isDirectory() && subDir.getName().startsWith("crl-"))) {
@@ -312,7 +374,7 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
         }
 
         if (updateMe) {
-          ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls);
+          ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls, importThreads);
 
           if (importCrl.importCrlToOcspDb()) {
             LOG.info("updated CertStore {} successfully", name);
@@ -340,6 +402,37 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     } // end lock
   } // method updateStore
 
+  private void downloadCrls(List<File> downloadDirs) throws InterruptedException {
+    if (downloadDirs.isEmpty()) {
+      return;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>(downloadDirs.size());
+    for (File subDir : downloadDirs) {
+      tasks.add(() -> {
+        try {
+          downloadCrl(subDir);
+        } catch (Exception ex) {
+          LogUtil.error(LOG, ex, "error downloading CRL for path " + subDir.getPath());
+        }
+        return null;
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(downloadThreads, downloadDirs.size()));
+    try {
+      List<Future<Void>> futures = executor.invokeAll(tasks, downloadTimeout, TimeUnit.SECONDS);
+      for (int i = 0; i < futures.size(); i++) {
+        if (futures.get(i).isCancelled()) {
+          LOG.error("error downloading CRL for path {}: not finished within {} seconds, cancelled",
+              downloadDirs.get(i).getPath(), downloadTimeout);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  } // method downloadCrls
+
   // Download CRL
   private void downloadCrl(File subDir) throws Exception {
     if (new File(subDir, "REMOVEME").exists()) {
@@ -429,66 +522,85 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     }
 
     String subDirPath = subDir.getPath();
-    Curl curl = curls.get(subDirPath);
+    SslContextConf sslContextConf = null;
 
     File trustanchorFile = new File(subDir, "tls-trustanchor.pem");
     if (trustanchorFile.exists()) {
-      if (curl != null) {
-        long lastModified = curlsConfLastModified.get(subDirPath);
-        if (trustanchorFile.lastModified() != lastModified) {
-          curl = null;
-          curlsConfLastModified.remove(subDirPath);
-          curls.remove(subDirPath);
-        }
-      }
-
-      if (curl == null) {
-        SslContextConf sslContextConf = new SslContextConf(
+      sslContextConf = sslContextConfs.get(subDirPath);
+      Long lastModified = sslContextConfsLastModified.get(subDirPath);
+      if (sslContextConf == null || lastModified == null || trustanchorFile.lastModified() != lastModified) {
+        sslContextConf = new SslContextConf(
             new FileOrBinary[] {FileOrBinary.ofFile(trustanchorFile.getPath())}, null);
-        curl = new DefaultCurl();
-        ((DefaultCurl) curl).setSslContextConf(sslContextConf);
-        curls.put(subDirPath, curl);
-        curlsConfLastModified.put(subDirPath, trustanchorFile.lastModified());
+        sslContextConf.init();
+        sslContextConfs.put(subDirPath, sslContextConf);
+        sslContextConfsLastModified.put(subDirPath, trustanchorFile.lastModified());
       }
     } else {
-      if (curl == null) {
-        curl = new DefaultCurl();
-        curls.put(subDirPath, curl);
-        curlsConfLastModified.put(subDirPath, 0L);
-      }
+      sslContextConfs.remove(subDirPath);
+      sslContextConfsLastModified.remove(subDirPath);
     }
 
     // download the fingerprint if download.fp.url is specified
     if (hashUrl != null) {
-      Curl.CurlResult downResult = curl.curlGet(hashUrl, false, null, null);
-      if (downResult.getContentLength() > 0 && Arrays.equals(hashValue, downResult.getContent())) {
+      ByteArrayOutputStream hashStream = new ByteArrayOutputStream();
+      DownloadResult downResult = httpGet(hashUrl, sslContextConf, Collections.emptyMap(), hashStream,
+          downloadConnectTimeout, downloadReadTimeout);
+      if (downResult.contentLength > 0 && Arrays.equals(hashValue, hashStream.toByteArray())) {
         LOG.info("Fingerprint of the CRL has not changed, skip downloading CRL");
         return;
       }
     }
 
+    // Send the validators of the last download only if the CRL downloaded then is the current one.
+    File downloadStateFile = new File(subDir, "crl.download.state");
+    Map<String, String> headers = new HashMap<>();
+    if (crlNumber != null) {
+      Properties state = loadProperties(downloadStateFile);
+      if (crlNumber.toString().equals(state.getProperty("crlnumber"))) {
+        String etag = state.getProperty("etag");
+        if (StringUtil.isNotBlank(etag)) {
+          headers.put("If-None-Match", etag);
+        }
+
+        String lastModified = state.getProperty("last-modified");
+        if (StringUtil.isNotBlank(lastModified)) {
+          headers.put("If-Modified-Since", lastModified);
+        }
+      }
+    }
+
     File tmpCrlFile = new File(generatedDir, "tmp-ca.crl");
 
+    // the CRL is written to the file and hashed while being received
     CompositeOutputStream crlStream = new CompositeOutputStream(
         hashAlgo == null ? null : HashAlgo.getInstance(hashAlgo), Files.newOutputStream(tmpCrlFile.toPath()));
 
-    Curl.CurlResult downResult;
+    DownloadResult downResult;
     try {
-      downResult = curl.curlGet(downloadUrl, crlStream, false, null, null);
+      downResult = httpGet(downloadUrl, sslContextConf, headers, crlStream,
+          downloadConnectTimeout, downloadReadTimeout);
     } finally {
       crlStream.close();
     }
-    String contentType = downResult.getContentType();
 
+    if (downResult.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      IoUtil.deleteFile0(tmpCrlFile);
+      LOG.info("CRL has not been modified since the last download");
+      return;
+    }
+
+    String contentType = downResult.contentType;
     if (!CT_PKIX_CRL.equals(contentType)) {
+      IoUtil.deleteFile0(tmpCrlFile);
       LOG.error("Downloading CRL failed, expected content type {}, but received {}", CT_PKIX_CRL, contentType);
       return;
     }
 
-    if (downResult.getContentLength() < 10) {
-      byte[] errorContent = downResult.getErrorContent();
+    if (downResult.contentLength < 10) {
+      IoUtil.deleteFile0(tmpCrlFile);
+      byte[] errorContent = downResult.errorContent;
       if (errorContent == null) {
-        LOG.error("Downloading CRL failed, CRL too short (len={}): ", downResult.getContentLength());
+        LOG.error("Downloading CRL failed, CRL too short (len={}): ", downResult.contentLength);
       } else {
         LOG.error("Downloading CRL failed with error: {}", new String(errorContent));
       }
@@ -518,9 +630,77 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
       LOG.info("Downloaded CRL is not newer than existing one");
     }
 
+    saveDownloadState(downloadStateFile, useNewCrl ? newCrlNumber : crlNumber, downResult);
     IoUtil.deleteFile0(updateMeNowFile);
   }
 
+  private static void saveDownloadState(File stateFile, BigInteger crlNumber, DownloadResult downResult)
+      throws IOException {
+    if (downResult.etag == null && downResult.lastModified == null) {
+      IoUtil.deleteFile0(stateFile);
+      return;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("crlnumber=").append(crlNumber).append("\n");
+    if (downResult.etag != null) {
+      sb.append("etag=").append(downResult.etag).append("\n");
+    }
+    if (downResult.lastModified != null) {
+      sb.append("last-modified=").append(downResult.lastModified).append("\n");
+    }
+    IoUtil.save(stateFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+  } // method saveDownloadState
+
+  static DownloadResult httpGet(
+      String url, SslContextConf sslContextConf, Map<String, String> headers, OutputStream out,
+      int connectTimeoutMillis, int readTimeoutMillis)
+      throws Exception {
+    HttpURLConnection conn = IoUtil.openHttpConn(new URL(url));
+    conn.setConnectTimeout(connectTimeoutMillis);
+    conn.setReadTimeout(readTimeoutMillis);
+    if (sslContextConf != null && conn instanceof HttpsURLConnection) {
+      HttpsURLConnection httpsConn = (HttpsURLConnection) conn;
+      httpsConn.setSSLSocketFactory(sslContextConf.getSslSocketFactory());
+      HostnameVerifier hostnameVerifier = sslContextConf.getHostnameVerifier();
+      if (hostnameVerifier != null) {
+        httpsConn.setHostnameVerifier(hostnameVerifier);
+      }
+    }
+
+    try {
+      conn.setRequestMethod("GET");
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        conn.setRequestProperty(header.getKey(), header.getValue());
+      }
+
+      DownloadResult result = new DownloadResult();
+      result.statusCode = conn.getResponseCode();
+      if (result.statusCode == HttpURLConnection.HTTP_OK) {
+        result.contentType = conn.getHeaderField("Content-Type");
+        result.etag = conn.getHeaderField("ETag");
+        result.lastModified = conn.getHeaderField("Last-Modified");
+
+        byte[] buffer = new byte[8192];
+        try (InputStream in = conn.getInputStream()) {
+          int read;
+          while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            result.contentLength += read;
+          }
+        }
+      } else if (result.statusCode != HttpURLConnection.HTTP_NOT_MODIFIED) {
+        InputStream errorStream = conn.getErrorStream();
+        if (errorStream != null) {
+          result.errorContent = IoUtil.readAllBytesAndClose(errorStream);
+        }
+      }
+      return result;
+    } finally {
+      conn.disconnect();
+    }
+  } // method httpGet
+
   static Properties loadProperties(File file) throws IOException {
     Properties props = new Properties();
     if (file.exists() && file.isFile()) {
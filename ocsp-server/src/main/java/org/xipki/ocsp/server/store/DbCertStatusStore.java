@@ -23,14 +23,21 @@ import org.xipki.security.util.X509Util;
 import org.xipki.util.Args;
 import org.xipki.util.Base64;
 import org.xipki.util.CollectionUtil;
+import org.xipki.util.IoUtil;
 import org.xipki.util.JSON;
 import org.xipki.util.LogUtil;
 import org.xipki.util.RandomUtil;
 import org.xipki.util.StringUtil;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.sql.PreparedStatement;
@@ -38,6 +45,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -53,6 +61,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * OcspStore for XiPKI OCSP database.
+ * <p>
+ * Optionally, a Bloom filter of the serial numbers is kept for each issuer, so that requests for
+ * certificates not contained in the database can be answered without querying the database.
  *
  * @author Lijun Liao (xipki)
  * @since 2.0.0
@@ -60,6 +71,23 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DbCertStatusStore extends OcspStore {
 
+  static class CertRow {
+    int crlId;
+    boolean ignore;
+    String b64CertHash;
+    boolean revoked;
+    int reason;
+    long revTime;
+    long invalTime;
+  } // class CertRow
+
+  @FunctionalInterface
+  private interface ReadQuery<T> {
+
+    T execute(DataSourceWrapper datasource) throws DataAccessException;
+
+  } // interface ReadQuery
+
   private class StoreUpdateService implements Runnable {
 
     @Override
@@ -71,6 +99,10 @@ public class DbCertStatusStore extends OcspStore {
 
   protected DataSourceWrapper datasource;
 
+  private static final int NUM_SERIALS_PER_SELECT = 1000;
+
+  private static final int MAX_SERIALS_PER_IN_SELECT = 100;
+
   private static final Logger LOG = LoggerFactory.getLogger(DbCertStatusStore.class);
 
   private static final int SECONDS_PER_5MIN = 300;
@@ -89,10 +121,25 @@ public class DbCertStatusStore extends OcspStore {
 
   private String sqlCsWithCertHash;
 
+  private String sqlSerials;
+
+  private String sqlFilterSerials;
+
   private IssuerFilter issuerFilter;
 
+  private boolean serialFilterEnabled;
+
+  // directory to persist the serial filters, null if not persisted.
+  private File serialFilterDir;
+
+  private volatile Map<Integer, SerialFilter> serialFilters = Collections.emptyMap();
+
   private final IssuerStore issuerStore = new IssuerStore();
 
+  private List<DataSourceWrapper> readDatasources;
+
+  private ReadDataSourceRouter readRouter;
+
   private HashAlgo certHashAlgo;
 
   private boolean initialized;
@@ -133,6 +180,9 @@ public class DbCertStatusStore extends OcspStore {
       try {
         updateIssuers();
         updateCrls();
+        if (serialFilterEnabled) {
+          updateSerialFilters();
+        }
       } finally {
         initialized = true;
         storeUpdateInProcess.set(false);
@@ -226,6 +276,7 @@ public class DbCertStatusStore extends OcspStore {
         } // end while (rs.next())
 
         this.issuerStore.setIssuers(caInfos);
+        fireIssuersChanged();
         if (LOG.isInfoEnabled()) {
           StringBuilder sb = new StringBuilder();
           for (IssuerEntry m : caInfos) {
@@ -270,6 +321,137 @@ public class DbCertStatusStore extends OcspStore {
     }
   } // method updateCrls
 
+  private void updateSerialFilters() {
+    Map<Integer, SerialFilter> oldFilters = serialFilters;
+    Map<Integer, SerialFilter> newFilters = new HashMap<>();
+
+    for (Integer id : issuerStore.getIds()) {
+      try {
+        SerialFilter filter = oldFilters.get(id);
+        if (filter == null) {
+          filter = loadSerialFilter(id);
+        }
+
+        if (filter != null && filter.size() > filter.getCapacity()) {
+          LOG.info("serial filter of issuer {} in store {} is full, rebuild it", id, name);
+          filter = null;
+        }
+
+        boolean newFilter = filter == null;
+        if (newFilter) {
+          // reserve space for the certificates added later
+          int numCerts = datasource.getCount(null, "CERT", "IID=" + id);
+          filter = SerialFilter.newInstance((int) Math.min(Integer.MAX_VALUE, 2L * numCerts));
+        }
+
+        long syncTime = Instant.now().getEpochSecond();
+        int num = addSerials(filter, id);
+        filter.setLastSync(syncTime);
+        newFilters.put(id, filter);
+
+        if (newFilter || num > 0) {
+          saveSerialFilter(id, filter);
+        }
+        LOG.info("{} serial filter of issuer {} in store {} with {} serial numbers",
+            newFilter ? "built" : "updated", id, name, num);
+      } catch (Throwable th) {
+        // without filter, the database will be queried.
+        LogUtil.error(LOG, th, "error updating serial filter of issuer " + id + " in store " + name);
+      }
+    }
+
+    serialFilters = newFilters;
+  } // method updateSerialFilters
+
+  /**
+   * Adds the serial numbers of the certificates not read by the update before the last one. The
+   * serial number of a certificate never changes, hence only the new certificates are read, via
+   * the primary key.
+   * @return number of serial numbers not contained in the filter before.
+   */
+  private int addSerials(SerialFilter filter, int issuerId) throws DataAccessException {
+    final String sql = sqlFilterSerials;
+    int num = 0;
+    long startId = filter.getScanFromId();
+    long maxId = startId;
+    while (true) {
+      PreparedStatement ps = datasource.prepareStatement(sql);
+      ResultSet rs = null;
+      int numInBatch = 0;
+      try {
+        ps.setInt(1, issuerId);
+        ps.setLong(2, startId);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          numInBatch++;
+          maxId = Math.max(maxId, rs.getLong("ID"));
+          if (filter.add(new BigInteger(rs.getString("SN"), 16))) {
+            num++;
+          }
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseDbResources(ps, rs);
+      }
+
+      startId = maxId;
+      if (numInBatch < NUM_SERIALS_PER_SELECT) {
+        filter.setMaxId(maxId);
+        return num;
+      }
+    }
+  } // method addSerials
+
+  private File getSerialFilterFile(int issuerId) {
+    return new File(serialFilterDir, "serialfilter-" + name + "-" + issuerId + ".bin");
+  }
+
+  private SerialFilter loadSerialFilter(int issuerId) {
+    if (serialFilterDir == null) {
+      return null;
+    }
+
+    File file = getSerialFilterFile(issuerId);
+    if (!file.exists()) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      return SerialFilter.read(in);
+    } catch (IOException ex) {
+      LogUtil.warn(LOG, ex, "could not read serial filter from file " + file.getPath() + ", rebuild it");
+      return null;
+    }
+  } // method loadSerialFilter
+
+  private void saveSerialFilter(int issuerId, SerialFilter filter) {
+    if (serialFilterDir == null) {
+      return;
+    }
+
+    File file = getSerialFilterFile(issuerId);
+    File tmpFile = new File(file.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+        filter.write(out);
+      }
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException ex) {
+      LogUtil.warn(LOG, ex, "could not save serial filter to file " + file.getPath());
+    }
+  } // method saveSerialFilter
+
+  /**
+   * Returns whether the certificate is not contained in the database as of the last update of
+   * the serial filter.
+   */
+  private boolean isSerialAbsent(int issuerId, BigInteger serialNumber) {
+    SerialFilter filter = serialFilters.get(issuerId);
+    return filter != null && !filter.mightContain(serialNumber);
+  }
+
   @Override
   protected CertStatusInfo getCertStatus0(Instant time, RequestIssuer reqIssuer, BigInteger serialNumber,
                                           boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
@@ -290,16 +472,12 @@ public class DbCertStatusStore extends OcspStore {
         return null;
       }
 
-      CrlInfo crlInfo = null;
-      if (issuer.getCrlId() != 0) {
-        crlInfo = issuerStore.getCrlInfo(issuer.getCrlId());
-        // check whether CRL is expired
-        if (isIgnoreExpiredCrls()) {
-          // CRL will expire in 5 minutes
-          if (crlInfo.getNextUpdate().getEpochSecond() < time.getEpochSecond() + SECONDS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
-          }
-        }
+      if (isIssuerCrlExpired(issuer, time)) {
+        return CertStatusInfo.getCrlExpiredStatusInfo();
+      }
+
+      if (isSerialAbsent(issuer.getId(), serialNumber)) {
+        return buildCertStatusInfo(time, issuer, null, inheritCaRevocation);
       }
 
       if (includeCertHash) {
@@ -308,160 +486,272 @@ public class DbCertStatusStore extends OcspStore {
         sql = includeRit ? sqlCs : sqlCsNoRit;
       }
 
-      ResultSet rs = null;
-      CertStatusInfo certStatusInfo;
+      final String sql0 = sql;
+      CertRow row = executeRead(ds -> {
+        ResultSet rs = null;
+        PreparedStatement ps = ds.prepareStatement(sql0);
+        try {
+          ps.setInt(1, issuer.getId());
+          ps.setString(2, serialNumber.toString(16));
+          rs = ps.executeQuery();
+          return rs.next() ? readCertRow(rs, time, includeCertHash, includeRit) : null;
+        } catch (SQLException ex) {
+          throw ds.translate(sql0, ex);
+        } finally {
+          ds.releaseResources(ps, rs);
+        }
+      });
 
-      boolean unknown = true;
-      boolean ignore = false;
-      String b64CertHash = null;
-      boolean revoked = false;
-      int reason = 0;
-      long revTime = 0;
-      long invalTime = 0;
-      int crlId = 0;
+      return buildCertStatusInfo(time, issuer, row, inheritCaRevocation);
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
 
-      PreparedStatement ps = datasource.prepareStatement(sql);
+  } // method getCertStatus0
 
-      try {
-        ps.setInt(1, issuer.getId());
-        ps.setString(2, serialNumber.toString(16));
-        rs = ps.executeQuery();
+  @Override
+  protected Map<BigInteger, CertStatusInfo> getCertStatuses0(
+      Instant time, RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers,
+      boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
+      throws OcspStoreException {
+    if (!initialized) {
+      throw new OcspStoreException("initialization of CertStore is still in process");
+    }
 
-        if (rs.next()) {
-          unknown = false;
-          crlId = rs.getInt("CRL_ID");
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return null;
+    }
 
-          long timeInSec = time.getEpochSecond();
-          if (ignoreNotYetValidCert) {
-            long notBeforeInSec = rs.getLong("NBEFORE");
-            if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
-              ignore = true;
-            }
-          }
+    Map<BigInteger, CertStatusInfo> ret = new HashMap<>();
+    if (isIssuerCrlExpired(issuer, time)) {
+      for (BigInteger serialNumber : serialNumbers) {
+        ret.put(serialNumber, CertStatusInfo.getCrlExpiredStatusInfo());
+      }
+      return ret;
+    }
 
-          if (!ignore && ignoreExpiredCert) {
-            long notAfterInSec = rs.getLong("NAFTER");
-            if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
-              ignore = true;
-            }
-          }
+    Set<BigInteger> validSerialSet = new HashSet<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      if (serialNumber.signum() != 1) { // non-positive serial number
+        ret.put(serialNumber, CertStatusInfo.getUnknownCertStatusInfo(Instant.now(), null));
+      } else if (isSerialAbsent(issuer.getId(), serialNumber)) {
+        ret.put(serialNumber, buildCertStatusInfo(time, issuer, null, inheritCaRevocation));
+      } else {
+        validSerialSet.add(serialNumber);
+      }
+    }
+    List<BigInteger> validSerials = new ArrayList<>(validSerialSet);
+
+    String columns = "SN,NBEFORE,NAFTER,REV,RR,RT," + (includeRit ? "RIT," : "")
+        + (includeCertHash ? "HASH," : "") + "CRL_ID FROM CERT WHERE IID=? AND SN";
 
-          if (!ignore) {
-            if (includeCertHash) {
-              b64CertHash = rs.getString("HASH");
+    try {
+      Map<BigInteger, CertRow> rows = new HashMap<>();
+      for (int from = 0; from < validSerials.size(); from += MAX_SERIALS_PER_IN_SELECT) {
+        List<BigInteger> subSerials =
+            validSerials.subList(from, Math.min(validSerials.size(), from + MAX_SERIALS_PER_IN_SELECT));
+        final String sql = buildArraySql(datasource, columns, subSerials.size());
+
+        rows.putAll(executeRead(ds -> {
+          Map<BigInteger, CertRow> subRows = new HashMap<>();
+          ResultSet rs = null;
+          PreparedStatement ps = ds.prepareStatement(sql);
+          try {
+            int idx = 1;
+            ps.setInt(idx++, issuer.getId());
+            for (BigInteger serialNumber : subSerials) {
+              ps.setString(idx++, serialNumber.toString(16));
             }
+            rs = ps.executeQuery();
 
-            revoked = rs.getBoolean("REV");
-            if (revoked) {
-              reason = rs.getInt("RR");
-              revTime = rs.getLong("RT");
-              if (includeRit) {
-                invalTime = rs.getLong("RIT");
-              }
+            while (rs.next()) {
+              subRows.put(new BigInteger(rs.getString("SN"), 16), readCertRow(rs, time, includeCertHash, includeRit));
             }
+          } catch (SQLException ex) {
+            throw ds.translate(sql, ex);
+          } finally {
+            ds.releaseResources(ps, rs);
           }
-        } // end if (rs.next())
-      } catch (SQLException ex) {
-        throw datasource.translate(sql, ex);
-      } finally {
-        releaseDbResources(ps, rs);
+          return subRows;
+        }));
       }
 
-      if (crlId == 0) {
-        crlId = issuer.getCrlId();
+      for (BigInteger serialNumber : validSerials) {
+        ret.put(serialNumber, buildCertStatusInfo(time, issuer, rows.get(serialNumber), inheritCaRevocation));
       }
+      return ret;
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+  } // method getCertStatuses0
+
+  /**
+   * Executes the read-only query on a read datasource if configured, and on the primary
+   * datasource otherwise or if the query on the read datasource failed.
+   */
+  private <T> T executeRead(ReadQuery<T> query) throws DataAccessException {
+    DataSourceWrapper ds = (readRouter == null) ? datasource : readRouter.select();
+    if (ds == datasource) {
+      return query.execute(datasource);
+    }
+
+    long start = System.nanoTime();
+    try {
+      T result = query.execute(ds);
+      readRouter.onSuccess(ds, System.nanoTime() - start);
+      return result;
+    } catch (DataAccessException ex) {
+      readRouter.onFailure(ds, ex);
+      return query.execute(datasource);
+    }
+  } // method executeRead
+
+  boolean isIssuerCrlExpired(IssuerEntry issuer, Instant time) {
+    if (issuer.getCrlId() == 0 || !isIgnoreExpiredCrls()) {
+      return false;
+    }
+
+    CrlInfo crlInfo = issuerStore.getCrlInfo(issuer.getCrlId());
+    // CRL will expire in 5 minutes
+    return crlInfo.getNextUpdate().getEpochSecond() < time.getEpochSecond() + SECONDS_PER_5MIN;
+  }
 
-      if (crlInfo == null && crlId != 0) {
-        crlInfo = issuerStore.getCrlInfo(crlId);
+  private CertRow readCertRow(ResultSet rs, Instant time, boolean includeCertHash, boolean includeRit)
+      throws SQLException {
+    boolean revoked = rs.getBoolean("REV");
+    return toCertRow(time, rs.getInt("CRL_ID"), rs.getLong("NBEFORE"), rs.getLong("NAFTER"),
+        includeCertHash ? rs.getString("HASH") : null, revoked,
+        revoked ? rs.getInt("RR") : 0, revoked ? rs.getLong("RT") : 0,
+        (revoked && includeRit) ? rs.getLong("RIT") : 0);
+  } // method readCertRow
+
+  CertRow toCertRow(Instant time, int crlId, long notBeforeInSec, long notAfterInSec, String b64CertHash,
+                    boolean revoked, int reason, long revTime, long invalTime) {
+    CertRow row = new CertRow();
+    row.crlId = crlId;
+
+    long timeInSec = time.getEpochSecond();
+    if (ignoreNotYetValidCert) {
+      if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
+        row.ignore = true;
       }
+    }
 
-      Instant thisUpdate;
-      Instant nextUpdate;
-      if (crlInfo == null) {
-        thisUpdate = Instant.now();
-        nextUpdate = null;
-      } else {
-        thisUpdate = crlInfo.getThisUpdate();
-        nextUpdate = crlInfo.getNextUpdate();
+    if (!row.ignore && ignoreExpiredCert) {
+      if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
+        row.ignore = true;
+      }
+    }
 
-        if (isIgnoreExpiredCrls()) {
-          // CRL will expire in 5 minutes
-          if (crlInfo.getNextUpdate().getEpochSecond() < time.getEpochSecond() + SECONDS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
-          }
-        }
+    if (!row.ignore) {
+      row.b64CertHash = b64CertHash;
+      row.revoked = revoked;
+      if (revoked) {
+        row.reason = reason;
+        row.revTime = revTime;
+        row.invalTime = invalTime;
       }
+    }
+    return row;
+  } // method toCertRow
 
-      if (unknown) {
-        certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
-      } else if (ignore) {
-        certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
-      } else {
-        byte[] certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
-        if (revoked) {
-          Instant invTime = (invalTime == 0 || invalTime == revTime) ? null : Instant.ofEpochSecond(invalTime);
-          CertRevocationInfo revInfo = new CertRevocationInfo(reason, Instant.ofEpochSecond(revTime), invTime);
-          certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-              certHashAlgo, certHash, thisUpdate, nextUpdate, null);
-        } else {
-          certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo, certHash, thisUpdate, nextUpdate, null);
+  /**
+   * Builds the certificate status.
+   * @param row the entry of the certificate, {@code null} if the certificate is unknown.
+   */
+  CertStatusInfo buildCertStatusInfo(
+      Instant time, IssuerEntry issuer, CertRow row, boolean inheritCaRevocation) {
+    // the CRL of the issuer has precedence over the one in the certificate entry
+    int crlId = (issuer.getCrlId() != 0 || row == null) ? issuer.getCrlId() : row.crlId;
+    CrlInfo crlInfo = (crlId == 0) ? null : issuerStore.getCrlInfo(crlId);
+
+    CertStatusInfo certStatusInfo;
+
+    Instant thisUpdate;
+    Instant nextUpdate;
+    if (crlInfo == null) {
+      thisUpdate = Instant.now();
+      nextUpdate = null;
+    } else {
+      thisUpdate = crlInfo.getThisUpdate();
+      nextUpdate = crlInfo.getNextUpdate();
+
+      if (isIgnoreExpiredCrls()) {
+        // CRL will expire in 5 minutes
+        if (crlInfo.getNextUpdate().getEpochSecond() < time.getEpochSecond() + SECONDS_PER_5MIN) {
+          return CertStatusInfo.getCrlExpiredStatusInfo();
         }
       }
+    }
 
-      if (includeCrlId && crlInfo != null) {
-        certStatusInfo.setCrlId(crlInfo.getCrlId());
+    if (row == null) {
+      certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
+    } else if (row.ignore) {
+      certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
+    } else {
+      byte[] certHash = (row.b64CertHash == null) ? null : Base64.decodeFast(row.b64CertHash);
+      if (row.revoked) {
+        Instant invTime = (row.invalTime == 0 || row.invalTime == row.revTime)
+            ? null : Instant.ofEpochSecond(row.invalTime);
+        CertRevocationInfo revInfo = new CertRevocationInfo(row.reason, Instant.ofEpochSecond(row.revTime), invTime);
+        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
+            certHashAlgo, certHash, thisUpdate, nextUpdate, null);
+      } else {
+        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo, certHash, thisUpdate, nextUpdate, null);
       }
+    }
 
-      if (includeArchiveCutoff) {
-        if (retentionInterval != 0) {
-          Instant date;
+    if (includeCrlId && crlInfo != null) {
+      certStatusInfo.setCrlId(crlInfo.getCrlId());
+    }
 
-          if (retentionInterval < 0) {
-            date = issuer.getNotBefore(); // expired certificate remains in status store forever
-          } else {
-            Instant t1 = Instant.now().minus(retentionInterval, ChronoUnit.DAYS);
-            date = issuer.getNotBefore().isBefore(t1) ? issuer.getNotBefore() : t1;
-          }
+    if (includeArchiveCutoff) {
+      if (retentionInterval != 0) {
+        Instant date;
 
-          certStatusInfo.setArchiveCutOff(date);
+        if (retentionInterval < 0) {
+          date = issuer.getNotBefore(); // expired certificate remains in status store forever
+        } else {
+          Instant t1 = Instant.now().minus(retentionInterval, ChronoUnit.DAYS);
+          date = issuer.getNotBefore().isBefore(t1) ? issuer.getNotBefore() : t1;
         }
-      }
 
-      if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
-        return certStatusInfo;
+        certStatusInfo.setArchiveCutOff(date);
       }
+    }
+
+    if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
+      return certStatusInfo;
+    }
 
-      CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
-      CertStatus certStatus = certStatusInfo.getCertStatus();
-      boolean replaced = false;
-      if (certStatus == CertStatus.GOOD) {
+    CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
+    CertStatus certStatus = certStatusInfo.getCertStatus();
+    boolean replaced = false;
+    if (certStatus == CertStatus.GOOD) {
+      replaced = true;
+    } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
+      if (unknownCertBehaviour == UnknownCertBehaviour.good) {
         replaced = true;
-      } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
-        if (unknownCertBehaviour == UnknownCertBehaviour.good) {
-          replaced = true;
-        }
-      } else if (certStatus == CertStatus.REVOKED) {
-        if (certStatusInfo.getRevocationInfo().getRevocationTime().isAfter(caRevInfo.getRevocationTime())) {
-          replaced = true;
-        }
       }
-
-      if (replaced) {
-        CertRevocationInfo newRevInfo = (caRevInfo.getReason() == CrlReason.CA_COMPROMISE)
-            ? caRevInfo
-            : new CertRevocationInfo(CrlReason.CA_COMPROMISE, caRevInfo.getRevocationTime(),
-                  caRevInfo.getInvalidityTime());
-
-        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
-            certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
-            certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(), certStatusInfo.getCertprofile());
+    } else if (certStatus == CertStatus.REVOKED) {
+      if (certStatusInfo.getRevocationInfo().getRevocationTime().isAfter(caRevInfo.getRevocationTime())) {
+        replaced = true;
       }
-      return certStatusInfo;
-    } catch (DataAccessException ex) {
-      throw new OcspStoreException(ex.getMessage(), ex);
     }
 
-  } // method getCertStatus0
+    if (replaced) {
+      CertRevocationInfo newRevInfo = (caRevInfo.getReason() == CrlReason.CA_COMPROMISE)
+          ? caRevInfo
+          : new CertRevocationInfo(CrlReason.CA_COMPROMISE, caRevInfo.getRevocationTime(),
+                caRevInfo.getInvalidityTime());
+
+      certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
+          certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
+          certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(), certStatusInfo.getCertprofile());
+    }
+    return certStatusInfo;
+  } // method buildCertStatusInfo
 
   /**
    * Borrow PreparedStatement.
@@ -499,6 +789,20 @@ public class DbCertStatusStore extends OcspStore {
     datasource.releaseResources(ps, rs);
   }
 
+  static String buildArraySql(DataSourceWrapper datasource, String prefix, int num) {
+    String sql = prefix + " IN (?" + ",?".repeat(Math.max(0, num - 1)) + ")";
+    return datasource.buildSelectFirstSql(num, sql);
+  }
+
+  /**
+   * Sets the datasources of the read replicas, to which the certificate status queries are routed.
+   * Must be called before {@link #init(Map, DataSourceWrapper)}.
+   * @param readDatasources the datasources of the read replicas.
+   */
+  public void setReadDatasources(List<DataSourceWrapper> readDatasources) {
+    this.readDatasources = readDatasources;
+  }
+
   /**
    * Initialize the store.
    *
@@ -508,6 +812,29 @@ public class DbCertStatusStore extends OcspStore {
    * <li>caCerts: optional
    *   <p>
    *   CA certificate files to be included / excluded.</li>
+   * <li>serialFilter: optional, default to false
+   *   <p>
+   *   Whether to keep a Bloom filter of the serial numbers for each issuer, and answer the
+   *   certificates not contained in it as unknown without querying the database. Takes effect
+   *   only if serialFilterTrustMiss is true.</li>
+   * <li>serialFilterTrustMiss: optional, default to false
+   *   <p>
+   *   Confirms that the certificates added to the database may be answered as unknown until the
+   *   next update of the store, since only then they are contained in the serial filter.</li>
+   * <li>serialFilterDir: optional
+   *   <p>
+   *   Directory to persist the serial filters, so that they need not be rebuilt after restart.</li>
+   * <li>readRouting: optional, default to roundRobin
+   *   <p>
+   *   How the status queries are distributed among the read datasources, roundRobin or leastLatency.</li>
+   * <li>maxReplicaLag: optional, default to 0
+   *   <p>
+   *   Maximal lag in seconds of a read datasource behind the datasource. If positive, read
+   *   datasources lagging further behind are not used, see ReadDataSourceRouter for how the lag is
+   *   measured. 0 to disable the check.</li>
+   * <li>replicaCheckInterval: optional, default to 10
+   *   <p>
+   *   Interval in seconds to check the read datasources.</li>
    *  </ul>
    * @param datasource DataSource.
    */
@@ -528,6 +855,11 @@ public class DbCertStatusStore extends OcspStore {
     sqlCsNoRit = datasource.buildSelectFirstSql(1,
         "NBEFORE,NAFTER,REV,RR,RT,CRL_ID FROM CERT WHERE IID=? AND SN=?");
 
+    sqlSerials = datasource.buildSelectFirstSql(NUM_SERIALS_PER_SELECT, "ID ASC",
+        "ID,SN FROM CERT WHERE IID=? AND ID>=? AND LUPDATE>=?");
+    sqlFilterSerials = datasource.buildSelectFirstSql(NUM_SERIALS_PER_SELECT, "ID ASC",
+        "ID,SN FROM CERT WHERE IID=? AND ID>?");
+
     sqlCsWithCertHash = datasource.buildSelectFirstSql(1,
         "NBEFORE,NAFTER,REV,RR,RT,RIT,HASH,CRL_ID FROM CERT WHERE IID=? AND SN=?");
     sqlCsNoRitWithCertHash = datasource.buildSelectFirstSql(1,
@@ -554,6 +886,45 @@ public class DbCertStatusStore extends OcspStore {
 
     this.issuerFilter = new IssuerFilter(includeIssuers, excludeIssuers);
 
+    String str = getOptionalStrValue(sourceConf, "serialFilter");
+    this.serialFilterEnabled = str != null && Boolean.parseBoolean(str);
+    if (serialFilterEnabled) {
+      str = getOptionalStrValue(sourceConf, "serialFilterTrustMiss");
+      if (str == null || !Boolean.parseBoolean(str)) {
+        // a filter miss would answer newly added certificates as unknown until the next update.
+        LOG.warn("store {}: serialFilter is ignored, since serialFilterTrustMiss is not true", name);
+        this.serialFilterEnabled = false;
+      }
+    }
+    str = getOptionalStrValue(sourceConf, "serialFilterDir");
+    if (serialFilterEnabled && StringUtil.isNotBlank(str)) {
+      this.serialFilterDir = new File(IoUtil.expandFilepath(str, true));
+      try {
+        IoUtil.mkdirs(serialFilterDir);
+      } catch (IOException ex) {
+        throw new OcspStoreException("could not create directory " + serialFilterDir.getPath(), ex);
+      }
+    }
+
+    if (readRouter != null) {
+      readRouter.close();
+      readRouter = null;
+    }
+
+    if (CollectionUtil.isNotEmpty(readDatasources)) {
+      str = getOptionalStrValue(sourceConf, "maxReplicaLag");
+      long maxReplicaLag = StringUtil.isBlank(str) ? 0 : Long.parseLong(str);
+      str = getOptionalStrValue(sourceConf, "replicaCheckInterval");
+      int replicaCheckInterval = StringUtil.isBlank(str) ? 10 : Integer.parseInt(str);
+      try {
+        readRouter = new ReadDataSourceRouter(datasource, readDatasources,
+            ReadDataSourceRouter.Routing.forName(getOptionalStrValue(sourceConf, "readRouting")),
+            maxReplicaLag, replicaCheckInterval);
+      } catch (IllegalArgumentException ex) {
+        throw new OcspStoreException(ex.getMessage(), ex);
+      }
+    }
+
     updateIssuerStore();
 
     if (this.scheduledThreadPoolExecutor != null) {
@@ -581,6 +952,11 @@ public class DbCertStatusStore extends OcspStore {
       scheduledThreadPoolExecutor = null;
     }
 
+    if (readRouter != null) {
+      readRouter.close();
+      readRouter = null;
+    }
+
     if (datasource != null) {
       datasource.close();
     }
@@ -597,10 +973,69 @@ public class DbCertStatusStore extends OcspStore {
     return (issuer == null) ? null : issuer.getCert();
   }
 
+  @Override
+  public List<X509Cert> getIssuerCerts() {
+    List<X509Cert> certs = new ArrayList<>();
+    for (Integer id : issuerStore.getIds()) {
+      IssuerEntry issuer = issuerStore.getIssuerForId(id);
+      if (issuer != null) {
+        certs.add(issuer.getCert());
+      }
+    }
+    return certs;
+  }
+
+  @Override
+  public boolean supportsSerialNumbersListing() {
+    return true;
+  }
+
+  @Override
+  public List<SerialWithId> getSerialNumbers(
+      RequestIssuer reqIssuer, long startId, long minLastUpdate, int numEntries)
+      throws OcspStoreException {
+    IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return Collections.emptyList();
+    }
+
+    final String sql = sqlSerials;
+    List<SerialWithId> ret = new ArrayList<>(Math.min(numEntries, NUM_SERIALS_PER_SELECT));
+    try {
+      PreparedStatement ps = datasource.prepareStatement(sql);
+      ResultSet rs = null;
+      try {
+        ps.setInt(1, issuer.getId());
+        ps.setLong(2, startId);
+        ps.setLong(3, minLastUpdate);
+        rs = ps.executeQuery();
+        while (rs.next() && ret.size() < numEntries) {
+          ret.add(new SerialWithId(rs.getLong("ID"), new BigInteger(rs.getString("SN"), 16)));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseDbResources(ps, rs);
+      }
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+    return ret;
+  } // method getSerialNumbers
+
   protected boolean isInitialized() {
     return initialized;
   }
 
+  static String getOptionalStrValue(Map<String, ?> sourceConf, String confName) {
+    Object objVal = sourceConf == null ? null : sourceConf.get(confName);
+    if (objVal == null) {
+      return null;
+    }
+
+    return (objVal instanceof String) ? (String) objVal : objVal.toString();
+  } // method getOptionalStrValue
+
   static Set<X509Cert> parseCerts(Collection<String> certFiles) throws OcspStoreException {
     Set<X509Cert> certs = new HashSet<>(certFiles.size());
     for (String certFile : certFiles) {
@@ -46,13 +46,25 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Import CRLs to database.
@@ -177,8 +189,6 @@ class ImportCrl {
   private static final String SQL_INSERT_CERT_REV = SqlUtil.buildInsertSql("CERT",
       "ID,IID,SN,REV,RR,RT,RIT,LUPDATE,CRL_ID");
 
-  private static final String SQL_DELETE_CERT = "DELETE FROM CERT WHERE IID=? AND SN=?";
-
   private static final String SQL_UPDATE_CERT_LUPDATE = "UPDATE CERT SET LUPDATE=? WHERE ID=?";
 
   private static final String SQL_UPDATE_CERT
@@ -189,6 +199,10 @@ class ImportCrl {
 
   private static final String CORE_SQL_SELECT_ID_CERT = "ID,REV,RR,RT,RIT,CRL_ID FROM CERT WHERE IID=? AND SN=?";
 
+  private static final String CORE_SQL_SELECT_ID_CERTS = "ID,SN,REV,RR,RT,RIT,CRL_ID FROM CERT WHERE IID=? AND SN";
+
+  private static final int MAX_SERIALS_PER_IN = 100;
+
   private final String basedir;
 
   private final String sqlSelectIdCert;
@@ -201,25 +215,39 @@ class ImportCrl {
 
   private final boolean ignoreExpiredCrls;
 
-  private PreparedStatement psDeleteCert;
+  private final int importThreads;
 
   private PreparedStatement psInsertCert;
 
-  private PreparedStatement psInsertCertRev;
-
   private PreparedStatement psSelectIdCert;
 
   private PreparedStatement psUpdateCert;
 
-  private PreparedStatement psUpdateCertRev;
-
   private PreparedStatement psUpdateCertLastupdate;
 
   private final AtomicInteger cachedIssuerId = new AtomicInteger(0);
 
   public ImportCrl(DataSourceWrapper datasource, String basedir, int sqlBatchCommit, boolean ignoreExpiredCrls)
       throws DataAccessException, NoSuchAlgorithmException {
+    this(datasource, basedir, sqlBatchCommit, ignoreExpiredCrls, 1);
+  }
+
+  /**
+   * Constructor.
+   * @param datasource the datasource of the OCSP database.
+   * @param basedir the directory containing the CRL folders.
+   * @param sqlBatchCommit number of revoked certificates imported in one transaction.
+   * @param ignoreExpiredCrls whether expired CRLs are ignored.
+   * @param importThreads number of threads importing the revoked certificates, each with its own
+   *        database connection. If 1, the revoked certificates are imported in the calling thread.
+   * @throws DataAccessException if database error occurs.
+   * @throws NoSuchAlgorithmException if the hash algorithm of the database is not supported.
+   */
+  public ImportCrl(DataSourceWrapper datasource, String basedir, int sqlBatchCommit, boolean ignoreExpiredCrls,
+                   int importThreads)
+      throws DataAccessException, NoSuchAlgorithmException {
     this.sqlBatchCommit = Args.min(sqlBatchCommit, "sqlBatchCommit", 1);
+    this.importThreads = Args.min(importThreads, "importThreads", 1);
     this.ignoreExpiredCrls = ignoreExpiredCrls;
     this.datasource = Args.notNull(datasource, "datasource");
     this.basedir = Args.notNull(basedir, "basedir");
@@ -362,12 +390,9 @@ class ImportCrl {
         autoCommitChanged = true;
       }
 
-      psDeleteCert = datasource.prepareStatement(conn, SQL_DELETE_CERT);
       psInsertCert = datasource.prepareStatement(conn, SQL_INSERT_CERT);
-      psInsertCertRev = datasource.prepareStatement(conn, SQL_INSERT_CERT_REV);
       psSelectIdCert = datasource.prepareStatement(conn, sqlSelectIdCert);
       psUpdateCert = datasource.prepareStatement(conn, SQL_UPDATE_CERT);
-      psUpdateCertRev = datasource.prepareStatement(conn, SQL_UPDATE_CERT_REV);
       psUpdateCertLastupdate = datasource.prepareStatement(conn, SQL_UPDATE_CERT_LUPDATE);
 
       for (CrlDirInfo crlDirInfo : crlDirInfos) {
@@ -397,8 +422,8 @@ class ImportCrl {
         }
       }
 
-      for (PreparedStatement ps : new PreparedStatement[]{psDeleteCert, psInsertCert, psInsertCertRev,
-            psSelectIdCert, psUpdateCert, psUpdateCertRev, psUpdateCertLastupdate}) {
+      for (PreparedStatement ps : new PreparedStatement[]{psInsertCert, psSelectIdCert, psUpdateCert,
+            psUpdateCertLastupdate}) {
         releaseResources(ps, null);
       }
 
@@ -791,99 +816,9 @@ class ImportCrl {
 
     // import the revoked information
     try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
-      int num = 0;
-      while (revokedCertList.hasNext()) {
-        num++;
-
-        // If the system time is adjusted to a previous time point during the
-        // import process, Instant.now() may be before startTime.
-        // Since all entries in the database whose Last-Update is before
-        // startTime will be deleted, we must ensure that the Last-Update is
-        // not before startTime.
-        long updateTimeSec = Math.max(Instant.now().getEpochSecond(), startTimeSec);
-
-        RevokedCert revCert = revokedCertList.next();
-        BigInteger serial = revCert.getSerialNumber();
-        long rt = revCert.getRevocationDate();
-        long rit = revCert.getInvalidityDate();
-        int reason = revCert.getReason();
-        X500Name issuer = revCert.getCertificateIssuer();
-        if (issuer != null && !issuer.equals(caCert.subject)) {
-          throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
-        }
-
-        String sql = null;
-        try {
-          if (reason == CrlReason.REMOVE_FROM_CRL.getCode()) {
-            if (isDeltaCrl) {
-              // delete the entry
-              sql = SQL_DELETE_CERT;
-              psDeleteCert.setInt(1, caId);
-              psDeleteCert.setString(2, serial.toString(16));
-              psDeleteCert.executeUpdate();
-            } else {
-              LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
-            }
-            continue;
-          }
-
-          CertInfo existingCertInfo = getCertInfo(caId, serial);
-          PreparedStatement ps;
-
-          if (existingCertInfo == null) {
-            sql = SQL_INSERT_CERT_REV;
-            long id = maxId.incrementAndGet();
-            ps = psInsertCertRev;
-            int offset = 1;
-
-            ps.setLong(offset++, id);
-            ps.setInt(offset++, caId);
-            ps.setString(offset++, serial.toString(16));
-            ps.setInt(offset++, 1);
-            ps.setInt(offset++, reason);
-            ps.setLong(offset++, rt);
-            if (rit != 0) {
-              ps.setLong(offset++, rit);
-            } else {
-              ps.setNull(offset++, Types.BIGINT);
-            }
-            ps.setLong(offset++, updateTimeSec);
-            ps.setInt(offset, crlInfoId);
-          } else {
-            if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
-              sql = SQL_UPDATE_CERT_REV;
-              ps = psUpdateCertRev;
-              int offset = 1;
-
-              ps.setInt(offset++, 1);
-              ps.setInt(offset++, reason);
-              ps.setLong(offset++, rt);
-              if (rit != 0) {
-                ps.setLong(offset++, rit);
-              } else {
-                ps.setNull(offset++, Types.BIGINT);
-              }
-              ps.setLong(offset++, updateTimeSec);
-              ps.setInt(offset++, crlInfoId);
-              ps.setLong(offset, existingCertInfo.id);
-            } else {
-              sql = SQL_UPDATE_CERT_LUPDATE;
-              ps = psUpdateCertLastupdate;
-              ps.setLong(1, updateTimeSec);
-              ps.setLong(2, existingCertInfo.id);
-            }
-          }
-
-          ps.executeUpdate();
-
-          if (num % sqlBatchCommit == 0) {
-            commit(conn);
-          }
-        } catch (SQLException ex) {
-          throw datasource.translate(sql, ex);
-        }
-      }
-
+      int num = (importThreads > 1)
+          ? importRevokedCertsParallel(revokedCertList, caCert, crlInfoId, isDeltaCrl, maxId, startTimeSec)
+          : importRevokedCertsSequential(conn, revokedCertList, caCert, crlInfoId, isDeltaCrl, maxId, startTimeSec);
       LOG.info("imported {} revoked certificates", num);
     }
 
@@ -965,6 +900,328 @@ class ImportCrl {
     }
   } // method importCrlRevokedCertificates
 
+  private int importRevokedCertsSequential(
+      Connection conn, RevokedCertsIterator revokedCertList, CertWrapper caCert, int crlInfoId,
+      boolean isDeltaCrl, AtomicLong maxId, long startTimeSec)
+      throws DataAccessException, ImportCrlException {
+    int num = 0;
+    List<RevokedCert> chunk;
+    while (!(chunk = readRevokedCertChunk(revokedCertList, caCert)).isEmpty()) {
+      num += chunk.size();
+      importRevokedCertChunk(conn, chunk, caCert.databaseId, crlInfoId, isDeltaCrl, maxId, startTimeSec);
+      commit(conn);
+    }
+    return num;
+  } // method importRevokedCertsSequential
+
+  private int importRevokedCertsParallel(
+      RevokedCertsIterator revokedCertList, CertWrapper caCert, int crlInfoId,
+      boolean isDeltaCrl, AtomicLong maxId, long startTimeSec)
+      throws DataAccessException, ImportCrlException {
+    int caId = caCert.databaseId;
+    ExecutorService executor = Executors.newFixedThreadPool(importThreads);
+    // limit the number of chunks held in memory
+    Semaphore permits = new Semaphore(2 * importThreads);
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    List<Future<?>> futures = new LinkedList<>();
+
+    int num = 0;
+    try {
+      List<RevokedCert> chunk;
+      while (failure.get() == null && !(chunk = readRevokedCertChunk(revokedCertList, caCert)).isEmpty()) {
+        num += chunk.size();
+        permits.acquireUninterruptibly();
+
+        final List<RevokedCert> chunk0 = chunk;
+        futures.add(executor.submit(() -> {
+          try {
+            importRevokedCertChunkOnPool(chunk0, caId, crlInfoId, isDeltaCrl, maxId, startTimeSec);
+          } catch (Exception ex) {
+            failure.compareAndSet(null, ex);
+          } finally {
+            permits.release();
+          }
+        }));
+
+        futures.removeIf(Future::isDone);
+      }
+
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new ImportCrlException("interrupted while importing the revoked certificates", ex);
+        } catch (ExecutionException ex) {
+          failure.compareAndSet(null, (Exception) ex.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Exception ex = failure.get();
+    if (ex instanceof DataAccessException) {
+      throw (DataAccessException) ex;
+    } else if (ex != null) {
+      throw new ImportCrlException("error importing the revoked certificates: " + ex.getMessage(), ex);
+    }
+    return num;
+  } // method importRevokedCertsParallel
+
+  /**
+   * Imports the chunk in its own transaction on a connection of the pool.
+   */
+  private void importRevokedCertChunkOnPool(
+      List<RevokedCert> chunk, int caId, int crlInfoId, boolean isDeltaCrl, AtomicLong maxId, long startTimeSec)
+      throws DataAccessException {
+    Connection conn = datasource.getConnection();
+    boolean autoCommitChanged = false;
+    try {
+      if (conn.getAutoCommit()) {
+        conn.setAutoCommit(false);
+        autoCommitChanged = true;
+      }
+
+      importRevokedCertChunk(conn, chunk, caId, crlInfoId, isDeltaCrl, maxId, startTimeSec);
+      commit(conn);
+    } catch (SQLException ex) {
+      throw datasource.translate("setAutoCommit", ex);
+    } finally {
+      if (autoCommitChanged) {
+        try {
+          conn.setAutoCommit(true);
+        } catch (SQLException ex) {
+          LOG.error("could not import CRL to OCSP database (Connection.setAutoCommit)");
+        }
+      }
+      datasource.returnConnection(conn);
+    }
+  } // method importRevokedCertChunkOnPool
+
+  /**
+   * Reads the next at most {@code sqlBatchCommit} entries, sorted and de-duplicated by the serial
+   * number.
+   */
+  private List<RevokedCert> readRevokedCertChunk(RevokedCertsIterator revokedCertList, CertWrapper caCert)
+      throws ImportCrlException {
+    List<RevokedCert> chunk = new ArrayList<>(Math.min(sqlBatchCommit, 1024));
+    while (chunk.size() < sqlBatchCommit && revokedCertList.hasNext()) {
+      RevokedCert revCert = revokedCertList.next();
+      X500Name issuer = revCert.getCertificateIssuer();
+      if (issuer != null && !issuer.equals(caCert.subject)) {
+        throw new ImportCrlException("invalid CRLEntry for certificate number " + revCert.getSerialNumber());
+      }
+      chunk.add(revCert);
+    }
+
+    return sortAndDeduplicate(chunk);
+  } // method readRevokedCertChunk
+
+  /**
+   * Sorts the entries by the serial number and removes the duplicated serial numbers, so that the
+   * batch INSERT does not violate the constraint CONST_ISSUER_SN. As in the import of the entries
+   * one by one, the last entry of a serial number wins.
+   * @param chunk the entries in the order of the CRL. Will be sorted.
+   * @return the sorted entries with unique serial numbers.
+   */
+  static List<RevokedCert> sortAndDeduplicate(List<RevokedCert> chunk) {
+    // the sort is stable, the entries of the same serial number remain in the order of the CRL.
+    chunk.sort(Comparator.comparing(RevokedCert::getSerialNumber));
+
+    List<RevokedCert> ret = new ArrayList<>(chunk.size());
+    int size = chunk.size();
+    for (int i = 0; i < size; i++) {
+      RevokedCert revCert = chunk.get(i);
+      if (i + 1 < size && chunk.get(i + 1).getSerialNumber().equals(revCert.getSerialNumber())) {
+        continue;
+      }
+      ret.add(revCert);
+    }
+
+    if (ret.size() != size) {
+      LOG.warn("ignored {} CRL entries with duplicated serial numbers", size - ret.size());
+    }
+    return ret;
+  } // method sortAndDeduplicate
+
+  /**
+   * Merges the chunk into the table CERT: the existing rows are read with one query per
+   * {@link #MAX_SERIALS_PER_IN} serial numbers, and the changes are written as JDBC batches.
+   */
+  private void importRevokedCertChunk(
+      Connection conn, List<RevokedCert> chunk, int caId, int crlInfoId, boolean isDeltaCrl,
+      AtomicLong maxId, long startTimeSec)
+      throws DataAccessException {
+    // If the system time is adjusted to a previous time point during the
+    // import process, Instant.now() may be before startTime.
+    // Since all entries in the database whose Last-Update is before
+    // startTime will be deleted, we must ensure that the Last-Update is
+    // not before startTime.
+    long updateTimeSec = Math.max(Instant.now().getEpochSecond(), startTimeSec);
+
+    List<BigInteger> removedSerials = new ArrayList<>();
+    List<RevokedCert> revCerts = new ArrayList<>(chunk.size());
+    for (RevokedCert revCert : chunk) {
+      if (revCert.getReason() == CrlReason.REMOVE_FROM_CRL.getCode()) {
+        if (isDeltaCrl) {
+          removedSerials.add(revCert.getSerialNumber());
+        } else {
+          LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
+        }
+      } else {
+        revCerts.add(revCert);
+      }
+    }
+
+    // delete the entries
+    if (!removedSerials.isEmpty()) {
+      executeSerialsUpdate(conn, "DELETE FROM CERT WHERE IID=? AND SN", caId, removedSerials);
+    }
+
+    if (revCerts.isEmpty()) {
+      return;
+    }
+
+    Map<BigInteger, CertInfo> existingCertInfos = getCertInfos(conn, caId, revCerts);
+
+    List<RevokedCert> newCerts = new ArrayList<>();
+    List<RevokedCert> changedCerts = new ArrayList<>();
+    List<Long> unchangedIds = new ArrayList<>();
+    for (RevokedCert revCert : revCerts) {
+      CertInfo existingCertInfo = existingCertInfos.get(revCert.getSerialNumber());
+      if (existingCertInfo == null) {
+        newCerts.add(revCert);
+      } else if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
+        changedCerts.add(revCert);
+      } else {
+        unchangedIds.add(existingCertInfo.id);
+      }
+    }
+
+    String sql = null;
+    PreparedStatement ps = null;
+    try {
+      if (!newCerts.isEmpty()) {
+        sql = SQL_INSERT_CERT_REV;
+        ps = datasource.prepareStatement(conn, sql);
+        long id = maxId.getAndAdd(newCerts.size());
+        for (RevokedCert revCert : newCerts) {
+          int offset = 1;
+          ps.setLong(offset++, ++id);
+          ps.setInt(offset++, caId);
+          ps.setString(offset++, revCert.getSerialNumber().toString(16));
+          ps.setInt(offset++, 1);
+          offset = setRevocationInfo(ps, offset, revCert);
+          ps.setLong(offset++, updateTimeSec);
+          ps.setInt(offset, crlInfoId);
+          ps.addBatch();
+        }
+        ps.executeBatch();
+        releaseResources(ps, null);
+        ps = null;
+      }
+
+      if (!changedCerts.isEmpty()) {
+        sql = SQL_UPDATE_CERT_REV;
+        ps = datasource.prepareStatement(conn, sql);
+        for (RevokedCert revCert : changedCerts) {
+          int offset = 1;
+          ps.setInt(offset++, 1);
+          offset = setRevocationInfo(ps, offset, revCert);
+          ps.setLong(offset++, updateTimeSec);
+          ps.setInt(offset++, crlInfoId);
+          ps.setLong(offset, existingCertInfos.get(revCert.getSerialNumber()).id);
+          ps.addBatch();
+        }
+        ps.executeBatch();
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      releaseResources(ps, null);
+    }
+
+    // set the LUPDATE of unchanged entries
+    for (int from = 0; from < unchangedIds.size(); from += MAX_SERIALS_PER_IN) {
+      List<Long> subIds = unchangedIds.subList(from, Math.min(unchangedIds.size(), from + MAX_SERIALS_PER_IN));
+      sql = "UPDATE CERT SET LUPDATE=? WHERE ID IN (?" + ",?".repeat(subIds.size() - 1) + ")";
+      ps = datasource.prepareStatement(conn, sql);
+      try {
+        int idx = 1;
+        ps.setLong(idx++, updateTimeSec);
+        for (Long id : subIds) {
+          ps.setLong(idx++, id);
+        }
+        ps.executeUpdate();
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseResources(ps, null);
+      }
+    }
+  } // method importRevokedCertChunk
+
+  private static int setRevocationInfo(PreparedStatement ps, int offset, RevokedCert revCert) throws SQLException {
+    ps.setInt(offset++, revCert.getReason());
+    ps.setLong(offset++, revCert.getRevocationDate());
+    long rit = revCert.getInvalidityDate();
+    if (rit != 0) {
+      ps.setLong(offset++, rit);
+    } else {
+      ps.setNull(offset++, Types.BIGINT);
+    }
+    return offset;
+  } // method setRevocationInfo
+
+  private Map<BigInteger, CertInfo> getCertInfos(Connection conn, int caId, List<RevokedCert> revCerts)
+      throws DataAccessException {
+    Map<BigInteger, CertInfo> ret = new HashMap<>();
+    for (int from = 0; from < revCerts.size(); from += MAX_SERIALS_PER_IN) {
+      List<RevokedCert> subCerts = revCerts.subList(from, Math.min(revCerts.size(), from + MAX_SERIALS_PER_IN));
+      String sql = DbCertStatusStore.buildArraySql(datasource, CORE_SQL_SELECT_ID_CERTS, subCerts.size());
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      ResultSet rs = null;
+      try {
+        int idx = 1;
+        ps.setInt(idx++, caId);
+        for (RevokedCert revCert : subCerts) {
+          ps.setString(idx++, revCert.getSerialNumber().toString(16));
+        }
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          ret.put(new BigInteger(rs.getString("SN"), 16), readCertInfo(rs));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseResources(ps, rs);
+      }
+    }
+    return ret;
+  } // method getCertInfos
+
+  private void executeSerialsUpdate(Connection conn, String prefix, int caId, List<BigInteger> serials)
+      throws DataAccessException {
+    for (int from = 0; from < serials.size(); from += MAX_SERIALS_PER_IN) {
+      List<BigInteger> subSerials = serials.subList(from, Math.min(serials.size(), from + MAX_SERIALS_PER_IN));
+      String sql = prefix + " IN (?" + ",?".repeat(subSerials.size() - 1) + ")";
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      try {
+        int idx = 1;
+        ps.setInt(idx++, caId);
+        for (BigInteger serial : subSerials) {
+          ps.setString(idx++, serial.toString(16));
+        }
+        ps.executeUpdate();
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        releaseResources(ps, null);
+      }
+    }
+  } // method executeSerialsUpdate
+
   private static X509Cert parseCert(File certFile) throws ImportCrlException {
     try {
       return X509Util.parseCert(certFile);
@@ -984,15 +1241,7 @@ class ImportCrl {
         return null;
       }
 
-      CertInfo ci = new CertInfo();
-      ci.crlId = rs.getInt("CRL_ID");
-      ci.id = rs.getLong("ID");
-      ci.invalidityTime = rs.getLong("RIT");
-      ci.revocationReason = rs.getInt("RR");
-      ci.revocationTime = rs.getLong("RT");
-      ci.revoked = rs.getBoolean("REV");
-
-      return ci;
+      return readCertInfo(rs);
     } catch (SQLException ex) {
       throw datasource.translate(sqlSelectIdCert, ex);
     } finally {
@@ -1000,6 +1249,17 @@ class ImportCrl {
     }
   } // method getCertInfo
 
+  private static CertInfo readCertInfo(ResultSet rs) throws SQLException {
+    CertInfo ci = new CertInfo();
+    ci.crlId = rs.getInt("CRL_ID");
+    ci.id = rs.getLong("ID");
+    ci.invalidityTime = rs.getLong("RIT");
+    ci.revocationReason = rs.getInt("RR");
+    ci.revocationTime = rs.getLong("RT");
+    ci.revoked = rs.getBoolean("REV");
+    return ci;
+  } // method readCertInfo
+
   private void addCertificate(AtomicLong maxId, int crlInfoId, CertWrapper caCert, X509Cert cert, String certLogId)
       throws DataAccessException {
     int caId = caCert.databaseId;
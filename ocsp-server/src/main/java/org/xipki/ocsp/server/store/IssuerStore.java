@@ -4,8 +4,10 @@
 package org.xipki.ocsp.server.store;
 
 import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.security.HashAlgo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -15,6 +17,10 @@ import java.util.Set;
 
 /**
  * Issuer store.
+ * <p>
+ * The issuers are indexed by id and by (hash algorithm, issuerNameHash, issuerKeyHash). The
+ * indexes are immutable and replaced as a whole when the issuers change, so that the lookups
+ * do not need any lock.
  *
  * @author Lijun Liao (xipki)
  * @since 2.0.0
@@ -22,65 +28,135 @@ import java.util.Set;
 
 class IssuerStore {
 
-  private List<IssuerEntry> issuers = new ArrayList<>();
+  private static final class HashKey {
 
-  private Set<Integer> ids = Collections.emptySet();
+    private final HashAlgo hashAlgo;
 
-  private Map<Integer, CrlInfo> crlInfos = new HashMap<>();
+    private final byte[] data;
 
-  public IssuerStore() {
-  }
+    private final int from;
+
+    private final int length;
+
+    private final int hash;
+
+    HashKey(HashAlgo hashAlgo, byte[] data, int from, int length) {
+      this.hashAlgo = hashAlgo;
+      this.data = data;
+      this.from = from;
+      this.length = length;
+
+      int h = hashAlgo.hashCode();
+      for (int i = from; i < from + length; i++) {
+        h = 31 * h + data[i];
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof HashKey)) {
+        return false;
+      }
+
+      HashKey other = (HashKey) obj;
+      return hashAlgo == other.hashAlgo && length == other.length
+          && Arrays.equals(data, from, from + length, other.data, other.from, other.from + length);
+    }
+
+  } // class HashKey
+
+  private static final class Index {
+
+    private final List<IssuerEntry> issuers;
+
+    private final Set<Integer> ids;
 
-  public void setIssuers(List<IssuerEntry> issuers) {
-    Set<Integer> newIds = new HashSet<>();
-    for (IssuerEntry issuer : issuers) {
-      int id = issuer.getId();
-      if (newIds.contains(id)) {
-        throw new IllegalArgumentException("issuer with the same id " + id + " duplicated");
+    private final Map<Integer, IssuerEntry> idMap;
+
+    private final Map<HashKey, IssuerEntry> hashMap;
+
+    Index(List<IssuerEntry> issuers) {
+      Map<Integer, IssuerEntry> newIdMap = new HashMap<>();
+      Map<HashKey, IssuerEntry> newHashMap = new HashMap<>();
+
+      for (IssuerEntry issuer : issuers) {
+        int id = issuer.getId();
+        if (newIdMap.containsKey(id)) {
+          throw new IllegalArgumentException("issuer with the same id " + id + " duplicated");
+        }
+        newIdMap.put(id, issuer);
+
+        for (HashAlgo ha : HashAlgo.values()) {
+          byte[] hash = issuer.getEncodedHash(ha);
+          // keep the first one, as the linear search did before
+          newHashMap.putIfAbsent(new HashKey(ha, hash, 0, hash.length), issuer);
+        }
       }
-      newIds.add(id);
+
+      this.issuers = Collections.unmodifiableList(new ArrayList<>(issuers));
+      this.ids = Collections.unmodifiableSet(new HashSet<>(newIdMap.keySet()));
+      this.idMap = newIdMap;
+      this.hashMap = newHashMap;
     }
 
-    // to accelerate the switch
-    List<IssuerEntry> copy = new ArrayList<>(issuers);
-    this.ids = Collections.unmodifiableSet(newIds);
-    this.issuers = copy;
+  } // class Index
+
+  private volatile Index index = new Index(Collections.emptyList());
+
+  private Map<Integer, CrlInfo> crlInfos = new HashMap<>();
+
+  public IssuerStore() {
+  }
+
+  public synchronized void setIssuers(List<IssuerEntry> issuers) {
+    this.index = new Index(issuers);
   } // method setIssuers
 
   public int size() {
-    return ids.size();
+    return index.ids.size();
   }
 
   public Set<Integer> getIds() {
-    return ids;
+    return index.ids;
   }
 
   public IssuerEntry getIssuerForId(int id) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.getId() == id) {
-        return entry;
-      }
-    }
-
-    return null;
+    return index.idMap.get(id);
   }
 
   public IssuerEntry getIssuerForFp(RequestIssuer reqIssuer) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.matchHash(reqIssuer)) {
-        return entry;
-      }
+    HashAlgo hashAlgo = reqIssuer.hashAlgorithm();
+    if (hashAlgo == null) {
+      return null;
+    }
+
+    // issuerNameHash and issuerKeyHash, each encoded as OCTET STRING
+    int length = (2 + hashAlgo.getLength()) << 1;
+    int from = reqIssuer.getNameHashFrom();
+    if (from + length > reqIssuer.getFrom() + reqIssuer.getLength()) {
+      return null;
     }
 
-    return null;
+    return index.hashMap.get(new HashKey(hashAlgo, reqIssuer.getData(), from, length));
   }
 
-  public void addIssuer(IssuerEntry issuer) {
-    this.issuers.add(issuer);
+  public synchronized void addIssuer(IssuerEntry issuer) {
+    if (index.idMap.containsKey(issuer.getId())) {
+      return;
+    }
 
-    Set<Integer> newIds = new HashSet<>(this.ids);
-    newIds.add(issuer.getId());
-    this.ids = Collections.unmodifiableSet(newIds);
+    List<IssuerEntry> newIssuers = new ArrayList<>(index.issuers.size() + 1);
+    newIssuers.addAll(index.issuers);
+    newIssuers.add(issuer);
+    this.index = new Index(newIssuers);
   }
 
   public void setCrlInfos(Map<Integer, CrlInfo> crlInfos) {
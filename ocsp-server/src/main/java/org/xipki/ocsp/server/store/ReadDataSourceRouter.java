@@ -0,0 +1,268 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes the certificate status queries to the read replicas of the OCSP database.
+ * <p>
+ * A replica is ejected if a query on it fails, or if it lags behind the primary database by
+ * more than the configured staleness bound. Ejected replicas are probed periodically and
+ * re-admitted once healthy. If no replica is available, the primary database is used.
+ * <p>
+ * The lag is derived from MAX(CERT.LUPDATE), which covers the new certificates as well as the
+ * changes of existing ones, e.g. revocations. If the replica has not reached the MAX(LUPDATE) of
+ * the primary database, the lag is the time elapsed since the first change it misses, i.e. the
+ * smallest LUPDATE in the primary database greater than the MAX(LUPDATE) of the replica. Both
+ * queries are served by the index IDX_CERT_LUPDATE. If a certificate has been changed several
+ * times in the meantime, only its last change is visible, and the lag is underestimated
+ * accordingly.
+ * <p>
+ * For the least-latency routing, the latency of each replica is measured by the queries and by
+ * the periodic checks, and every {@link #EXPLORE_INTERVAL}-th query is routed round-robin, so
+ * that the latency of the replicas not chosen is kept up to date.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class ReadDataSourceRouter {
+
+  enum Routing {
+
+    ROUND_ROBIN,
+    LEAST_LATENCY;
+
+    static Routing forName(String name) {
+      if (name == null || "roundRobin".equalsIgnoreCase(name)) {
+        return ROUND_ROBIN;
+      } else if ("leastLatency".equalsIgnoreCase(name)) {
+        return LEAST_LATENCY;
+      } else {
+        throw new IllegalArgumentException("unknown readRouting " + name);
+      }
+    }
+
+  } // class Routing
+
+  private static final class Replica {
+
+    private final DataSourceWrapper datasource;
+
+    private volatile boolean healthy = true;
+
+    // exponentially weighted moving average of the query latency, 0 if not measured yet.
+    private volatile long latencyNanos;
+
+    private Replica(DataSourceWrapper datasource) {
+      this.datasource = datasource;
+    }
+
+  } // class Replica
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReadDataSourceRouter.class);
+
+  /**
+   * Every this number of queries are routed round-robin with the least-latency routing.
+   */
+  static final int EXPLORE_INTERVAL = 64;
+
+  private final DataSourceWrapper primary;
+
+  private final Replica[] replicas;
+
+  private final Routing routing;
+
+  private final long maxLagSeconds;
+
+  private final AtomicInteger nextIndex = new AtomicInteger();
+
+  private final ScheduledThreadPoolExecutor executor;
+
+  /**
+   * Constructor.
+   * @param primary the primary datasource.
+   * @param replicas the datasources of the read replicas.
+   * @param routing how to choose among the healthy replicas.
+   * @param maxLagSeconds maximal lag of a replica in seconds. If not positive, the lag is not checked.
+   * @param checkIntervalSeconds interval in seconds to check the replicas.
+   */
+  ReadDataSourceRouter(DataSourceWrapper primary, List<DataSourceWrapper> replicas, Routing routing,
+                       long maxLagSeconds, int checkIntervalSeconds) {
+    this.primary = Args.notNull(primary, "primary");
+    Args.notEmpty(replicas, "replicas");
+    this.replicas = new Replica[replicas.size()];
+    for (int i = 0; i < this.replicas.length; i++) {
+      DataSourceWrapper replica = replicas.get(i);
+      if (replica.getDatabaseType() != primary.getDatabaseType()) {
+        throw new IllegalArgumentException("database type of read datasource " + replica.getName()
+            + " differs from that of datasource " + primary.getName());
+      }
+      this.replicas[i] = new Replica(replica);
+    }
+
+    this.routing = Args.notNull(routing, "routing");
+    this.maxLagSeconds = maxLagSeconds;
+
+    Args.positive(checkIntervalSeconds, "checkIntervalSeconds");
+    this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread thread = new Thread(r, "ocsp-replica-check-" + primary.getName());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executor.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalSeconds, TimeUnit.SECONDS);
+  } // constructor
+
+  /**
+   * Returns the datasource for the next query.
+   * @return a healthy replica, or the primary datasource if no replica is healthy.
+   */
+  DataSourceWrapper select() {
+    Replica selected = null;
+    int index = nextIndex.getAndIncrement();
+    if (routing == Routing.LEAST_LATENCY && index % EXPLORE_INTERVAL != 0) {
+      for (Replica replica : replicas) {
+        if (replica.healthy && (selected == null || isFaster(replica.latencyNanos, selected.latencyNanos))) {
+          selected = replica;
+        }
+      }
+    } else {
+      int n = replicas.length;
+      int start = Math.floorMod(index, n);
+      for (int i = 0; i < n; i++) {
+        Replica replica = replicas[(start + i) % n];
+        if (replica.healthy) {
+          selected = replica;
+          break;
+        }
+      }
+    }
+
+    return selected == null ? primary : selected.datasource;
+  } // method select
+
+  void onSuccess(DataSourceWrapper datasource, long latencyNanos) {
+    Replica replica = getReplica(datasource);
+    if (replica != null) {
+      updateLatency(replica, latencyNanos);
+    }
+  }
+
+  private static void updateLatency(Replica replica, long latencyNanos) {
+    // at least 1, since 0 stands for not measured.
+    latencyNanos = Math.max(1, latencyNanos);
+    long avg = replica.latencyNanos;
+    replica.latencyNanos = (avg == 0) ? latencyNanos : avg + (latencyNanos - avg) / 8;
+  }
+
+  /**
+   * Returns whether the latency a is lower than the latency b. A latency not measured yet is
+   * lower than all measured ones, so that the replica is measured.
+   */
+  static boolean isFaster(long latencyNanosA, long latencyNanosB) {
+    if (latencyNanosA == 0 || latencyNanosB == 0) {
+      return latencyNanosA == 0 && latencyNanosB != 0;
+    }
+    return latencyNanosA < latencyNanosB;
+  }
+
+  void onFailure(DataSourceWrapper datasource, Exception ex) {
+    Replica replica = getReplica(datasource);
+    if (replica != null && replica.healthy) {
+      replica.healthy = false;
+      LogUtil.warn(LOG, ex, "ejected read datasource " + datasource.getName());
+    }
+  }
+
+  void close() {
+    executor.shutdownNow();
+  }
+
+  private Replica getReplica(DataSourceWrapper datasource) {
+    for (Replica replica : replicas) {
+      if (replica.datasource == datasource) {
+        return replica;
+      }
+    }
+    return null;
+  }
+
+  private void checkReplicas() {
+    long primaryLastUpdate = 0;
+    if (maxLagSeconds > 0) {
+      try {
+        primaryLastUpdate = primary.getMax(null, "CERT", "LUPDATE");
+      } catch (DataAccessException ex) {
+        LogUtil.warn(LOG, ex, "could not retrieve the last update from datasource " + primary.getName());
+        return;
+      }
+    }
+
+    for (Replica replica : replicas) {
+      DataSourceWrapper datasource = replica.datasource;
+      boolean healthy;
+      try {
+        long start = System.nanoTime();
+        if (maxLagSeconds > 0) {
+          long lastUpdate = datasource.getMax(null, "CERT", "LUPDATE");
+          updateLatency(replica, System.nanoTime() - start);
+
+          long firstMissed = 0;
+          if (lastUpdate < primaryLastUpdate) {
+            firstMissed = primary.getMin(null, "CERT", "LUPDATE", "LUPDATE>" + lastUpdate);
+          }
+
+          long lag = getLag(primaryLastUpdate, lastUpdate, firstMissed, Instant.now().getEpochSecond());
+          healthy = lag <= maxLagSeconds;
+          if (!healthy) {
+            LOG.warn("read datasource {} lags behind {} seconds", datasource.getName(), lag);
+          }
+        } else {
+          datasource.getMax(null, "ISSUER", "ID");
+          updateLatency(replica, System.nanoTime() - start);
+          healthy = true;
+        }
+      } catch (DataAccessException ex) {
+        LogUtil.warn(LOG, ex, "could not check read datasource " + datasource.getName());
+        healthy = false;
+      }
+
+      if (healthy != replica.healthy) {
+        replica.healthy = healthy;
+        LOG.info("{} read datasource {}", healthy ? "re-admitted" : "ejected", datasource.getName());
+      }
+    }
+  } // method checkReplicas
+
+  /**
+   * Returns the lag of a replica in seconds.
+   * @param primaryLastUpdate MAX(LUPDATE) of the primary database.
+   * @param lastUpdate MAX(LUPDATE) of the replica.
+   * @param firstMissed smallest LUPDATE in the primary database greater than lastUpdate, only
+   *        used if lastUpdate is less than primaryLastUpdate.
+   * @param now current epoch seconds.
+   * @return the lag in seconds.
+   */
+  static long getLag(long primaryLastUpdate, long lastUpdate, long firstMissed, long now) {
+    if (lastUpdate >= primaryLastUpdate) {
+      return 0;
+    }
+
+    // the change may have been replicated between the two queries.
+    return (firstMissed <= lastUpdate) ? 0 : Math.max(0, now - firstMissed);
+  }
+
+}
@@ -29,18 +29,34 @@ import java.security.cert.CertificateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Response cacher.
+ * <p>
+ * If the write-behind is enabled, the responses are written to the database asynchronously by a
+ * dedicated thread in JDBC batches. Responses for the same (issuer, serial number, signature
+ * algorithm) waiting in the queue are replaced by the newer one, and new responses are dropped if
+ * the queue is full.
  *
  * @author Lijun Liao (xipki)
  * @since 2.2.0
@@ -65,11 +81,78 @@ public class ResponseCacher implements Closeable {
 
   private static final String SQL_UPDATE_RESP = "UPDATE OCSP SET GENERATED_AT=?,NEXT_UPDATE=?,RESP=? WHERE ID=?";
 
+  private static final class PendingResponse {
+
+    private final long id;
+
+    private final int issuerId;
+
+    private final byte[] identBytes;
+
+    private final long generatedAt;
+
+    private final long nextUpdate;
+
+    private final byte[] response;
+
+    PendingResponse(long id, int issuerId, byte[] identBytes, long generatedAt, long nextUpdate, byte[] response) {
+      this.id = id;
+      this.issuerId = issuerId;
+      this.identBytes = identBytes;
+      this.generatedAt = generatedAt;
+      this.nextUpdate = nextUpdate;
+      this.response = response;
+    }
+
+  } // class PendingResponse
+
+  private class ResponseWriter implements Runnable {
+
+    @Override
+    public void run() {
+      while (true) {
+        List<PendingResponse> batch;
+        synchronized (pendingResponses) {
+          while (pendingResponses.isEmpty()) {
+            if (writerStopped) {
+              return;
+            }
+
+            try {
+              pendingResponses.wait();
+            } catch (InterruptedException ex) {
+              LOG.warn("response writer interrupted, {} responses not written", pendingResponses.size());
+              return;
+            }
+          }
+
+          batch = new ArrayList<>(Math.min(writeBatchSize, pendingResponses.size()));
+          Iterator<PendingResponse> it = pendingResponses.values().iterator();
+          while (it.hasNext() && batch.size() < writeBatchSize) {
+            batch.add(it.next());
+            it.remove();
+          }
+        }
+
+        try {
+          writeResponses(batch);
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "error writing " + batch.size() + " OCSP responses");
+        }
+      }
+    } // method run
+
+  } // class ResponseWriter
+
   private class IssuerUpdater implements Runnable {
 
     @Override
     public void run() {
       try {
+        // responses may have been updated by other instances, e.g. master
+        if (memoryCache != null) {
+          memoryCache.clear();
+        }
         updateCacheStore();
       } catch (Throwable th) {
         LogUtil.error(LOG, th, "error while calling updateCacheStore()");
@@ -97,6 +180,10 @@ public class ResponseCacher implements Closeable {
         long minNextUpdate = now + SEC_NEXT_UPDATE_BUFFER;
 
         try {
+          if (memoryCache != null) {
+            memoryCache.removeExpired(maxGeneratedAt, minNextUpdate);
+          }
+
           int num1 = removeExpiredResponses(maxGeneratedAt, minNextUpdate);
           if (num1 > 0 && LOG.isInfoEnabled()) {
             LOG.info("removed {} with thisUpdate < {} ({}) OR nextUpdate < {} ({})",
@@ -137,6 +224,29 @@ public class ResponseCacher implements Closeable {
 
   private final AtomicInteger cachedIssuerId = new AtomicInteger(0);
 
+  private ResponseMemoryCache memoryCache;
+
+  private boolean binaryResponse;
+
+  // responses waiting to be written, with the derived ID as key.
+  private final Map<Long, PendingResponse> pendingResponses = new LinkedHashMap<>();
+
+  private int writeQueueSize;
+
+  private int writeBatchSize;
+
+  private boolean writerStopped;
+
+  private Thread responseWriter;
+
+  private final AtomicLong numDroppedResponses = new AtomicLong(0);
+
+  private final LongAdder numHits = new LongAdder();
+
+  private final LongAdder numMisses = new LongAdder();
+
+  private final LongAdder numStores = new LongAdder();
+
   public ResponseCacher(DataSourceWrapper datasource, boolean master, Validity validity) {
     this.datasource = Args.notNull(datasource, "datasource");
     this.master = master;
@@ -147,6 +257,138 @@ public class ResponseCacher implements Closeable {
     this.onService = new AtomicBoolean(false);
   }
 
+  /**
+   * Enables the in-memory cache in front of the database. Must be called before {@link #init()}.
+   *
+   * @param maxSize maximal number of responses kept in memory.
+   * @param maxAge maximal age of the responses kept in memory.
+   */
+  public void setMemoryCache(int maxSize, Validity maxAge) {
+    this.memoryCache = new ResponseMemoryCache(maxSize, Args.notNull(maxAge, "maxAge").approxMinutes() * 60);
+  }
+
+  /**
+   * Enables the asynchronous writing of the responses. Must be called before {@link #init()}.
+   *
+   * @param queueSize maximal number of responses waiting to be written.
+   * @param batchSize maximal number of responses written in one JDBC batch.
+   */
+  public void setWriteBehind(int queueSize, int batchSize) {
+    this.writeQueueSize = Args.positive(queueSize, "queueSize");
+    this.writeBatchSize = Args.positive(batchSize, "batchSize");
+  }
+
+  /**
+   * Sets whether the column OCSP.RESP contains the DER-encoded response instead of its Base64 encoding.
+   *
+   * @param binaryResponse true if the response is stored as binary.
+   */
+  public void setBinaryResponse(boolean binaryResponse) {
+    this.binaryResponse = binaryResponse;
+  }
+
+  /**
+   * Detects whether the column OCSP.RESP is of a binary or a character type, and uses the
+   * corresponding encoding of the responses, regardless of {@link #setBinaryResponse(boolean)}.
+   * If the type cannot be classified, the configured encoding is used. Must be called before
+   * {@link #init()}.
+   *
+   * @throws DataAccessException if database error occurs.
+   */
+  public void detectResponseColumnType() throws DataAccessException {
+    final String sql = "SELECT RESP FROM OCSP WHERE 1=0";
+    PreparedStatement ps = datasource.prepareStatement(sql);
+    ResultSet rs = null;
+    int type;
+    String typeName;
+    try {
+      rs = ps.executeQuery();
+      ResultSetMetaData metaData = rs.getMetaData();
+      type = metaData.getColumnType(1);
+      typeName = metaData.getColumnTypeName(1);
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+
+    Boolean binary = isBinaryType(type);
+    if (binary == null) {
+      LOG.warn("could not classify the type {} of column OCSP.RESP, use binaryResponse={}",
+          typeName, binaryResponse);
+    } else if (binary != binaryResponse) {
+      LOG.warn("binaryResponse={} does not match the type {} of column OCSP.RESP, use binaryResponse={}",
+          binaryResponse, typeName, binary);
+      binaryResponse = binary;
+    } else {
+      LOG.info("column OCSP.RESP is of type {}, use binaryResponse={}", typeName, binaryResponse);
+    }
+  } // method detectResponseColumnType
+
+  /**
+   * Classifies the JDBC type of a column.
+   *
+   * @param sqlType the type as defined in {@link Types}.
+   * @return true for binary types, false for character types, and null otherwise.
+   */
+  static Boolean isBinaryType(int sqlType) {
+    switch (sqlType) {
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+      case Types.BLOB:
+        return true;
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.LONGVARCHAR:
+      case Types.CLOB:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+      case Types.NCLOB:
+        return false;
+      default:
+        return null;
+    }
+  } // method isBinaryType
+
+  /**
+   * Returns the number of responses which have not been written to the database because the
+   * write-behind queue was full.
+   *
+   * @return number of dropped responses.
+   */
+  public long getNumDroppedResponses() {
+    return numDroppedResponses.get();
+  }
+
+  /**
+   * Returns the number of requested responses found in the cache.
+   *
+   * @return number of cache hits.
+   */
+  public long getNumHits() {
+    return numHits.sum();
+  }
+
+  /**
+   * Returns the number of requested responses not found in the cache.
+   *
+   * @return number of cache misses.
+   */
+  public long getNumMisses() {
+    return numMisses.sum();
+  }
+
+  /**
+   * Returns the number of responses stored in the cache.
+   *
+   * @return number of stored responses.
+   */
+  public long getNumStores() {
+    return numStores.sum();
+  }
+
   public boolean isOnService() {
     return onService.get();
   }
@@ -164,10 +406,38 @@ public class ResponseCacher implements Closeable {
     // check every 600 seconds (10 minutes)
     this.issuerUpdater = scheduledThreadPoolExecutor.scheduleAtFixedRate(
         new IssuerUpdater(), 448, 600, TimeUnit.SECONDS);
+
+    if (writeQueueSize > 0) {
+      synchronized (pendingResponses) {
+        writerStopped = false;
+      }
+      responseWriter = new Thread(new ResponseWriter(), "ocsp-response-writer");
+      responseWriter.setDaemon(true);
+      responseWriter.start();
+    }
   } // method init
 
   @Override
   public void close() {
+    if (responseWriter != null) {
+      // the writer writes the remaining responses before it terminates.
+      synchronized (pendingResponses) {
+        writerStopped = true;
+        pendingResponses.notifyAll();
+      }
+
+      try {
+        responseWriter.join(10000);
+      } catch (InterruptedException ex) {
+        LOG.error("interrupted: {}", ex.getMessage());
+      }
+      responseWriter = null;
+    }
+
+    if (memoryCache != null) {
+      memoryCache.clear();
+    }
+
     if (datasource != null) {
       datasource.close();
       datasource = null;
@@ -248,11 +518,53 @@ public class ResponseCacher implements Closeable {
     }
   } // method storeIssuer
 
-  public OcspRespWithCacheInfo getOcspResponse(int issuerId, BigInteger serialNumber, SignAlgo sigAlgo)
+  public OcspRespWithCacheInfo getOcspResponse(
+      int issuerId, BigInteger serialNumber, HashAlgo certIdHashAlgo, SignAlgo sigAlgo)
       throws DataAccessException {
-    final String sql = sqlSelectOcsp;
-    byte[] identBytes = buildIdent(serialNumber, sigAlgo);
+    byte[] snBytes = serialNumber.toByteArray();
+    return getOcspResponse(issuerId, snBytes, 0, snBytes.length, certIdHashAlgo, sigAlgo);
+  }
+
+  /**
+   * Returns the cached response.
+   * @param issuerId the issuer id.
+   * @param serialData array containing the minimal two's-complement encoding of the serial number.
+   * @param serialFrom start index of the serial number in serialData.
+   * @param serialLength length of the serial number.
+   * @param certIdHashAlgo the hash algorithm of the CertID in the response.
+   * @param sigAlgo the signature algorithm.
+   * @return the cached response, or {@code null} if not cached.
+   * @throws DataAccessException if database error occurs.
+   */
+  public OcspRespWithCacheInfo getOcspResponse(
+      int issuerId, byte[] serialData, int serialFrom, int serialLength, HashAlgo certIdHashAlgo, SignAlgo sigAlgo)
+      throws DataAccessException {
+    OcspRespWithCacheInfo resp = getOcspResponse0(issuerId, serialData, serialFrom, serialLength,
+        certIdHashAlgo, sigAlgo);
+    (resp == null ? numMisses : numHits).increment();
+    return resp;
+  }
+
+  private OcspRespWithCacheInfo getOcspResponse0(
+      int issuerId, byte[] serialData, int serialFrom, int serialLength, HashAlgo certIdHashAlgo, SignAlgo sigAlgo)
+      throws DataAccessException {
+    byte[] identBytes = buildIdent(serialData, serialFrom, serialLength, certIdHashAlgo, sigAlgo);
+    if (memoryCache != null) {
+      OcspRespWithCacheInfo resp = memoryCache.get(issuerId, identBytes);
+      if (resp != null) {
+        return resp;
+      }
+    }
+
     long id = deriveId(issuerId, identBytes);
+    if (writeQueueSize > 0) {
+      OcspRespWithCacheInfo resp = getPendingResponse(id, issuerId, identBytes);
+      if (resp != null) {
+        return resp;
+      }
+    }
+
+    final String sql = sqlSelectOcsp;
     PreparedStatement ps = datasource.prepareStatement(sql);
     ResultSet rs = null;
 
@@ -285,22 +597,24 @@ public class ResponseCacher implements Closeable {
       }
 
       long generatedAt = rs.getLong("GENERATED_AT");
-      String b64Resp = rs.getString("RESP");
-      byte[] resp = Base64.decodeFast(b64Resp);
+      byte[] resp = binaryResponse ? rs.getBytes("RESP") : Base64.decodeFast(rs.getString("RESP"));
       ResponseCacheInfo cacheInfo = new ResponseCacheInfo(generatedAt);
       if (nextUpdate != 0) {
         cacheInfo.setNextUpdate(nextUpdate);
       }
-      return new OcspRespWithCacheInfo(resp, cacheInfo);
+      OcspRespWithCacheInfo ret = new OcspRespWithCacheInfo(resp, cacheInfo);
+      cacheInMemory(issuerId, identBytes, ret);
+      return ret;
     } catch (SQLException ex) {
       throw datasource.translate(sql, ex);
     } finally {
       datasource.releaseResources(ps, rs);
     }
-  } // method getOcspResponse
+  } // method getOcspResponse0
 
   public void storeOcspResponse(
-      int issuerId, BigInteger serialNumber, long generatedAt, Long nextUpdate, SignAlgo sigAlgo, byte[] response) {
+      int issuerId, BigInteger serialNumber, HashAlgo certIdHashAlgo, long generatedAt, Long nextUpdate,
+      SignAlgo sigAlgo, byte[] response) {
     long nowInSec = Instant.now().getEpochSecond();
     if (nextUpdate == null) {
       nextUpdate = nowInSec + SEC_DFLT_NEXT_UPDATE_DURATION;
@@ -310,67 +624,198 @@ public class ResponseCacher implements Closeable {
       return;
     }
 
-    byte[] identBytes = buildIdent(serialNumber, sigAlgo);
-    String ident = Base64.encodeToString(identBytes);
-    try {
-      long id = deriveId(issuerId, identBytes);
+    numStores.increment();
+    byte[] identBytes = buildIdent(serialNumber, certIdHashAlgo, sigAlgo);
+    if (memoryCache != null) {
+      ResponseCacheInfo cacheInfo = new ResponseCacheInfo(generatedAt);
+      cacheInfo.setNextUpdate(nextUpdate);
+      cacheInMemory(issuerId, identBytes, new OcspRespWithCacheInfo(response, cacheInfo));
+    }
 
+    long id = deriveId(issuerId, identBytes);
+    if (writeQueueSize > 0) {
+      enqueueResponse(new PendingResponse(id, issuerId, identBytes, generatedAt, nextUpdate, response));
+      return;
+    }
+
+    try {
       Connection conn = datasource.getConnection();
       try {
-        String sql = SQL_ADD_RESP;
-        PreparedStatement ps = datasource.prepareStatement(conn, sql);
+        writeResponse(conn, id, issuerId, identBytes, generatedAt, nextUpdate, response);
+      } finally {
+        datasource.returnConnection(conn);
+      }
+    } catch (DataAccessException ex) {
+      logWriteFailure(issuerId, identBytes, ex);
+    }
+  } // method storeOcspResponse
 
-        String b64Response = Base64.encodeToString(response);
-        Boolean dataIntegrityViolationException = null;
-        try {
+  private void enqueueResponse(PendingResponse response) {
+    synchronized (pendingResponses) {
+      if (!writerStopped) {
+        // replaces the older response for the same issuer, serial number and signature algorithm
+        if (pendingResponses.size() < writeQueueSize || pendingResponses.containsKey(response.id)) {
+          pendingResponses.put(response.id, response);
+          pendingResponses.notifyAll();
+          return;
+        }
+      }
+    }
+
+    long num = numDroppedResponses.incrementAndGet();
+    LOG.debug("dropped OCSP response iid={}, {} responses dropped so far", response.issuerId, num);
+  } // method enqueueResponse
+
+  private OcspRespWithCacheInfo getPendingResponse(long id, int issuerId, byte[] identBytes) {
+    PendingResponse pending;
+    synchronized (pendingResponses) {
+      pending = pendingResponses.get(id);
+    }
+
+    if (pending == null || pending.issuerId != issuerId || !Arrays.equals(pending.identBytes, identBytes)) {
+      return null;
+    }
+
+    ResponseCacheInfo cacheInfo = new ResponseCacheInfo(pending.generatedAt);
+    cacheInfo.setNextUpdate(pending.nextUpdate);
+    return new OcspRespWithCacheInfo(pending.response, cacheInfo);
+  } // method getPendingResponse
+
+  private void writeResponses(List<PendingResponse> responses) throws DataAccessException {
+    Connection conn = datasource.getConnection();
+    try {
+      // update the existing responses
+      List<PendingResponse> toAdd = new ArrayList<>(responses.size());
+      List<PendingResponse> unknown = new ArrayList<>(0);
+
+      String sql = SQL_UPDATE_RESP;
+      PreparedStatement ps = datasource.prepareStatement(conn, sql);
+      try {
+        for (PendingResponse m : responses) {
           int idx = 1;
-          ps.setLong(idx++, id);
-          ps.setInt(idx++, issuerId);
-          ps.setString(idx++, ident);
-          ps.setLong(idx++, generatedAt);
-          ps.setLong(idx++, nextUpdate);
-          ps.setString(idx, b64Response);
-          ps.execute();
-        } catch (SQLException ex) {
-          DataAccessException dex = datasource.translate(sql, ex);
-          if (dex.getReason().isDescendantOrSelfOf(Reason.DataIntegrityViolation)) {
-            dataIntegrityViolationException = Boolean.TRUE;
-          } else {
-            throw dex;
-          }
-        } finally {
-          datasource.releaseResources(ps, null, false);
+          ps.setLong(idx++, m.generatedAt);
+          ps.setLong(idx++, m.nextUpdate);
+          setResponse(ps, idx++, m.response);
+          ps.setLong(idx, m.id);
+          ps.addBatch();
         }
 
-        if (dataIntegrityViolationException == null) {
-          LOG.debug("added cached OCSP response iid={}, ident={}", issuerId, ident);
-          return;
+        int[] counts = ps.executeBatch();
+        for (int i = 0; i < responses.size(); i++) {
+          int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+          if (count == 0) {
+            toAdd.add(responses.get(i));
+          } else if (count < 0) {
+            unknown.add(responses.get(i));
+          }
         }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, null, false);
+      }
 
-        sql = SQL_UPDATE_RESP;
+      // add the new responses
+      if (!toAdd.isEmpty()) {
+        sql = SQL_ADD_RESP;
         ps = datasource.prepareStatement(conn, sql);
         try {
-          int idx = 1;
-          ps.setLong(idx++, generatedAt);
-          ps.setLong(idx++, nextUpdate);
-          ps.setString(idx++, b64Response);
-          ps.setLong(idx, id);
-          ps.executeUpdate();
+          for (PendingResponse m : toAdd) {
+            int idx = 1;
+            ps.setLong(idx++, m.id);
+            ps.setInt(idx++, m.issuerId);
+            ps.setString(idx++, Base64.encodeToString(m.identBytes));
+            ps.setLong(idx++, m.generatedAt);
+            ps.setLong(idx++, m.nextUpdate);
+            setResponse(ps, idx, m.response);
+            ps.addBatch();
+          }
+          ps.executeBatch();
         } catch (SQLException ex) {
-          throw datasource.translate(sql, ex);
+          // e.g. added in the meantime by another instance, write them one by one.
+          LOG.debug("could not add {} OCSP responses in batch: {}", toAdd.size(), ex.getMessage());
+          unknown.addAll(toAdd);
         } finally {
           datasource.releaseResources(ps, null, false);
         }
-      } finally {
-        datasource.returnConnection(conn);
       }
-    } catch (DataAccessException ex) {
-      LOG.info("could not cache OCSP response iid={}, ident={}", issuerId, ident);
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("could not cache OCSP response iid=" + issuerId + ", ident=" + ident, ex);
+
+      for (PendingResponse m : unknown) {
+        try {
+          writeResponse(conn, m.id, m.issuerId, m.identBytes, m.generatedAt, m.nextUpdate, m.response);
+        } catch (DataAccessException ex) {
+          logWriteFailure(m.issuerId, m.identBytes, ex);
+        }
       }
+    } finally {
+      datasource.returnConnection(conn);
     }
-  } // method storeOcspResponse
+  } // method writeResponses
+
+  private void writeResponse(Connection conn, long id, int issuerId, byte[] identBytes, long generatedAt,
+                             long nextUpdate, byte[] response)
+      throws DataAccessException {
+    String ident = Base64.encodeToString(identBytes);
+    String sql = SQL_ADD_RESP;
+    PreparedStatement ps = datasource.prepareStatement(conn, sql);
+
+    Boolean dataIntegrityViolationException = null;
+    try {
+      int idx = 1;
+      ps.setLong(idx++, id);
+      ps.setInt(idx++, issuerId);
+      ps.setString(idx++, ident);
+      ps.setLong(idx++, generatedAt);
+      ps.setLong(idx++, nextUpdate);
+      setResponse(ps, idx, response);
+      ps.execute();
+    } catch (SQLException ex) {
+      DataAccessException dex = datasource.translate(sql, ex);
+      if (dex.getReason().isDescendantOrSelfOf(Reason.DataIntegrityViolation)) {
+        dataIntegrityViolationException = Boolean.TRUE;
+      } else {
+        throw dex;
+      }
+    } finally {
+      datasource.releaseResources(ps, null, false);
+    }
+
+    if (dataIntegrityViolationException == null) {
+      LOG.debug("added cached OCSP response iid={}, ident={}", issuerId, ident);
+      return;
+    }
+
+    sql = SQL_UPDATE_RESP;
+    ps = datasource.prepareStatement(conn, sql);
+    try {
+      int idx = 1;
+      ps.setLong(idx++, generatedAt);
+      ps.setLong(idx++, nextUpdate);
+      setResponse(ps, idx++, response);
+      ps.setLong(idx, id);
+      ps.executeUpdate();
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.releaseResources(ps, null, false);
+    }
+  } // method writeResponse
+
+  private void setResponse(PreparedStatement ps, int index, byte[] response) throws SQLException {
+    if (binaryResponse) {
+      ps.setBytes(index, response);
+    } else {
+      ps.setString(index, Base64.encodeToString(response));
+    }
+  }
+
+  private static void logWriteFailure(int issuerId, byte[] identBytes, DataAccessException ex) {
+    String ident = Base64.encodeToString(identBytes);
+    LOG.info("could not cache OCSP response iid={}, ident={}", issuerId, ident);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("could not cache OCSP response iid=" + issuerId + ", ident=" + ident, ex);
+    }
+  }
 
   private int removeExpiredResponses(long maxGeneratedAt, long minNextUpdate)
       throws DataAccessException {
@@ -469,14 +914,74 @@ public class ResponseCacher implements Closeable {
     return true;
   } // method updateCacheStore0
 
-  private static byte[] buildIdent(BigInteger serialNumber, SignAlgo sigAlgo) {
+  private void cacheInMemory(int issuerId, byte[] identBytes, OcspRespWithCacheInfo resp) {
+    if (memoryCache == null) {
+      return;
+    }
+
+    ResponseCacheInfo cacheInfo = resp.getCacheInfo();
+    // same conditions as in the database: the response is removed if generated before now - validity,
+    // and will not be returned if nextUpdate is in less than SEC_NEXT_UPDATE_BUFFER seconds.
+    long notAfter = cacheInfo.getGeneratedAt() + validity;
+    Long nextUpdate = cacheInfo.getNextUpdate();
+    if (nextUpdate != null) {
+      notAfter = Math.min(notAfter, nextUpdate - SEC_NEXT_UPDATE_BUFFER);
+    }
+    // computed once here and then shared by all HTTP GET requests answered from memory
+    resp.getEtag();
+    memoryCache.put(issuerId, identBytes, resp, notAfter);
+  }
+
+  private static byte[] buildIdent(BigInteger serialNumber, HashAlgo certIdHashAlgo, SignAlgo sigAlgo) {
     byte[] snBytes = serialNumber.toByteArray();
-    byte[] bytes = new byte[1 + snBytes.length];
+    return buildIdent(snBytes, 0, snBytes.length, certIdHashAlgo, sigAlgo);
+  }
+
+  /**
+   * Builds the identifier of the response: code of the signature algorithm | code of the hash
+   * algorithm of the CertID | serial number. The CertID in the response must use the same hash
+   * algorithm as the one in the request.
+   */
+  static byte[] buildIdent(byte[] serialData, int serialFrom, int serialLength,
+                           HashAlgo certIdHashAlgo, SignAlgo sigAlgo) {
+    byte[] bytes = new byte[2 + serialLength];
     bytes[0] = sigAlgo.getCode();
-    System.arraycopy(snBytes, 0, bytes, 1, snBytes.length);
+    bytes[1] = getCode(certIdHashAlgo);
+    System.arraycopy(serialData, serialFrom, bytes, 2, serialLength);
     return bytes;
   }
 
+  private static byte getCode(HashAlgo hashAlgo) {
+    switch (hashAlgo) {
+      case SHA1:
+        return 1;
+      case SHA224:
+        return 2;
+      case SHA256:
+        return 3;
+      case SHA384:
+        return 4;
+      case SHA512:
+        return 5;
+      case SHA3_224:
+        return 6;
+      case SHA3_256:
+        return 7;
+      case SHA3_384:
+        return 8;
+      case SHA3_512:
+        return 9;
+      case SM3:
+        return 10;
+      case SHAKE128:
+        return 11;
+      case SHAKE256:
+        return 12;
+      default:
+        throw new IllegalArgumentException("unknown hash algorithm " + hashAlgo);
+    }
+  } // method getCode
+
   private long deriveId(int issuerId, byte[] identBytes) {
     byte[] hash = new byte[20];
     Digest digest = HashAlgo.SHA1.createDigest();
@@ -0,0 +1,196 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.xipki.ocsp.server.OcspRespWithCacheInfo;
+import org.xipki.util.Args;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of OCSP responses, used by {@link ResponseCacher} in front of
+ * the cache database. The cache is split into segments, each of them is an LRU map
+ * guarded by its own lock.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class ResponseMemoryCache {
+
+  private static final class Key {
+
+    private final int issuerId;
+
+    private final byte[] ident;
+
+    private final int hash;
+
+    Key(int issuerId, byte[] ident) {
+      this.issuerId = issuerId;
+      this.ident = ident;
+      this.hash = 31 * issuerId + Arrays.hashCode(ident);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof Key)) {
+        return false;
+      }
+
+      Key other = (Key) obj;
+      return issuerId == other.issuerId && Arrays.equals(ident, other.ident);
+    }
+
+  } // class Key
+
+  private static final class Entry {
+
+    private final OcspRespWithCacheInfo response;
+
+    // epoch seconds
+    private final long expiresAt;
+
+    Entry(OcspRespWithCacheInfo response, long expiresAt) {
+      this.response = response;
+      this.expiresAt = expiresAt;
+    }
+
+  } // class Entry
+
+  private static final class Segment extends LinkedHashMap<Key, Entry> {
+
+    private final int maxSize;
+
+    Segment(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > maxSize;
+    }
+
+  } // class Segment
+
+  private static final int NUM_SEGMENTS = 16;
+
+  private final Segment[] segments;
+
+  // in seconds
+  private final long maxAge;
+
+  ResponseMemoryCache(int maxSize, long maxAge) {
+    Args.positive(maxSize, "maxSize");
+    this.maxAge = Args.positive(maxAge, "maxAge");
+
+    int segmentSize = Math.max(1, (maxSize + NUM_SEGMENTS - 1) / NUM_SEGMENTS);
+    this.segments = new Segment[NUM_SEGMENTS];
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      segments[i] = new Segment(segmentSize);
+    }
+  }
+
+  OcspRespWithCacheInfo get(int issuerId, byte[] ident) {
+    Key key = new Key(issuerId, ident);
+    Segment segment = segmentFor(key);
+    long now = Instant.now().getEpochSecond();
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry == null) {
+        return null;
+      }
+
+      if (entry.expiresAt <= now) {
+        segment.remove(key);
+        return null;
+      }
+
+      return entry.response;
+    }
+  }
+
+  /**
+   * Puts the response into the cache.
+   *
+   * @param issuerId the issuer id.
+   * @param ident the identifier of the response, built from the signature algorithm and serial number.
+   * @param response the response.
+   * @param notAfter epoch seconds after which the response must not be served from the cache.
+   */
+  void put(int issuerId, byte[] ident, OcspRespWithCacheInfo response, long notAfter) {
+    long expiresAt = Math.min(notAfter, Instant.now().getEpochSecond() + maxAge);
+    if (expiresAt <= Instant.now().getEpochSecond()) {
+      return;
+    }
+
+    Key key = new Key(issuerId, ident);
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, new Entry(response, expiresAt));
+    }
+  }
+
+  /**
+   * Removes all responses which have been generated before {@code maxGeneratedAt} or whose
+   * nextUpdate is before {@code minNextUpdate}.
+   *
+   * @param maxGeneratedAt epoch seconds
+   * @param minNextUpdate epoch seconds
+   */
+  void removeExpired(long maxGeneratedAt, long minNextUpdate) {
+    long now = Instant.now().getEpochSecond();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        Iterator<Entry> it = segment.values().iterator();
+        while (it.hasNext()) {
+          Entry entry = it.next();
+          OcspRespWithCacheInfo.ResponseCacheInfo cacheInfo = entry.response.getCacheInfo();
+          Long nextUpdate = cacheInfo.getNextUpdate();
+          if (entry.expiresAt <= now || cacheInfo.getGeneratedAt() < maxGeneratedAt
+              || (nextUpdate != null && nextUpdate < minNextUpdate)) {
+            it.remove();
+          }
+        }
+      }
+    }
+  }
+
+  void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  private Segment segmentFor(Key key) {
+    int h = key.hash;
+    h ^= (h >>> 16);
+    return segments[h & (NUM_SEGMENTS - 1)];
+  }
+
+}
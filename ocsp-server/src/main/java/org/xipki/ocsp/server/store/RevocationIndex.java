@@ -0,0 +1,294 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable index of the certificate entries of one issuer, used by
+ * {@link RevocationIndexCertStatusStore}. The entries are kept as fixed-size records sorted by
+ * the serial number in a direct (off-heap) buffer, and are looked up via binary search.
+ * <p>
+ * Serial numbers which do not fit in the fixed-size records, i.e. longer than
+ * {@link #SERIAL_SIZE} bytes, zero or negative, are kept in a small map on the heap, so that
+ * no entry is lost.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class RevocationIndex {
+
+  static final class Entry {
+
+    final int crlId;
+
+    // all times in epoch seconds
+    final long notBefore;
+
+    final long notAfter;
+
+    final boolean revoked;
+
+    final int reason;
+
+    final long revTime;
+
+    final long invalTime;
+
+    Entry(int crlId, long notBefore, long notAfter, boolean revoked, int reason, long revTime, long invalTime) {
+      this.crlId = crlId;
+      this.notBefore = notBefore;
+      this.notAfter = notAfter;
+      this.revoked = revoked;
+      this.reason = reason;
+      this.revTime = revTime;
+      this.invalTime = invalTime;
+    }
+
+  } // class Entry
+
+  static final class Builder {
+
+    private ByteBuffer buffer;
+
+    private int size;
+
+    // entries whose serial number does not fit in the fixed-size records.
+    private final Map<BigInteger, Entry> oversized = new HashMap<>();
+
+    Builder() {
+      buffer = ByteBuffer.allocateDirect(1024 * RECORD_SIZE);
+    }
+
+    /**
+     * Adds an entry.
+     * @param serialNumber the serial number.
+     * @param entry the entry.
+     */
+    void add(BigInteger serialNumber, Entry entry) {
+      byte[] serial = toFixedSerial(serialNumber);
+      if (serial == null) {
+        oversized.put(serialNumber, entry);
+        return;
+      }
+
+      if ((long) (size + 1) * RECORD_SIZE > Integer.MAX_VALUE) {
+        throw new IllegalStateException("too many entries, at most " + (Integer.MAX_VALUE / RECORD_SIZE)
+            + " entries per issuer are allowed");
+      }
+
+      int offset = size * RECORD_SIZE;
+      if (offset + RECORD_SIZE > buffer.capacity()) {
+        ByteBuffer newBuffer = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, 2L * buffer.capacity()));
+        buffer.position(0).limit(offset);
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+        buffer.clear();
+      }
+
+      putBytes(buffer, offset, serial);
+      buffer.put(offset + OFF_FLAGS, (byte) (entry.revoked ? 1 : 0));
+      buffer.put(offset + OFF_REASON, (byte) entry.reason);
+      buffer.putInt(offset + OFF_CRLID, entry.crlId);
+      buffer.putLong(offset + OFF_NBEFORE, entry.notBefore);
+      buffer.putLong(offset + OFF_NAFTER, entry.notAfter);
+      buffer.putLong(offset + OFF_RT, entry.revTime);
+      buffer.putLong(offset + OFF_RIT, entry.invalTime);
+      size++;
+    }
+
+    int size() {
+      return size + oversized.size();
+    }
+
+    RevocationIndex build() {
+      heapSort(buffer, size);
+      // shrink to the required size
+      ByteBuffer table = ByteBuffer.allocateDirect(Math.max(1, size) * RECORD_SIZE);
+      buffer.position(0).limit(size * RECORD_SIZE);
+      table.put(buffer);
+      table.clear();
+      buffer = null;
+      return new RevocationIndex(table.asReadOnlyBuffer(), size,
+          oversized.isEmpty() ? Collections.emptyMap() : new HashMap<>(oversized));
+    }
+
+  } // class Builder
+
+  static final int SERIAL_SIZE = 20;
+
+  private static final int OFF_FLAGS = SERIAL_SIZE;
+
+  private static final int OFF_REASON = OFF_FLAGS + 1;
+
+  private static final int OFF_CRLID = OFF_REASON + 1;
+
+  private static final int OFF_NBEFORE = OFF_CRLID + 4;
+
+  private static final int OFF_NAFTER = OFF_NBEFORE + 8;
+
+  private static final int OFF_RT = OFF_NAFTER + 8;
+
+  private static final int OFF_RIT = OFF_RT + 8;
+
+  private static final int RECORD_SIZE = OFF_RIT + 8;
+
+  private final ByteBuffer table;
+
+  private final int size;
+
+  private final Map<BigInteger, Entry> oversized;
+
+  private RevocationIndex(ByteBuffer table, int size, Map<BigInteger, Entry> oversized) {
+    this.table = table;
+    this.size = size;
+    this.oversized = oversized;
+  }
+
+  int size() {
+    return size + oversized.size();
+  }
+
+  /**
+   * Returns the number of entries whose serial number does not fit in the fixed-size records.
+   * @return the number of entries kept on the heap.
+   */
+  int oversizedSize() {
+    return oversized.size();
+  }
+
+  /**
+   * Returns the entry for the given serial number.
+   * @param serialNumber the serial number.
+   * @return the entry, or {@code null} if not present.
+   */
+  Entry get(BigInteger serialNumber) {
+    byte[] serial = toFixedSerial(serialNumber);
+    if (serial == null) {
+      return oversized.get(serialNumber);
+    }
+
+    ByteBuffer key = ByteBuffer.wrap(serial);
+    long k0 = key.getLong(0);
+    long k1 = key.getLong(8);
+    int k2 = key.getInt(16);
+
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int offset = mid * RECORD_SIZE;
+      int cmp = compare(table, offset, k0, k1, k2);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return new Entry(table.getInt(offset + OFF_CRLID), table.getLong(offset + OFF_NBEFORE),
+            table.getLong(offset + OFF_NAFTER), table.get(offset + OFF_FLAGS) != 0,
+            table.get(offset + OFF_REASON), table.getLong(offset + OFF_RT), table.getLong(offset + OFF_RIT));
+      }
+    }
+    return null;
+  } // method get
+
+  /**
+   * Returns the unsigned big-endian representation of the serial number, left-padded with zeros
+   * to {@link #SERIAL_SIZE} bytes, so that the byte order equals the numerical order.
+   */
+  private static byte[] toFixedSerial(BigInteger serialNumber) {
+    if (serialNumber.signum() != 1) {
+      return null;
+    }
+
+    byte[] bytes = serialNumber.toByteArray();
+    int from = (bytes[0] == 0) ? 1 : 0;
+    int len = bytes.length - from;
+    if (len > SERIAL_SIZE) {
+      return null;
+    }
+
+    byte[] ret = new byte[SERIAL_SIZE];
+    System.arraycopy(bytes, from, ret, SERIAL_SIZE - len, len);
+    return ret;
+  }
+
+  private static int compare(ByteBuffer buf, int offset, long k0, long k1, int k2) {
+    int cmp = Long.compareUnsigned(buf.getLong(offset), k0);
+    if (cmp != 0) {
+      return cmp;
+    }
+
+    cmp = Long.compareUnsigned(buf.getLong(offset + 8), k1);
+    return (cmp != 0) ? cmp : Integer.compareUnsigned(buf.getInt(offset + 16), k2);
+  }
+
+  private static int compare(ByteBuffer buf, int i, int j) {
+    int offset = j * RECORD_SIZE;
+    return compare(buf, i * RECORD_SIZE, buf.getLong(offset), buf.getLong(offset + 8), buf.getInt(offset + 16));
+  }
+
+  // in-place heap sort, so that no additional memory for the records is required.
+  private static void heapSort(ByteBuffer buf, int n) {
+    byte[] tmp1 = new byte[RECORD_SIZE];
+    byte[] tmp2 = new byte[RECORD_SIZE];
+
+    for (int i = n / 2 - 1; i >= 0; i--) {
+      siftDown(buf, i, n, tmp1, tmp2);
+    }
+
+    for (int end = n - 1; end > 0; end--) {
+      swap(buf, 0, end, tmp1, tmp2);
+      siftDown(buf, 0, end, tmp1, tmp2);
+    }
+  }
+
+  private static void siftDown(ByteBuffer buf, int root, int n, byte[] tmp1, byte[] tmp2) {
+    while (true) {
+      int child = 2 * root + 1;
+      if (child >= n) {
+        return;
+      }
+
+      if (child + 1 < n && compare(buf, child, child + 1) < 0) {
+        child++;
+      }
+
+      if (compare(buf, root, child) >= 0) {
+        return;
+      }
+
+      swap(buf, root, child, tmp1, tmp2);
+      root = child;
+    }
+  }
+
+  private static void swap(ByteBuffer buf, int i, int j, byte[] tmp1, byte[] tmp2) {
+    int offI = i * RECORD_SIZE;
+    int offJ = j * RECORD_SIZE;
+    getBytes(buf, offI, tmp1);
+    getBytes(buf, offJ, tmp2);
+    putBytes(buf, offI, tmp2);
+    putBytes(buf, offJ, tmp1);
+  }
+
+  // absolute bulk get and put are not available in Java 11.
+  private static void getBytes(ByteBuffer buf, int index, byte[] dst) {
+    ByteBuffer dup = buf.duplicate();
+    dup.position(index);
+    dup.get(dst);
+  }
+
+  private static void putBytes(ByteBuffer buf, int index, byte[] src) {
+    ByteBuffer dup = buf.duplicate();
+    dup.position(index);
+    dup.put(src);
+  }
+
+}
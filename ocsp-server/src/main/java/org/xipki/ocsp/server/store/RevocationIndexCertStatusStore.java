@@ -0,0 +1,392 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.ocsp.api.CertStatusInfo;
+import org.xipki.ocsp.api.OcspStoreException;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.util.LogUtil;
+import org.xipki.util.StringUtil;
+import org.xipki.util.Validity;
+
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OcspStore for XiPKI OCSP database, which answers the status from an in-memory index instead
+ * of querying the database for each request.
+ * <p>
+ * At startup, the revoked certificates (or all certificates if {@code knownSerials} is
+ * {@code true}) are loaded into an off-heap {@link RevocationIndex} per issuer. Changes are
+ * retrieved incrementally via the column CERT.LUPDATE (served by the index IDX_CERT_LUPDATE on
+ * CERT(LUPDATE, ID)), and the index is rebuilt completely every {@code fullReloadInterval}, or
+ * if too many changes have been collected.
+ * <p>
+ * Rows deleted from the table CERT leave no trace for the incremental retrieval, hence a deleted
+ * certificate keeps its last status (e.g. revoked, or known if {@code knownSerials} is
+ * {@code true}) until the next complete rebuild. Deployments which delete certificates, e.g. the
+ * expired ones, and need the deletion to take effect earlier shall reduce
+ * {@code fullReloadInterval} accordingly.
+ * <p>
+ * If {@code knownSerials} is {@code false}, certificates not contained in the index are
+ * considered as good. If the certificate hash is requested, or the index is not loaded yet,
+ * the status is retrieved from the database as in {@link DbCertStatusStore}.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class RevocationIndexCertStatusStore extends DbCertStatusStore {
+
+  private static final class Snapshot {
+
+    private final Map<Integer, RevocationIndex> indexes;
+
+    // changes since the last full load
+    private final Map<Integer, Map<BigInteger, RevocationIndex.Entry>> deltas;
+
+    private final int deltaSize;
+
+    Snapshot(Map<Integer, RevocationIndex> indexes, Map<Integer, Map<BigInteger, RevocationIndex.Entry>> deltas) {
+      this.indexes = indexes;
+      this.deltas = deltas;
+      int size = 0;
+      for (Map<BigInteger, RevocationIndex.Entry> m : deltas.values()) {
+        size += m.size();
+      }
+      this.deltaSize = size;
+    }
+
+    RevocationIndex.Entry get(int issuerId, BigInteger serialNumber) {
+      Map<BigInteger, RevocationIndex.Entry> delta = deltas.get(issuerId);
+      if (delta != null) {
+        RevocationIndex.Entry entry = delta.get(serialNumber);
+        if (entry != null) {
+          return entry;
+        }
+      }
+
+      RevocationIndex index = indexes.get(issuerId);
+      return index == null ? null : index.get(serialNumber);
+    }
+
+  } // class Snapshot
+
+  private class IndexUpdateService implements Runnable {
+
+    @Override
+    public void run() {
+      updateIndex();
+    }
+
+  } // class IndexUpdateService
+
+  private static final Logger LOG = LoggerFactory.getLogger(RevocationIndexCertStatusStore.class);
+
+  private static final int NUM_ROWS_PER_SELECT = 1000;
+
+  // rows changed while the previous load was running must be retrieved again.
+  private static final long SEC_LUPDATE_MARGIN = 60;
+
+  private static final String COLUMNS = "ID,IID,SN,CRL_ID,NBEFORE,NAFTER,REV,RR,RT,RIT FROM CERT";
+
+  private final IndexUpdateService indexUpdateService = new IndexUpdateService();
+
+  private final AtomicBoolean indexUpdateInProcess = new AtomicBoolean(false);
+
+  private boolean knownSerials;
+
+  // in seconds
+  private long fullReloadInterval;
+
+  private int maxDeltaSize;
+
+  private String sqlLoad;
+
+  private String sqlChanges;
+
+  private volatile Snapshot snapshot;
+
+  // epoch seconds
+  private long lastLoad;
+
+  // epoch seconds
+  private long lastFullLoad;
+
+  /**
+   * Initialize the store.
+   *
+   * @param sourceConf
+   * the store source configuration. In addition to the ones of {@link DbCertStatusStore},
+   * it contains following key-value pairs:
+   * <ul>
+   * <li>knownSerials: optional, default to false
+   *   <p>
+   *   Whether all certificates instead of only the revoked ones are kept in memory.</li>
+   * <li>fullReloadInterval: optional, default to 1d
+   *   <p>
+   *   Interval to rebuild the index from the database. This is also the maximal delay until
+   *   certificates deleted from the database are removed from the index.</li>
+   * <li>maxDeltaSize: optional, default to 100000
+   *   <p>
+   *   Maximal number of changes kept besides the index. If exceeded, the index will be rebuilt.</li>
+   *  </ul>
+   * @param datasource DataSource.
+   */
+  @Override
+  public void init(Map<String, ?> sourceConf, DataSourceWrapper datasource) throws OcspStoreException {
+    String value = getOptionalStrValue(sourceConf, "knownSerials");
+    this.knownSerials = value != null && Boolean.parseBoolean(value);
+
+    value = getOptionalStrValue(sourceConf, "fullReloadInterval");
+    this.fullReloadInterval = (StringUtil.isBlank(value) ? Validity.getInstance("1d")
+        : Validity.getInstance(value)).approxMinutes() * 60;
+
+    value = getOptionalStrValue(sourceConf, "maxDeltaSize");
+    this.maxDeltaSize = StringUtil.isBlank(value) ? 100000 : Integer.parseInt(value);
+
+    String where = knownSerials ? " WHERE ID>=?" : " WHERE ID>=? AND REV=1";
+    this.sqlLoad = datasource.buildSelectFirstSql(NUM_ROWS_PER_SELECT, "ID ASC", COLUMNS + where);
+    // keyset pagination in the order of the index IDX_CERT_LUPDATE, so that only the changed rows
+    // are read instead of scanning the table by ID.
+    this.sqlChanges = datasource.buildSelectFirstSql(NUM_ROWS_PER_SELECT, "LUPDATE ASC,ID ASC",
+        "LUPDATE," + COLUMNS + " WHERE LUPDATE>? OR (LUPDATE=? AND ID>?)");
+
+    super.init(sourceConf, datasource);
+
+    // so that the ocsp service (tomcat) can start without blocking.
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    executor.schedule(this::updateIndex, 0, TimeUnit.SECONDS);
+    executor.shutdown();
+  } // method init
+
+  @Override
+  protected List<Runnable> getScheduledServices() {
+    List<Runnable> services = new ArrayList<>(super.getScheduledServices());
+    services.add(indexUpdateService);
+    return services;
+  }
+
+  @Override
+  public boolean isHealthy() {
+    // the index is used also if the database is not reachable.
+    return (isInitialized() && snapshot != null) || super.isHealthy();
+  }
+
+  @Override
+  protected CertStatusInfo getCertStatus0(Instant time, RequestIssuer reqIssuer, BigInteger serialNumber,
+                                          boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
+      throws OcspStoreException {
+    Snapshot snapshot0 = snapshot;
+    if (includeCertHash || snapshot0 == null) {
+      return super.getCertStatus0(time, reqIssuer, serialNumber, includeCertHash, includeRit, inheritCaRevocation);
+    }
+
+    if (serialNumber.signum() != 1) { // non-positive serial number
+      return CertStatusInfo.getUnknownCertStatusInfo(Instant.now(), null);
+    }
+
+    IssuerEntry issuer = getIssuerStore().getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return null;
+    }
+
+    return getCertStatus(snapshot0, time, issuer, serialNumber, includeRit, inheritCaRevocation);
+  } // method getCertStatus0
+
+  @Override
+  protected Map<BigInteger, CertStatusInfo> getCertStatuses0(
+      Instant time, RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers,
+      boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
+      throws OcspStoreException {
+    Snapshot snapshot0 = snapshot;
+    if (includeCertHash || snapshot0 == null) {
+      return super.getCertStatuses0(time, reqIssuer, serialNumbers, includeCertHash, includeRit, inheritCaRevocation);
+    }
+
+    IssuerEntry issuer = getIssuerStore().getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return null;
+    }
+
+    Map<BigInteger, CertStatusInfo> ret = new HashMap<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      ret.put(serialNumber, (serialNumber.signum() != 1)
+          ? CertStatusInfo.getUnknownCertStatusInfo(Instant.now(), null)
+          : getCertStatus(snapshot0, time, issuer, serialNumber, includeRit, inheritCaRevocation));
+    }
+    return ret;
+  } // method getCertStatuses0
+
+  private CertStatusInfo getCertStatus(
+      Snapshot snapshot0, Instant time, IssuerEntry issuer, BigInteger serialNumber,
+      boolean includeRit, boolean inheritCaRevocation) {
+    if (isIssuerCrlExpired(issuer, time)) {
+      return CertStatusInfo.getCrlExpiredStatusInfo();
+    }
+
+    RevocationIndex.Entry entry = snapshot0.get(issuer.getId(), serialNumber);
+    CertRow row;
+    if (entry != null) {
+      row = toCertRow(time, entry.crlId, entry.notBefore, entry.notAfter, null,
+          entry.revoked, entry.reason, entry.revTime, includeRit ? entry.invalTime : 0);
+    } else if (knownSerials) {
+      row = null;
+    } else {
+      row = toCertRow(time, 0, 0, 0, null, false, 0, 0, 0);
+    }
+
+    return buildCertStatusInfo(time, issuer, row, inheritCaRevocation);
+  } // method getCertStatus
+
+  private void updateIndex() {
+    if (!indexUpdateInProcess.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      long now = Instant.now().getEpochSecond();
+      Snapshot snapshot0 = snapshot;
+      if (snapshot0 == null || now - lastFullLoad >= fullReloadInterval || snapshot0.deltaSize > maxDeltaSize) {
+        loadIndex(now);
+      } else {
+        Map<Integer, Map<BigInteger, RevocationIndex.Entry>> deltas = new HashMap<>();
+        for (Map.Entry<Integer, Map<BigInteger, RevocationIndex.Entry>> m : snapshot0.deltas.entrySet()) {
+          deltas.put(m.getKey(), new HashMap<>(m.getValue()));
+        }
+
+        int num = loadChanges(lastLoad - SEC_LUPDATE_MARGIN, deltas);
+        snapshot = new Snapshot(snapshot0.indexes, deltas);
+        lastLoad = now;
+        LOG.info("updated revocation index of store {} with {} changed entries", name, num);
+      }
+    } catch (Throwable th) {
+      LogUtil.error(LOG, th, "error updating the revocation index of store " + name);
+    } finally {
+      indexUpdateInProcess.set(false);
+    }
+  } // method updateIndex
+
+  private void loadIndex(long now) throws DataAccessException {
+    long start = System.currentTimeMillis();
+    Set<Integer> issuerIds = getIssuerStore().getIds();
+
+    Map<Integer, RevocationIndex.Builder> builders = new HashMap<>();
+    int num = 0;
+    long startId = 1;
+    while (true) {
+      final String sql = sqlLoad;
+      PreparedStatement ps = datasource.prepareStatement(sql);
+      ResultSet rs = null;
+      int numInBatch = 0;
+      try {
+        ps.setLong(1, startId);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          numInBatch++;
+          startId = Math.max(startId, rs.getLong("ID") + 1);
+
+          int issuerId = rs.getInt("IID");
+          if (!issuerIds.contains(issuerId)) {
+            continue;
+          }
+
+          BigInteger serialNumber = new BigInteger(rs.getString("SN"), 16);
+          RevocationIndex.Builder builder = builders.computeIfAbsent(issuerId, k -> new RevocationIndex.Builder());
+          builder.add(serialNumber, readEntry(rs));
+          num++;
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, rs);
+      }
+
+      if (numInBatch < NUM_ROWS_PER_SELECT) {
+        break;
+      }
+    }
+
+    Map<Integer, RevocationIndex> indexes = new HashMap<>();
+    int numOversized = 0;
+    for (Map.Entry<Integer, RevocationIndex.Builder> m : builders.entrySet()) {
+      RevocationIndex index = m.getValue().build();
+      numOversized += index.oversizedSize();
+      indexes.put(m.getKey(), index);
+    }
+
+    // retrieve the entries changed during the load
+    Map<Integer, Map<BigInteger, RevocationIndex.Entry>> deltas = new HashMap<>();
+    loadChanges(now - SEC_LUPDATE_MARGIN, deltas);
+
+    snapshot = new Snapshot(Collections.unmodifiableMap(indexes), deltas);
+    lastLoad = now;
+    lastFullLoad = now;
+    LOG.info("loaded revocation index of store {} with {} entries ({} with oversized serial numbers) in {} ms",
+        name, num, numOversized, System.currentTimeMillis() - start);
+  } // method loadIndex
+
+  private int loadChanges(long minLastUpdate, Map<Integer, Map<BigInteger, RevocationIndex.Entry>> deltas)
+      throws DataAccessException {
+    int num = 0;
+    // (LUPDATE, ID) of the last retrieved row. (minLastUpdate, 0) selects all rows with
+    // LUPDATE>=minLastUpdate.
+    long lastUpdate = minLastUpdate;
+    long lastId = 0;
+    while (true) {
+      final String sql = sqlChanges;
+      PreparedStatement ps = datasource.prepareStatement(sql);
+      ResultSet rs = null;
+      int numInBatch = 0;
+      try {
+        ps.setLong(1, lastUpdate);
+        ps.setLong(2, lastUpdate);
+        ps.setLong(3, lastId);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+          numInBatch++;
+          num++;
+          lastUpdate = rs.getLong("LUPDATE");
+          lastId = rs.getLong("ID");
+
+          BigInteger serialNumber = new BigInteger(rs.getString("SN"), 16);
+          deltas.computeIfAbsent(rs.getInt("IID"), k -> new HashMap<>()).put(serialNumber, readEntry(rs));
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, rs);
+      }
+
+      if (numInBatch < NUM_ROWS_PER_SELECT) {
+        break;
+      }
+    }
+    return num;
+  } // method loadChanges
+
+  private static RevocationIndex.Entry readEntry(ResultSet rs) throws SQLException {
+    boolean revoked = rs.getBoolean("REV");
+    return new RevocationIndex.Entry(rs.getInt("CRL_ID"), rs.getLong("NBEFORE"), rs.getLong("NAFTER"), revoked,
+        revoked ? rs.getInt("RR") : 0, revoked ? rs.getLong("RT") : 0, revoked ? rs.getLong("RIT") : 0);
+  }
+
+}
@@ -0,0 +1,208 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the serial numbers of one issuer. If {@link #mightContain(BigInteger)} returns
+ * {@code false}, the certificate is definitely not contained in the database.
+ * <p>
+ * Serial numbers can be added concurrently to the lookups. The filter is updated by scanning the
+ * certificates by ID: each update reads the certificates with ID greater than the highest ID read
+ * by the update before the last one, so that certificates committed with a lower ID during the
+ * last update are read too.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+class SerialFilter {
+
+  private static final int MAGIC = 0x53464c32; // "SFL2"
+
+  // false positive probability
+  private static final double FPP = 0.01;
+
+  private final AtomicLongArray bits;
+
+  private final long numBits;
+
+  private final int numHashes;
+
+  private final int capacity;
+
+  private final AtomicInteger size;
+
+  // epoch seconds of the last update.
+  private volatile long lastSync;
+
+  // highest ID read by the last update.
+  private volatile long maxId;
+
+  // highest ID read by the update before the last one, the next update starts after it.
+  private volatile long scanFromId;
+
+  private SerialFilter(AtomicLongArray bits, int numHashes, int capacity, int size, long lastSync,
+                       long maxId, long scanFromId) {
+    this.bits = bits;
+    this.numBits = 64L * bits.length();
+    this.numHashes = numHashes;
+    this.capacity = capacity;
+    this.size = new AtomicInteger(size);
+    this.lastSync = lastSync;
+    this.maxId = maxId;
+    this.scanFromId = scanFromId;
+  }
+
+  /**
+   * Creates an empty filter.
+   * @param capacity expected number of serial numbers.
+   * @return the new filter.
+   */
+  static SerialFilter newInstance(int capacity) {
+    capacity = Math.max(1000, capacity);
+    // m = -n * ln(p) / (ln2)^2, k = m / n * ln2
+    long numBits = (long) Math.ceil(-capacity * Math.log(FPP) / (Math.log(2) * Math.log(2)));
+    int numLongs = (int) Math.min(Integer.MAX_VALUE, (numBits + 63) / 64);
+    int numHashes = Math.max(1, (int) Math.round(64.0 * numLongs / capacity * Math.log(2)));
+    return new SerialFilter(new AtomicLongArray(numLongs), numHashes, capacity, 0, 0, 0, 0);
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of distinct serial numbers added. A serial number added again is not
+   * counted, nor is, with the false positive probability, a new one.
+   */
+  int size() {
+    return size.get();
+  }
+
+  long getLastSync() {
+    return lastSync;
+  }
+
+  void setLastSync(long lastSync) {
+    this.lastSync = lastSync;
+  }
+
+  /**
+   * Returns the ID after which the next update starts to read the certificates.
+   */
+  long getScanFromId() {
+    return scanFromId;
+  }
+
+  /**
+   * Records the highest ID read by an update.
+   * @param maxId the highest ID read by the update, or the one of the previous update if no
+   *        certificate has been read.
+   */
+  void setMaxId(long maxId) {
+    this.scanFromId = this.maxId;
+    this.maxId = Math.max(this.maxId, maxId);
+  }
+
+  long getMaxId() {
+    return maxId;
+  }
+
+  /**
+   * Adds the serial number.
+   * @param serialNumber the serial number.
+   * @return whether the serial number has not been contained before.
+   */
+  boolean add(BigInteger serialNumber) {
+    byte[] bytes = serialNumber.toByteArray();
+    long h1 = hash(bytes, 0);
+    long h2 = hash(bytes, h1) | 1;
+    boolean bitsChanged = false;
+    for (int i = 0; i < numHashes; i++) {
+      long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+      int arrayIndex = (int) (index >>> 6);
+      long mask = 1L << index;
+      if ((bits.get(arrayIndex) & mask) == 0) {
+        long old = bits.getAndAccumulate(arrayIndex, mask, (a, b) -> a | b);
+        bitsChanged |= (old & mask) == 0;
+      }
+    }
+
+    if (bitsChanged) {
+      size.incrementAndGet();
+    }
+    return bitsChanged;
+  } // method add
+
+  boolean mightContain(BigInteger serialNumber) {
+    byte[] bytes = serialNumber.toByteArray();
+    long h1 = hash(bytes, 0);
+    long h2 = hash(bytes, h1) | 1;
+    for (int i = 0; i < numHashes; i++) {
+      long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+      if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  } // method mightContain
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(bits.length());
+    out.writeInt(numHashes);
+    out.writeInt(capacity);
+    out.writeInt(size.get());
+    out.writeLong(lastSync);
+    out.writeLong(maxId);
+    out.writeLong(scanFromId);
+    for (int i = 0; i < bits.length(); i++) {
+      out.writeLong(bits.get(i));
+    }
+  } // method write
+
+  static SerialFilter read(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("invalid serial filter file");
+    }
+
+    int numLongs = in.readInt();
+    int numHashes = in.readInt();
+    int capacity = in.readInt();
+    int size = in.readInt();
+    long lastSync = in.readLong();
+    long maxId = in.readLong();
+    long scanFromId = in.readLong();
+    if (numLongs < 1 || numHashes < 1 || capacity < 1 || size < 0 || scanFromId > maxId) {
+      throw new IOException("invalid serial filter file");
+    }
+
+    AtomicLongArray bits = new AtomicLongArray(numLongs);
+    for (int i = 0; i < numLongs; i++) {
+      bits.set(i, in.readLong());
+    }
+    return new SerialFilter(bits, numHashes, capacity, size, lastSync, maxId, scanFromId);
+  } // method read
+
+  private static long hash(byte[] bytes, long seed) {
+    // FNV-1a over the two's-complement encoding, finalized with the mixer of SplitMix64.
+    long h = 0xcbf29ce484222325L ^ seed;
+    for (byte b : bytes) {
+      h ^= b & 0xFF;
+      h *= 0x100000001b3L;
+    }
+
+    h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+    h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+    return h ^ (h >>> 31);
+  } // method hash
+
+}
@@ -37,6 +37,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -57,6 +58,14 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class EjbcaCertStatusStore extends OcspStore {
 
+  private static class CertRow {
+    boolean ignore;
+    String hexCertHash;
+    boolean revoked;
+    int reason;
+    long revTime;
+  } // class CertRow
+
   private class StoreUpdateService implements Runnable {
 
     @Override
@@ -68,6 +77,11 @@ public class EjbcaCertStatusStore extends OcspStore {
 
   private static final Logger LOG = LoggerFactory.getLogger(EjbcaCertStatusStore.class);
 
+  private static final int MAX_SERIALS_PER_IN_SELECT = 100;
+
+  private static final String SQL_CS_CORE = "notBefore,expireDate,status,revocationReason,revocationDate"
+      + " FROM CertificateData WHERE cAFingerprint=? AND serialNumber";
+
   private final HashAlgo certHashAlgo = HashAlgo.SHA1;
 
   private final StoreUpdateService storeUpdateService = new StoreUpdateService();
@@ -196,6 +210,7 @@ public class EjbcaCertStatusStore extends OcspStore {
           LOG.info("Updated issuers of store {}", name);
           initializationFailed = false;
           initialized = true;
+          fireIssuersChanged();
         } finally {
           releaseDbResources(ps, rs);
         }
@@ -222,13 +237,7 @@ public class EjbcaCertStatusStore extends OcspStore {
       return CertStatusInfo.getUnknownCertStatusInfo(Instant.now(), null);
     }
 
-    if (!initialized) {
-      throw new OcspStoreException("initialization of CertStore is still in process");
-    }
-
-    if (initializationFailed) {
-      throw new OcspStoreException("initialization of CertStore failed");
-    }
+    assertInitialized();
 
     try {
       EjbcaIssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
@@ -238,16 +247,8 @@ public class EjbcaCertStatusStore extends OcspStore {
 
       String sql = includeCertHash ? sqlCsWithCertHash : sqlCs;
 
-      Instant thisUpdate = Instant.now();
-
       ResultSet rs = null;
-
-      boolean unknown = true;
-      boolean ignore = false;
-      String hexCertHash = null;
-      boolean revoked = false;
-      int reason = 0;
-      long revTime = 0;
+      CertRow row = null;
 
       PreparedStatement ps = datasource.prepareStatement(sql);
 
@@ -258,108 +259,200 @@ public class EjbcaCertStatusStore extends OcspStore {
         rs = ps.executeQuery();
 
         if (rs.next()) {
-          unknown = false;
-
-          long timeInMs = time.toEpochMilli();
-          if (ignoreNotYetValidCert) {
-            long notBefore = rs.getLong("notBefore");
-            if (timeInMs < notBefore) {
-              ignore = true;
-            }
-          }
-
-          if (!ignore && ignoreExpiredCert) {
-            long notAfterInSec = rs.getLong("expireDate");
-            if (timeInMs > notAfterInSec) {
-              ignore = true;
-            }
-          }
-
-          if (!ignore) {
-            if (includeCertHash) {
-              hexCertHash = rs.getString("fingerprint");
-            }
-
-            int status = rs.getInt("status");
-            revoked = status == 40;
-            if (revoked) {
-              reason = rs.getInt("revocationReason");
-              revTime = rs.getLong("revocationDate") / 1000;
-            }
-          }
-        } // end if (rs.next())
+          row = readCertRow(rs, time, includeCertHash);
+        }
       } catch (SQLException ex) {
         throw datasource.translate(sql, ex);
       } finally {
         releaseDbResources(ps, rs);
       }
 
-      CertStatusInfo certStatusInfo;
-      if (unknown) {
-        certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, null);
-      } else if (ignore) {
-        certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, null);
+      return buildCertStatusInfo(issuer, row, inheritCaRevocation);
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+
+  } // method getCertStatus0
+
+  @Override
+  protected Map<BigInteger, CertStatusInfo> getCertStatuses0(
+      Instant time, RequestIssuer reqIssuer, Collection<BigInteger> serialNumbers,
+      boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation)
+      throws OcspStoreException {
+    if (includeRit) {
+      throw new OcspStoreException("EJBCA store does not support includeRit");
+    }
+
+    assertInitialized();
+
+    EjbcaIssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return null;
+    }
+
+    Map<BigInteger, CertStatusInfo> ret = new HashMap<>();
+    Set<BigInteger> validSerialSet = new HashSet<>();
+    for (BigInteger serialNumber : serialNumbers) {
+      if (serialNumber.signum() != 1) { // non-positive serial number
+        ret.put(serialNumber, CertStatusInfo.getUnknownCertStatusInfo(Instant.now(), null));
       } else {
-        byte[] certHash = (hexCertHash == null) ? null : Hex.decode(hexCertHash);
-        if (revoked) {
-          CertRevocationInfo revInfo = new CertRevocationInfo(reason, Instant.ofEpochSecond(revTime), null);
-          certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-              certHashAlgo, certHash, thisUpdate, null, null);
-        } else {
-          certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
-              certHash, thisUpdate, null, null);
-        }
+        validSerialSet.add(serialNumber);
       }
+    }
+    List<BigInteger> validSerials = new ArrayList<>(validSerialSet);
+
+    String columns = (includeCertHash ? "fingerprint," : "") + "serialNumber," + SQL_CS_CORE;
 
-      if (includeArchiveCutoff) {
-        if (retentionInterval != 0) {
-          Instant date;
-          // expired certificate remains in status store forever
-          if (retentionInterval < 0) {
-            date = issuer.getNotBefore();
-          } else {
-            Instant t1 = Instant.now().minus(retentionInterval, ChronoUnit.DAYS);
-            date = issuer.getNotBefore().isAfter(t1) ? issuer.getNotBefore() : t1;
+    try {
+      Map<BigInteger, CertRow> rows = new HashMap<>();
+      for (int from = 0; from < validSerials.size(); from += MAX_SERIALS_PER_IN_SELECT) {
+        List<BigInteger> subSerials =
+            validSerials.subList(from, Math.min(validSerials.size(), from + MAX_SERIALS_PER_IN_SELECT));
+        final String sql = datasource.buildSelectFirstSql(subSerials.size(),
+            columns + " IN (?" + ",?".repeat(subSerials.size() - 1) + ")");
+
+        ResultSet rs = null;
+        PreparedStatement ps = datasource.prepareStatement(sql);
+        try {
+          int idx = 1;
+          ps.setString(idx++, issuer.getId());
+          for (BigInteger serialNumber : subSerials) {
+            // decimal serial number
+            ps.setString(idx++, serialNumber.toString());
           }
+          rs = ps.executeQuery();
 
-          certStatusInfo.setArchiveCutOff(date);
+          while (rs.next()) {
+            rows.put(new BigInteger(rs.getString("serialNumber")), readCertRow(rs, time, includeCertHash));
+          }
+        } catch (SQLException ex) {
+          throw datasource.translate(sql, ex);
+        } finally {
+          releaseDbResources(ps, rs);
         }
       }
 
-      if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
-        return certStatusInfo;
+      for (BigInteger serialNumber : validSerials) {
+        ret.put(serialNumber, buildCertStatusInfo(issuer, rows.get(serialNumber), inheritCaRevocation));
       }
+      return ret;
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+  } // method getCertStatuses0
 
-      CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
-      CertStatus certStatus = certStatusInfo.getCertStatus();
-      boolean replaced = false;
-      if (certStatus == CertStatus.GOOD) {
-        replaced = true;
-      } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
-        if (unknownCertBehaviour == UnknownCertBehaviour.good) {
-          replaced = true;
-        }
-      } else if (certStatus == CertStatus.REVOKED) {
-        if (certStatusInfo.getRevocationInfo().getRevocationTime().isAfter(caRevInfo.getRevocationTime())) {
-          replaced = true;
-        }
+  private void assertInitialized() throws OcspStoreException {
+    if (!initialized) {
+      throw new OcspStoreException("initialization of CertStore is still in process");
+    }
+
+    if (initializationFailed) {
+      throw new OcspStoreException("initialization of CertStore failed");
+    }
+  }
+
+  private CertRow readCertRow(ResultSet rs, Instant time, boolean includeCertHash) throws SQLException {
+    CertRow row = new CertRow();
+
+    long timeInMs = time.toEpochMilli();
+    if (ignoreNotYetValidCert) {
+      long notBefore = rs.getLong("notBefore");
+      if (timeInMs < notBefore) {
+        row.ignore = true;
+      }
+    }
+
+    if (!row.ignore && ignoreExpiredCert) {
+      long notAfterInSec = rs.getLong("expireDate");
+      if (timeInMs > notAfterInSec) {
+        row.ignore = true;
+      }
+    }
+
+    if (!row.ignore) {
+      if (includeCertHash) {
+        row.hexCertHash = rs.getString("fingerprint");
+      }
+
+      int status = rs.getInt("status");
+      row.revoked = status == 40;
+      if (row.revoked) {
+        row.reason = rs.getInt("revocationReason");
+        row.revTime = rs.getLong("revocationDate") / 1000;
+      }
+    }
+    return row;
+  } // method readCertRow
+
+  /**
+   * Builds the certificate status.
+   * @param row the entry of the certificate, {@code null} if the certificate is unknown.
+   */
+  private CertStatusInfo buildCertStatusInfo(EjbcaIssuerEntry issuer, CertRow row, boolean inheritCaRevocation) {
+    Instant thisUpdate = Instant.now();
+
+    CertStatusInfo certStatusInfo;
+    if (row == null) {
+      certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, null);
+    } else if (row.ignore) {
+      certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, null);
+    } else {
+      byte[] certHash = (row.hexCertHash == null) ? null : Hex.decode(row.hexCertHash);
+      if (row.revoked) {
+        CertRevocationInfo revInfo = new CertRevocationInfo(row.reason, Instant.ofEpochSecond(row.revTime), null);
+        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
+            certHashAlgo, certHash, thisUpdate, null, null);
+      } else {
+        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
+            certHash, thisUpdate, null, null);
       }
+    }
+
+    if (includeArchiveCutoff) {
+      if (retentionInterval != 0) {
+        Instant date;
+        // expired certificate remains in status store forever
+        if (retentionInterval < 0) {
+          date = issuer.getNotBefore();
+        } else {
+          Instant t1 = Instant.now().minus(retentionInterval, ChronoUnit.DAYS);
+          date = issuer.getNotBefore().isAfter(t1) ? issuer.getNotBefore() : t1;
+        }
 
-      if (replaced) {
-        CertRevocationInfo newRevInfo = (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) ? caRevInfo
-            : new CertRevocationInfo(CrlReason.CA_COMPROMISE,
-                  caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
-        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
-            certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
-            certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
-            certStatusInfo.getCertprofile());
+        certStatusInfo.setArchiveCutOff(date);
       }
+    }
+
+    if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
       return certStatusInfo;
-    } catch (DataAccessException ex) {
-      throw new OcspStoreException(ex.getMessage(), ex);
     }
 
-  } // method getCertStatus0
+    CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
+    CertStatus certStatus = certStatusInfo.getCertStatus();
+    boolean replaced = false;
+    if (certStatus == CertStatus.GOOD) {
+      replaced = true;
+    } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
+      if (unknownCertBehaviour == UnknownCertBehaviour.good) {
+        replaced = true;
+      }
+    } else if (certStatus == CertStatus.REVOKED) {
+      if (certStatusInfo.getRevocationInfo().getRevocationTime().isAfter(caRevInfo.getRevocationTime())) {
+        replaced = true;
+      }
+    }
+
+    if (replaced) {
+      CertRevocationInfo newRevInfo = (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) ? caRevInfo
+          : new CertRevocationInfo(CrlReason.CA_COMPROMISE,
+                caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+      certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
+          certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
+          certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
+          certStatusInfo.getCertprofile());
+    }
+    return certStatusInfo;
+  } // method buildCertStatusInfo
 
   /**
    * Borrow PreparedStatement.
@@ -429,8 +522,7 @@ public class EjbcaCertStatusStore extends OcspStore {
 
     this.datasource = Args.notNull(datasource, "datasource");
 
-    String coreSql = "notBefore,expireDate,status,revocationReason,revocationDate"
-        + " FROM CertificateData WHERE cAFingerprint=? AND serialNumber=?";
+    String coreSql = SQL_CS_CORE + "=?";
     sqlCs = datasource.buildSelectFirstSql(1, coreSql);
 
     sqlCsWithCertHash = datasource.buildSelectFirstSql(1, "fingerprint," + coreSql);
@@ -493,6 +585,23 @@ public class EjbcaCertStatusStore extends OcspStore {
     return (issuer == null) ? null : issuer.getCert();
   }
 
+  @Override
+  public List<X509Cert> getIssuerCerts() {
+    EjbcaIssuerStore store = issuerStore;
+    if (store == null) {
+      return Collections.emptyList();
+    }
+
+    List<X509Cert> certs = new ArrayList<>();
+    for (String id : store.getIds()) {
+      EjbcaIssuerEntry issuer = store.getIssuerForId(id);
+      if (issuer != null) {
+        certs.add(issuer.getCert());
+      }
+    }
+    return certs;
+  }
+
   protected boolean isInitialized() {
     return initialized;
   }
@@ -18,22 +18,63 @@ public class CertID extends ASN1Type {
 
   private final RequestIssuer issuer;
 
-  private final BigInteger serialNumber;
+  // content octets of the serialNumber, minimal two's-complement encoding
+  private final byte[] serialData;
+
+  private final int serialFrom;
+
+  private final int serialLength;
+
+  // created only on demand
+  private BigInteger serialNumber;
 
   private final int bodyLength;
 
   private final int encodedLength;
 
   public CertID(RequestIssuer issuer, BigInteger serialNumber) {
+    this(issuer, serialNumber.toByteArray(), serialNumber);
+  }
+
+  private CertID(RequestIssuer issuer, byte[] serialData, BigInteger serialNumber) {
     this.issuer = issuer;
+    this.serialData = serialData;
+    this.serialFrom = 0;
+    this.serialLength = serialData.length;
     this.serialNumber = serialNumber;
+    this.bodyLength = issuer.getLength() + getLen(serialLength);
+    this.encodedLength = getLen(bodyLength);
+  }
 
-    int len = issuer.getLength();
-
-    int snBytesLen = 1 + serialNumber.bitLength() / 8;
-    len += getLen(snBytesLen);
+  /**
+   * Creates the CertID whose serial number is the content of an encoded INTEGER within the given
+   * array. The array is referenced, not copied.
+   * @param issuer the issuer.
+   * @param data the array containing the content octets of the serial number.
+   * @param serialFrom start index of the content octets.
+   * @param serialLength number of the content octets.
+   * @throws EncodingException if the content octets are not a valid DER encoded INTEGER.
+   */
+  public CertID(RequestIssuer issuer, byte[] data, int serialFrom, int serialLength) throws EncodingException {
+    if (serialLength < 1 || serialFrom + serialLength > data.length) {
+      throw new EncodingException("invalid serialNumber");
+    }
 
-    this.bodyLength = len;
+    this.issuer = issuer;
+    if (serialLength > 1 && (data[serialFrom] == 0 && data[serialFrom + 1] >= 0
+        || data[serialFrom] == -1 && data[serialFrom + 1] < 0)) {
+      // not minimal encoded, use the canonical encoding
+      this.serialNumber = new BigInteger(data, serialFrom, serialLength);
+      this.serialData = serialNumber.toByteArray();
+      this.serialFrom = 0;
+      this.serialLength = serialData.length;
+    } else {
+      this.serialData = data;
+      this.serialFrom = serialFrom;
+      this.serialLength = serialLength;
+    }
+
+    this.bodyLength = issuer.getLength() + getLen(this.serialLength);
     this.encodedLength = getLen(bodyLength);
   }
 
@@ -42,9 +83,28 @@ public class CertID extends ASN1Type {
   }
 
   public BigInteger getSerialNumber() {
+    if (serialNumber == null) {
+      serialNumber = new BigInteger(serialData, serialFrom, serialLength);
+    }
     return serialNumber;
   }
 
+  /**
+   * Returns the array containing the content octets of the serial number, which must not be modified.
+   * @return the array containing the content octets of the serial number.
+   */
+  public byte[] getSerialData() {
+    return serialData;
+  }
+
+  public int getSerialFrom() {
+    return serialFrom;
+  }
+
+  public int getSerialLength() {
+    return serialLength;
+  }
+
   @Override
   public int getEncodedLength() {
     return encodedLength;
@@ -56,9 +116,9 @@ public class CertID extends ASN1Type {
     idx += issuer.write(out, idx);
 
     // serialNumbers
-    byte[] snBytes = serialNumber.toByteArray();
-    idx += writeHeader((byte) 0x02, snBytes.length, out, idx);
-    idx += arraycopy(snBytes, out, idx);
+    idx += writeHeader((byte) 0x02, serialLength, out, idx);
+    System.arraycopy(serialData, serialFrom, out, idx, serialLength);
+    idx += serialLength;
 
     return idx - offset;
   }
@@ -12,7 +12,6 @@ import org.xipki.ocsp.api.RequestIssuer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -88,7 +87,7 @@ public class OcspRequest {
       }
     }
 
-    List<CertID> requestList = new LinkedList<>();
+    List<CertID> requestList = new ArrayList<>(1);
     Header hdrRequestList = hdr;
 
     Header hdrSingleReq = readHeader(request, hdr.readerIndex);
@@ -107,9 +106,8 @@ public class OcspRequest {
         throw new EncodingException(ex);
       }
 
-      BigInteger serialNumber = new BigInteger(readContent(request, hdrSerial));
-      CertID certId = new CertID(issuer, serialNumber);
-      requestList.add(certId);
+      // the serial number is referenced in the request, the BigInteger is created on demand.
+      requestList.add(new CertID(issuer, request, hdrSerial.readerIndex, hdrSerial.len));
 
       int nextIndex = hdrSingleReq.readerIndex + hdrSingleReq.len;
       if (nextIndex < hdrRequestList.readerIndex + hdrRequestList.len) {
@@ -245,12 +243,6 @@ public class OcspRequest {
     return new Header(readerIndex, tag, len, off);
   } // method readHeader
 
-  private static byte[] readContent(byte[] encoded, Header header) {
-    byte[] content = new byte[header.len];
-    System.arraycopy(encoded, header.readerIndex, content, 0, header.len);
-    return content;
-  }
-
   public int getVersion() {
     return version;
   }
@@ -25,6 +25,8 @@ public class ResponseData extends ASN1Type {
 
   private final Extensions extensions;
 
+  private final int responsesBodyLength;
+
   private final int bodyLength;
 
   private final int encodedLength;
@@ -54,6 +56,7 @@ public class ResponseData extends ASN1Type {
     for (SingleResponse sr : responses) {
       responsesBodyLen += sr.getEncodedLength();
     }
+    this.responsesBodyLength = responsesBodyLen;
     len += getLen(responsesBodyLen);
 
     // extensions
@@ -86,11 +89,7 @@ public class ResponseData extends ASN1Type {
     idx += writeGeneralizedTime(producedAt, out, idx);
 
     // responses
-    int responsesBodyLen = 0;
-    for (SingleResponse sr : responses) {
-      responsesBodyLen += sr.getEncodedLength();
-    }
-    idx += writeHeader((byte) 0x30, responsesBodyLen, out, idx);
+    idx += writeHeader((byte) 0x30, responsesBodyLength, out, idx);
     for (SingleResponse sr : responses) {
       idx += sr.write(out, idx);
     }
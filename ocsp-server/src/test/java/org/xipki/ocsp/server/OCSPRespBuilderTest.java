@@ -0,0 +1,150 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server;
+
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.ocsp.server.type.ResponderID;
+import org.xipki.security.ConcurrentContentSigner;
+import org.xipki.security.DfltConcurrentContentSigner;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.SignAlgo;
+import org.xipki.security.SignatureSigner;
+import org.xipki.security.XiContentSigner;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * OCSPRespBuilder test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class OCSPRespBuilderTest {
+
+  private static final byte[] CERTSTATUS_GOOD = new byte[]{(byte) 0x80, 0x00};
+
+  private static KeyPair keypair;
+
+  private static ConcurrentContentSigner signer;
+
+  private static RequestIssuer reqIssuer;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(new ECGenParameterSpec("secp256r1"));
+    keypair = kpGen.generateKeyPair();
+
+    XiContentSigner signer0 = new SignatureSigner(SignAlgo.ECDSA_SHA256,
+        Signature.getInstance("SHA256withECDSA"), keypair.getPrivate());
+    signer = new DfltConcurrentContentSigner(false, Collections.singletonList(signer0));
+
+    // OCTET STRING issuerNameHash, OCTET STRING issuerKeyHash
+    byte[] hashData = new byte[44];
+    hashData[0] = 0x04;
+    hashData[1] = 20;
+    Arrays.fill(hashData, 2, 22, (byte) 0x11);
+    hashData[22] = 0x04;
+    hashData[23] = 20;
+    Arrays.fill(hashData, 24, 44, (byte) 0x22);
+    reqIssuer = new RequestIssuer(HashAlgo.SHA1, hashData);
+  } // method init
+
+  @Test
+  public void testTbsBufferReused() {
+    byte[] buffer1 = OCSPRespBuilder.getTbsBuffer(100);
+    byte[] buffer2 = OCSPRespBuilder.getTbsBuffer(OCSPRespBuilder.INITIAL_BUFFER_SIZE);
+    Assert.assertSame(buffer1, buffer2);
+  } // method testTbsBufferReused
+
+  @Test
+  public void testTbsBufferGrows() {
+    int len = OCSPRespBuilder.INITIAL_BUFFER_SIZE + 1;
+    byte[] buffer1 = OCSPRespBuilder.getTbsBuffer(len);
+    Assert.assertTrue(buffer1.length >= len);
+    Assert.assertTrue(buffer1.length <= OCSPRespBuilder.MAX_BUFFER_SIZE);
+
+    // the grown buffer is kept, also for smaller lengths
+    Assert.assertSame(buffer1, OCSPRespBuilder.getTbsBuffer(len));
+    Assert.assertSame(buffer1, OCSPRespBuilder.getTbsBuffer(10));
+  } // method testTbsBufferGrows
+
+  @Test
+  public void testLargeTbsBufferNotKept() {
+    byte[] kept = OCSPRespBuilder.getTbsBuffer(10);
+    int len = OCSPRespBuilder.MAX_BUFFER_SIZE + 1;
+    byte[] large = OCSPRespBuilder.getTbsBuffer(len);
+    Assert.assertEquals(len, large.length);
+    Assert.assertNotSame(large, OCSPRespBuilder.getTbsBuffer(len));
+    Assert.assertSame(kept, OCSPRespBuilder.getTbsBuffer(10));
+  } // method testLargeTbsBufferNotKept
+
+  @Test
+  public void testTbsBufferPerThread() throws Exception {
+    byte[] buffer = OCSPRespBuilder.getTbsBuffer(10);
+    AtomicReference<byte[]> otherBuffer = new AtomicReference<>();
+    Thread thread = new Thread(() -> otherBuffer.set(OCSPRespBuilder.getTbsBuffer(10)));
+    thread.start();
+    thread.join();
+    Assert.assertNotNull(otherBuffer.get());
+    Assert.assertNotSame(buffer, otherBuffer.get());
+  } // method testTbsBufferPerThread
+
+  @Test
+  public void testSmallResponseAfterLargeResponse() throws Exception {
+    // fills the buffer of this thread with the TBS of a large response.
+    byte[] large = buildResponse(200);
+    verifyResponse(large, 200);
+
+    // the small response must neither contain nor be signed over the remaining bytes.
+    byte[] small = buildResponse(1);
+    verifyResponse(small, 1);
+    Assert.assertTrue(small.length < large.length);
+  } // method testSmallResponseAfterLargeResponse
+
+  private static byte[] buildResponse(int numResponses) throws Exception {
+    OCSPRespBuilder builder = new OCSPRespBuilder(new ResponderID(new byte[20]));
+    Instant now = Instant.now();
+    for (int i = 1; i <= numResponses; i++) {
+      builder.addResponse(new CertID(reqIssuer, BigInteger.valueOf(i)), CERTSTATUS_GOOD, now, null, null);
+    }
+    return builder.buildOCSPResponse(signer, null, now);
+  } // method buildResponse
+
+  private static void verifyResponse(byte[] encoded, int numResponses) throws Exception {
+    OCSPResp resp = new OCSPResp(encoded);
+    Assert.assertEquals(OCSPResp.SUCCESSFUL, resp.getStatus());
+    Assert.assertArrayEquals(encoded, resp.getEncoded());
+
+    BasicOCSPResp basicResp = (BasicOCSPResp) resp.getResponseObject();
+    Assert.assertTrue("invalid signature",
+        basicResp.isSignatureValid(new JcaContentVerifierProviderBuilder().build(keypair.getPublic())));
+
+    SingleResp[] singleResps = basicResp.getResponses();
+    Assert.assertEquals(numResponses, singleResps.length);
+    for (int i = 0; i < numResponses; i++) {
+      Assert.assertEquals(BigInteger.valueOf(i + 1), singleResps[i].getCertID().getSerialNumber());
+      Assert.assertEquals(CertificateStatus.GOOD, singleResps[i].getCertStatus());
+    }
+  } // method verifyResponse
+
+}
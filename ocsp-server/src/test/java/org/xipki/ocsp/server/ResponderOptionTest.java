@@ -0,0 +1,47 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.util.exception.InvalidConfException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * ResponderOption test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class ResponderOptionTest {
+
+  @Test
+  public void testServletPaths() throws InvalidConfException {
+    ResponderOption option = new ResponderOption(newConf("", "/", "/ocsp", "/metricsx", "/foo/metrics"));
+    Assert.assertEquals(Arrays.asList("", "/", "/ocsp", "/metricsx", "/foo/metrics"), option.getServletPaths());
+  } // method testServletPaths
+
+  @Test
+  public void testMetricsPathRejected() {
+    for (String path : new String[]{OcspMetrics.PATH, OcspMetrics.PATH + "/", OcspMetrics.PATH + "/abc"}) {
+      try {
+        new ResponderOption(newConf("/ocsp", path));
+        Assert.fail("servlet path " + path + " is not rejected");
+      } catch (InvalidConfException ex) {
+        // expected
+      }
+    }
+  } // method testMetricsPathRejected
+
+  private static OcspServerConf.Responder newConf(String... servletPaths) {
+    OcspServerConf.Responder conf = new OcspServerConf.Responder();
+    conf.setServletPaths(Arrays.asList(servletPaths));
+    conf.setStores(Collections.singletonList("store1"));
+    return conf;
+  } // method newConf
+
+}
@@ -0,0 +1,52 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+
+/**
+ * CrlDbCertStatusStore test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class CrlDbCertStatusStoreTest {
+
+  @Test
+  public void testHttpGetReadTimeout() throws Exception {
+    // accepts the connection, but never responds.
+    try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      Thread acceptor = new Thread(() -> {
+        try (Socket socket = server.accept()) {
+          Thread.sleep(10000);
+        } catch (Exception ex) {
+          // ignore
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+
+      String url = "http://127.0.0.1:" + server.getLocalPort() + "/ca.crl";
+      long start = System.currentTimeMillis();
+      try {
+        CrlDbCertStatusStore.httpGet(url, null, Collections.emptyMap(), new ByteArrayOutputStream(), 1000, 500);
+        Assert.fail("SocketTimeoutException expected");
+      } catch (SocketTimeoutException ex) {
+        // expected
+      }
+      Assert.assertTrue("read timeout not applied", System.currentTimeMillis() - start < 5000);
+      acceptor.interrupt();
+    }
+  } // method testHttpGetReadTimeout
+
+}
@@ -0,0 +1,88 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.security.asn1.CrlStreamParser;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCert;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCertsIterator;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * ImportCrl test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class ImportCrlTest {
+
+  @Test
+  public void testSortAndDeduplicate() throws Exception {
+    long now = System.currentTimeMillis() / 1000 * 1000;
+    Date date1 = new Date(now - 3000_000);
+    Date date2 = new Date(now - 2000_000);
+    Date date3 = new Date(now - 1000_000);
+
+    X500Name issuer = new X500Name("CN=test-ca");
+    X509v2CRLBuilder builder = new X509v2CRLBuilder(issuer, new Date(now));
+    builder.addCRLEntry(BigInteger.valueOf(5), date1, CRLReason.keyCompromise);
+    builder.addCRLEntry(BigInteger.valueOf(3), date1, CRLReason.superseded);
+    builder.addCRLEntry(BigInteger.valueOf(5), date2, CRLReason.cessationOfOperation);
+    builder.addCRLEntry(BigInteger.valueOf(1), date1, CRLReason.affiliationChanged);
+    builder.addCRLEntry(BigInteger.valueOf(5), date3, CRLReason.certificateHold);
+    builder.addCRLEntry(BigInteger.valueOf(3), date2, CRLReason.keyCompromise);
+
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+    kpGen.initialize(new ECGenParameterSpec("secp256r1"));
+    KeyPair keypair = kpGen.generateKeyPair();
+    byte[] encodedCrl = builder.build(new JcaContentSignerBuilder("SHA256withECDSA")
+        .build(keypair.getPrivate())).getEncoded();
+
+    File crlFile = File.createTempFile("test-", ".crl");
+    try {
+      Files.write(crlFile.toPath(), encodedCrl);
+
+      List<RevokedCert> chunk = new ArrayList<>();
+      try (RevokedCertsIterator it = new CrlStreamParser(crlFile).revokedCertificates()) {
+        while (it.hasNext()) {
+          chunk.add(it.next());
+        }
+      }
+      Assert.assertEquals(6, chunk.size());
+
+      List<RevokedCert> result = ImportCrl.sortAndDeduplicate(chunk);
+      Assert.assertEquals(3, result.size());
+
+      Assert.assertEquals(BigInteger.valueOf(1), result.get(0).getSerialNumber());
+      Assert.assertEquals(CRLReason.affiliationChanged, result.get(0).getReason());
+
+      // the last entry of a serial number wins
+      Assert.assertEquals(BigInteger.valueOf(3), result.get(1).getSerialNumber());
+      Assert.assertEquals(CRLReason.keyCompromise, result.get(1).getReason());
+      Assert.assertEquals(date2.getTime() / 1000, result.get(1).getRevocationDate());
+
+      Assert.assertEquals(BigInteger.valueOf(5), result.get(2).getSerialNumber());
+      Assert.assertEquals(CRLReason.certificateHold, result.get(2).getReason());
+      Assert.assertEquals(date3.getTime() / 1000, result.get(2).getRevocationDate());
+    } finally {
+      crlFile.delete();
+    }
+  } // method testSortAndDeduplicate
+
+}
@@ -0,0 +1,54 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ReadDataSourceRouter test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class ReadDataSourceRouterTest {
+
+  @Test
+  public void testIsFaster() {
+    Assert.assertTrue(ReadDataSourceRouter.isFaster(1000, 2000));
+    Assert.assertFalse(ReadDataSourceRouter.isFaster(2000, 1000));
+    Assert.assertFalse(ReadDataSourceRouter.isFaster(1000, 1000));
+
+    // not measured yet
+    Assert.assertTrue(ReadDataSourceRouter.isFaster(0, 1000));
+    Assert.assertFalse(ReadDataSourceRouter.isFaster(1000, 0));
+    Assert.assertFalse(ReadDataSourceRouter.isFaster(0, 0));
+  }
+
+  @Test
+  public void testGetLag() {
+    long now = 1_700_000_000L;
+    // up to date
+    Assert.assertEquals(0, ReadDataSourceRouter.getLag(now - 100, now - 100, 0, now));
+    Assert.assertEquals(0, ReadDataSourceRouter.getLag(now - 100, now - 50, 0, now));
+
+    // quiet CA: the last change before the revocation is a month ago, the revocation 5 seconds ago.
+    long monthAgo = now - 30 * 86400;
+    Assert.assertEquals(5, ReadDataSourceRouter.getLag(now - 5, monthAgo, now - 5, now));
+
+    // the replica misses a revocation made 10 minutes ago, no new certificates since then.
+    Assert.assertEquals(600, ReadDataSourceRouter.getLag(now - 600, monthAgo, now - 600, now));
+
+    // the replica misses several changes, the first one 300 seconds ago.
+    Assert.assertEquals(300, ReadDataSourceRouter.getLag(now - 1, now - 400, now - 300, now));
+
+    // replicated between the two queries
+    Assert.assertEquals(0, ReadDataSourceRouter.getLag(now - 1, now - 400, 0, now));
+
+    // clock of the writer ahead
+    Assert.assertEquals(0, ReadDataSourceRouter.getLag(now + 10, now - 400, now + 5, now));
+  }
+
+}
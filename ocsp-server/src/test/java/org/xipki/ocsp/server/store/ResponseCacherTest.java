@@ -0,0 +1,63 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.SignAlgo;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ResponseCacher test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class ResponseCacherTest {
+
+  @Test
+  public void testIdentDistinguishesCertIdHashAlgo() {
+    byte[] serial = {0x01, 0x23, 0x45, 0x67};
+    Set<String> idents = new HashSet<>();
+    for (HashAlgo hashAlgo : HashAlgo.values()) {
+      byte[] ident = ResponseCacher.buildIdent(serial, 0, serial.length, hashAlgo, SignAlgo.RSA_SHA256);
+      Assert.assertEquals(2 + serial.length, ident.length);
+      Assert.assertArrayEquals(serial, Arrays.copyOfRange(ident, 2, ident.length));
+      Assert.assertTrue("duplicated ident for " + hashAlgo, idents.add(Arrays.toString(ident)));
+    }
+  } // method testIdentDistinguishesCertIdHashAlgo
+
+  @Test
+  public void testIdentOfSerialSubrange() {
+    byte[] data = {0x7f, 0x01, 0x02, 0x03, 0x7f};
+    byte[] ident1 = ResponseCacher.buildIdent(data, 1, 3, HashAlgo.SHA256, SignAlgo.ECDSA_SHA256);
+    byte[] ident2 = ResponseCacher.buildIdent(new byte[]{0x01, 0x02, 0x03}, 0, 3,
+        HashAlgo.SHA256, SignAlgo.ECDSA_SHA256);
+    Assert.assertArrayEquals(ident1, ident2);
+
+    byte[] ident3 = ResponseCacher.buildIdent(data, 1, 3, HashAlgo.SHA256, SignAlgo.RSA_SHA256);
+    Assert.assertFalse(Arrays.equals(ident1, ident3));
+  } // method testIdentOfSerialSubrange
+
+  @Test
+  public void testIsBinaryType() {
+    for (int type : new int[]{Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB}) {
+      Assert.assertEquals(Boolean.TRUE, ResponseCacher.isBinaryType(type));
+    }
+
+    for (int type : new int[]{Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.CLOB,
+        Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR, Types.NCLOB}) {
+      Assert.assertEquals(Boolean.FALSE, ResponseCacher.isBinaryType(type));
+    }
+
+    Assert.assertNull(ResponseCacher.isBinaryType(Types.INTEGER));
+  } // method testIsBinaryType
+
+}
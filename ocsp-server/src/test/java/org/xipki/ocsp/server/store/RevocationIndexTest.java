@@ -0,0 +1,95 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+/**
+ * RevocationIndex test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class RevocationIndexTest {
+
+  @Test
+  public void testLookup() {
+    RevocationIndex.Builder builder = new RevocationIndex.Builder();
+    for (int i = 2000; i > 0; i--) {
+      builder.add(BigInteger.valueOf(i * 7L), revoked(i));
+    }
+
+    RevocationIndex index = builder.build();
+    Assert.assertEquals(2000, index.size());
+    Assert.assertEquals(0, index.oversizedSize());
+
+    for (int i = 1; i <= 2000; i++) {
+      RevocationIndex.Entry entry = index.get(BigInteger.valueOf(i * 7L));
+      Assert.assertNotNull(entry);
+      Assert.assertTrue(entry.revoked);
+      Assert.assertEquals(i, entry.revTime);
+    }
+    Assert.assertNull(index.get(BigInteger.valueOf(8)));
+  } // method testLookup
+
+  @Test
+  public void testRevokedSerialLongerThan20Bytes() {
+    // 21 and 32 bytes
+    BigInteger serial21 = BigInteger.ONE.shiftLeft(8 * RevocationIndex.SERIAL_SIZE);
+    BigInteger serial32 = BigInteger.ONE.shiftLeft(255).add(BigInteger.TEN);
+    // maximal 20-byte serial number, fits in the fixed-size records
+    BigInteger serial20 = serial21.subtract(BigInteger.ONE);
+
+    RevocationIndex.Builder builder = new RevocationIndex.Builder();
+    builder.add(BigInteger.ONE, good());
+    builder.add(serial20, revoked(20));
+    builder.add(serial21, revoked(21));
+    builder.add(serial32, revoked(32));
+
+    RevocationIndex index = builder.build();
+    Assert.assertEquals(4, index.size());
+    Assert.assertEquals(2, index.oversizedSize());
+
+    Assert.assertFalse(index.get(BigInteger.ONE).revoked);
+    Assert.assertEquals(20, index.get(serial20).revTime);
+
+    RevocationIndex.Entry entry = index.get(serial21);
+    Assert.assertNotNull("revoked serial number longer than 20 bytes lost", entry);
+    Assert.assertTrue(entry.revoked);
+    Assert.assertEquals(21, entry.revTime);
+
+    entry = index.get(serial32);
+    Assert.assertNotNull("revoked serial number longer than 20 bytes lost", entry);
+    Assert.assertTrue(entry.revoked);
+    Assert.assertEquals(32, entry.revTime);
+
+    Assert.assertNull(index.get(serial32.add(BigInteger.ONE)));
+  } // method testRevokedSerialLongerThan20Bytes
+
+  @Test
+  public void testNonPositiveSerial() {
+    RevocationIndex.Builder builder = new RevocationIndex.Builder();
+    builder.add(BigInteger.ZERO, revoked(1));
+    builder.add(BigInteger.valueOf(-5), revoked(2));
+
+    RevocationIndex index = builder.build();
+    Assert.assertEquals(2, index.oversizedSize());
+    Assert.assertEquals(1, index.get(BigInteger.ZERO).revTime);
+    Assert.assertEquals(2, index.get(BigInteger.valueOf(-5)).revTime);
+    Assert.assertNull(index.get(BigInteger.valueOf(5)));
+  } // method testNonPositiveSerial
+
+  private static RevocationIndex.Entry revoked(long revTime) {
+    return new RevocationIndex.Entry(0, 0, Long.MAX_VALUE, true, 1, revTime, 0);
+  }
+
+  private static RevocationIndex.Entry good() {
+    return new RevocationIndex.Entry(0, 0, Long.MAX_VALUE, false, 0, 0, 0);
+  }
+
+}
@@ -0,0 +1,118 @@
+// Copyright (c) 2013-2024 xipki. All rights reserved.
+// License Apache License 2.0
+
+package org.xipki.ocsp.server.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * SerialFilter test.
+ *
+ * @author Lijun Liao (xipki)
+ * @since 6.5.4
+ */
+
+public class SerialFilterTest {
+
+  @Test
+  public void testAddAndContain() {
+    SerialFilter filter = SerialFilter.newInstance(10000);
+    for (int i = 1; i <= 5000; i++) {
+      Assert.assertTrue(filter.add(BigInteger.valueOf(i * 7919L)));
+    }
+
+    for (int i = 1; i <= 5000; i++) {
+      Assert.assertTrue(filter.mightContain(BigInteger.valueOf(i * 7919L)));
+    }
+
+    int falsePositives = 0;
+    for (int i = 1; i <= 5000; i++) {
+      if (filter.mightContain(BigInteger.valueOf(i * 7919L + 1))) {
+        falsePositives++;
+      }
+    }
+    // false positive probability 1%
+    Assert.assertTrue("too many false positives: " + falsePositives, falsePositives < 150);
+  } // method testAddAndContain
+
+  @Test
+  public void testSizeNotIncreasedByReAdd() {
+    SerialFilter filter = SerialFilter.newInstance(1000);
+    for (int i = 1; i <= 100; i++) {
+      filter.add(BigInteger.valueOf(i));
+    }
+    int size = filter.size();
+    Assert.assertTrue(size > 95 && size <= 100);
+
+    // serial numbers read again by the overlapping update
+    for (int i = 1; i <= 100; i++) {
+      Assert.assertFalse(filter.add(BigInteger.valueOf(i)));
+    }
+    Assert.assertEquals(size, filter.size());
+  } // method testSizeNotIncreasedByReAdd
+
+  @Test
+  public void testScanFromId() {
+    SerialFilter filter = SerialFilter.newInstance(1000);
+    Assert.assertEquals(0, filter.getScanFromId());
+
+    filter.setMaxId(100);
+    Assert.assertEquals(0, filter.getScanFromId());
+    Assert.assertEquals(100, filter.getMaxId());
+
+    filter.setMaxId(150);
+    Assert.assertEquals(100, filter.getScanFromId());
+    Assert.assertEquals(150, filter.getMaxId());
+
+    // no new certificate
+    filter.setMaxId(150);
+    Assert.assertEquals(150, filter.getScanFromId());
+    Assert.assertEquals(150, filter.getMaxId());
+  } // method testScanFromId
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    SerialFilter filter = SerialFilter.newInstance(1000);
+    for (int i = 1; i <= 100; i++) {
+      filter.add(BigInteger.valueOf(i));
+    }
+    filter.setLastSync(12345);
+    filter.setMaxId(100);
+    filter.setMaxId(200);
+
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bout)) {
+      filter.write(out);
+    }
+
+    SerialFilter filter2;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+      filter2 = SerialFilter.read(in);
+    }
+
+    Assert.assertEquals(filter.size(), filter2.size());
+    Assert.assertEquals(filter.getCapacity(), filter2.getCapacity());
+    Assert.assertEquals(12345, filter2.getLastSync());
+    Assert.assertEquals(100, filter2.getScanFromId());
+    Assert.assertEquals(200, filter2.getMaxId());
+    for (int i = 1; i <= 100; i++) {
+      Assert.assertTrue(filter2.mightContain(BigInteger.valueOf(i)));
+    }
+  } // method testWriteAndRead
+
+  @Test(expected = IOException.class)
+  public void testReadInvalid() throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[64]))) {
+      SerialFilter.read(in);
+    }
+  }
+
+}
@@ -12,6 +12,7 @@ import org.apache.karaf.shell.support.completers.FileCompleter;
 import org.xipki.ca.mgmt.db.DbWorker;
 import org.xipki.ca.mgmt.db.diffdb.DigestDiffWorker;
 import org.xipki.ca.mgmt.db.port.DbPortWorker;
+import org.xipki.ca.mgmt.db.sync.OcspSyncWorker;
 import org.xipki.datasource.DataSourceFactory;
 import org.xipki.datasource.DataSourceWrapper;
 import org.xipki.datasource.DatabaseType;
@@ -316,6 +317,49 @@ public class DbActions {
 
   } // class DiffDigest
 
+  @Command(scope = "ca", name = "sync-ocsp", description = "synchronize OCSP database from CA database")
+  @Service
+  public static class SyncOcsp extends DbAction {
+
+    @Option(name = "--ca-db", required = true, description = "CA database configuration file")
+    @Completion(FileCompleter.class)
+    private String caDbConf;
+
+    @Option(name = "--db-conf", required = true, description = "OCSP database configuration file")
+    @Completion(FileCompleter.class)
+    private String dbconfFile;
+
+    @Option(name = "--watermark", required = true,
+        description = "file to persist the watermark, created if not exists")
+    @Completion(FileCompleter.class)
+    private String watermarkFile;
+
+    @Option(name = "--ca", multiValued = true, description = "name of CAs to be synchronized, default to all CAs")
+    private List<String> caNames;
+
+    @Option(name = "--revoked-only", description = "synchronizes only the revoked certificates")
+    private Boolean revokedOnly = Boolean.FALSE;
+
+    @Option(name = "-k", description = "number of certificates per commit")
+    private Integer numCertsPerCommit = 1000;
+
+    @Option(name = "--lag-target", description = "lag target in seconds.\n"
+        + "If positive, synchronizes continuously until interrupted, otherwise stops once caught up")
+    private Integer lagTarget = 0;
+
+    @Option(name = "--overlap", description = "number of minutes before the watermark from which each poll\n"
+        + "re-reads the certificates, to catch the ones committed late")
+    private Integer overlap = 10;
+
+    @Override
+    protected DbWorker getDbWorker() throws Exception {
+      Set<String> names = (caNames == null || caNames.isEmpty()) ? null : new HashSet<>(caNames);
+      return new OcspSyncWorker(datasourceFactory, caDbConf, dbconfFile, names, revokedOnly,
+          watermarkFile, numCertsPerCommit, lagTarget, overlap);
+    }
+
+  } // class SyncOcsp
+
   @Command(scope = "ca", name = "sql", description = "Run SQL script")
   @Service
   public static class Sql extends XiAction {
@@ -537,10 +581,14 @@ public class DbActions {
     @Option(name = "--resume", description = "resume from the last successful point")
     private Boolean resume = Boolean.FALSE;
 
+    @Option(name = "--threads", description = "number of threads to parse and write the certificates.\n"
+        + "If greater than 1, the import must also be resumed with more than 1 thread")
+    private Integer numThreads = 1;
+
     @Override
     protected DbPortWorker getDbWorker() throws Exception {
       return new DbPortWorker.ImportOcspFromCaDb(datasourceFactory, dbconfFile,
-          publisherName, resume, indir, numCertsPerCommit, readPassword());
+          publisherName, resume, indir, numCertsPerCommit, numThreads, readPassword());
     }
 
   } // class ImportOcspfromca